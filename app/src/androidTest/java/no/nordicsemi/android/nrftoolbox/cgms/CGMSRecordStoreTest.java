@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) 2015, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.nrftoolbox.cgms;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Adds records to a {@link CGMSRecordStore} with small pages and counts the changes reported to its listener,
+ * which the {@link CGMSRecordsAdapter} turns into list notifications. The store is reopened to simulate
+ * a reconnection or a restart of the app.
+ */
+public class CGMSRecordStoreTest extends TestCase {
+	private static final int PAGE_SIZE = 4;
+	private static final long SESSION_START_TIME = 1500000000000L;
+
+	private File mFile;
+	private CGMSRecordStore mStore;
+	private int mInserted;
+	private int mChanges;
+
+	private final CGMSRecordStore.OnChangeListener mListener = new CGMSRecordStore.OnChangeListener() {
+		@Override
+		public void onRecordsInserted(final int index, final int count) {
+			mInserted += count;
+		}
+
+		@Override
+		public void onRecordsChanged() {
+			mChanges++;
+		}
+	};
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		mFile = File.createTempFile("cgms", ".bin");
+		mFile.delete();
+		open();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		mStore.close();
+		mFile.delete();
+		super.tearDown();
+	}
+
+	private void open() throws IOException {
+		mStore = new CGMSRecordStore(mFile, PAGE_SIZE);
+		mStore.setOnChangeListener(mListener);
+	}
+
+	private void reopen() throws IOException {
+		mStore.close();
+		open();
+	}
+
+	/** Adds records with timestamps calculated from the session start time, like the manager does. */
+	private void addRecords(final int from, final int to) {
+		for (int i = from; i < to; ++i)
+			assertTrue(mStore.add(i, 5.0f, mStore.getSessionStartTime() + i * 60000L));
+	}
+
+	public void testAppendedRecordsAreReportedAsInserts() throws IOException {
+		addRecords(0, 10);
+		assertEquals(10, mInserted);
+		assertEquals(0, mChanges);
+		assertEquals(10, mStore.size());
+		assertEquals(0, mStore.getCommittedCount());
+
+		assertEquals(0, mStore.commit());
+		assertEquals(10, mStore.getCommittedCount());
+		assertEquals(0, mChanges);
+	}
+
+	public void testRollbackIsReportedAsChange() throws IOException {
+		addRecords(0, 3);
+		mStore.commit();
+		addRecords(3, 4);
+		mStore.rollback();
+		assertEquals(1, mChanges);
+		assertEquals(3, mStore.size());
+	}
+
+	public void testCommittedRecordsAreKeptAfterReopen() throws IOException {
+		addRecords(0, 10);
+		mStore.commit();
+		addRecords(10, 12);
+		reopen();
+
+		assertEquals(10, mStore.size());
+		assertEquals(9, mStore.getLastSequenceNumber());
+		// Committed records are duplicates, pending ones were lost and are obtained again
+		assertFalse(mStore.add(5, 5.0f, 0));
+		assertTrue(mStore.add(10, 5.0f, 10 * 60000L));
+	}
+
+	public void testSessionStartTimeIsKept() throws IOException {
+		assertEquals(0, mStore.getSessionStartTime());
+		mStore.startSession(SESSION_START_TIME);
+		addRecords(0, 5);
+		mStore.commit();
+		reopen();
+		assertEquals(SESSION_START_TIME, mStore.getSessionStartTime());
+
+		// Clearing the records does not end the session of the sensor
+		mStore.clear();
+		reopen();
+		assertEquals(SESSION_START_TIME, mStore.getSessionStartTime());
+	}
+
+	public void testRecordsAfterReconnectionAreNotRejected() throws IOException {
+		mStore.startSession(SESSION_START_TIME);
+		addRecords(0, 6);
+		mStore.commit();
+
+		// The timestamps of the next records follow the stored ones
+		reopen();
+		addRecords(6, 10);
+		assertEquals(0, mStore.commit());
+		assertEquals(10, mStore.getCommittedCount());
+		assertEquals(SESSION_START_TIME + 9 * 60000L, mStore.getTimestamp(9));
+	}
+
+	public void testNewSessionStartsSequenceNumbersAgain() throws IOException {
+		mStore.startSession(SESSION_START_TIME);
+		addRecords(0, 3);
+		mStore.commit();
+
+		mStore.startSession(SESSION_START_TIME + 3600000L);
+		assertEquals(-1, mStore.getLastSequenceNumber());
+		addRecords(0, 3);
+		assertEquals(0, mStore.commit());
+		assertEquals(6, mStore.getCommittedCount());
+	}
+}
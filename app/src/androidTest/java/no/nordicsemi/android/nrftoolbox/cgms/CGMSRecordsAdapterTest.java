@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) 2015, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package no.nordicsemi.android.nrftoolbox.cgms;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.support.v7.widget.RecyclerView;
+import android.test.AndroidTestCase;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import no.nordicsemi.android.nrftoolbox.widget.ChangeCoalescer;
+
+/**
+ * Adds records to a {@link CGMSRecordStore} on the test thread, like the GATT callback thread does during a download,
+ * and counts the notifications received by an observer registered in the {@link CGMSRecordsAdapter} on the main thread.
+ */
+public class CGMSRecordsAdapterTest extends AndroidTestCase {
+	private static final int RECORDS = 1000;
+	/** Interval between records during the download, in milliseconds. */
+	private static final long RECORD_INTERVAL = 2;
+
+	private final Handler mHandler = new Handler(Looper.getMainLooper());
+	private File mFile;
+	private CGMSRecordStore mStore;
+	private CGMSRecordsAdapter mAdapter;
+	private Observer mObserver;
+
+	/** Counts notifications, called on the main thread. */
+	private static class Observer extends RecyclerView.AdapterDataObserver {
+		volatile int changes;
+		volatile int rangeInserts;
+		volatile int inserted;
+		volatile int otherRanges;
+
+		@Override
+		public void onChanged() {
+			changes++;
+		}
+
+		@Override
+		public void onItemRangeInserted(final int positionStart, final int itemCount) {
+			rangeInserts++;
+			inserted += itemCount;
+		}
+
+		@Override
+		public void onItemRangeChanged(final int positionStart, final int itemCount) {
+			otherRanges++;
+		}
+
+		@Override
+		public void onItemRangeRemoved(final int positionStart, final int itemCount) {
+			otherRanges++;
+		}
+
+		@Override
+		public void onItemRangeMoved(final int fromPosition, final int toPosition, final int itemCount) {
+			otherRanges++;
+		}
+	}
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		mFile = new File(getContext().getCacheDir(), "cgms_adapter_test.bin");
+		mFile.delete();
+		mStore = new CGMSRecordStore(mFile);
+		mObserver = new Observer();
+		runOnMainSync(() -> {
+			mAdapter = new CGMSRecordsAdapter(getContext());
+			mAdapter.registerAdapterDataObserver(mObserver);
+			mAdapter.setRecordStore(mStore);
+		});
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		runOnMainSync(() -> mAdapter.setRecordStore(null));
+		mStore.close();
+		mFile.delete();
+		super.tearDown();
+	}
+
+	private void runOnMainSync(final Runnable runnable) throws InterruptedException {
+		final CountDownLatch latch = new CountDownLatch(1);
+		mHandler.post(() -> {
+			runnable.run();
+			latch.countDown();
+		});
+		assertTrue(latch.await(5, TimeUnit.SECONDS));
+	}
+
+	/** Waits until the main thread has handled the changes reported by the store. */
+	private void waitForNotifications(final int inserted) throws InterruptedException {
+		final long deadline = SystemClock.uptimeMillis() + 5000;
+		while (mObserver.inserted < inserted && SystemClock.uptimeMillis() < deadline)
+			Thread.sleep(ChangeCoalescer.DEFAULT_INTERVAL);
+		// Let a pending poll run
+		Thread.sleep(2 * ChangeCoalescer.DEFAULT_INTERVAL);
+		runOnMainSync(() -> {});
+	}
+
+	public void testDownloadIsNotifiedWithRangeInserts() throws InterruptedException {
+		assertEquals(1, mObserver.changes);
+
+		final long start = SystemClock.uptimeMillis();
+		for (int i = 0; i < RECORDS; ++i) {
+			assertTrue(mStore.add(i, 5.0f, i * 60000L));
+			Thread.sleep(RECORD_INTERVAL);
+		}
+		final long duration = SystemClock.uptimeMillis() - start;
+		waitForNotifications(RECORDS);
+
+		assertEquals(RECORDS, mObserver.inserted);
+		assertEquals(RECORDS, mAdapter.getItemCount());
+		// Records appended are never reported as a full change, nor as other ranges
+		assertEquals(1, mObserver.changes);
+		assertEquals(0, mObserver.otherRanges);
+		// At most once per frame, and not for each record
+		assertTrue("Range inserts: " + mObserver.rangeInserts + " in " + duration + " ms",
+				mObserver.rangeInserts <= duration / ChangeCoalescer.DEFAULT_INTERVAL + 2);
+		assertTrue("Range inserts: " + mObserver.rangeInserts, mObserver.rangeInserts < RECORDS / 4);
+	}
+
+	public void testSettingSameStoreDoesNotNotify() throws InterruptedException {
+		mStore.add(0, 5.0f, 0);
+		waitForNotifications(1);
+		assertEquals(1, mObserver.rangeInserts);
+
+		runOnMainSync(() -> mAdapter.setRecordStore(mStore));
+		assertEquals(1, mObserver.changes);
+		assertEquals(1, mAdapter.getItemCount());
+	}
+
+	public void testRollbackChangesDataSet() throws InterruptedException, IOException {
+		mStore.add(0, 5.0f, 0);
+		mStore.add(1, 5.0f, 60000L);
+		mStore.commit();
+		mStore.add(2, 5.0f, 120000L);
+		waitForNotifications(3);
+
+		mStore.rollback();
+		waitForNotifications(3);
+		assertEquals(2, mObserver.changes);
+		assertEquals(2, mAdapter.getItemCount());
+	}
+}
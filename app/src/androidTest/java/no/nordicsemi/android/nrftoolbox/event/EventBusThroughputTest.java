@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2015, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.nrftoolbox.event;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.support.v4.content.LocalBroadcastManager;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import no.nordicsemi.android.nrftoolbox.csc.CSCService;
+import no.nordicsemi.android.nrftoolbox.csc.CSCWheelEvent;
+
+/**
+ * Compares the time needed to deliver wheel measurements to the main thread using the {@link EventBus}
+ * with sending them as {@link LocalBroadcastManager} broadcasts, as {@link CSCService} did before.
+ * The results are logged with the EventBusThroughput tag.
+ */
+public class EventBusThroughputTest extends AndroidTestCase {
+	private static final String TAG = "EventBusThroughput";
+	private static final String ACTION = "no.nordicsemi.android.nrftoolbox.event.ACTION_TEST";
+	private static final int EVENT_COUNT = 20000;
+	private static final int ROUNDS = 3;
+
+	public void testEventBus() throws InterruptedException {
+		final EventBus<CSCWheelEvent> bus = new EventBus<>(CSCWheelEvent::new);
+		final Executor mainThread = new Handler(Looper.getMainLooper())::post;
+
+		for (int round = 0; round < ROUNDS; ++round) {
+			final CountDownLatch latch = new CountDownLatch(EVENT_COUNT);
+			final EventBus.Listener<CSCWheelEvent> listener = event -> latch.countDown();
+			bus.subscribe(listener, mainThread);
+
+			final long start = SystemClock.elapsedRealtimeNanos();
+			for (int i = 0; i < EVENT_COUNT; ++i) {
+				final CSCWheelEvent event = bus.obtain();
+				event.speed = i;
+				event.distance = i;
+				event.totalDistance = i;
+				bus.publish(event);
+			}
+			assertTrue(latch.await(30, TimeUnit.SECONDS));
+			log("EventBus", start);
+			bus.unsubscribe(listener);
+		}
+		Log.i(TAG, "EventBus created " + bus.getCreatedCount() + " events for " + bus.getPublishedCount() + " published");
+	}
+
+	public void testLocalBroadcastManager() throws InterruptedException {
+		final Context context = getContext();
+		final LocalBroadcastManager manager = LocalBroadcastManager.getInstance(context);
+
+		for (int round = 0; round < ROUNDS; ++round) {
+			final CountDownLatch latch = new CountDownLatch(EVENT_COUNT);
+			final BroadcastReceiver receiver = new BroadcastReceiver() {
+				@Override
+				public void onReceive(final Context context, final Intent intent) {
+					intent.getFloatExtra(CSCService.EXTRA_SPEED, 0.0f);
+					latch.countDown();
+				}
+			};
+			manager.registerReceiver(receiver, new IntentFilter(ACTION));
+
+			final long start = SystemClock.elapsedRealtimeNanos();
+			for (int i = 0; i < EVENT_COUNT; ++i) {
+				final Intent broadcast = new Intent(ACTION);
+				broadcast.putExtra(CSCService.EXTRA_SPEED, (float) i);
+				broadcast.putExtra(CSCService.EXTRA_DISTANCE, (float) i);
+				broadcast.putExtra(CSCService.EXTRA_TOTAL_DISTANCE, (float) i);
+				manager.sendBroadcast(broadcast);
+			}
+			assertTrue(latch.await(30, TimeUnit.SECONDS));
+			log("LocalBroadcastManager", start);
+			manager.unregisterReceiver(receiver);
+		}
+	}
+
+	private static void log(final String name, final long start) {
+		final long elapsed = SystemClock.elapsedRealtimeNanos() - start;
+		Log.i(TAG, name + ": " + EVENT_COUNT + " events in " + elapsed / 1000000 + " ms, " + (EVENT_COUNT * 1000000000L / elapsed) + " events/s");
+	}
+}
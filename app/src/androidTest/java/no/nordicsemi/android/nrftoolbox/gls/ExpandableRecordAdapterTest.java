@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) 2015, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package no.nordicsemi.android.nrftoolbox.gls;
+
+import android.database.DataSetObserver;
+import android.test.AndroidTestCase;
+
+import java.util.Calendar;
+
+/**
+ * Shows records of a meter committed to the {@link GlucoseRecordStore} in the {@link ExpandableRecordAdapter} and counts
+ * the notifications received by a registered observer. The list has no range notifications, it is reloaded once
+ * per committed chunk.
+ */
+public class ExpandableRecordAdapterTest extends AndroidTestCase {
+	private static final String DEVICE = "00:00:5E:00:53:00";
+	private static final int RECORDS = 120;
+
+	private GlucoseRecordStore mStore;
+	private ExpandableRecordAdapter mAdapter;
+	private int mChanges;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		mStore = GlucoseRecordStore.getInstance(getContext());
+		mStore.clear(DEVICE);
+		mAdapter = new ExpandableRecordAdapter(getContext(), mStore);
+		mAdapter.registerDataSetObserver(new DataSetObserver() {
+			@Override
+			public void onChanged() {
+				mChanges++;
+			}
+		});
+
+		// A single operation, committed when it completes
+		for (int i = 0; i < RECORDS; ++i)
+			mStore.add(DEVICE, createRecord(i));
+		assertEquals(RECORDS, mStore.commit());
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		mStore.clear(DEVICE);
+		super.tearDown();
+	}
+
+	private static GlucoseRecord createRecord(final int sequenceNumber) {
+		final GlucoseRecord record = new GlucoseRecord();
+		record.sequenceNumber = sequenceNumber;
+		record.time = Calendar.getInstance();
+		record.time.setTimeInMillis(sequenceNumber * 60000L);
+		record.glucoseConcentration = 0.0005f;
+		return record;
+	}
+
+	public void testHistoryIsReloadedOnce() {
+		mAdapter.setRecords(DEVICE, 0, 0xFFFF);
+		assertEquals(1, mChanges);
+		assertEquals(RECORDS, mAdapter.getGroupCount());
+
+		// Records are read in pages, in the order of sequence numbers
+		for (int i = 0; i < RECORDS; ++i)
+			assertEquals(i, mAdapter.getGroupId(i));
+		assertEquals(1, mChanges);
+	}
+
+	public void testRangeOfSequenceNumbersIsShown() {
+		mAdapter.setRecords(DEVICE, 10, 19);
+		assertEquals(1, mChanges);
+		assertEquals(10, mAdapter.getGroupCount());
+		assertEquals(10, ((GlucoseRecord) mAdapter.getGroup(0)).sequenceNumber);
+		assertEquals(19, ((GlucoseRecord) mAdapter.getGroup(9)).sequenceNumber);
+
+		// The list cleared
+		mAdapter.setRecords(DEVICE, Integer.MAX_VALUE, -1);
+		assertEquals(2, mChanges);
+		assertEquals(0, mAdapter.getGroupCount());
+
+		mAdapter.setRecords(null, 0, 0xFFFF);
+		assertEquals(0, mAdapter.getGroupCount());
+	}
+
+	public void testChunksAreShownWhenCommitted() {
+		mAdapter.setRecords(DEVICE, RECORDS, RECORDS + 63);
+		assertEquals(0, mAdapter.getGroupCount());
+
+		// Pending records are not shown until their chunk is committed
+		for (int i = RECORDS; i < RECORDS + 32; ++i)
+			mStore.add(DEVICE, createRecord(i));
+		mAdapter.setRecords(DEVICE, RECORDS, RECORDS + 63);
+		assertEquals(0, mAdapter.getGroupCount());
+		assertEquals(32, mStore.commit());
+		assertEquals(0, mStore.getPendingCount());
+		mAdapter.setRecords(DEVICE, RECORDS, RECORDS + 63);
+		assertEquals(32, mAdapter.getGroupCount());
+
+		// The context of the last record of a chunk arrives with the next one
+		final GlucoseRecord.MeasurementContext context = new GlucoseRecord.MeasurementContext();
+		context.meal = 1;
+		mStore.addContext(DEVICE, RECORDS + 31, context);
+		for (int i = RECORDS + 32; i < RECORDS + 64; ++i)
+			mStore.add(DEVICE, createRecord(i));
+		assertEquals(32, mStore.commit());
+		mAdapter.setRecords(DEVICE, RECORDS, RECORDS + 63);
+		assertEquals(64, mAdapter.getGroupCount());
+		assertEquals(1, ((GlucoseRecord) mAdapter.getGroup(31)).context.meal);
+		assertEquals(4, mChanges);
+	}
+
+	public void testContextIsMergedWithMeasurement() {
+		final GlucoseRecord.MeasurementContext context = new GlucoseRecord.MeasurementContext();
+		context.meal = 2;
+		// The context may arrive before the measurement
+		mStore.addContext(DEVICE, RECORDS, context);
+		mStore.add(DEVICE, createRecord(RECORDS));
+		assertEquals(1, mStore.commit());
+
+		mAdapter.setRecords(DEVICE, RECORDS, RECORDS);
+		assertEquals(1, mAdapter.getGroupCount());
+		final GlucoseRecord record = (GlucoseRecord) mAdapter.getGroup(0);
+		assertNotNull(record.context);
+		assertEquals(2, record.context.meal);
+	}
+}
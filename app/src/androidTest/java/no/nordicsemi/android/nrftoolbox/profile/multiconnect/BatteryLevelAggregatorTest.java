@@ -0,0 +1,180 @@
+/*
+ * Copyright (c) 2015, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package no.nordicsemi.android.nrftoolbox.profile.multiconnect;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs the {@link BatteryLevelAggregator} with a fake reader, which records the reads, and a simulated clock.
+ */
+public class BatteryLevelAggregatorTest extends TestCase {
+	private static final long TIME_TO_LIVE = 60000;
+	private static final long READ_WINDOW = 1000;
+	private static final long PUBLISH_DELAY = 100;
+
+	private long mTime;
+	private List<Long> mReads;
+	private List<long[]> mPublished;
+	private BatteryLevelAggregator mAggregator;
+
+	@Override
+	protected void setUp() {
+		mTime = 0;
+		mReads = new ArrayList<>();
+		mPublished = new ArrayList<>();
+		mAggregator = new BatteryLevelAggregator(mReads::add, (addresses, levels) -> mPublished.add(addresses), () -> mTime)
+				.setTimeToLive(TIME_TO_LIVE)
+				.setReadWindow(READ_WINDOW)
+				.setPublishDelay(PUBLISH_DELAY);
+	}
+
+	/** Advances the simulated clock in 10 ms steps, polling the aggregator. */
+	private void runFor(final long duration) {
+		final long end = mTime + duration;
+		while (mTime < end) {
+			mAggregator.poll();
+			mTime += 10;
+		}
+	}
+
+	private void refresh(final long... addresses) {
+		mAggregator.refresh(addresses, addresses.length);
+	}
+
+	public void testReadsAreStaggered() {
+		refresh(1, 2, 3, 4);
+		mAggregator.poll();
+		// Only the first read is due at once, the others are spread across the window
+		assertEquals(1, mReads.size());
+		runFor(READ_WINDOW);
+		assertEquals(4, mReads.size());
+	}
+
+	public void testFreshValuesAreNotRead() {
+		refresh(1);
+		runFor(READ_WINDOW);
+		mAggregator.onValue(1, 80);
+		assertFalse(mAggregator.isNotifying(1));
+
+		mTime += TIME_TO_LIVE / 2;
+		refresh(1);
+		runFor(READ_WINDOW);
+		assertEquals(1, mReads.size());
+
+		mTime += TIME_TO_LIVE;
+		refresh(1);
+		runFor(READ_WINDOW);
+		assertEquals(2, mReads.size());
+	}
+
+	public void testNotifyingDeviceIsNotPolled() {
+		mAggregator.onValue(1, 80);
+		assertTrue(mAggregator.isNotifying(1));
+
+		// A notifying device reports changes itself, even a quiet one is not read
+		mTime += 2 * TIME_TO_LIVE;
+		assertTrue(mAggregator.isFresh(1));
+		refresh(1);
+		runFor(READ_WINDOW);
+		assertTrue(mReads.isEmpty());
+	}
+
+	public void testNotifyingDeviceIsReadAfterNotificationsDisabled() {
+		mAggregator.onValue(1, 80);
+		mAggregator.onNotificationsDisabled(1);
+		assertFalse(mAggregator.isNotifying(1));
+
+		mTime += TIME_TO_LIVE;
+		refresh(1);
+		runFor(READ_WINDOW);
+		assertEquals(1, mReads.size());
+	}
+
+	public void testDeviceIsReadAfterNotificationsDisabledWithinTimeToLive() {
+		// The activity unbinds and rebinds quickly, the value is young but would no longer be updated
+		refresh(1);
+		runFor(READ_WINDOW);
+		mAggregator.onValue(1, 80);
+		mAggregator.onNotificationsDisabled(1);
+		assertFalse(mAggregator.isFresh(1));
+
+		mTime += TIME_TO_LIVE / 10;
+		refresh(1);
+		runFor(READ_WINDOW);
+		assertEquals(2, mReads.size());
+
+		mAggregator.onValue(1, 79);
+		assertTrue(mAggregator.isFresh(1));
+		assertEquals(79, mAggregator.getLevel(1));
+	}
+
+	public void testNotifyingDeviceIsReadAfterReconnection() {
+		mAggregator.onValue(1, 80);
+		mAggregator.onDisconnected(1);
+		assertFalse(mAggregator.isNotifying(1));
+		assertEquals(80, mAggregator.getLevel(1));
+
+		mTime += TIME_TO_LIVE;
+		refresh(1);
+		runFor(READ_WINDOW);
+		assertEquals(1, mReads.size());
+	}
+
+	public void testInitialReadIsNotANotification() {
+		// The BleManager reads the level during initialization
+		mAggregator.onReadStarted(1);
+		mAggregator.onValue(1, 80);
+		assertFalse(mAggregator.isNotifying(1));
+
+		// The next value, without a read, is a notification
+		mAggregator.onValue(1, 79);
+		assertTrue(mAggregator.isNotifying(1));
+	}
+
+	public void testChangesArePublishedTogether() {
+		mAggregator.onValue(1, 80);
+		mAggregator.onValue(2, 70);
+		mAggregator.onValue(3, 60);
+		runFor(PUBLISH_DELAY / 2);
+		assertTrue(mPublished.isEmpty());
+
+		runFor(PUBLISH_DELAY);
+		assertEquals(1, mPublished.size());
+		assertEquals(3, mPublished.get(0).length);
+
+		// An unchanged value is not published again
+		mAggregator.onValue(1, 80);
+		runFor(2 * PUBLISH_DELAY);
+		assertEquals(1, mPublished.size());
+	}
+
+	public void testRemovedDeviceIsNotPublished() {
+		mAggregator.onValue(1, 80);
+		mAggregator.remove(1);
+		runFor(2 * PUBLISH_DELAY);
+		assertTrue(mPublished.isEmpty());
+		assertEquals(-1, mAggregator.getLevel(1));
+	}
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright (c) 2015, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.nrftoolbox.profile.multiconnect;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs the {@link ConnectionScheduler} against a fake connector which completes or fails each attempt after
+ * an injected latency, using a simulated clock.
+ */
+public class ConnectionSchedulerTest extends TestCase {
+	/** Latency of a device that never answers. */
+	private static final long NEVER = Long.MAX_VALUE;
+
+	private long mTime;
+	private FakeConnector mConnector;
+	private ConnectionScheduler mScheduler;
+
+	private class FakeConnector implements ConnectionScheduler.Connector {
+		final Map<Long, Long> latencies = new HashMap<>();
+		final Map<Long, Integer> failuresLeft = new HashMap<>();
+		/** Address and time of completion of attempts in progress. */
+		final Map<Long, Long> pending = new HashMap<>();
+		final List<Long> started = new ArrayList<>();
+		int maxConcurrent;
+		int cancelled;
+
+		@Override
+		public void connect(final long address) {
+			started.add(address);
+			final long latency = latencies.containsKey(address) ? latencies.get(address) : 100;
+			pending.put(address, latency == NEVER ? NEVER : mTime + latency);
+			maxConcurrent = Math.max(maxConcurrent, pending.size());
+		}
+
+		@Override
+		public void cancel(final long address) {
+			assertNotNull(pending.remove(address));
+			cancelled++;
+		}
+
+		/** Completes the attempts due at the current time. */
+		void complete() {
+			final List<Long> done = new ArrayList<>();
+			for (final Map.Entry<Long, Long> entry : pending.entrySet())
+				if (entry.getValue() <= mTime)
+					done.add(entry.getKey());
+			for (final Long address : done) {
+				pending.remove(address);
+				final Integer failures = failuresLeft.get(address);
+				if (failures != null && failures > 0) {
+					failuresLeft.put(address, failures - 1);
+					mScheduler.onConnectionFailed(address);
+				} else {
+					mScheduler.onConnected(address);
+				}
+			}
+		}
+	}
+
+	@Override
+	protected void setUp() {
+		mTime = 0;
+		mConnector = new FakeConnector();
+		mScheduler = new ConnectionScheduler(mConnector, () -> mTime)
+				.setMaxConcurrentConnections(2)
+				.setConnectionTimeout(5000)
+				.setBackoff(1000, 8000);
+	}
+
+	/** Advances the simulated clock in 10 ms steps, completing attempts and polling the scheduler. */
+	private void runFor(final long duration) {
+		final long end = mTime + duration;
+		while (mTime < end) {
+			mConnector.complete();
+			mScheduler.poll();
+			mTime += 10;
+		}
+	}
+
+	public void testConcurrencyLimit() {
+		for (long address = 1; address <= 10; ++address)
+			mScheduler.request(address, ConnectionScheduler.PRIORITY_RECONNECT);
+		runFor(2000);
+
+		assertEquals(10, mConnector.started.size());
+		assertEquals(2, mConnector.maxConcurrent);
+		for (long address = 1; address <= 10; ++address) {
+			final ConnectionScheduler.Statistics statistics = mScheduler.getStatistics(address);
+			assertEquals(1, statistics.connections);
+			assertEquals(100, statistics.lastLatency);
+		}
+	}
+
+	public void testUserRequestsFirst() {
+		for (long address = 1; address <= 4; ++address)
+			mScheduler.request(address, ConnectionScheduler.PRIORITY_RECONNECT);
+		mScheduler.onDeviceSeen(4, 500);
+		mScheduler.request(5, ConnectionScheduler.PRIORITY_USER);
+		runFor(1000);
+
+		// The user request, then the most recently seen device, then the rest in order of requests
+		assertEquals(5L, (long) mConnector.started.get(0));
+		assertEquals(4L, (long) mConnector.started.get(1));
+		assertEquals(1L, (long) mConnector.started.get(2));
+		assertEquals(2L, (long) mConnector.started.get(3));
+		assertEquals(3L, (long) mConnector.started.get(4));
+	}
+
+	public void testExponentialBackoff() {
+		mConnector.failuresLeft.put(1L, 3);
+		mScheduler.request(1, ConnectionScheduler.PRIORITY_USER);
+		runFor(10000);
+
+		// Attempts start at 0, 1100 (100 + 1000), 3200 (1200 + 2000) and 7300 (3300 + 4000)
+		final ConnectionScheduler.Statistics statistics = mScheduler.getStatistics(1);
+		assertEquals(4, statistics.attempts);
+		assertEquals(3, statistics.failures);
+		assertEquals(1, statistics.connections);
+		assertFalse(mScheduler.isWaiting(1));
+	}
+
+	public void testTimeoutFreesSlot() {
+		mConnector.latencies.put(1L, NEVER);
+		mConnector.latencies.put(2L, NEVER);
+		mScheduler.request(1, ConnectionScheduler.PRIORITY_USER);
+		mScheduler.request(2, ConnectionScheduler.PRIORITY_USER);
+		mScheduler.request(3, ConnectionScheduler.PRIORITY_RECONNECT);
+		runFor(5500);
+
+		// Both unresponsive devices timed out, letting the third one connect while they back off
+		assertEquals(2, mConnector.cancelled);
+		assertEquals(1, mScheduler.getStatistics(3).connections);
+		assertEquals(1, mScheduler.getStatistics(1).timeouts);
+		assertTrue(mScheduler.isWaiting(1));
+	}
+
+	public void testCancel() {
+		mScheduler.request(1, ConnectionScheduler.PRIORITY_USER);
+		mScheduler.poll();
+		assertTrue(mScheduler.isConnecting(1));
+		mScheduler.cancel(1);
+		assertEquals(0, mScheduler.getConnectingCount());
+		mConnector.pending.clear();
+		runFor(1000);
+		assertEquals(1, mConnector.started.size());
+	}
+}
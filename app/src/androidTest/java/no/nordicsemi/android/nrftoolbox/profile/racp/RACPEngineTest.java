@@ -0,0 +1,335 @@
+/*
+ * Copyright (c) 2015, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.nrftoolbox.profile.racp;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Runs the {@link RACPEngine} against a fake RACP server holding records with sequence numbers, using a simulated clock.
+ */
+public class RACPEngineTest extends TestCase {
+	private long mTime;
+	private FakeServer mServer;
+	private Recorder mRecorder;
+	private RACPEngine mEngine;
+
+	/**
+	 * Handles the requests written by the engine one at a time, reporting selected records and responding
+	 * like a glucose sensor would.
+	 */
+	private class FakeServer implements RACPEngine.Transport {
+		final List<Integer> records = new ArrayList<>();
+		final List<Integer> reported = new ArrayList<>();
+		final LinkedList<byte[]> requests = new LinkedList<>();
+		final Set<Integer> unsupportedOperators = new HashSet<>();
+		/** Requests are received, but never answered. */
+		boolean silent;
+		/** Report requests report up to 2 records and are not completed. */
+		boolean holdReports;
+		int written;
+
+		@Override
+		public void write(final byte[] buffer, final int offset, final int length) {
+			// The engine must not block responses and records while the request is being written
+			assertFalse(Thread.holdsLock(mEngine));
+			requests.add(Arrays.copyOfRange(buffer, offset, offset + length));
+			written++;
+		}
+
+		/** Handles the queued requests, including the ones written by the engine in the meantime. */
+		void run() {
+			while (!requests.isEmpty())
+				handle(requests.removeFirst());
+		}
+
+		private void handle(final byte[] request) {
+			if (silent)
+				return;
+			final int opCode = request[0];
+			final int operator = request[1];
+			if (opCode == RecordAccessControlPoint.OP_CODE_ABORT_OPERATION) {
+				respond(opCode, RecordAccessControlPoint.RESPONSE_SUCCESS);
+				return;
+			}
+			if (unsupportedOperators.contains(operator)) {
+				respond(opCode, RecordAccessControlPoint.RESPONSE_OPERATOR_NOT_SUPPORTED);
+				return;
+			}
+
+			final List<Integer> selected = select(request);
+			switch (opCode) {
+				case RecordAccessControlPoint.OP_CODE_REPORT_NUMBER_OF_RECORDS:
+					mEngine.onResponse(new byte[] { RecordAccessControlPoint.OP_CODE_NUMBER_OF_STORED_RECORDS_RESPONSE, 0,
+							(byte) selected.size(), (byte) (selected.size() >> 8) });
+					break;
+				case RecordAccessControlPoint.OP_CODE_REPORT_STORED_RECORDS:
+					for (int i = 0; i < selected.size() && (!holdReports || i < 2); ++i) {
+						reported.add(selected.get(i));
+						mEngine.onRecordReceived();
+					}
+					if (!holdReports)
+						respond(opCode, selected.isEmpty() ? RecordAccessControlPoint.RESPONSE_NO_RECORDS_FOUND : RecordAccessControlPoint.RESPONSE_SUCCESS);
+					break;
+				case RecordAccessControlPoint.OP_CODE_DELETE_STORED_RECORDS:
+					records.removeAll(selected);
+					respond(opCode, selected.isEmpty() ? RecordAccessControlPoint.RESPONSE_NO_RECORDS_FOUND : RecordAccessControlPoint.RESPONSE_SUCCESS);
+					break;
+				default:
+					respond(opCode, RecordAccessControlPoint.RESPONSE_OP_CODE_NOT_SUPPORTED);
+					break;
+			}
+		}
+
+		private List<Integer> select(final byte[] request) {
+			final int minimum = request.length >= 5 ? (request[3] & 0xFF) | (request[4] & 0xFF) << 8 : 0;
+			final int maximum = request.length >= 7 ? (request[5] & 0xFF) | (request[6] & 0xFF) << 8 : 0;
+			final List<Integer> selected = new ArrayList<>();
+			for (final int record : records) {
+				switch (request[1]) {
+					case RecordAccessControlPoint.OPERATOR_ALL_RECORDS:
+						selected.add(record);
+						break;
+					case RecordAccessControlPoint.OPERATOR_GREATER_THEN_OR_EQUAL:
+						if (record >= minimum)
+							selected.add(record);
+						break;
+					case RecordAccessControlPoint.OPERATOR_LESS_THEN_OR_EQUAL:
+						if (record <= minimum)
+							selected.add(record);
+						break;
+					case RecordAccessControlPoint.OPERATOR_WITHING_RANGE:
+						if (record >= minimum && record <= maximum)
+							selected.add(record);
+						break;
+				}
+			}
+			if (!records.isEmpty() && request[1] == RecordAccessControlPoint.OPERATOR_FIRST_RECORD)
+				selected.add(records.get(0));
+			if (!records.isEmpty() && request[1] == RecordAccessControlPoint.OPERATOR_LAST_RECORD)
+				selected.add(records.get(records.size() - 1));
+			return selected;
+		}
+
+		void respond(final int requestedOpCode, final int responseCode) {
+			mEngine.onResponse(new byte[] { RecordAccessControlPoint.OP_CODE_RESPONSE_CODE, 0, (byte) requestedOpCode, (byte) responseCode });
+		}
+	}
+
+	private class Recorder implements RACPEngine.Listener {
+		final List<Integer> numbers = new ArrayList<>();
+		int completed;
+		int records;
+		int aborted;
+		int failedOpCode;
+		int failedResponseCode;
+		int timeoutOpCode;
+		/** Started when a request fails as its filter is not supported. */
+		RACPEngine.Operation fallback;
+
+		@Override
+		public void onNumberOfRecords(final int number) {
+			numbers.add(number);
+		}
+
+		@Override
+		public void onCompleted(final int records) {
+			completed++;
+			this.records = records;
+		}
+
+		@Override
+		public void onAborted() {
+			aborted++;
+		}
+
+		@Override
+		public void onFailed(final int opCode, final int responseCode) {
+			failedOpCode = opCode;
+			failedResponseCode = responseCode;
+			if (fallback != null && RecordAccessControlPoint.isFilterNotSupported(responseCode))
+				assertTrue(mEngine.start(fallback));
+		}
+
+		@Override
+		public void onTimeout(final int opCode) {
+			timeoutOpCode = opCode;
+		}
+	}
+
+	@Override
+	protected void setUp() {
+		mTime = 0;
+		mServer = new FakeServer();
+		mRecorder = new Recorder();
+		mEngine = new RACPEngine(mServer, mRecorder, () -> mTime).setTimeout(1000);
+		for (int i = 0; i < 10; ++i)
+			mServer.records.add(i);
+	}
+
+	public void testEncoder() {
+		final RACPRequestEncoder encoder = new RACPRequestEncoder();
+		int length = encoder.encode(RecordAccessControlPoint.OP_CODE_REPORT_STORED_RECORDS, RecordAccessControlPoint.OPERATOR_ALL_RECORDS);
+		assertTrue(Arrays.equals(new byte[] { 1, 1 }, Arrays.copyOf(encoder.getBuffer(), length)));
+		length = encoder.encode(RecordAccessControlPoint.OP_CODE_REPORT_STORED_RECORDS, RecordAccessControlPoint.OPERATOR_GREATER_THEN_OR_EQUAL,
+				RecordAccessControlPoint.FILTER_TYPE_SEQUENCE_NUMBER, 0x1234);
+		assertTrue(Arrays.equals(new byte[] { 1, 3, 1, 0x34, 0x12 }, Arrays.copyOf(encoder.getBuffer(), length)));
+		length = encoder.encode(RecordAccessControlPoint.OP_CODE_DELETE_STORED_RECORDS, RecordAccessControlPoint.OPERATOR_WITHING_RANGE,
+				RecordAccessControlPoint.FILTER_TYPE_SEQUENCE_NUMBER, 5, 0xFFFF);
+		assertTrue(Arrays.equals(new byte[] { 2, 4, 1, 5, 0, (byte) 0xFF, (byte) 0xFF }, Arrays.copyOf(encoder.getBuffer(), length)));
+	}
+
+	public void testResponseDecoder() {
+		final RACPResponse response = new RACPResponse();
+		assertTrue(RACPResponse.decode(new byte[] { 5, 0, 0x2C, 0x01 }, response));
+		assertEquals(300, response.numberOfRecords);
+		assertTrue(RACPResponse.decode(new byte[] { 6, 0, 1, 6 }, response));
+		assertEquals(RecordAccessControlPoint.OP_CODE_REPORT_STORED_RECORDS, response.requestedOpCode);
+		assertEquals(RecordAccessControlPoint.RESPONSE_NO_RECORDS_FOUND, response.responseCode);
+		assertFalse(RACPResponse.decode(new byte[] { 6, 0, 1 }, response));
+		assertFalse(RACPResponse.decode(new byte[] { 7, 0, 1, 1 }, response));
+	}
+
+	public void testCountReportDeleteChain() {
+		final RACPEngine.Operation operation = new RACPEngine.Operation()
+				.add(RecordAccessControlPoint.OP_CODE_REPORT_NUMBER_OF_RECORDS, RecordAccessControlPoint.OPERATOR_WITHING_RANGE, 3, 6)
+				.add(RecordAccessControlPoint.OP_CODE_REPORT_STORED_RECORDS, RecordAccessControlPoint.OPERATOR_WITHING_RANGE, 3, 6)
+				.add(RecordAccessControlPoint.OP_CODE_DELETE_STORED_RECORDS, RecordAccessControlPoint.OPERATOR_WITHING_RANGE, 3, 6);
+		assertTrue(mEngine.start(operation));
+		mServer.run();
+
+		// All 3 requests were written without any calls from the listener
+		assertEquals(3, mServer.written);
+		assertEquals(Arrays.asList(4), mRecorder.numbers);
+		assertEquals(Arrays.asList(3, 4, 5, 6), mServer.reported);
+		assertEquals(Arrays.asList(0, 1, 2, 7, 8, 9), mServer.records);
+		assertEquals(1, mRecorder.completed);
+		assertEquals(4, mRecorder.records);
+		assertFalse(mEngine.isBusy());
+		assertEquals(-1, mEngine.poll());
+	}
+
+	public void testNoRecordsSkipsRemainingRequests() {
+		final RACPEngine.Operation operation = new RACPEngine.Operation()
+				.add(RecordAccessControlPoint.OP_CODE_REPORT_NUMBER_OF_RECORDS, RecordAccessControlPoint.OPERATOR_GREATER_THEN_OR_EQUAL, 20)
+				.add(RecordAccessControlPoint.OP_CODE_REPORT_STORED_RECORDS, RecordAccessControlPoint.OPERATOR_GREATER_THEN_OR_EQUAL, 20);
+		assertTrue(mEngine.start(operation));
+		mServer.run();
+		assertEquals(1, mServer.written);
+		assertEquals(Arrays.asList(0), mRecorder.numbers);
+		assertEquals(1, mRecorder.completed);
+
+		// No records found completes the operation as well
+		final RACPEngine.Operation report = new RACPEngine.Operation()
+				.add(RecordAccessControlPoint.OP_CODE_REPORT_STORED_RECORDS, RecordAccessControlPoint.OPERATOR_GREATER_THEN_OR_EQUAL, 20)
+				.add(RecordAccessControlPoint.OP_CODE_DELETE_STORED_RECORDS, RecordAccessControlPoint.OPERATOR_ALL_RECORDS);
+		assertTrue(mEngine.start(report));
+		mServer.run();
+		assertEquals(2, mServer.written);
+		assertEquals(2, mRecorder.completed);
+		assertEquals(10, mServer.records.size());
+	}
+
+	public void testFallbackWhenFilterNotSupported() {
+		mServer.unsupportedOperators.add(RecordAccessControlPoint.OPERATOR_GREATER_THEN_OR_EQUAL);
+		mRecorder.fallback = new RACPEngine.Operation()
+				.add(RecordAccessControlPoint.OP_CODE_REPORT_NUMBER_OF_RECORDS, RecordAccessControlPoint.OPERATOR_ALL_RECORDS)
+				.add(RecordAccessControlPoint.OP_CODE_REPORT_STORED_RECORDS, RecordAccessControlPoint.OPERATOR_ALL_RECORDS);
+		final RACPEngine.Operation operation = new RACPEngine.Operation()
+				.add(RecordAccessControlPoint.OP_CODE_REPORT_NUMBER_OF_RECORDS, RecordAccessControlPoint.OPERATOR_GREATER_THEN_OR_EQUAL, 5)
+				.add(RecordAccessControlPoint.OP_CODE_REPORT_STORED_RECORDS, RecordAccessControlPoint.OPERATOR_GREATER_THEN_OR_EQUAL, 5);
+		assertTrue(mEngine.start(operation));
+		mServer.run();
+
+		assertEquals(RecordAccessControlPoint.OP_CODE_REPORT_NUMBER_OF_RECORDS, mRecorder.failedOpCode);
+		assertEquals(RecordAccessControlPoint.RESPONSE_OPERATOR_NOT_SUPPORTED, mRecorder.failedResponseCode);
+		assertEquals(Arrays.asList(10), mRecorder.numbers);
+		assertEquals(10, mServer.reported.size());
+		assertEquals(1, mRecorder.completed);
+	}
+
+	public void testAbort() {
+		mServer.holdReports = true;
+		final RACPEngine.Operation operation = new RACPEngine.Operation()
+				.add(RecordAccessControlPoint.OP_CODE_REPORT_STORED_RECORDS, RecordAccessControlPoint.OPERATOR_ALL_RECORDS);
+		assertTrue(mEngine.start(operation));
+		assertFalse(mEngine.start(operation));
+		mServer.run();
+		assertEquals(2, mServer.reported.size());
+		assertTrue(mEngine.isBusy());
+
+		assertTrue(mEngine.abort());
+		assertEquals(RecordAccessControlPoint.OP_CODE_ABORT_OPERATION, mEngine.getCurrentOpCode());
+		// The server reports the aborted request as not completed before confirming the abort
+		mServer.respond(RecordAccessControlPoint.OP_CODE_REPORT_STORED_RECORDS, RecordAccessControlPoint.RESPONSE_PROCEDURE_NOT_COMPLETED);
+		assertTrue(mEngine.isBusy());
+		// or as completed, which doesn't confirm the abort either
+		mServer.respond(RecordAccessControlPoint.OP_CODE_REPORT_STORED_RECORDS, RecordAccessControlPoint.RESPONSE_SUCCESS);
+		assertTrue(mEngine.isBusy());
+		assertEquals(0, mRecorder.aborted);
+		mServer.run();
+		assertEquals(1, mRecorder.aborted);
+		assertEquals(0, mRecorder.completed);
+		assertEquals(0, mRecorder.failedOpCode);
+		assertFalse(mEngine.abort());
+
+		// A late response to the aborted operation is ignored
+		mServer.respond(RecordAccessControlPoint.OP_CODE_REPORT_STORED_RECORDS, RecordAccessControlPoint.RESPONSE_SUCCESS);
+		assertEquals(0, mRecorder.completed);
+	}
+
+	public void testTimeout() {
+		mServer.silent = true;
+		final RACPEngine.Operation operation = new RACPEngine.Operation()
+				.add(RecordAccessControlPoint.OP_CODE_REPORT_STORED_RECORDS, RecordAccessControlPoint.OPERATOR_ALL_RECORDS);
+		assertTrue(mEngine.start(operation));
+		mServer.run();
+		assertEquals(1000, mEngine.poll());
+
+		// Records restart the timeout
+		for (int i = 0; i < 5; ++i) {
+			mTime += 600;
+			mEngine.onRecordReceived();
+			assertEquals(1000, mEngine.poll());
+		}
+		assertEquals(0, mRecorder.timeoutOpCode);
+
+		mTime += 1000;
+		assertEquals(-1, mEngine.poll());
+		assertEquals(RecordAccessControlPoint.OP_CODE_REPORT_STORED_RECORDS, mRecorder.timeoutOpCode);
+		assertFalse(mEngine.isBusy());
+
+		// The engine accepts a new operation after the timeout
+		mServer.silent = false;
+		assertTrue(mEngine.start(operation));
+		mServer.run();
+		assertEquals(1, mRecorder.completed);
+		assertEquals(10, mRecorder.records);
+	}
+}
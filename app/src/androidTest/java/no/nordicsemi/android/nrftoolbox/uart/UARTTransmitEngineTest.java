@@ -0,0 +1,203 @@
+/*
+ * Copyright (c) 2015, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package no.nordicsemi.android.nrftoolbox.uart;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Runs the {@link UARTTransmitEngine} against a fake GATT, which keeps written packets in flight until they are confirmed,
+ * like onCharacteristicWrite does.
+ */
+public class UARTTransmitEngineTest extends TestCase {
+	private FakeGatt mGatt;
+	private Recorder mRecorder;
+	private UARTTransmitEngine mEngine;
+
+	private class FakeGatt implements UARTTransmitEngine.PacketWriter {
+		/** Packets written and not confirmed yet. */
+		final List<byte[]> inFlight = new ArrayList<>();
+		/** All bytes received by the remote device, in order. */
+		final ByteArrayOutputStream received = new ByteArrayOutputStream();
+		final List<Integer> packetLengths = new ArrayList<>();
+		int maxInFlight;
+		boolean lastWithoutResponse;
+
+		@Override
+		public void writePacket(final byte[] buffer, final int offset, final int length, final boolean withoutResponse) {
+			inFlight.add(Arrays.copyOfRange(buffer, offset, offset + length));
+			packetLengths.add(length);
+			maxInFlight = Math.max(maxInFlight, inFlight.size());
+			lastWithoutResponse = withoutResponse;
+		}
+
+		/** Confirms the oldest packet in flight. */
+		void confirm() {
+			final byte[] packet = inFlight.remove(0);
+			received.write(packet, 0, packet.length);
+			mEngine.onPacketWritten();
+		}
+
+		void confirmAll() {
+			while (!inFlight.isEmpty())
+				confirm();
+		}
+	}
+
+	private class Recorder implements UARTTransmitEngine.Listener {
+		final List<byte[]> sent = new ArrayList<>();
+		int drained;
+		long drainedBytes;
+		boolean lockHeld;
+		byte[] next;
+
+		@Override
+		public void onMessageSent(final byte[] message) {
+			lockHeld |= Thread.holdsLock(mEngine);
+			sent.add(message);
+			if (next != null) {
+				final byte[] message2 = next;
+				next = null;
+				assertTrue(mEngine.offer(message2));
+			}
+		}
+
+		@Override
+		public void onQueueDrained(final long bytes, final long durationMillis) {
+			lockHeld |= Thread.holdsLock(mEngine);
+			drained++;
+			drainedBytes += bytes;
+		}
+	}
+
+	@Override
+	protected void setUp() {
+		mGatt = new FakeGatt();
+		mRecorder = new Recorder();
+		mEngine = new UARTTransmitEngine(mGatt, mRecorder, 4, 1000);
+	}
+
+	private static byte[] message(final int length, final int seed) {
+		final byte[] message = new byte[length];
+		for (int i = 0; i < length; ++i)
+			message[i] = (byte) (seed + i);
+		return message;
+	}
+
+	public void testMessageIsSlicedToMtu() {
+		final byte[] message = message(50, 0);
+		assertTrue(mEngine.offer(message));
+		mGatt.confirmAll();
+
+		assertEquals(Arrays.asList(20, 20, 10), mGatt.packetLengths);
+		assertTrue(Arrays.equals(message, mGatt.received.toByteArray()));
+		assertEquals(1, mGatt.maxInFlight);
+		assertFalse(mGatt.lastWithoutResponse);
+		assertEquals(1, mRecorder.sent.size());
+		assertEquals(1, mRecorder.drained);
+		assertEquals(50, mRecorder.drainedBytes);
+		assertTrue(mEngine.isIdle());
+	}
+
+	public void testLargerMtu() {
+		mEngine.setMtu(247);
+		assertEquals(244, mEngine.getPayloadSize());
+		assertTrue(mEngine.offer(message(300, 0)));
+		mGatt.confirmAll();
+		assertEquals(Arrays.asList(244, 56), mGatt.packetLengths);
+
+		// A smaller MTU than the default is not allowed
+		mEngine.setMtu(10);
+		assertEquals(UARTTransmitEngine.DEFAULT_MTU - UARTTransmitEngine.ATT_HEADER_SIZE, mEngine.getPayloadSize());
+	}
+
+	public void testPacketsArePipelinedWithoutResponse() {
+		mEngine.setWriteWithoutResponse(true, UARTTransmitEngine.DEFAULT_CREDITS);
+		final byte[] first = message(100, 0);
+		final byte[] second = message(30, 100);
+		assertTrue(mEngine.offer(first));
+		assertTrue(mEngine.offer(second));
+		assertEquals(UARTTransmitEngine.DEFAULT_CREDITS, mGatt.inFlight.size());
+		assertTrue(mGatt.lastWithoutResponse);
+
+		mGatt.confirmAll();
+		assertEquals(UARTTransmitEngine.DEFAULT_CREDITS, mGatt.maxInFlight);
+		// Packets never span two messages
+		assertEquals(Arrays.asList(20, 20, 20, 20, 20, 20, 10), mGatt.packetLengths);
+		final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+		expected.write(first, 0, first.length);
+		expected.write(second, 0, second.length);
+		assertTrue(Arrays.equals(expected.toByteArray(), mGatt.received.toByteArray()));
+		assertEquals(2, mRecorder.sent.size());
+		assertTrue(first == mRecorder.sent.get(0));
+		assertTrue(second == mRecorder.sent.get(1));
+		assertEquals(1, mRecorder.drained);
+		assertEquals(130, mEngine.getTotalBytes());
+		assertEquals(7, mEngine.getTotalPackets());
+	}
+
+	public void testQueueLimits() {
+		assertFalse(mEngine.offer(new byte[0]));
+		assertFalse(mEngine.offer(null));
+		assertFalse(mEngine.offer(message(1001, 0)));
+		for (int i = 0; i < 4; ++i)
+			assertTrue(mEngine.offer(message(10, i)));
+		assertFalse(mEngine.offer(message(10, 4)));
+		assertEquals(2, mEngine.getRejectedMessages());
+
+		mGatt.confirm();
+		assertTrue(mEngine.offer(message(10, 4)));
+		mGatt.confirmAll();
+		assertEquals(5, mRecorder.sent.size());
+	}
+
+	public void testListenerIsCalledWithoutLock() {
+		mRecorder.next = message(5, 0);
+		assertTrue(mEngine.offer(message(5, 10)));
+		mGatt.confirmAll();
+
+		assertFalse(mRecorder.lockHeld);
+		// The message offered from the listener has been sent as well, the queue was drained after each of them
+		assertEquals(2, mRecorder.sent.size());
+		assertEquals(2, mRecorder.drained);
+		assertEquals(10, mRecorder.drainedBytes);
+	}
+
+	public void testReset() {
+		assertTrue(mEngine.offer(message(50, 0)));
+		assertFalse(mEngine.isIdle());
+		mEngine.reset();
+		mGatt.inFlight.clear();
+		assertTrue(mEngine.isIdle());
+		// A late confirmation is ignored
+		mEngine.onPacketWritten();
+		assertEquals(0, mRecorder.sent.size());
+
+		assertTrue(mEngine.offer(message(10, 0)));
+		mGatt.confirmAll();
+		assertEquals(1, mRecorder.sent.size());
+	}
+}
@@ -0,0 +1,314 @@
+/*
+ * Copyright (c) 2015, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package no.nordicsemi.android.nrftoolbox.uart.framing;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import no.nordicsemi.android.nrftoolbox.uart.domain.Command;
+
+/**
+ * Feeds the framers with frames split between fragments, several frames merged in a single fragment and frames exceeding
+ * the maximum size. The fuzz tests encode random frames, split the stream at random points and compare the result with the original frames.
+ */
+public class UARTFramerTest extends TestCase {
+	private static final int MAX_FRAME_SIZE = 64;
+	private static final int FUZZ_FRAMES = 500;
+
+	private static class Collector implements UARTFramer.FrameListener {
+		final List<byte[]> frames = new ArrayList<>();
+
+		@Override
+		public void onFrame(final ByteBuffer frame) {
+			final byte[] copy = new byte[frame.remaining()];
+			frame.duplicate().get(copy);
+			frames.add(copy);
+		}
+
+		List<String> strings() {
+			final List<String> strings = new ArrayList<>();
+			for (final byte[] frame : frames)
+				strings.add(new String(frame, StandardCharsets.UTF_8));
+			return strings;
+		}
+	}
+
+	private Collector mCollector;
+
+	@Override
+	protected void setUp() {
+		mCollector = new Collector();
+	}
+
+	private <T extends UARTFramer> T listen(final T framer) {
+		framer.setFrameListener(mCollector);
+		return framer;
+	}
+
+	private static void feed(final UARTFramer framer, final String... fragments) {
+		for (final String fragment : fragments)
+			feed(framer, fragment.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static void feed(final UARTFramer framer, final byte[] fragment) {
+		final ByteBuffer buffer = ByteBuffer.wrap(fragment);
+		framer.accept(buffer);
+		assertEquals("The fragment must be consumed", fragment.length, buffer.position());
+	}
+
+	public void testEolPartialFrame() {
+		final EolFramer framer = listen(new EolFramer(Command.Eol.LF));
+		feed(framer, "Hel", "lo, ", "world");
+		assertTrue(mCollector.frames.isEmpty());
+		feed(framer, "!\n");
+		assertEquals(Arrays.asList("Hello, world!"), mCollector.strings());
+		assertEquals(1, framer.getFrameCount());
+	}
+
+	public void testEolMergedFrames() {
+		final EolFramer framer = listen(new EolFramer(Command.Eol.LF));
+		feed(framer, "a\nbb\n\nccc\nd", "d\n");
+		assertEquals(Arrays.asList("a", "bb", "ccc", "dd"), mCollector.strings());
+	}
+
+	public void testEolDelimiterSplitBetweenFragments() {
+		final EolFramer framer = listen(new EolFramer(Command.Eol.CR_LF));
+		feed(framer, "abc\r", "\ndef\r\n", "g\rh\r", "\r", "\n");
+		assertEquals(Arrays.asList("abc", "def", "g\rh\r"), mCollector.strings());
+	}
+
+	public void testEolOversizeFrameIsDropped() {
+		final EolFramer framer = listen(new EolFramer(Command.Eol.LF, 8));
+		// Dropped when reassembled from several fragments and when contained in a single one
+		feed(framer, "01234", "56789", "\nok\n0123456789\n", "12345678\n");
+		assertEquals(Arrays.asList("ok", "12345678"), mCollector.strings());
+		assertEquals(2, framer.getDroppedFrameCount());
+	}
+
+	public void testEolFrameOfMaximumSizeWithSplitDelimiter() {
+		final EolFramer framer = listen(new EolFramer(Command.Eol.CR_LF, 8));
+		feed(framer, "1234", "5678\r", "\n");
+		assertEquals(Arrays.asList("12345678"), mCollector.strings());
+		assertEquals(0, framer.getDroppedFrameCount());
+	}
+
+	public void testSlipEscapedBytes() {
+		final SlipFramer framer = listen(new SlipFramer());
+		feed(framer, new byte[] { 1, SlipFramer.ESC });
+		feed(framer, new byte[] { SlipFramer.ESC_END, 2, SlipFramer.ESC, SlipFramer.ESC_ESC, SlipFramer.END, 3, SlipFramer.END, SlipFramer.END });
+		assertEquals(2, mCollector.frames.size());
+		assertTrue(Arrays.equals(new byte[] { 1, SlipFramer.END, 2, SlipFramer.ESC }, mCollector.frames.get(0)));
+		assertTrue(Arrays.equals(new byte[] { 3 }, mCollector.frames.get(1)));
+	}
+
+	public void testSlipOversizeFrameIsDropped() {
+		final SlipFramer framer = listen(new SlipFramer(4));
+		feed(framer, new byte[] { 1, 2, 3 });
+		feed(framer, new byte[] { 4, 5, SlipFramer.END, 6, SlipFramer.END, 1, 2, 3, 4, 5, SlipFramer.END });
+		assertEquals(1, mCollector.frames.size());
+		assertTrue(Arrays.equals(new byte[] { 6 }, mCollector.frames.get(0)));
+		assertEquals(2, framer.getDroppedFrameCount());
+	}
+
+	public void testLengthPrefixSplitBetweenFragments() {
+		final LengthPrefixedFramer framer = listen(new LengthPrefixedFramer(2, ByteOrder.LITTLE_ENDIAN));
+		feed(framer, new byte[] { 3 });
+		feed(framer, new byte[] { 0, 'a', 'b' });
+		feed(framer, new byte[] { 'c', 1, 0, 'd', 0, 0, 2 });
+		feed(framer, new byte[] { 0, 'e', 'f' });
+		assertEquals(Arrays.asList("abc", "d", "ef"), mCollector.strings());
+	}
+
+	public void testLengthPrefixOversizeFrameIsDropped() {
+		final LengthPrefixedFramer framer = listen(new LengthPrefixedFramer(1, ByteOrder.BIG_ENDIAN, 2));
+		feed(framer, new byte[] { 3, 'a', 'b', 'c', 2, 'o' });
+		feed(framer, new byte[] { 'k', 3, 'a' });
+		feed(framer, new byte[] { 'b', 'c', 1, 'x' });
+		assertEquals(Arrays.asList("ok", "x"), mCollector.strings());
+		assertEquals(2, framer.getDroppedFrameCount());
+	}
+
+	public void testResetDiscardsPartialFrame() {
+		final EolFramer framer = listen(new EolFramer(Command.Eol.CR_LF));
+		feed(framer, "partial\r");
+		framer.reset();
+		feed(framer, "next\r\n");
+		assertEquals(Arrays.asList("next"), mCollector.strings());
+	}
+
+	public void testFrameIsReportedWithoutCopying() {
+		final EolFramer framer = new EolFramer(Command.Eol.LF);
+		final ByteBuffer fragment = ByteBuffer.wrap("abc\n".getBytes(StandardCharsets.UTF_8));
+		final List<ByteBuffer> frames = new ArrayList<>();
+		framer.setFrameListener(frames::add);
+		framer.accept(fragment);
+		assertEquals(1, frames.size());
+		assertSame(fragment, frames.get(0));
+	}
+
+	public void testFuzzEol() {
+		for (final Command.Eol eol : Command.Eol.values()) {
+			final byte[] delimiter = eol == Command.Eol.CR_LF ? new byte[] { '\r', '\n' } : eol == Command.Eol.CR ? new byte[] { '\r' } : new byte[] { '\n' };
+			fuzz(new EolFramer(eol, MAX_FRAME_SIZE), eol.ordinal(), new Encoder() {
+				@Override
+				public byte[] frame(final Random random, final int length) {
+					final byte[] frame = randomFrame(random, length);
+					// Frames must not contain the delimiter
+					for (int i = 0; i < frame.length; ++i)
+						if (frame[i] == '\r' || frame[i] == '\n')
+							frame[i] = ' ';
+					return frame;
+				}
+
+				@Override
+				public void encode(final byte[] frame, final ByteArrayOutputStream stream) {
+					stream.write(frame, 0, frame.length);
+					stream.write(delimiter, 0, delimiter.length);
+				}
+			});
+		}
+	}
+
+	public void testFuzzSlip() {
+		fuzz(new SlipFramer(MAX_FRAME_SIZE), 10, new Encoder() {
+			@Override
+			public byte[] frame(final Random random, final int length) {
+				final byte[] frame = randomFrame(random, length);
+				// Make the special bytes frequent
+				for (int i = 0; i < frame.length; ++i)
+					if (random.nextInt(4) == 0)
+						frame[i] = random.nextBoolean() ? SlipFramer.END : SlipFramer.ESC;
+				return frame;
+			}
+
+			@Override
+			public void encode(final byte[] frame, final ByteArrayOutputStream stream) {
+				for (final byte b : frame) {
+					if (b == SlipFramer.END) {
+						stream.write(SlipFramer.ESC);
+						stream.write(SlipFramer.ESC_END);
+					} else if (b == SlipFramer.ESC) {
+						stream.write(SlipFramer.ESC);
+						stream.write(SlipFramer.ESC_ESC);
+					} else {
+						stream.write(b);
+					}
+				}
+				stream.write(SlipFramer.END);
+			}
+		});
+	}
+
+	public void testFuzzLengthPrefixed() {
+		final int[] prefixSizes = { 1, 2, 4 };
+		final ByteOrder[] orders = { ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN };
+		for (final int prefixSize : prefixSizes) {
+			for (final ByteOrder order : orders) {
+				fuzz(new LengthPrefixedFramer(prefixSize, order, MAX_FRAME_SIZE), 20 + prefixSize, new Encoder() {
+					@Override
+					public byte[] frame(final Random random, final int length) {
+						return randomFrame(random, length);
+					}
+
+					@Override
+					public void encode(final byte[] frame, final ByteArrayOutputStream stream) {
+						final ByteBuffer prefix = ByteBuffer.allocate(4).order(order).putInt(frame.length);
+						final byte[] bytes = prefix.array();
+						stream.write(bytes, order == ByteOrder.BIG_ENDIAN ? 4 - prefixSize : 0, prefixSize);
+						stream.write(frame, 0, frame.length);
+					}
+				});
+			}
+		}
+	}
+
+	private interface Encoder {
+		byte[] frame(final Random random, final int length);
+
+		void encode(final byte[] frame, final ByteArrayOutputStream stream);
+	}
+
+	private static byte[] randomFrame(final Random random, final int length) {
+		final byte[] frame = new byte[length];
+		random.nextBytes(frame);
+		return frame;
+	}
+
+	/**
+	 * Encodes random frames, some of them longer than the maximum frame size, splits the stream into random fragments
+	 * and checks that the framer reports exactly the frames that fit.
+	 */
+	private void fuzz(final BaseFramer framer, final long seed, final Encoder encoder) {
+		final Random random = new Random(seed);
+		final Collector collector = new Collector();
+		framer.setFrameListener(collector);
+
+		final List<byte[]> expected = new ArrayList<>();
+		final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+		int dropped = 0;
+		for (int i = 0; i < FUZZ_FRAMES; ++i) {
+			final int type = random.nextInt(10);
+			final boolean oversize = type == 0;
+			// Frames of exactly the maximum size are frequent, as they are the edge case
+			final int length = oversize ? MAX_FRAME_SIZE + 1 + random.nextInt(MAX_FRAME_SIZE) : type == 1 ? MAX_FRAME_SIZE : 1 + random.nextInt(MAX_FRAME_SIZE);
+			final byte[] frame = encoder.frame(random, length);
+			encoder.encode(frame, stream);
+			if (oversize)
+				dropped++;
+			else
+				expected.add(frame);
+		}
+
+		// Split the stream into fragments of 1 to 2 * MAX_FRAME_SIZE bytes, given as heap buffers with an offset or as direct buffers
+		final byte[] data = stream.toByteArray();
+		int offset = 0;
+		while (offset < data.length) {
+			final int length = Math.min(data.length - offset, 1 + random.nextInt(2 * MAX_FRAME_SIZE));
+			final ByteBuffer fragment;
+			if (random.nextBoolean()) {
+				fragment = ByteBuffer.allocateDirect(length);
+				fragment.put(data, offset, length).flip();
+			} else {
+				final byte[] padded = new byte[length + 8];
+				System.arraycopy(data, offset, padded, 4, length);
+				fragment = ByteBuffer.wrap(padded, 4, length).slice();
+			}
+			framer.accept(fragment);
+			assertFalse("The fragment must be consumed", fragment.hasRemaining());
+			offset += length;
+		}
+
+		assertEquals("Frame count (seed " + seed + ")", expected.size(), collector.frames.size());
+		for (int i = 0; i < expected.size(); ++i)
+			assertTrue("Frame " + i + " (seed " + seed + ")", Arrays.equals(expected.get(i), collector.frames.get(i)));
+		assertEquals(expected.size(), framer.getFrameCount());
+		assertEquals(dropped, framer.getDroppedFrameCount());
+	}
+}
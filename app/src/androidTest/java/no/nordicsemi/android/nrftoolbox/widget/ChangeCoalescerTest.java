@@ -0,0 +1,231 @@
+/*
+ * Copyright (c) 2015, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package no.nordicsemi.android.nrftoolbox.widget;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Simulates a bulk download of records shown in a list, using a simulated clock and UI thread, and counts how many
+ * times the {@link ChangeCoalescer} notifies the list and how many rows it binds. Rows are read through
+ * a {@link PagedRecordSource}. The adapters using them are tested in CGMSRecordsAdapterTest and ExpandableRecordAdapterTest.
+ */
+public class ChangeCoalescerTest extends TestCase {
+	private static final int RECORDS = 1000;
+	/** Interval between records during the download, in milliseconds. */
+	private static final long RECORD_INTERVAL = 2;
+	/** Number of rows that fit the screen. */
+	private static final int VISIBLE_ROWS = 10;
+
+	private long mTime;
+	/** The time when the owner of the coalescer should poll, or -1. */
+	private long mPollTime;
+	private ChangeCoalescer mCoalescer;
+	private FakeList mList;
+	private FakeStorage mStorage;
+
+	/** Records kept in a storage, the record at each index is the index. */
+	private static class FakeStorage implements PagedRecordSource.Loader<Integer> {
+		final List<Integer> records = new ArrayList<>();
+		int loads;
+
+		@Override
+		public int getCount() {
+			return records.size();
+		}
+
+		@Override
+		public int load(final int offset, final Integer[] page) {
+			loads++;
+			int count = 0;
+			while (count < page.length && offset + count < records.size()) {
+				page[count] = records.get(offset + count);
+				count++;
+			}
+			return count;
+		}
+	}
+
+	/** A list showing the first rows, binding rows like a RecyclerView does. */
+	private static class FakeList implements ChangeCoalescer.Listener {
+		final PagedRecordSource<Integer> source;
+		int notifications;
+		int rebinds;
+
+		FakeList(final FakeStorage storage) {
+			source = new PagedRecordSource<>(Integer.class, storage);
+		}
+
+		@Override
+		public void onItemRangeInserted(final int positionStart, final int itemCount) {
+			notifications++;
+			source.onItemRangeInserted(positionStart, itemCount);
+			// Only the inserted rows on the screen are bound, the others are moved
+			for (int position = positionStart; position < positionStart + itemCount && position < VISIBLE_ROWS; ++position)
+				bind(position);
+		}
+
+		@Override
+		public void onDataSetChanged() {
+			notifications++;
+			source.invalidate();
+			for (int position = 0; position < source.getCount() && position < VISIBLE_ROWS; ++position)
+				bind(position);
+		}
+
+		private void bind(final int position) {
+			assertEquals(Integer.valueOf(position), source.get(position));
+			rebinds++;
+		}
+	}
+
+	@Override
+	protected void setUp() {
+		mTime = 0;
+		mPollTime = -1;
+		mStorage = new FakeStorage();
+		mList = new FakeList(mStorage);
+		mCoalescer = new ChangeCoalescer(mList, () -> mTime);
+	}
+
+	/** Posts the poll to the simulated UI thread if the coalescer asks for it. */
+	private void schedule(final boolean post) {
+		if (post)
+			mPollTime = mTime;
+	}
+
+	/** Runs the simulated UI thread until the given time. */
+	private void runUntil(final long time) {
+		while (mPollTime >= 0 && mPollTime <= time) {
+			mTime = Math.max(mTime, mPollTime);
+			final long delay = mCoalescer.poll();
+			mPollTime = delay >= 0 ? mTime + delay : -1;
+		}
+		mTime = time;
+	}
+
+	public void testDownloadIsNotifiedOncePerFrame() {
+		for (int i = 0; i < RECORDS; ++i) {
+			runUntil(i * RECORD_INTERVAL);
+			mStorage.records.add(i);
+			schedule(mCoalescer.onItemRangeInserted(i, 1));
+		}
+		runUntil(RECORDS * RECORD_INTERVAL + ChangeCoalescer.DEFAULT_INTERVAL);
+
+		assertFalse(mCoalescer.hasPendingChanges());
+		assertEquals(RECORDS, mList.source.getCount());
+		assertEquals(Integer.valueOf(RECORDS - 1), mList.source.get(RECORDS - 1));
+
+		final long duration = RECORDS * RECORD_INTERVAL;
+		assertTrue("Notifications: " + mList.notifications, mList.notifications <= duration / ChangeCoalescer.DEFAULT_INTERVAL + 2);
+		// Each row on the screen is bound once, when it is inserted
+		assertEquals(VISIBLE_ROWS, mList.rebinds);
+		assertTrue("Pages loaded: " + mStorage.loads, mStorage.loads <= VISIBLE_ROWS);
+	}
+
+	public void testConsecutiveInsertsAreMerged() {
+		mStorage.records.add(0);
+		mStorage.records.add(1);
+		mStorage.records.add(2);
+		mStorage.records.add(3);
+		assertTrue(mCoalescer.onItemRangeInserted(0, 1));
+		assertFalse(mCoalescer.onItemRangeInserted(1, 2));
+		// Inserted within the pending range
+		assertFalse(mCoalescer.onItemRangeInserted(1, 1));
+		assertEquals(-1, mCoalescer.poll());
+
+		assertEquals(1, mList.notifications);
+		assertEquals(4, mList.source.getCount());
+		assertEquals(4, mList.rebinds);
+	}
+
+	public void testInsertBeforeRangeChangesDataSet() {
+		for (int i = 0; i < 3; ++i)
+			mStorage.records.add(i);
+		assertTrue(mCoalescer.onItemRangeInserted(1, 2));
+		assertFalse(mCoalescer.onItemRangeInserted(0, 1));
+		mCoalescer.poll();
+
+		assertEquals(1, mList.notifications);
+		assertEquals(3, mList.source.getCount());
+		assertEquals(3, mList.rebinds);
+	}
+
+	public void testNotificationsAreRateLimited() {
+		mStorage.records.add(0);
+		assertTrue(mCoalescer.onItemRangeInserted(0, 1));
+		assertEquals(-1, mCoalescer.poll());
+		assertEquals(1, mList.notifications);
+
+		mTime = 5;
+		mStorage.records.add(1);
+		assertTrue(mCoalescer.onItemRangeInserted(1, 1));
+		assertEquals(ChangeCoalescer.DEFAULT_INTERVAL - 5, mCoalescer.poll());
+		assertEquals(1, mList.notifications);
+
+		mTime = ChangeCoalescer.DEFAULT_INTERVAL;
+		assertEquals(-1, mCoalescer.poll());
+		assertEquals(2, mList.notifications);
+		assertEquals(-1, mCoalescer.poll());
+	}
+
+	public void testResetDropsPendingChanges() {
+		assertTrue(mCoalescer.onDataSetChanged());
+		mCoalescer.reset();
+		assertEquals(-1, mCoalescer.poll());
+		assertEquals(0, mList.notifications);
+	}
+
+	public void testPagesBeforeInsertionAreKept() {
+		for (int i = 0; i < 100; ++i)
+			mStorage.records.add(i);
+		final PagedRecordSource<Integer> source = new PagedRecordSource<>(Integer.class, mStorage, 10, 3);
+		assertEquals(100, source.getCount());
+
+		assertEquals(Integer.valueOf(5), source.get(5));
+		assertEquals(Integer.valueOf(25), source.get(25));
+		assertEquals(2, mStorage.loads);
+
+		mStorage.records.add(100);
+		source.onItemRangeInserted(100, 1);
+		assertEquals(101, source.getCount());
+		assertEquals(Integer.valueOf(5), source.get(5));
+		assertEquals(Integer.valueOf(25), source.get(25));
+		assertEquals(2, mStorage.loads);
+
+		mStorage.records.add(20, -1);
+		source.onItemRangeInserted(20, 1);
+		assertEquals(Integer.valueOf(5), source.get(5));
+		assertEquals(Integer.valueOf(-1), source.get(20));
+		assertEquals(3, mStorage.loads);
+
+		// Only the recently used pages are kept
+		source.get(35);
+		source.get(45);
+		source.get(5);
+		assertEquals(6, mStorage.loads);
+		assertEquals(102, source.getCount());
+		assertNull(source.get(102));
+	}
+}
@@ -0,0 +1,287 @@
+/*
+ * Copyright (c) 2015, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package no.nordicsemi.android.nrftoolbox.profile.multiconnect;
+
+import android.bluetooth.BluetoothAdapter;
+import android.bluetooth.BluetoothDevice;
+import android.bluetooth.BluetoothGatt;
+import android.os.Handler;
+import android.os.SystemClock;
+
+import java.util.Arrays;
+import java.util.UUID;
+
+import no.nordicsemi.android.nrftoolbox.recorder.SessionFormat;
+import no.nordicsemi.android.nrftoolbox.simulator.CGMSPeripheral;
+import no.nordicsemi.android.nrftoolbox.simulator.CSCPeripheral;
+import no.nordicsemi.android.nrftoolbox.simulator.HeartRatePeripheral;
+import no.nordicsemi.android.nrftoolbox.simulator.PeripheralFarm;
+import no.nordicsemi.android.nrftoolbox.simulator.ProximityPeripheral;
+import no.nordicsemi.android.nrftoolbox.simulator.RSCPeripheral;
+import no.nordicsemi.android.nrftoolbox.simulator.UARTPeripheral;
+import no.nordicsemi.android.nrftoolbox.simulator.VirtualPeripheral;
+
+/**
+ * Connects a {@link BleMulticonnectProfileService} to the simulated devices of a {@link PeripheralFarm}, for load testing without radios.
+ * This class is included in debug builds only.
+ * <p>
+ * Simulated devices are added to the service like real ones, using {@link BleMulticonnectProfileService.LocalBinder#connect(BluetoothDevice)},
+ * so they get a BleManager, which keeps the log session but never connects, and their connections are started by the connection scheduler.
+ * The service must pass {@link BleMulticonnectProfileService#connectDevice(BluetoothDevice, no.nordicsemi.android.ble.BleManager)},
+ * {@link BleMulticonnectProfileService#disconnectDevice(BluetoothDevice, no.nordicsemi.android.ble.BleManager)}, and the connection state
+ * queries of simulated devices to this controller. Their connection state, link losses and notifications are posted to the UI thread
+ * and reported to the BleManagerCallbacks methods of the service, like those of real devices.
+ * </p>
+ */
+public class PeripheralFarmController {
+
+	public interface PeripheralFactory {
+		/**
+		 * Creates a simulated device.
+		 * @param address the device address
+		 * @param config timing of the device
+		 * @param index the index of the device in the farm, may be used as a random seed
+		 * @return the simulated device
+		 */
+		VirtualPeripheral create(final long address, final VirtualPeripheral.Config config, final int index);
+	}
+
+	/** Creates devices of all simulated profiles in turn. */
+	public static final PeripheralFactory ALL_PROFILES = (address, config, index) -> {
+		switch (index % 6) {
+			case 0:
+				return new HeartRatePeripheral(address, config, index);
+			case 1:
+				return new CSCPeripheral(address, config, index);
+			case 2:
+				return new RSCPeripheral(address, config, index);
+			case 3:
+				return new UARTPeripheral(address, config, index);
+			case 4:
+				return new ProximityPeripheral(address, config, index);
+			default:
+				return new CGMSPeripheral(address, config, index);
+		}
+	};
+
+	private final BleMulticonnectProfileService mService;
+	private final PeripheralFactory mFactory;
+
+	private PeripheralFarm mPeripheralFarm;
+	private volatile DeviceRegistry<VirtualDevice> mVirtualDevices;
+	/** Time from a simulated event to it being handled in the UI thread, in nanoseconds. */
+	private long mDispatchTime;
+	private long mDispatchCount;
+
+	public PeripheralFarmController(final BleMulticonnectProfileService service, final PeripheralFactory factory) {
+		mService = service;
+		mFactory = factory;
+	}
+
+	/**
+	 * Creates the given number of simulated devices and connects to all of them. Calling this method again adds more devices.
+	 * Must be called in the UI thread.
+	 * @param binder the binder of the service
+	 * @param count number of devices to create
+	 * @param config timing of the devices: notification interval, connection latency and link losses
+	 */
+	public void start(final BleMulticonnectProfileService.LocalBinder binder, final int count, final VirtualPeripheral.Config config) {
+		if (mPeripheralFarm == null) {
+			mPeripheralFarm = new PeripheralFarm(mFarmListener);
+			mVirtualDevices = new DeviceRegistry<>();
+			mDispatchTime = mDispatchCount = 0;
+		}
+
+		final BluetoothAdapter adapter = BluetoothAdapter.getDefaultAdapter();
+		final int offset = mVirtualDevices.size();
+		for (int i = offset; i < offset + count; ++i) {
+			final VirtualPeripheral peripheral = mFactory.create(PeripheralFarm.createAddress(i), config, i);
+			final long address = peripheral.getAddress();
+			final BluetoothDevice device = adapter.getRemoteDevice(SessionFormat.formatAddress(address));
+			mVirtualDevices.put(address, new VirtualDevice(device, peripheral));
+			mPeripheralFarm.add(peripheral);
+			binder.connect(device);
+		}
+		mPeripheralFarm.start();
+	}
+
+	/**
+	 * Stops the farm. Simulated devices still managed by the service are reported as disconnected. Must be called in the UI thread.
+	 */
+	public void stop() {
+		if (mPeripheralFarm == null)
+			return;
+
+		mPeripheralFarm.stop();
+		final DeviceRegistry<VirtualDevice> virtualDevices = mVirtualDevices;
+		mPeripheralFarm = null;
+		mVirtualDevices = null;
+		for (final VirtualDevice virtualDevice : virtualDevices.values()) {
+			if (mService.getManagedDevices().contains(virtualDevice.device))
+				mService.onDeviceDisconnected(virtualDevice.device);
+		}
+	}
+
+	/**
+	 * Returns the statistics of the simulated devices, or null if the farm has not been started.
+	 */
+	public PeripheralFarm.Statistics getStatistics() {
+		return mPeripheralFarm != null ? mPeripheralFarm.getStatistics() : null;
+	}
+
+	/**
+	 * Returns the mean time from an event of a simulated device to it being handled in the UI thread, in nanoseconds.
+	 */
+	public double getDispatchLatency() {
+		return mDispatchCount > 0 ? (double) mDispatchTime / mDispatchCount : 0;
+	}
+
+	/**
+	 * Returns <code>true</code> if the device is simulated by the farm.
+	 * @param device the target device
+	 * @return <code>true</code> if the device is simulated
+	 */
+	public boolean isVirtualDevice(final BluetoothDevice device) {
+		return getVirtualDevice(device) != null;
+	}
+
+	/**
+	 * Returns the connection state of the simulated device, as in {@link no.nordicsemi.android.ble.BleManager#getConnectionState()}.
+	 * @param device the simulated device
+	 * @return the connection state
+	 */
+	public int getConnectionState(final BluetoothDevice device) {
+		final VirtualDevice virtualDevice = getVirtualDevice(device);
+		return virtualDevice != null ? virtualDevice.state : BluetoothGatt.STATE_DISCONNECTED;
+	}
+
+	/**
+	 * Starts connecting to the simulated device. It will reconnect automatically after link losses.
+	 * @param device the simulated device
+	 */
+	public void connect(final BluetoothDevice device) {
+		final VirtualDevice virtualDevice = getVirtualDevice(device);
+		if (virtualDevice != null)
+			mPeripheralFarm.connect(virtualDevice.peripheral);
+	}
+
+	/**
+	 * Disconnects the simulated device.
+	 * @param device the simulated device
+	 */
+	public void disconnect(final BluetoothDevice device) {
+		final VirtualDevice virtualDevice = getVirtualDevice(device);
+		if (virtualDevice != null)
+			mPeripheralFarm.disconnect(virtualDevice.peripheral);
+	}
+
+	private VirtualDevice getVirtualDevice(final BluetoothDevice device) {
+		final DeviceRegistry<VirtualDevice> virtualDevices = mVirtualDevices;
+		return virtualDevices != null ? virtualDevices.get(DeviceRegistry.toKey(device.getAddress())) : null;
+	}
+
+	private final PeripheralFarm.Listener mFarmListener = new PeripheralFarm.Listener() {
+		@Override
+		public void onConnecting(final VirtualPeripheral peripheral) {
+			dispatch(peripheral, virtualDevice -> {
+				virtualDevice.state = BluetoothGatt.STATE_CONNECTING;
+				mService.onDeviceConnecting(virtualDevice.device);
+			});
+		}
+
+		@Override
+		public void onConnected(final VirtualPeripheral peripheral, final long latency) {
+			dispatch(peripheral, virtualDevice -> {
+				virtualDevice.state = BluetoothGatt.STATE_CONNECTED;
+				mService.onDeviceConnected(virtualDevice.device);
+				mService.onServicesDiscovered(virtualDevice.device, false);
+				mService.onDeviceReady(virtualDevice.device);
+			});
+		}
+
+		@Override
+		public void onNotification(final VirtualPeripheral peripheral, final UUID characteristic, final byte[] value, final int length) {
+			// The value buffer is reused by the peripheral
+			final byte[] copy = Arrays.copyOf(value, length);
+			dispatch(peripheral, virtualDevice -> {
+				// Other values are not decoded, as the service does not handle them
+				if (ProximityPeripheral.BATTERY_LEVEL_CHARACTERISTIC_UUID.equals(characteristic))
+					mService.onBatteryValueReceived(virtualDevice.device, copy[0] & 0xFF);
+			});
+		}
+
+		@Override
+		public void onLinkLoss(final VirtualPeripheral peripheral) {
+			dispatch(peripheral, virtualDevice -> {
+				virtualDevice.state = BluetoothGatt.STATE_DISCONNECTED;
+				mService.onLinklossOccur(virtualDevice.device);
+			});
+		}
+
+		@Override
+		public void onDisconnected(final VirtualPeripheral peripheral) {
+			dispatch(peripheral, virtualDevice -> {
+				virtualDevice.state = BluetoothGatt.STATE_DISCONNECTED;
+				mService.onDeviceDisconnected(virtualDevice.device);
+			});
+		}
+	};
+
+	/**
+	 * A simulated device with its connection state as last reported to the service.
+	 */
+	private static class VirtualDevice {
+		final BluetoothDevice device;
+		final VirtualPeripheral peripheral;
+		/** The connection state, as in {@link no.nordicsemi.android.ble.BleManager#getConnectionState()}. Modified only in the UI thread. */
+		volatile int state = BluetoothGatt.STATE_DISCONNECTED;
+
+		VirtualDevice(final BluetoothDevice device, final VirtualPeripheral peripheral) {
+			this.device = device;
+			this.peripheral = peripheral;
+		}
+	}
+
+	private interface VirtualEvent {
+		void run(final VirtualDevice device);
+	}
+
+	/**
+	 * Posts the event of a simulated device to the UI thread, where all BleManager callbacks are called.
+	 */
+	private void dispatch(final VirtualPeripheral peripheral, final VirtualEvent event) {
+		final Handler handler = mService.getHandler();
+		if (handler == null)
+			return;
+		final long time = SystemClock.elapsedRealtimeNanos();
+		handler.post(() -> {
+			// The farm might have been stopped, or stopped and started again, in the meantime
+			final DeviceRegistry<VirtualDevice> virtualDevices = mVirtualDevices;
+			final VirtualDevice device = virtualDevices != null ? virtualDevices.get(peripheral.getAddress()) : null;
+			if (device == null || device.peripheral != peripheral)
+				return;
+			mDispatchTime += SystemClock.elapsedRealtimeNanos() - time;
+			mDispatchCount++;
+			event.run(device);
+		});
+	}
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 2015, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package no.nordicsemi.android.nrftoolbox.proximity;
+
+import android.bluetooth.BluetoothDevice;
+import android.bluetooth.BluetoothGatt;
+import android.content.Intent;
+import android.util.Log;
+
+import no.nordicsemi.android.ble.BleManager;
+import no.nordicsemi.android.ble.BleManagerCallbacks;
+import no.nordicsemi.android.nrftoolbox.profile.multiconnect.PeripheralFarmController;
+import no.nordicsemi.android.nrftoolbox.simulator.PeripheralFarm;
+import no.nordicsemi.android.nrftoolbox.simulator.ProximityPeripheral;
+import no.nordicsemi.android.nrftoolbox.simulator.VirtualPeripheral;
+
+/**
+ * The Proximity service with simulated devices, for load testing the multiconnect service without radios. Included in debug builds only.
+ * <p>
+ * The farm may be started from the bound activity using {@link LoadTestBinder}, or with adb:
+ * <pre>
+ * adb shell am startservice -n no.nordicsemi.android.nrftoolbox/.proximity.LoadTestProximityService \
+ *     -a no.nordicsemi.android.nrftoolbox.proximity.ACTION_START_FARM --ei no.nordicsemi.android.nrftoolbox.proximity.EXTRA_COUNT 50
+ * </pre>
+ * The statistics are logged when the farm is stopped with {@link #ACTION_STOP_FARM}.
+ * </p>
+ */
+public class LoadTestProximityService extends ProximityService {
+	private static final String TAG = "LoadTestProximity";
+
+	public static final String ACTION_START_FARM = "no.nordicsemi.android.nrftoolbox.proximity.ACTION_START_FARM";
+	public static final String ACTION_STOP_FARM = "no.nordicsemi.android.nrftoolbox.proximity.ACTION_STOP_FARM";
+	/** Number of simulated devices to create, 50 by default. */
+	public static final String EXTRA_COUNT = "no.nordicsemi.android.nrftoolbox.proximity.EXTRA_COUNT";
+
+	private final LoadTestBinder mBinder = new LoadTestBinder();
+	private final PeripheralFarmController mController = new PeripheralFarmController(this, ProximityPeripheral::new);
+
+	/**
+	 * The binder with methods to control the simulated devices.
+	 */
+	public class LoadTestBinder extends ProximityBinder {
+		/**
+		 * Creates the given number of simulated Proximity tags and connects to them.
+		 * Calling this method again adds more devices.
+		 * @param count number of devices to create
+		 * @param config timing of the devices: notification interval, connection latency and link losses
+		 */
+		public void startPeripheralFarm(final int count, final VirtualPeripheral.Config config) {
+			mController.start(this, count, config);
+		}
+
+		/**
+		 * Stops all simulated devices. Devices that are still managed are reported as disconnected.
+		 */
+		public void stopPeripheralFarm() {
+			mController.stop();
+		}
+
+		/**
+		 * Returns the statistics of the simulated devices, or null if the farm has not been started.
+		 */
+		public PeripheralFarm.Statistics getPeripheralFarmStatistics() {
+			return mController.getStatistics();
+		}
+
+		/**
+		 * Returns the mean time from an event of a simulated device to it being handled in the UI thread, in nanoseconds.
+		 */
+		public double getVirtualDispatchLatency() {
+			return mController.getDispatchLatency();
+		}
+	}
+
+	@Override
+	protected LocalBinder getBinder() {
+		return mBinder;
+	}
+
+	@Override
+	public int onStartCommand(final Intent intent, final int flags, final int startId) {
+		final int result = super.onStartCommand(intent, flags, startId);
+		final String action = intent != null ? intent.getAction() : null;
+		if (ACTION_START_FARM.equals(action)) {
+			final int count = intent.getIntExtra(EXTRA_COUNT, 50);
+			mBinder.startPeripheralFarm(count, new VirtualPeripheral.Config());
+			Log.i(TAG, "Started " + count + " simulated devices");
+		} else if (ACTION_STOP_FARM.equals(action)) {
+			Log.i(TAG, "Statistics: " + mController.getStatistics() + ", dispatch latency: " + mController.getDispatchLatency() + " ns");
+			mBinder.stopPeripheralFarm();
+		}
+		return result;
+	}
+
+	@Override
+	public void onServiceStopped() {
+		super.onServiceStopped();
+		// The service has already released all devices, so no callbacks will be called
+		mController.stop();
+	}
+
+	@Override
+	protected boolean isConnected(final BluetoothDevice device) {
+		if (mController.isVirtualDevice(device))
+			return mController.getConnectionState(device) == BluetoothGatt.STATE_CONNECTED;
+		return super.isConnected(device);
+	}
+
+	@Override
+	protected int getConnectionState(final BluetoothDevice device) {
+		if (mController.isVirtualDevice(device))
+			return mController.getConnectionState(device);
+		return super.getConnectionState(device);
+	}
+
+	@Override
+	protected void connectDevice(final BluetoothDevice device, final BleManager<BleManagerCallbacks> manager) {
+		if (mController.isVirtualDevice(device))
+			mController.connect(device);
+		else
+			super.connectDevice(device, manager);
+	}
+
+	@Override
+	protected void disconnectDevice(final BluetoothDevice device, final BleManager<BleManagerCallbacks> manager) {
+		if (mController.isVirtualDevice(device))
+			mController.disconnect(device);
+		else
+			super.disconnectDevice(device, manager);
+	}
+
+	@Override
+	protected void openServerConnection(final BluetoothDevice device) {
+		// Simulated devices can't be reached by the GATT server
+		if (!mController.isVirtualDevice(device))
+			super.openServerConnection(device);
+	}
+
+	@Override
+	protected void cancelServerConnection(final BluetoothDevice device) {
+		if (!mController.isVirtualDevice(device))
+			super.cancelServerConnection(device);
+	}
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2015, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.nrftoolbox.simulator;
+
+import java.util.UUID;
+
+/**
+ * Simulates a Continuous Glucose Monitor. Sends CGM Measurements with the glucose concentration as SFLOAT
+ * and the time offset in minutes since the session start.
+ */
+public class CGMSPeripheral extends VirtualPeripheral {
+	public final static UUID CGMS_UUID = UUID.fromString("0000181F-0000-1000-8000-00805f9b34fb");
+	public final static UUID CGM_MEASUREMENT_UUID = UUID.fromString("00002AA7-0000-1000-8000-00805f9b34fb");
+
+	private long mSessionStart = -1;
+	private int mGlucose = 100; // [mg/dL]
+
+	public CGMSPeripheral(final long address, final Config config, final long seed) {
+		super(address, config, seed);
+	}
+
+	@Override
+	public UUID getServiceUuid() {
+		return CGMS_UUID;
+	}
+
+	@Override
+	public UUID getCharacteristicUuid() {
+		return CGM_MEASUREMENT_UUID;
+	}
+
+	@Override
+	protected int nextValue(final long time, final byte[] buffer) {
+		if (mSessionStart < 0)
+			mSessionStart = time;
+		mGlucose = Math.max(40, Math.min(400, mGlucose + mRandom.nextInt(7) - 3));
+		final int timeOffset = (int) ((time - mSessionStart) / 60000); // [min]
+
+		buffer[0] = 6; // size
+		buffer[1] = 0; // flags: no trend, no quality, no status
+		putUint16(buffer, 2, mGlucose & 0x0FFF); // SFLOAT with exponent 0
+		putUint16(buffer, 4, timeOffset);
+		return 6;
+	}
+}
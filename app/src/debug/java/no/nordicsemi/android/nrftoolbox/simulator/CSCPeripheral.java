@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2015, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.nrftoolbox.simulator;
+
+import java.util.UUID;
+
+/**
+ * Simulates a Cycling Speed and Cadence sensor. Sends CSC Measurements with both the wheel and the crank revolution data.
+ */
+public class CSCPeripheral extends VirtualPeripheral {
+	public final static UUID CYCLING_SPEED_AND_CADENCE_SERVICE_UUID = UUID.fromString("00001816-0000-1000-8000-00805f9b34fb");
+	public final static UUID CSC_MEASUREMENT_CHARACTERISTIC_UUID = UUID.fromString("00002A5B-0000-1000-8000-00805f9b34fb");
+
+	private static final double WHEEL_CIRCUMFERENCE = 2.086; // [m]
+
+	private double mWheelRevolutions;
+	private double mCrankRevolutions;
+	private long mLastTime = -1;
+	private double mSpeed = 7.0; // [m/s]
+
+	public CSCPeripheral(final long address, final Config config, final long seed) {
+		super(address, config, seed);
+	}
+
+	@Override
+	public UUID getServiceUuid() {
+		return CYCLING_SPEED_AND_CADENCE_SERVICE_UUID;
+	}
+
+	@Override
+	public UUID getCharacteristicUuid() {
+		return CSC_MEASUREMENT_CHARACTERISTIC_UUID;
+	}
+
+	@Override
+	protected int nextValue(final long time, final byte[] buffer) {
+		if (mLastTime >= 0) {
+			final double seconds = (time - mLastTime) / 1000.0;
+			mSpeed = Math.max(2.0, Math.min(15.0, mSpeed + (mRandom.nextDouble() - 0.5) * 0.5));
+			mWheelRevolutions += mSpeed * seconds / WHEEL_CIRCUMFERENCE;
+			mCrankRevolutions += mSpeed * seconds / (WHEEL_CIRCUMFERENCE * 2.5); // gear ratio 2.5
+		}
+		mLastTime = time;
+		final int eventTime = (int) (time * 1024 / 1000); // in 1/1024 s, rolls over
+
+		buffer[0] = 0x03; // wheel and crank revolution data present
+		putUint32(buffer, 1, (long) mWheelRevolutions);
+		putUint16(buffer, 5, eventTime);
+		putUint16(buffer, 7, (int) mCrankRevolutions);
+		putUint16(buffer, 9, eventTime);
+		return 11;
+	}
+}
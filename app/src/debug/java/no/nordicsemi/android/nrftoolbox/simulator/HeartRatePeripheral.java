@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2015, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.nrftoolbox.simulator;
+
+import java.util.UUID;
+
+/**
+ * Simulates a Heart Rate sensor. Sends Heart Rate Measurements with an 8-bit heart rate value and one RR-interval.
+ */
+public class HeartRatePeripheral extends VirtualPeripheral {
+	public final static UUID HR_SERVICE_UUID = UUID.fromString("0000180D-0000-1000-8000-00805f9b34fb");
+	public final static UUID HR_CHARACTERISTIC_UUID = UUID.fromString("00002A37-0000-1000-8000-00805f9b34fb");
+
+	private int mHeartRate = 70;
+
+	public HeartRatePeripheral(final long address, final Config config, final long seed) {
+		super(address, config, seed);
+	}
+
+	@Override
+	public UUID getServiceUuid() {
+		return HR_SERVICE_UUID;
+	}
+
+	@Override
+	public UUID getCharacteristicUuid() {
+		return HR_CHARACTERISTIC_UUID;
+	}
+
+	@Override
+	protected int nextValue(final long time, final byte[] buffer) {
+		// Random walk between 50 and 180 bpm
+		mHeartRate = Math.max(50, Math.min(180, mHeartRate + mRandom.nextInt(5) - 2));
+		final int rrInterval = 60 * 1024 / mHeartRate; // in 1/1024 s
+
+		buffer[0] = 0x10; // UINT8 heart rate, RR-interval present
+		buffer[1] = (byte) mHeartRate;
+		putUint16(buffer, 2, rrInterval);
+		return 4;
+	}
+}
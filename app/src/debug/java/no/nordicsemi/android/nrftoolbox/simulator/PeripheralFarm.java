@@ -0,0 +1,457 @@
+/*
+ * Copyright (c) 2015, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.nrftoolbox.simulator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * A farm of {@link VirtualPeripheral}s used to load test services managing many connections at once.
+ * <p>
+ * All peripherals are driven by a single simulation thread which sleeps until the next event of any peripheral is due:
+ * a connection being established, a notification or a link loss. Peripherals are kept in a binary heap ordered by
+ * the time of their next event, so handling an event costs O(log N). No objects are allocated per event, the notification
+ * value passed to the {@link Listener} is the peripheral's own buffer and must be copied if kept.
+ * All listener methods are called from the simulation thread. Connection requests made from other threads are
+ * handled by the simulation thread on its next iteration.
+ * </p>
+ * <p>
+ * The farm may also be stepped manually with {@link #runUntil(long)}, without starting the thread. Together with
+ * the seeded peripherals this gives repeatable simulations.
+ * </p>
+ */
+public class PeripheralFarm {
+	private static final int REQUEST_NONE = 0;
+	private static final int REQUEST_CONNECT = 1;
+	private static final int REQUEST_DISCONNECT = 2;
+
+	public interface Listener {
+		void onConnecting(final VirtualPeripheral peripheral);
+
+		/**
+		 * Called when the peripheral has connected and is ready to send notifications.
+		 *
+		 * @param peripheral the peripheral
+		 * @param latency    the time from the connection request in milliseconds
+		 */
+		void onConnected(final VirtualPeripheral peripheral, final long latency);
+
+		/**
+		 * Called when the peripheral sent a notification. The value buffer is reused and must be copied if kept.
+		 */
+		void onNotification(final VirtualPeripheral peripheral, final UUID characteristic, final byte[] value, final int length);
+
+		/**
+		 * Called when the link to the peripheral was lost. The peripheral will connect again after
+		 * {@link VirtualPeripheral.Config#reconnectDelay} milliseconds.
+		 */
+		void onLinkLoss(final VirtualPeripheral peripheral);
+
+		/**
+		 * Called when the peripheral has been disconnected on request.
+		 */
+		void onDisconnected(final VirtualPeripheral peripheral);
+	}
+
+	/**
+	 * A snapshot of the farm statistics.
+	 */
+	public static class Statistics {
+		public int connectionCount;
+		public long minConnectionLatency;
+		public long maxConnectionLatency;
+		public double meanConnectionLatency;
+		public long notificationCount;
+		public int linkLossCount;
+		/** The mean time spent in the listener per event, in nanoseconds. */
+		public double meanListenerTime;
+
+		@Override
+		public String toString() {
+			return String.format("connections: %d (latency min %d, mean %.1f, max %d ms), notifications: %d, link losses: %d, listener: %.0f ns/event",
+					connectionCount, minConnectionLatency, meanConnectionLatency, maxConnectionLatency, notificationCount, linkLossCount, meanListenerTime);
+		}
+	}
+
+	private final Listener mListener;
+	private final List<VirtualPeripheral> mPeripherals = new ArrayList<>();
+	/** Min-heap of the peripherals by the time of their next event. */
+	private VirtualPeripheral[] mHeap = new VirtualPeripheral[16];
+	private boolean mRequestsPending;
+	private final Object mLock = new Object();
+	private Thread mThread;
+	private boolean mRunning;
+	private long mStartTime;
+	private long mTime;
+
+	// Statistics
+	private int mConnectionCount;
+	private long mMinConnectionLatency = Long.MAX_VALUE;
+	private long mMaxConnectionLatency;
+	private long mTotalConnectionLatency;
+	private long mNotificationCount;
+	private int mLinkLossCount;
+	private long mEventCount;
+	private long mListenerTime;
+
+	public PeripheralFarm(final Listener listener) {
+		mListener = listener;
+	}
+
+	/**
+	 * Creates a 48-bit address of the peripheral with given index. The addresses are static random addresses
+	 * (2 most significant bits set), unique for indexes up to 2^32.
+	 */
+	public static long createAddress(final int index) {
+		return 0xC0FA00000000L | (index & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * Adds the peripheral to the farm. The peripheral stays disconnected until {@link #connect(VirtualPeripheral)} is called.
+	 */
+	public void add(final VirtualPeripheral peripheral) {
+		synchronized (mLock) {
+			mPeripherals.add(peripheral);
+			final int size = mPeripherals.size();
+			if (mHeap.length < size)
+				mHeap = Arrays.copyOf(mHeap, mHeap.length * 2);
+			mHeap[size - 1] = peripheral;
+			peripheral.mHeapIndex = size - 1;
+			siftUp(size - 1);
+		}
+	}
+
+	public List<VirtualPeripheral> getPeripherals() {
+		synchronized (mLock) {
+			return Collections.unmodifiableList(new ArrayList<>(mPeripherals));
+		}
+	}
+
+	/**
+	 * Returns the peripheral with given address or null if not found.
+	 */
+	public VirtualPeripheral find(final long address) {
+		synchronized (mLock) {
+			for (final VirtualPeripheral peripheral : mPeripherals)
+				if (peripheral.getAddress() == address)
+					return peripheral;
+			return null;
+		}
+	}
+
+	/**
+	 * Requests connection to the peripheral. The peripheral will reconnect automatically after link losses
+	 * until {@link #disconnect(VirtualPeripheral)} is called.
+	 */
+	public void connect(final VirtualPeripheral peripheral) {
+		request(peripheral, REQUEST_CONNECT);
+	}
+
+	public void connectAll() {
+		synchronized (mLock) {
+			for (final VirtualPeripheral peripheral : mPeripherals)
+				peripheral.mRequest = REQUEST_CONNECT;
+			mRequestsPending = true;
+			mLock.notifyAll();
+		}
+	}
+
+	public void disconnect(final VirtualPeripheral peripheral) {
+		request(peripheral, REQUEST_DISCONNECT);
+	}
+
+	public void disconnectAll() {
+		synchronized (mLock) {
+			for (final VirtualPeripheral peripheral : mPeripherals)
+				peripheral.mRequest = REQUEST_DISCONNECT;
+			mRequestsPending = true;
+			mLock.notifyAll();
+		}
+	}
+
+	private void request(final VirtualPeripheral peripheral, final int request) {
+		synchronized (mLock) {
+			peripheral.mRequest = request;
+			mRequestsPending = true;
+			mLock.notifyAll();
+		}
+	}
+
+	/**
+	 * Starts the simulation thread. Simulation time is the real time since this call.
+	 */
+	public void start() {
+		synchronized (mLock) {
+			if (mRunning)
+				return;
+			mRunning = true;
+			mStartTime = System.currentTimeMillis() - mTime;
+			mThread = new Thread(this::loop, "PeripheralFarm");
+			mThread.setDaemon(true);
+			mThread.start();
+		}
+	}
+
+	/**
+	 * Stops the simulation thread. Peripherals are not disconnected, use {@link #disconnectAll()} first for that.
+	 */
+	public void stop() {
+		final Thread thread;
+		synchronized (mLock) {
+			if (!mRunning)
+				return;
+			mRunning = false;
+			thread = mThread;
+			mThread = null;
+			mLock.notifyAll();
+		}
+		if (thread != Thread.currentThread()) {
+			try {
+				thread.join();
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	public boolean isRunning() {
+		synchronized (mLock) {
+			return mRunning;
+		}
+	}
+
+	/**
+	 * Processes all events due up to given simulation time on the calling thread. Must not be used while the simulation
+	 * thread is running.
+	 *
+	 * @param time the simulation time in milliseconds
+	 */
+	public void runUntil(final long time) {
+		synchronized (mLock) {
+			if (mRunning)
+				throw new IllegalStateException("Simulation thread is running");
+			long next = process(mTime);
+			while (next <= time) {
+				mTime = next;
+				next = process(next);
+			}
+			mTime = time;
+		}
+	}
+
+	/**
+	 * Returns the current simulation time in milliseconds.
+	 */
+	public long getTime() {
+		synchronized (mLock) {
+			return mTime;
+		}
+	}
+
+	public Statistics getStatistics() {
+		synchronized (mLock) {
+			final Statistics statistics = new Statistics();
+			statistics.connectionCount = mConnectionCount;
+			statistics.minConnectionLatency = mConnectionCount > 0 ? mMinConnectionLatency : 0;
+			statistics.maxConnectionLatency = mMaxConnectionLatency;
+			statistics.meanConnectionLatency = mConnectionCount > 0 ? (double) mTotalConnectionLatency / mConnectionCount : 0;
+			statistics.notificationCount = mNotificationCount;
+			statistics.linkLossCount = mLinkLossCount;
+			statistics.meanListenerTime = mEventCount > 0 ? (double) mListenerTime / mEventCount : 0;
+			return statistics;
+		}
+	}
+
+	private void loop() {
+		synchronized (mLock) {
+			while (mRunning) {
+				mTime = System.currentTimeMillis() - mStartTime;
+				final long next = process(mTime);
+				final long delay = next - (System.currentTimeMillis() - mStartTime);
+				if (delay > 0) {
+					try {
+						mLock.wait(next == Long.MAX_VALUE ? 0 : delay);
+					} catch (final InterruptedException e) {
+						mRunning = false;
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Handles pending requests and all events due at given time.
+	 *
+	 * @return the time of the next event, {@link Long#MAX_VALUE} if none
+	 */
+	private long process(final long now) {
+		final int size = mPeripherals.size();
+		if (mRequestsPending) {
+			mRequestsPending = false;
+			for (int i = 0; i < size; ++i)
+				handleRequest(mPeripherals.get(i), now);
+			// Requests change the due times of any number of peripherals, rebuild the heap
+			for (int i = size / 2 - 1; i >= 0; --i)
+				siftDown(i, size);
+		}
+		if (size == 0)
+			return Long.MAX_VALUE;
+
+		VirtualPeripheral p;
+		while (getDueTime(p = mHeap[0]) <= now) {
+			switch (p.mState) {
+				case VirtualPeripheral.STATE_DISCONNECTED:
+					// Reconnect after a link loss
+					startConnecting(p, p.mNextEventTime);
+					break;
+				case VirtualPeripheral.STATE_CONNECTING:
+					onConnected(p);
+					break;
+				case VirtualPeripheral.STATE_CONNECTED:
+					if (p.mLinkLossTime <= p.mNextEventTime)
+						onLinkLoss(p);
+					else
+						onNotification(p);
+					break;
+			}
+			// The due time of the root could only have increased. The listener may have added peripherals meanwhile.
+			siftDown(p.mHeapIndex, mPeripherals.size());
+		}
+		return getDueTime(p);
+	}
+
+	private static long getDueTime(final VirtualPeripheral p) {
+		return Math.min(p.mNextEventTime, p.mLinkLossTime);
+	}
+
+	private void siftUp(int index) {
+		final VirtualPeripheral p = mHeap[index];
+		final long due = getDueTime(p);
+		while (index > 0) {
+			final int parent = (index - 1) >>> 1;
+			final VirtualPeripheral q = mHeap[parent];
+			if (getDueTime(q) <= due)
+				break;
+			mHeap[index] = q;
+			q.mHeapIndex = index;
+			index = parent;
+		}
+		mHeap[index] = p;
+		p.mHeapIndex = index;
+	}
+
+	private void siftDown(int index, final int size) {
+		final VirtualPeripheral p = mHeap[index];
+		final long due = getDueTime(p);
+		int child;
+		while ((child = 2 * index + 1) < size) {
+			if (child + 1 < size && getDueTime(mHeap[child + 1]) < getDueTime(mHeap[child]))
+				child++;
+			final VirtualPeripheral q = mHeap[child];
+			if (due <= getDueTime(q))
+				break;
+			mHeap[index] = q;
+			q.mHeapIndex = index;
+			index = child;
+		}
+		mHeap[index] = p;
+		p.mHeapIndex = index;
+	}
+
+	private void handleRequest(final VirtualPeripheral p, final long now) {
+		final int request = p.mRequest;
+		p.mRequest = REQUEST_NONE;
+		if (request == REQUEST_CONNECT) {
+			p.mAutoReconnect = true;
+			if (p.mState == VirtualPeripheral.STATE_DISCONNECTED)
+				startConnecting(p, now);
+		} else if (request == REQUEST_DISCONNECT) {
+			p.mAutoReconnect = false;
+			p.mNextEventTime = Long.MAX_VALUE;
+			p.mLinkLossTime = Long.MAX_VALUE;
+			if (p.mState != VirtualPeripheral.STATE_DISCONNECTED) {
+				p.mState = VirtualPeripheral.STATE_DISCONNECTED;
+				final long start = System.nanoTime();
+				mListener.onDisconnected(p);
+				countListenerTime(start);
+			}
+		}
+	}
+
+	private void startConnecting(final VirtualPeripheral p, final long now) {
+		p.mState = VirtualPeripheral.STATE_CONNECTING;
+		p.mConnectRequestTime = now;
+		p.mNextEventTime = now + p.randomConnectionLatency();
+		p.mLinkLossTime = Long.MAX_VALUE;
+		final long start = System.nanoTime();
+		mListener.onConnecting(p);
+		countListenerTime(start);
+	}
+
+	private void onConnected(final VirtualPeripheral p) {
+		final long connectedTime = p.mNextEventTime;
+		final long latency = connectedTime - p.mConnectRequestTime;
+		mConnectionCount++;
+		mTotalConnectionLatency += latency;
+		mMinConnectionLatency = Math.min(mMinConnectionLatency, latency);
+		mMaxConnectionLatency = Math.max(mMaxConnectionLatency, latency);
+
+		p.mState = VirtualPeripheral.STATE_CONNECTED;
+		p.mNextEventTime = connectedTime + p.getConfig().notificationInterval;
+		final long timeToLinkLoss = p.randomTimeToLinkLoss();
+		p.mLinkLossTime = timeToLinkLoss == Long.MAX_VALUE ? Long.MAX_VALUE : connectedTime + timeToLinkLoss;
+		p.onConnected();
+		final long start = System.nanoTime();
+		mListener.onConnected(p, latency);
+		countListenerTime(start);
+	}
+
+	private void onNotification(final VirtualPeripheral p) {
+		final long time = p.mNextEventTime;
+		final int length = p.nextValue(time);
+		p.mNotificationCount++;
+		mNotificationCount++;
+		p.mNextEventTime = time + p.getConfig().notificationInterval;
+		final long start = System.nanoTime();
+		mListener.onNotification(p, p.getCharacteristicUuid(), p.getBuffer(), length);
+		countListenerTime(start);
+	}
+
+	private void onLinkLoss(final VirtualPeripheral p) {
+		mLinkLossCount++;
+		p.mState = VirtualPeripheral.STATE_DISCONNECTED;
+		p.mNextEventTime = p.mAutoReconnect ? p.mLinkLossTime + p.getConfig().reconnectDelay : Long.MAX_VALUE;
+		p.mLinkLossTime = Long.MAX_VALUE;
+		final long start = System.nanoTime();
+		mListener.onLinkLoss(p);
+		countListenerTime(start);
+	}
+
+	private void countListenerTime(final long start) {
+		mListenerTime += System.nanoTime() - start;
+		mEventCount++;
+	}
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2015, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.nrftoolbox.simulator;
+
+import java.util.UUID;
+
+/**
+ * Simulates a Running Speed and Cadence sensor. Sends RSC Measurements with the instantaneous speed and cadence.
+ */
+public class RSCPeripheral extends VirtualPeripheral {
+	public final static UUID RUNNING_SPEED_AND_CADENCE_SERVICE_UUID = UUID.fromString("00001814-0000-1000-8000-00805f9b34fb");
+	public final static UUID RSC_MEASUREMENT_CHARACTERISTIC_UUID = UUID.fromString("00002A53-0000-1000-8000-00805f9b34fb");
+
+	private double mSpeed = 3.0; // [m/s]
+
+	public RSCPeripheral(final long address, final Config config, final long seed) {
+		super(address, config, seed);
+	}
+
+	@Override
+	public UUID getServiceUuid() {
+		return RUNNING_SPEED_AND_CADENCE_SERVICE_UUID;
+	}
+
+	@Override
+	public UUID getCharacteristicUuid() {
+		return RSC_MEASUREMENT_CHARACTERISTIC_UUID;
+	}
+
+	@Override
+	protected int nextValue(final long time, final byte[] buffer) {
+		mSpeed = Math.max(1.0, Math.min(7.0, mSpeed + (mRandom.nextDouble() - 0.5) * 0.2));
+		final int cadence = (int) (140 + mSpeed * 5);
+
+		buffer[0] = 0x04; // running, no stride length, no total distance
+		putUint16(buffer, 1, (int) (mSpeed * 256)); // in 1/256 m/s
+		buffer[3] = (byte) cadence;
+		return 4;
+	}
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2015, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.nrftoolbox.simulator;
+
+import java.util.UUID;
+
+/**
+ * Simulates a Nordic UART Service device sending short text lines on the TX characteristic.
+ */
+public class UARTPeripheral extends VirtualPeripheral {
+	public final static UUID UART_SERVICE_UUID = UUID.fromString("6E400001-B5A3-F393-E0A9-E50E24DCCA9E");
+	public final static UUID UART_TX_CHARACTERISTIC_UUID = UUID.fromString("6E400003-B5A3-F393-E0A9-E50E24DCCA9E");
+
+	private int mLine;
+
+	public UARTPeripheral(final long address, final Config config, final long seed) {
+		super(address, config, seed);
+	}
+
+	@Override
+	public UUID getServiceUuid() {
+		return UART_SERVICE_UUID;
+	}
+
+	@Override
+	public UUID getCharacteristicUuid() {
+		return UART_TX_CHARACTERISTIC_UUID;
+	}
+
+	@Override
+	protected void onConnected() {
+		mLine = 0;
+	}
+
+	@Override
+	protected int nextValue(final long time, final byte[] buffer) {
+		// "Line <n>\n" in ASCII, without allocating a String
+		int length = 0;
+		buffer[length++] = 'L';
+		buffer[length++] = 'i';
+		buffer[length++] = 'n';
+		buffer[length++] = 'e';
+		buffer[length++] = ' ';
+		int value = mLine++ & 0x7FFFFFFF;
+		final int start = length;
+		do {
+			buffer[length++] = (byte) ('0' + value % 10);
+			value /= 10;
+		} while (value > 0);
+		for (int i = start, j = length - 1; i < j; ++i, --j) {
+			final byte b = buffer[i];
+			buffer[i] = buffer[j];
+			buffer[j] = b;
+		}
+		buffer[length++] = '\n';
+		return length;
+	}
+}
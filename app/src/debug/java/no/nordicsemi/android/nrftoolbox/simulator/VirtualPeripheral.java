@@ -0,0 +1,175 @@
+/*
+ * Copyright (c) 2015, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.nrftoolbox.simulator;
+
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * A simulated peripheral sending notifications of a single characteristic, run by a {@link PeripheralFarm}.
+ * Subclasses generate the values of the simulated profile. The timing of the connection, the notifications and
+ * link losses is set by the {@link Config}. Values and timing are generated with a seeded random generator,
+ * so a simulation with the same seeds is repeatable.
+ */
+public abstract class VirtualPeripheral {
+	public static final int STATE_DISCONNECTED = 0;
+	public static final int STATE_CONNECTING = 1;
+	public static final int STATE_CONNECTED = 2;
+
+	/**
+	 * Timing of the simulated peripheral. All times are in milliseconds.
+	 */
+	public static class Config {
+		/** Interval between notifications. */
+		public long notificationInterval = 1000;
+		/** Time from the connection request to the device being connected and ready. */
+		public long connectionLatency = 100;
+		/** Maximum random time added to the connection latency. */
+		public long connectionJitter = 50;
+		/** Mean time between link losses, 0 to never lose the link. */
+		public long meanTimeBetweenLinkLosses = 0;
+		/** Time after a link loss after which the device starts connecting again. */
+		public long reconnectDelay = 2000;
+
+		public Config setNotificationInterval(final long notificationInterval) {
+			this.notificationInterval = notificationInterval;
+			return this;
+		}
+
+		public Config setConnectionLatency(final long connectionLatency, final long connectionJitter) {
+			this.connectionLatency = connectionLatency;
+			this.connectionJitter = connectionJitter;
+			return this;
+		}
+
+		public Config setLinkLoss(final long meanTimeBetweenLinkLosses, final long reconnectDelay) {
+			this.meanTimeBetweenLinkLosses = meanTimeBetweenLinkLosses;
+			this.reconnectDelay = reconnectDelay;
+			return this;
+		}
+	}
+
+	private final long mAddress;
+	private final Config mConfig;
+	protected final Random mRandom;
+	private final byte[] mBuffer = new byte[20];
+
+	// The following fields are accessed by the PeripheralFarm while holding its lock
+	int mState = STATE_DISCONNECTED;
+	int mRequest;
+	int mHeapIndex;
+	boolean mAutoReconnect;
+	long mConnectRequestTime;
+	/** Time of the next event: connection, notification or reconnection, depending on the state. */
+	long mNextEventTime = Long.MAX_VALUE;
+	long mLinkLossTime = Long.MAX_VALUE;
+	long mNotificationCount;
+
+	/**
+	 * Creates the peripheral.
+	 *
+	 * @param address the 48-bit address, see {@link PeripheralFarm#createAddress(int)}
+	 * @param config  the timing
+	 * @param seed    the seed of the random generator
+	 */
+	protected VirtualPeripheral(final long address, final Config config, final long seed) {
+		mAddress = address;
+		mConfig = config;
+		mRandom = new Random(seed);
+	}
+
+	public long getAddress() {
+		return mAddress;
+	}
+
+	public Config getConfig() {
+		return mConfig;
+	}
+
+	/**
+	 * Returns one of the STATE_* constants.
+	 */
+	public int getState() {
+		return mState;
+	}
+
+	public long getNotificationCount() {
+		return mNotificationCount;
+	}
+
+	/**
+	 * Returns the UUID of the primary service of the simulated profile.
+	 */
+	public abstract UUID getServiceUuid();
+
+	/**
+	 * Returns the UUID of the characteristic sending notifications.
+	 */
+	public abstract UUID getCharacteristicUuid();
+
+	/**
+	 * Writes the value of the next notification to the buffer.
+	 *
+	 * @param time   the simulation time in milliseconds
+	 * @param buffer the buffer, 20 bytes long
+	 * @return the length of the value
+	 */
+	protected abstract int nextValue(final long time, final byte[] buffer);
+
+	/**
+	 * Called when the device has connected, before the first notification. May be used to reset the simulated session.
+	 */
+	protected void onConnected() {
+		// empty default implementation
+	}
+
+	final int nextValue(final long time) {
+		return nextValue(time, mBuffer);
+	}
+
+	final byte[] getBuffer() {
+		return mBuffer;
+	}
+
+	final long randomConnectionLatency() {
+		final long jitter = mConfig.connectionJitter > 0 ? (long) (mRandom.nextDouble() * mConfig.connectionJitter) : 0;
+		return mConfig.connectionLatency + jitter;
+	}
+
+	final long randomTimeToLinkLoss() {
+		if (mConfig.meanTimeBetweenLinkLosses <= 0)
+			return Long.MAX_VALUE;
+		// Exponential distribution, link losses are independent of each other
+		return (long) (-Math.log(1.0 - mRandom.nextDouble()) * mConfig.meanTimeBetweenLinkLosses);
+	}
+
+	protected static void putUint16(final byte[] buffer, final int offset, final int value) {
+		buffer[offset] = (byte) value;
+		buffer[offset + 1] = (byte) (value >> 8);
+	}
+
+	protected static void putUint32(final byte[] buffer, final int offset, final long value) {
+		putUint16(buffer, offset, (int) value);
+		putUint16(buffer, offset + 2, (int) (value >> 16));
+	}
+}
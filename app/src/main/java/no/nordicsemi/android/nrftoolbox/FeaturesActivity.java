@@ -47,10 +47,14 @@ import android.widget.ImageView;
 import android.widget.TextView;
 import android.widget.Toast;
 
+import java.io.IOException;
 import java.util.List;
 
 import no.nordicsemi.android.nrftoolbox.adapter.AppAdapter;
 import no.nordicsemi.android.nrftoolbox.hrs.HRSActivity;
+import no.nordicsemi.android.nrftoolbox.profile.RecordingBleManager;
+import no.nordicsemi.android.nrftoolbox.recorder.SessionRecorder;
+import no.nordicsemi.android.nrftoolbox.scanner.BackgroundScannerService;
 
 public class FeaturesActivity extends AppCompatActivity {
 	private static final String NRF_CONNECT_CATEGORY = "no.nordicsemi.android.nrftoolbox.LAUNCHER";
@@ -120,10 +124,29 @@ public class FeaturesActivity extends AppCompatActivity {
 
 	@Override
 	public boolean onCreateOptionsMenu(final Menu menu) {
-		getMenuInflater().inflate(R.menu.help, menu);
+		getMenuInflater().inflate(R.menu.features, menu);
 		return true;
 	}
 
+	@Override
+	public boolean onPrepareOptionsMenu(final Menu menu) {
+		menu.findItem(R.id.action_record_session).setChecked(RecordingBleManager.getSessionRecorder() != null);
+		return super.onPrepareOptionsMenu(menu);
+	}
+
+	@Override
+	protected void onStart() {
+		super.onStart();
+		// Keep the cache of nearby devices up to date while the activity is visible
+		startService(new Intent(this, BackgroundScannerService.class));
+	}
+
+	@Override
+	protected void onStop() {
+		super.onStop();
+		stopService(new Intent(this, BackgroundScannerService.class));
+	}
+
 	@Override
 	protected void onPostCreate(final Bundle savedInstanceState) {
 		super.onPostCreate(savedInstanceState);
@@ -150,10 +173,34 @@ public class FeaturesActivity extends AppCompatActivity {
 			final AppHelpFragment fragment = AppHelpFragment.getInstance(R.string.about_text, true);
 			fragment.show(getSupportFragmentManager(), null);
 			break;
+		case R.id.action_record_session:
+			toggleSessionRecording(!item.isChecked());
+			break;
 		}
 		return true;
 	}
 
+	/**
+	 * Starts or stops recording packets of all connected devices. Segment files are created and flushed on a background thread.
+	 */
+	private void toggleSessionRecording(final boolean enable) {
+		if (!enable) {
+			new Thread(RecordingBleManager::stopSessionRecording).start();
+			return;
+		}
+		new Thread(() -> {
+			String message;
+			try {
+				final SessionRecorder recorder = RecordingBleManager.startSessionRecording(getApplicationContext());
+				message = getString(R.string.session_recording_started, recorder.getDirectory().getPath());
+			} catch (final IOException e) {
+				message = getString(R.string.session_recording_failed, e.getMessage());
+			}
+			final String text = message;
+			runOnUiThread(() -> Toast.makeText(getApplicationContext(), text, Toast.LENGTH_SHORT).show());
+		}).start();
+	}
+
 	private void setupPluginsInDrawer(final ViewGroup container) {
 		final LayoutInflater inflater = LayoutInflater.from(this);
 		final PackageManager pm = getPackageManager();
@@ -31,13 +31,13 @@ import java.util.Deque;
 import java.util.LinkedList;
 import java.util.UUID;
 
-import no.nordicsemi.android.ble.BleManager;
 import no.nordicsemi.android.ble.Request;
-import no.nordicsemi.android.log.Logger;
 import no.nordicsemi.android.nrftoolbox.parser.BloodPressureMeasurementParser;
 import no.nordicsemi.android.nrftoolbox.parser.IntermediateCuffPressureParser;
+import no.nordicsemi.android.nrftoolbox.profile.RecordingBleManager;
+import no.nordicsemi.android.nrftoolbox.utility.DeferredLogger;
 
-public class BPMManager extends BleManager<BPMManagerCallbacks> {
+public class BPMManager extends RecordingBleManager<BPMManagerCallbacks> {
 	/** Blood Pressure service UUID */
 	public final static UUID BP_SERVICE_UUID = UUID.fromString("00001810-0000-1000-8000-00805f9b34fb");
 	/** Blood Pressure Measurement characteristic UUID */
@@ -71,7 +71,7 @@ public class BPMManager extends BleManager<BPMManagerCallbacks> {
 	/**
 	 * BluetoothGatt callbacks for connection/disconnection, service discovery, receiving notification, etc
 	 */
-	private final BleManagerGattCallback  mGattCallback = new BleManagerGattCallback() {
+	private final BleManagerGattCallback  mGattCallback = new RecordingGattCallback() {
 
 		@Override
 		protected Deque<Request> initGatt(final BluetoothGatt gatt) {
@@ -105,16 +105,20 @@ public class BPMManager extends BleManager<BPMManagerCallbacks> {
 
 		@Override
 		protected void onCharacteristicNotified(final BluetoothGatt gatt, final BluetoothGattCharacteristic characteristic) {
+			super.onCharacteristicNotified(gatt, characteristic);
+
 			// Intermediate Cuff Pressure characteristic read
-			Logger.a(mLogSession, "\"" + IntermediateCuffPressureParser.parse(characteristic) + "\" received");
+			DeferredLogger.received(mLogSession, IntermediateCuffPressureParser::parse, characteristic.getValue());
 
 			parseBPMValue(gatt, characteristic);
 		}
 
 		@Override
 		protected void onCharacteristicIndicated(final BluetoothGatt gatt, final BluetoothGattCharacteristic characteristic) {
+			super.onCharacteristicIndicated(gatt, characteristic);
+
 			// Blood Pressure Measurement characteristic read
-			Logger.a(mLogSession, "\"" + BloodPressureMeasurementParser.parse(characteristic) + "\" received");
+			DeferredLogger.received(mLogSession, BloodPressureMeasurementParser::parse, characteristic.getValue());
 
 			parseBPMValue(gatt, characteristic);
 		}
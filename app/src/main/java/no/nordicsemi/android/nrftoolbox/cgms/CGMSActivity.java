@@ -29,23 +29,26 @@ import android.content.Intent;
 import android.content.IntentFilter;
 import android.os.Bundle;
 import android.support.v4.content.LocalBroadcastManager;
-import android.util.SparseArray;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
 import android.view.MenuInflater;
 import android.view.MenuItem;
 import android.view.View;
-import android.widget.ListView;
 import android.widget.PopupMenu;
+import android.widget.TextView;
 
 import java.util.UUID;
 
 import no.nordicsemi.android.nrftoolbox.R;
 import no.nordicsemi.android.nrftoolbox.profile.BleProfileService;
 import no.nordicsemi.android.nrftoolbox.profile.BleProfileServiceReadyActivity;
+import no.nordicsemi.android.nrftoolbox.widget.DividerItemDecoration;
 
 public class CGMSActivity extends BleProfileServiceReadyActivity<CGMService.CGMSBinder> implements PopupMenu.OnMenuItemClickListener {
 	private View mControlPanelStd;
 	private View mControlPanelAbort;
-	private ListView mRecordsListView;
+	private RecyclerView mRecordsListView;
+	private TextView mTrendView;
 	private CGMSRecordsAdapter mCgmsRecordsAdapter;
 
 	private CGMService.CGMSBinder mBinder;
@@ -63,13 +66,15 @@ public class CGMSActivity extends BleProfileServiceReadyActivity<CGMService.CGMS
 
 	private void setGUI() {
 		mRecordsListView = findViewById(R.id.list);
+		mRecordsListView.setLayoutManager(new LinearLayoutManager(this));
+		mRecordsListView.addItemDecoration(new DividerItemDecoration(this, DividerItemDecoration.VERTICAL_LIST));
+		mTrendView = findViewById(R.id.trend);
 		mControlPanelStd = findViewById(R.id.cgms_control_std);
 		mControlPanelAbort = findViewById(R.id.cgms_control_abort);
 
 		findViewById(R.id.action_last).setOnClickListener(v -> {
 			clearRecords();
 			if (mBinder != null) {
-				mBinder.clear();
 				mBinder.getLastRecord();
 			}
 		});
@@ -96,12 +101,18 @@ public class CGMSActivity extends BleProfileServiceReadyActivity<CGMService.CGMS
 		});
 	}
 
-	private void loadAdapter(SparseArray<CGMSRecord> records) {
-		mCgmsRecordsAdapter.clear();
-		for (int i = 0; i < records.size(); i++) {
-			mCgmsRecordsAdapter.addItem(records.valueAt(i));
+	/**
+	 * Shows the records from the store of the connected sensor. The store is opened when the sensor connects,
+	 * so it may not exist yet when the service is bound. New records are shown as the store reports them.
+	 */
+	private void showRecords(final CGMSRecordStore store) {
+		if (store == null)
+			return;
+		if (mCgmsRecordsAdapter == null) {
+			mCgmsRecordsAdapter = new CGMSRecordsAdapter(CGMSActivity.this);
+			mRecordsListView.setAdapter(mCgmsRecordsAdapter);
 		}
-		mCgmsRecordsAdapter.notifyDataSetChanged();
+		mCgmsRecordsAdapter.setRecordStore(store);
 	}
 
 	@Override
@@ -113,14 +124,7 @@ public class CGMSActivity extends BleProfileServiceReadyActivity<CGMService.CGMS
 	@Override
 	protected void onServiceBinded(final CGMService.CGMSBinder binder) {
 		mBinder = binder;
-		final SparseArray<CGMSRecord> cgmsRecords = binder.getRecords();
-		if (cgmsRecords != null && cgmsRecords.size() > 0) {
-			if (mCgmsRecordsAdapter == null) {
-				mCgmsRecordsAdapter = new CGMSRecordsAdapter(CGMSActivity.this);
-				mRecordsListView.setAdapter(mCgmsRecordsAdapter);
-			}
-			loadAdapter(cgmsRecords);
-		}
+		showRecords(binder.getRecordStore());
 	}
 
 	@Override
@@ -208,9 +212,21 @@ public class CGMSActivity extends BleProfileServiceReadyActivity<CGMService.CGMS
 
 	private void clearRecords() {
 		if (mCgmsRecordsAdapter != null) {
-			mCgmsRecordsAdapter.clear();
-			mCgmsRecordsAdapter.notifyDataSetChanged();
+			mCgmsRecordsAdapter.setRecordStore(null);
+		}
+		mTrendView.setVisibility(View.GONE);
+	}
+
+	private void showTrend(final CGMSTrend trend) {
+		final String rate = Float.isNaN(trend.rateOfChange) ? getString(R.string.not_available_value) : getString(R.string.cgms_trend_rate, trend.rateOfChange);
+		String text = getString(R.string.cgms_trend, rate, trend.mean, trend.coefficientOfVariation,
+				trend.timeBelowRange, trend.timeInRange, trend.timeAboveRange);
+		if (trend.prediction != CGMSTrendEngine.PREDICTION_NONE) {
+			final int messageResId = trend.prediction == CGMSTrendEngine.PREDICTION_LOW ? R.string.cgms_prediction_low : R.string.cgms_prediction_high;
+			text += "\n" + getString(messageResId, Math.round(trend.minutesToThreshold));
 		}
+		mTrendView.setText(text);
+		mTrendView.setVisibility(View.VISIBLE);
 	}
 
 	private final BroadcastReceiver mBroadcastReceiver = new BroadcastReceiver() {
@@ -220,15 +236,15 @@ public class CGMSActivity extends BleProfileServiceReadyActivity<CGMService.CGMS
 
 			switch (action) {
 				case CGMService.BROADCAST_NEW_CGMS_VALUE: {
-					CGMSRecord cgmsRecord = intent.getExtras().getParcelable(CGMService.EXTRA_CGMS_RECORD);
-					if (mCgmsRecordsAdapter == null) {
-						mCgmsRecordsAdapter = new CGMSRecordsAdapter(CGMSActivity.this);
-						mRecordsListView.setAdapter(mCgmsRecordsAdapter);
-					}
-					mCgmsRecordsAdapter.addItem(cgmsRecord);
-					mCgmsRecordsAdapter.notifyDataSetChanged();
+					// The record has been added to the store already and the adapter has been notified,
+					// the store is set in case it was opened after the service had been bound or the list was cleared
+					if (mBinder != null)
+						showRecords(mBinder.getRecordStore());
 					break;
 				}
+				case CGMService.BROADCAST_TREND:
+					showTrend(intent.getParcelableExtra(CGMService.EXTRA_CGMS_TREND));
+					break;
 				case CGMService.BROADCAST_DATA_SET_CLEAR:
 					// Update GUI
 					clearRecords();
@@ -252,6 +268,7 @@ public class CGMSActivity extends BleProfileServiceReadyActivity<CGMService.CGMS
 		final IntentFilter intentFilter = new IntentFilter();
 		intentFilter.addAction(CGMService.BROADCAST_NEW_CGMS_VALUE);
 		intentFilter.addAction(CGMService.BROADCAST_DATA_SET_CLEAR);
+		intentFilter.addAction(CGMService.BROADCAST_TREND);
 		intentFilter.addAction(CGMService.OPERATION_STARTED);
 		intentFilter.addAction(CGMService.OPERATION_COMPLETED);
 		intentFilter.addAction(CGMService.OPERATION_SUPPORTED);
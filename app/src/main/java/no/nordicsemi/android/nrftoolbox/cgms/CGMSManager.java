@@ -22,25 +22,33 @@
 
 package no.nordicsemi.android.nrftoolbox.cgms;
 
+import android.bluetooth.BluetoothDevice;
 import android.bluetooth.BluetoothGatt;
 import android.bluetooth.BluetoothGattCharacteristic;
 import android.bluetooth.BluetoothGattService;
 import android.content.Context;
-import android.util.SparseArray;
+import android.os.Handler;
+import android.os.SystemClock;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.Deque;
 import java.util.LinkedList;
 import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
-import no.nordicsemi.android.ble.BleManager;
 import no.nordicsemi.android.ble.Request;
-import no.nordicsemi.android.log.Logger;
 import no.nordicsemi.android.nrftoolbox.parser.CGMMeasurementParser;
 import no.nordicsemi.android.nrftoolbox.parser.CGMSpecificOpsControlPointParser;
 import no.nordicsemi.android.nrftoolbox.parser.RecordAccessControlPointParser;
+import no.nordicsemi.android.nrftoolbox.profile.RecordingBleManager;
+import no.nordicsemi.android.nrftoolbox.profile.racp.RACPEngine;
+import no.nordicsemi.android.nrftoolbox.profile.racp.RecordAccessControlPoint;
 import no.nordicsemi.android.nrftoolbox.utility.DebugLogger;
+import no.nordicsemi.android.nrftoolbox.utility.DeferredLogger;
 
-public class CGMSManager extends BleManager<CGMSManagerCallbacks> {
+public class CGMSManager extends RecordingBleManager<CGMSManagerCallbacks> {
 	private static final String TAG = "CGMSManager";
 
 	/**
@@ -50,59 +58,53 @@ public class CGMSManager extends BleManager<CGMSManagerCallbacks> {
 	private static final UUID CGM_MEASUREMENT_UUID = UUID.fromString("00002AA7-0000-1000-8000-00805f9b34fb");
 	private static final UUID CGM_OPS_CONTROL_POINT_UUID = UUID.fromString("00002AAC-0000-1000-8000-00805f9b34fb");
 	private final static int OP_CODE_START_SESSION = 26;
+	private final static int OP_CODE_SOCP_RESPONSE_CODE = 28;
+	private final static int SOCP_RESPONSE_SUCCESS = 1;
 	/**
 	 * Record Access Control Point characteristic UUID
 	 */
 	private final static UUID RACP_UUID = UUID.fromString("00002A52-0000-1000-8000-00805f9b34fb");
 
-	private final static int OP_CODE_REPORT_STORED_RECORDS = 1;
-	private final static int OP_CODE_DELETE_STORED_RECORDS = 2;
-	private final static int OP_CODE_ABORT_OPERATION = 3;
-	private final static int OP_CODE_REPORT_NUMBER_OF_RECORDS = 4;
-	private final static int OP_CODE_NUMBER_OF_STORED_RECORDS_RESPONSE = 5;
-	private final static int OP_CODE_RESPONSE_CODE = 6;
-
-	private final static int OPERATOR_NULL = 0;
-	private final static int OPERATOR_ALL_RECORDS = 1;
-	private final static int OPERATOR_LESS_THEN_OR_EQUAL = 2;
-	private final static int OPERATOR_GREATER_THEN_OR_EQUAL = 3;
-	private final static int OPERATOR_WITHING_RANGE = 4;
-	private final static int OPERATOR_FIRST_RECORD = 5;
-	private final static int OPERATOR_LAST_RECORD = 6;
-
-	/**
-	 * The filter type is used for range operators ({@link #OPERATOR_LESS_THEN_OR_EQUAL},
-	 * {@link #OPERATOR_GREATER_THEN_OR_EQUAL}, {@link #OPERATOR_WITHING_RANGE}.<br/>
-	 * The syntax of the operand is: [Filter Type][Minimum][Maximum].<br/>
-	 * This filter selects the records by the sequence number.
-	 */
-	private final static int FILTER_TYPE_SEQUENCE_NUMBER = 1;
-	/**
-	 * The filter type is used for range operators ({@link #OPERATOR_LESS_THEN_OR_EQUAL},
-	 * {@link #OPERATOR_GREATER_THEN_OR_EQUAL}, {@link #OPERATOR_WITHING_RANGE}.<br/>
-	 * The syntax of the operand is: [Filter Type][Minimum][Maximum].<br/>
-	 * This filter selects the records by the user facing time (base time + offset time).
-	 */
-	private final static int FILTER_TYPE_USER_FACING_TIME = 2;
-	private final static int RESPONSE_SUCCESS = 1;
-	private final static int RESPONSE_OP_CODE_NOT_SUPPORTED = 2;
-	private final static int RESPONSE_INVALID_OPERATOR = 3;
-	private final static int RESPONSE_OPERATOR_NOT_SUPPORTED = 4;
-	private final static int RESPONSE_INVALID_OPERAND = 5;
-	private final static int RESPONSE_NO_RECORDS_FOUND = 6;
-	private final static int RESPONSE_ABORT_UNSUCCESSFUL = 7;
-	private final static int RESPONSE_PROCEDURE_NOT_COMPLETED = 8;
-	private final static int RESPONSE_OPERAND_NOT_SUPPORTED = 9;
-
 	private BluetoothGattCharacteristic mCGMMeasurementCharacteristic;
 	private BluetoothGattCharacteristic mCGMOpsControlPointCharacteristic;
 	private BluetoothGattCharacteristic mRecordAccessControlPointCharacteristic;
 
 	private static CGMSManager managerInstance = null;
-	private SparseArray<CGMSRecord> mRecords = new SparseArray<>();
-	private boolean mAbort;
+	private final File mStoreDirectory;
+	/**
+	 * Guards the store, the sync state and the trend engine. They are used by the GATT callbacks on the binder thread,
+	 * by the RACP timeout on the main thread and by the public methods.
+	 */
+	private final Object mLock = new Object();
+	/** Records of the connected sensor, or null if not opened yet or the store could not be opened. */
+	private volatile CGMSRecordStore mStore;
+	/** Commits notified values, so that the storage is not flushed on the GATT callback thread. */
+	private final ExecutorService mCommitExecutor = Executors.newSingleThreadExecutor();
+	private String mStoreAddress;
+	private final CGMSTrendEngine mTrendEngine = new CGMSTrendEngine();
+	/** True if records older than the last one given to the trend engine were received, the engine is rebuilt when the sync completes. */
+	private boolean mTrendOutdated;
+	private final Handler mHandler = new Handler();
+	private final RACPEngine mRACP;
+	private final RACPEngine.Operation mAllRecordsOperation = RACPEngine.Operation.allRecords();
+	private final RACPEngine.Operation mFirstRecordOperation = RACPEngine.Operation.singleRecord(false);
+	private final RACPEngine.Operation mLastRecordOperation = RACPEngine.Operation.singleRecord(true);
+	private final RACPEngine.Operation mDeleteAllRecordsOperation = RACPEngine.Operation.deleteAllRecords();
+	/** Start time of the sensor session, saved in the record store. Timestamps of records are calculated from it. */
 	private long mSessionStartTime;
 
+	private final CGMSSyncState mSyncState;
+	/**
+	 * The operator of the records report requested by the current sync, or {@link RecordAccessControlPoint#OPERATOR_NULL}
+	 * if no sync is in progress.
+	 */
+	private int mSyncOperator = RecordAccessControlPoint.OPERATOR_NULL;
+	/** The first sequence number requested by a delta sync. */
+	private int mSyncFrom;
+	private long mSyncStartTime;
+	private int mSyncTransferred;
+	private int mSyncMaxSequenceNumber;
+
 	/**
 	 * singleton implementation of HRSManager class
 	 */
@@ -115,6 +117,9 @@ public class CGMSManager extends BleManager<CGMSManagerCallbacks> {
 
 	public CGMSManager(Context context) {
 		super(context);
+		mSyncState = new CGMSSyncState(context);
+		mRACP = new RACPEngine(mRACPTransport, mRACPListener);
+		mStoreDirectory = new File(context.getFilesDir(), "cgms");
 	}
 
 	@Override
@@ -125,14 +130,15 @@ public class CGMSManager extends BleManager<CGMSManagerCallbacks> {
 	/**
 	 * BluetoothGatt callbacks for connection/disconnection, service discovery, receiving notification, etc
 	 */
-	private final BleManagerGattCallback mGattCallback = new BleManagerGattCallback() {
+	private final BleManagerGattCallback mGattCallback = new RecordingGattCallback() {
 
 		@Override
 		protected Deque<Request> initGatt(final BluetoothGatt gatt) {
+			openRecordStore(gatt.getDevice().getAddress());
+
 			final LinkedList<Request> requests = new LinkedList<>();
 			requests.add(Request.newEnableNotificationsRequest(mCGMMeasurementCharacteristic));
 			if (mCGMOpsControlPointCharacteristic != null) {
-				mSessionStartTime = System.currentTimeMillis();
 				requests.add(Request.newEnableIndicationsRequest(mCGMOpsControlPointCharacteristic));
 				requests.add(Request.newWriteRequest(mCGMOpsControlPointCharacteristic, new byte[]{OP_CODE_START_SESSION}));
 			}
@@ -162,6 +168,8 @@ public class CGMSManager extends BleManager<CGMSManagerCallbacks> {
 
 		@Override
 		public void onCharacteristicRead(final BluetoothGatt gatt, final BluetoothGattCharacteristic characteristic) {
+			super.onCharacteristicRead(gatt, characteristic);
+
 		}
 
 		@Override
@@ -169,172 +177,421 @@ public class CGMSManager extends BleManager<CGMSManagerCallbacks> {
 			mCGMOpsControlPointCharacteristic = null;
 			mCGMMeasurementCharacteristic = null;
 			mRecordAccessControlPointCharacteristic = null;
+			mRACP.reset();
+			mHandler.removeCallbacks(mRACPPoll);
+			synchronized (mLock) {
+				mSyncOperator = RecordAccessControlPoint.OPERATOR_NULL;
+			}
 		}
 
 		@Override
 		protected void onCharacteristicWrite(final BluetoothGatt gatt, final BluetoothGattCharacteristic characteristic) {
+			super.onCharacteristicWrite(gatt, characteristic);
+
 			if (characteristic.getUuid().equals(RACP_UUID)) {
-				Logger.a(mLogSession, "\"" + RecordAccessControlPointParser.parse(characteristic) + "\" sent");
+				DeferredLogger.sent(mLogSession, RecordAccessControlPointParser::parse, characteristic.getValue());
 			} else { // uuid == CGM_OPS_CONTROL_POINT_UUID
-				Logger.a(mLogSession, "\"" + CGMSpecificOpsControlPointParser.parse(characteristic) + "\" sent");
+				DeferredLogger.sent(mLogSession, CGMSpecificOpsControlPointParser::parse, characteristic.getValue());
 			}
 		}
 
 		@Override
 		public void onCharacteristicNotified(final BluetoothGatt gatt, final BluetoothGattCharacteristic characteristic) {
-			Logger.a(mLogSession, "\"" + CGMMeasurementParser.parse(characteristic) + "\" received");
+			super.onCharacteristicNotified(gatt, characteristic);
+
+			DeferredLogger.received(mLogSession, CGMMeasurementParser::parse, characteristic.getValue());
 
 			// CGM Measurement characteristic may have one or more CGM records
 			int totalSize = characteristic.getValue().length;
 			int offset = 0;
+			boolean trendUpdated = false;
 			while (offset < totalSize) {
 				final int cgmSize = characteristic.getIntValue(BluetoothGattCharacteristic.FORMAT_UINT8, offset);
 				final float cgmValue = characteristic.getFloatValue(BluetoothGattCharacteristic.FORMAT_SFLOAT, offset + 2);
 				final int sequenceNumber = characteristic.getIntValue(BluetoothGattCharacteristic.FORMAT_UINT16, offset + 4);
 				final long timestamp = mSessionStartTime + (sequenceNumber * 60000L); // Sequence number is in minutes since Start Session
 
+				synchronized (mLock) {
+					addRecord(sequenceNumber, cgmValue, timestamp);
+					if (mTrendEngine.add(timestamp, cgmValue))
+						trendUpdated = true;
+					else
+						mTrendOutdated = true;
+
+					if (mSyncOperator != RecordAccessControlPoint.OPERATOR_NULL) {
+						mSyncTransferred++;
+						mSyncMaxSequenceNumber = Math.max(mSyncMaxSequenceNumber, sequenceNumber);
+					}
+				}
+				mRACP.onRecordReceived();
+
 				//This will send callback to CGMSActivity when new concentration value is received from CGMS device
 				final CGMSRecord cgmsRecord = new CGMSRecord(sequenceNumber, cgmValue, timestamp);
-				mRecords.put(cgmsRecord.sequenceNumber, cgmsRecord);
 				mCallbacks.onCGMValueReceived(gatt.getDevice(), cgmsRecord);
 
 				offset += cgmSize;
 			}
+
+			// During a sync the trend is reported once, when it completes
+			CGMSTrend trend = null;
+			synchronized (mLock) {
+				if (trendUpdated && mSyncOperator == RecordAccessControlPoint.OPERATOR_NULL)
+					trend = new CGMSTrend(mTrendEngine, true);
+			}
+			if (trend != null)
+				mCallbacks.onTrendUpdated(gatt.getDevice(), trend);
 		}
 
 		@Override
 		protected void onCharacteristicIndicated(final BluetoothGatt gatt, final BluetoothGattCharacteristic characteristic) {
+			super.onCharacteristicIndicated(gatt, characteristic);
+
 			if (characteristic.getUuid().equals(RACP_UUID)) {
-				Logger.a(mLogSession, "\"" + RecordAccessControlPointParser.parse(characteristic) + "\" received");
+				DeferredLogger.received(mLogSession, RecordAccessControlPointParser::parse, characteristic.getValue());
+
+				// The engine writes the next request of the operation, if any
+				mRACP.onResponse(characteristic.getValue());
+				pollRACP();
+			} else { // uuid == CGM_OPS_CONTROL_POINT_UUID
+				DeferredLogger.received(mLogSession, CGMSpecificOpsControlPointParser::parse, characteristic.getValue());
+
+				final int opCode = characteristic.getIntValue(BluetoothGattCharacteristic.FORMAT_UINT8, 0);
+				if (opCode == OP_CODE_SOCP_RESPONSE_CODE && characteristic.getValue().length >= 3) {
+					final int requestedOpCode = characteristic.getIntValue(BluetoothGattCharacteristic.FORMAT_UINT8, 1);
+					final int responseCode = characteristic.getIntValue(BluetoothGattCharacteristic.FORMAT_UINT8, 2);
+					// A new session has been started, sequence numbers (time offsets) start again from 0.
+					// If the session was already running the request fails and the records obtained before are still valid.
+					if (requestedOpCode == OP_CODE_START_SESSION && responseCode == SOCP_RESPONSE_SUCCESS) {
+						mSyncState.clear(gatt.getDevice().getAddress());
+						mSessionStartTime = System.currentTimeMillis();
+						final CGMSRecordStore store = mStore;
+						if (store != null) {
+							try {
+								store.startSession(mSessionStartTime);
+							} catch (final IOException e) {
+								DebugLogger.e(TAG, "Starting session in the record store failed: " + e.getMessage());
+							}
+						}
+					}
+				}
+			}
+		}
+	};
 
-				// Record Access Control Point characteristic
-				int offset = 0;
-				final int opCode = characteristic.getIntValue(BluetoothGattCharacteristic.FORMAT_UINT8, offset);
-				offset += 2; // skip the operator
+	/**
+	 * Reports the results of RACP operations. A delta sync rejected by the sensor, as it can't filter by sequence number
+	 * (f.e. the CGMS sample from the SDK), falls back to all records.
+	 */
+	private final RACPEngine.Listener mRACPListener = new RACPEngine.Listener() {
+		@Override
+		public void onNumberOfRecords(final int number) {
+			mCallbacks.onNumberOfRecordsRequested(mBluetoothDevice, number);
+		}
 
-				if (opCode == OP_CODE_NUMBER_OF_STORED_RECORDS_RESPONSE) {
-					// We've obtained the number of all records
-					final int number = characteristic.getIntValue(BluetoothGattCharacteristic.FORMAT_UINT16, offset);
+		@Override
+		public void onCompleted(final int records) {
+			finishSync(mBluetoothDevice);
+			mCallbacks.onOperationCompleted(mBluetoothDevice);
+		}
 
-					mCallbacks.onNumberOfRecordsRequested(gatt.getDevice(), number);
+		@Override
+		public void onAborted() {
+			cancelSync();
+			mCallbacks.onOperationAborted(mBluetoothDevice);
+		}
 
-					// Request the records
-					if (number > 0) {
-						final BluetoothGattCharacteristic racpCharacteristic = mRecordAccessControlPointCharacteristic;
-						writeCharacteristic(racpCharacteristic, getOpCode(OP_CODE_REPORT_STORED_RECORDS, OPERATOR_ALL_RECORDS));
-					} else {
-						mCallbacks.onOperationCompleted(gatt.getDevice());
-					}
-				} else if (opCode == OP_CODE_RESPONSE_CODE) {
-					final int requestedOpCode = characteristic.getIntValue(BluetoothGattCharacteristic.FORMAT_UINT8, offset);
-					final int responseCode = characteristic.getIntValue(BluetoothGattCharacteristic.FORMAT_UINT8, offset + 1);
-					DebugLogger.d(TAG, "Response result for: " + requestedOpCode + " is: " + responseCode);
-
-					switch (responseCode) {
-						case RESPONSE_SUCCESS:
-							if (!mAbort)
-								mCallbacks.onOperationCompleted(gatt.getDevice());
-							else
-								mCallbacks.onOperationAborted(gatt.getDevice());
-							break;
-						case RESPONSE_NO_RECORDS_FOUND:
-							mCallbacks.onOperationCompleted(gatt.getDevice());
-							break;
-						case RESPONSE_OP_CODE_NOT_SUPPORTED:
-							mCallbacks.onOperationNotSupported(gatt.getDevice());
-							break;
-						case RESPONSE_PROCEDURE_NOT_COMPLETED:
-						case RESPONSE_ABORT_UNSUCCESSFUL:
-						default:
-							mCallbacks.onOperationFailed(gatt.getDevice());
-							break;
-					}
-					mAbort = false;
-				}
-			} else { // uuid == CGM_OPS_CONTROL_POINT_UUID
-				Logger.a(mLogSession, "\"" + CGMSpecificOpsControlPointParser.parse(characteristic) + "\" received");
+		@Override
+		public void onFailed(final int opCode, final int responseCode) {
+			DebugLogger.d(TAG, "Response result for: " + opCode + " is: " + responseCode);
+			final boolean fallback;
+			synchronized (mLock) {
+				fallback = mSyncOperator == RecordAccessControlPoint.OPERATOR_GREATER_THEN_OR_EQUAL && RecordAccessControlPoint.isFilterNotSupported(responseCode);
+				if (fallback)
+					mSyncOperator = RecordAccessControlPoint.OPERATOR_ALL_RECORDS;
 			}
+			if (fallback) {
+				DebugLogger.d(TAG, "Filtering by sequence number not supported, requesting all records");
+				startOperation(mAllRecordsOperation);
+				return;
+			}
+
+			cancelSync();
+			if (responseCode == RecordAccessControlPoint.RESPONSE_OP_CODE_NOT_SUPPORTED)
+				mCallbacks.onOperationNotSupported(mBluetoothDevice);
+			else
+				mCallbacks.onOperationFailed(mBluetoothDevice);
+		}
+
+		@Override
+		public void onTimeout(final int opCode) {
+			DebugLogger.w(TAG, "No response for: " + opCode);
+			cancelSync();
+			mCallbacks.onOperationFailed(mBluetoothDevice);
 		}
 	};
 
 	/**
-	 * Writes given operation parameters to the characteristic
+	 * Writes RACP requests given by the engine. The request is copied, the engine reuses the buffer.
+	 */
+	private final RACPEngine.Transport mRACPTransport = (buffer, offset, length) -> {
+		final BluetoothGattCharacteristic characteristic = mRecordAccessControlPointCharacteristic;
+		if (characteristic != null)
+			enqueue(Request.newWriteRequest(characteristic, buffer, offset, length));
+	};
+
+	private final Runnable mRACPPoll = this::pollRACP;
+
+	/**
+	 * Times out the RACP request if the sensor has not responded, and schedules the next check.
+	 */
+	private void pollRACP() {
+		mHandler.removeCallbacks(mRACPPoll);
+		final long delay = mRACP.poll();
+		if (delay >= 0)
+			mHandler.postDelayed(mRACPPoll, delay);
+	}
+
+	private void startOperation(final RACPEngine.Operation operation) {
+		if (mRACP.start(operation))
+			pollRACP();
+	}
+
+	/**
+	 * Starts counting records obtained by a sync.
 	 *
-	 * @param opCode   the operation code
-	 * @param operator the operator (see {@link #OPERATOR_NULL} and others
-	 * @param params   optional parameters (one for >=, <=, two for the range, none for other operators)
+	 * @param operator {@link RecordAccessControlPoint#OPERATOR_ALL_RECORDS} or {@link RecordAccessControlPoint#OPERATOR_GREATER_THEN_OR_EQUAL}
+	 * @param from     the first sequence number requested by the delta sync
+	 */
+	private void startSync(final int operator, final int from) {
+		synchronized (mLock) {
+			mSyncOperator = operator;
+			mSyncFrom = from;
+			mSyncStartTime = SystemClock.elapsedRealtime();
+			mSyncTransferred = 0;
+			mSyncMaxSequenceNumber = -1;
+		}
+	}
+
+	/**
+	 * Opens the record store of the sensor with the given address, closing the store of the previous one.
 	 */
-	private byte[] getOpCode(final int opCode, final int operator, final Integer... params) {
-		// 1 byte for opCode, 1 for operator, 1 for filter type (if parameters exists) and 2 for each parameter
-		final int size = 2 + ((params.length > 0) ? 1 : 0) + params.length * 2;
-		final byte[] data = new byte[size];
-
-		// Write the operation code
-		int offset = 0;
-		data[offset++] = (byte) opCode;
-
-		// Write the operator. This is always present but may be equal to OPERATOR_NULL
-		data[offset++] = (byte) operator;
-
-		// If parameters exists, append them. Parameters should be sorted from minimum to maximum.
-		// Currently only one or two params are allowed
-		if (params.length > 0) {
-			// Our implementation use only sequence number as a filer type
-			data[offset++] = FILTER_TYPE_SEQUENCE_NUMBER;
-
-			for (final Integer i : params) {
-				data[offset++] = (byte) (i & 0xFF);
-				data[offset++] = (byte) ((i >> 8) & 0xFF);
+	private void openRecordStore(final String address) {
+		synchronized (mLock) {
+			if (address.equals(mStoreAddress) && mStore != null)
+				return;
+			closeRecordStore();
+			try {
+				if (!mStoreDirectory.isDirectory() && !mStoreDirectory.mkdirs())
+					throw new IOException("Unable to create directory: " + mStoreDirectory);
+				final CGMSRecordStore store = mStore = new CGMSRecordStore(new File(mStoreDirectory, address.replace(":", "") + ".bin"));
+				mStoreAddress = address;
+				if (store.isTruncated()) {
+					// The lost records are obtained again by the next sync
+					DebugLogger.w(TAG, "Record store was truncated, " + store.getCommittedCount() + " records recovered");
+					mSyncState.clear(address);
+				}
+				// The session was started before the store was created, f.e. by another app. The time of the first connection
+				// is the best estimate. It is saved, so records obtained after a reconnection are not moved in time.
+				if (store.getSessionStartTime() == 0)
+					store.setSessionStartTime(System.currentTimeMillis());
+				mSessionStartTime = store.getSessionStartTime();
+			} catch (final IOException e) {
+				DebugLogger.e(TAG, "Opening the record store failed: " + e.getMessage());
+				// Without the store the records are not saved, so there are no timestamps to be consistent with
+				mSessionStartTime = System.currentTimeMillis();
 			}
+			loadTrend();
 		}
-		return data;
 	}
 
 	/**
-	 * Returns a list of CGM records obtained from this device. The key in the array is the
+	 * Feeds the trend engine with the committed records from the last statistics window. Must be called holding the lock.
 	 */
-	public SparseArray<CGMSRecord> getRecords() {
-		return mRecords;
+	private void loadTrend() {
+		mTrendEngine.reset();
+		mTrendOutdated = false;
+
+		final CGMSRecordStore store = mStore;
+		if (store == null || store.getCommittedCount() == 0)
+			return;
+		final long last = store.getTimestamp(store.getCommittedCount() - 1);
+		store.query(last - CGMSTrendEngine.DEFAULT_STATISTICS_WINDOW, Long.MAX_VALUE,
+				(index, sequenceNumber, concentration, timestamp) -> mTrendEngine.add(timestamp, concentration));
 	}
 
 	/**
-	 * Clears the records list locally
+	 * Closes the record store. Records not committed are discarded, they will be obtained again by the next sync.
+	 */
+	public void closeRecordStore() {
+		synchronized (mLock) {
+			if (mStore != null) {
+				try {
+					mStore.close();
+				} catch (final IOException e) {
+					// ignore
+				}
+				mStore = null;
+				mStoreAddress = null;
+			}
+		}
+	}
+
+	/**
+	 * Adds the record to the store. Records reported by a sync are committed when it completes. A notified value is
+	 * committed in the background if it follows the last committed record, otherwise it stays pending until the next sync
+	 * obtains the records before it. Committing it earlier would make the store drop those as duplicates.
+	 * Must be called holding the lock.
+	 */
+	private void addRecord(final int sequenceNumber, final float concentration, final long timestamp) {
+		final CGMSRecordStore store = mStore;
+		if (store == null)
+			return;
+
+		store.add(sequenceNumber, concentration, timestamp);
+		if (mSyncOperator == RecordAccessControlPoint.OPERATOR_NULL) {
+			mCommitExecutor.execute(() -> {
+				try {
+					store.commitContiguous();
+				} catch (final IOException e) {
+					// The store may have been closed in the meantime, the records will be obtained by the next sync
+					DebugLogger.e(TAG, "Committing records failed: " + e.getMessage());
+				}
+			});
+		}
+	}
+
+	/**
+	 * Commits the records of a sync. Must be called holding the lock.
+	 */
+	private boolean commitRecords() {
+		if (mStore == null)
+			return false;
+		try {
+			final int rejected = mStore.commit();
+			if (rejected > 0)
+				DebugLogger.w(TAG, rejected + " records rejected, their timestamps are older than the records before them");
+			return true;
+		} catch (final IOException e) {
+			DebugLogger.e(TAG, "Committing records failed: " + e.getMessage());
+			return false;
+		}
+	}
+
+	/**
+	 * Discards the records obtained by an aborted or failed sync. The high-water mark is not moved, they are obtained
+	 * again by the next sync. Committing a part of them could make the store drop records missing before them as duplicates.
+	 */
+	private void cancelSync() {
+		synchronized (mLock) {
+			if (mSyncOperator == RecordAccessControlPoint.OPERATOR_NULL)
+				return;
+			mSyncOperator = RecordAccessControlPoint.OPERATOR_NULL;
+			if (mStore != null)
+				mStore.rollback();
+			loadTrend();
+		}
+	}
+
+	/**
+	 * Saves the new high-water mark after a successful sync and reports the savings. A delta sync skipped the records
+	 * obtained by previous syncs, the time saved is estimated using the transfer time per record of the last sync.
+	 * A delta sync that fell back to all records saves nothing.
+	 */
+	private void finishSync(final BluetoothDevice device) {
+		final long duration;
+		final int transferred;
+		final int skipped;
+		final long microsPerRecord;
+		CGMSTrend trend = null;
+		synchronized (mLock) {
+			if (mSyncOperator == RecordAccessControlPoint.OPERATOR_NULL)
+				return;
+			if (!commitRecords()) {
+				// The high-water mark is not moved, the records will be obtained again by the next sync
+				mSyncOperator = RecordAccessControlPoint.OPERATOR_NULL;
+				return;
+			}
+
+			final String address = device.getAddress();
+			duration = SystemClock.elapsedRealtime() - mSyncStartTime;
+			transferred = mSyncTransferred;
+			microsPerRecord = transferred > 0 ? duration * 1000L / transferred : mSyncState.getMicrosPerRecord(address);
+
+			if (mSyncOperator == RecordAccessControlPoint.OPERATOR_GREATER_THEN_OR_EQUAL) {
+				skipped = mSyncState.getRecordCount(address);
+				final int highWater = Math.max(mSyncFrom - 1, mSyncMaxSequenceNumber);
+				mSyncState.update(address, highWater, skipped + transferred, microsPerRecord);
+			} else {
+				skipped = 0;
+				mSyncState.update(address, mSyncMaxSequenceNumber, transferred, microsPerRecord);
+			}
+			mSyncOperator = RecordAccessControlPoint.OPERATOR_NULL;
+
+			if (mTrendOutdated)
+				loadTrend();
+			if (mTrendEngine.getCount() > 0)
+				trend = new CGMSTrend(mTrendEngine, false);
+		}
+		if (trend != null)
+			mCallbacks.onTrendUpdated(device, trend);
+
+		final long saved = skipped * microsPerRecord / 1000L;
+		DebugLogger.d(TAG, "Sync completed: " + transferred + " records in " + duration + " ms, " + skipped + " skipped, ~" + saved + " ms saved");
+		mCallbacks.onRecordsSynchronized(device, transferred, skipped, duration, saved);
+	}
+
+	/**
+	 * Returns the store with CGM records obtained from this device, or null if the device has not been connected yet.
+	 */
+	public CGMSRecordStore getRecordStore() {
+		return mStore;
+	}
+
+	/**
+	 * Deletes the records obtained from the sensor from the local store. The sync state is cleared as well, so the next
+	 * refresh obtains all records. Other operations keep the records, new ones are added to them.
 	 */
 	public void clear() {
-		mRecords.clear();
+		synchronized (mLock) {
+			if (mStore != null) {
+				try {
+					mStore.clear();
+				} catch (final IOException e) {
+					DebugLogger.e(TAG, "Clearing the record store failed: " + e.getMessage());
+				}
+			}
+			if (mBluetoothDevice != null)
+				mSyncState.clear(mBluetoothDevice.getAddress());
+			mTrendEngine.reset();
+			mTrendOutdated = false;
+		}
 		mCallbacks.onDatasetClear(mBluetoothDevice);
 	}
 
 	/**
 	 * Sends the request to obtain the last (most recent) record from glucose device. The data will
 	 * be returned to Glucose Measurement characteristic as a notification followed by Record Access
-	 * Control Point indication with status code ({@link #RESPONSE_SUCCESS} or other in case of error.
+	 * Control Point indication with status code ({@link RecordAccessControlPoint#RESPONSE_SUCCESS} or other in case of error.
 	 */
 	public void getLastRecord() {
-		if (mRecordAccessControlPointCharacteristic == null)
+		if (mRecordAccessControlPointCharacteristic == null || mRACP.isBusy())
 			return;
 
-		clear();
 		mCallbacks.onOperationStarted(mBluetoothDevice);
-
-		final BluetoothGattCharacteristic characteristic = mRecordAccessControlPointCharacteristic;
-		writeCharacteristic(characteristic, getOpCode(OP_CODE_REPORT_STORED_RECORDS, OPERATOR_LAST_RECORD));
+		startOperation(mLastRecordOperation);
 	}
 
 	/**
 	 * Sends the request to obtain the first (oldest) record from glucose device. The data will be
 	 * returned to Glucose Measurement characteristic as a notification followed by Record Access
-	 * Control Point indication with status code ({@link #RESPONSE_SUCCESS} or other in case of error.
+	 * Control Point indication with status code ({@link RecordAccessControlPoint#RESPONSE_SUCCESS} or other in case of error.
 	 */
 	public void getFirstRecord() {
-		if (mRecordAccessControlPointCharacteristic == null)
+		if (mRecordAccessControlPointCharacteristic == null || mRACP.isBusy())
 			return;
 
-		clear();
 		mCallbacks.onOperationStarted(mBluetoothDevice);
-
-		final BluetoothGattCharacteristic characteristic = mRecordAccessControlPointCharacteristic;
-		writeCharacteristic(characteristic, getOpCode(OP_CODE_REPORT_STORED_RECORDS, OPERATOR_FIRST_RECORD));
+		startOperation(mFirstRecordOperation);
 	}
 
 	/**
@@ -344,65 +601,53 @@ public class CGMSManager extends BleManager<CGMSManagerCallbacks> {
 		if (mRecordAccessControlPointCharacteristic == null)
 			return;
 
-		mAbort = true;
-		final BluetoothGattCharacteristic characteristic = mRecordAccessControlPointCharacteristic;
-		writeCharacteristic(characteristic, getOpCode(OP_CODE_ABORT_OPERATION, OPERATOR_NULL));
+		if (mRACP.abort())
+			pollRACP();
 	}
 
 	/**
 	 * Sends the request to obtain all records from glucose device. Initially we want to notify
-	 * him/her about the number of the records so the {@link #OP_CODE_REPORT_NUMBER_OF_RECORDS}
-	 * is send. The data will be returned to Glucose Measurement characteristic as a notification
-	 * followed by Record Access Control Point indication with status code ({@link #RESPONSE_SUCCESS}
+	 * him/her about the number of the records, the records are requested as soon as the sensor reports it.
+	 * The data will be returned to Glucose Measurement characteristic as a notification
+	 * followed by Record Access Control Point indication with status code ({@link RecordAccessControlPoint#RESPONSE_SUCCESS}
 	 * or other in case of error.
 	 */
 	public void getAllRecords() {
-		if (mRecordAccessControlPointCharacteristic == null)
+		if (mRecordAccessControlPointCharacteristic == null || mRACP.isBusy())
 			return;
 
-		clear();
 		mCallbacks.onOperationStarted(mBluetoothDevice);
-
-		final BluetoothGattCharacteristic characteristic = mRecordAccessControlPointCharacteristic;
-		writeCharacteristic(characteristic, getOpCode(OP_CODE_REPORT_NUMBER_OF_RECORDS, OPERATOR_ALL_RECORDS));
+		startSync(RecordAccessControlPoint.OPERATOR_ALL_RECORDS, 0);
+		startOperation(mAllRecordsOperation);
 	}
 
 	/**
-	 * Sends the request to obtain all records from glucose device. Initially we want to notify
-	 * him/her about the number of the records so the {@link #OP_CODE_REPORT_NUMBER_OF_RECORDS}
-	 * is send. The data will be returned to Glucose Measurement characteristic as a notification
-	 * followed by Record Access Control Point indication with status code ({@link #RESPONSE_SUCCESS}
-	 * or other in case of error.
+	 * Sends the request to obtain only records newer than those obtained by previous syncs with this sensor, also
+	 * before the app was restarted. The number of new records is requested first, with the same filter. If the sensor
+	 * was never synchronized, all records are requested, see {@link #getAllRecords()}. If the sensor does not support
+	 * filtering by sequence number, all records are requested, the records already in the list are kept.
+	 * The data will be returned to Glucose Measurement characteristic as a notification followed by Record Access
+	 * Control Point indication with status code ({@link RecordAccessControlPoint#RESPONSE_SUCCESS} or other in case of error.
 	 */
 	public void refreshRecords() {
-		if (mRecordAccessControlPointCharacteristic == null)
+		if (mRecordAccessControlPointCharacteristic == null || mRACP.isBusy())
 			return;
 
-		if (mRecords.size() == 0) {
+		final int highWater = mSyncState.getHighWater(mBluetoothDevice.getAddress());
+		if (highWater < 0 || highWater >= 0xFFFF) {
 			getAllRecords();
 		} else {
 			mCallbacks.onOperationStarted(mBluetoothDevice);
-
-			// obtain the last sequence number
-			final int sequenceNumber = mRecords.keyAt(mRecords.size() - 1) + 1;
-
-			final BluetoothGattCharacteristic characteristic = mRecordAccessControlPointCharacteristic;
-			writeCharacteristic(characteristic, getOpCode(OP_CODE_REPORT_STORED_RECORDS, OPERATOR_GREATER_THEN_OR_EQUAL, sequenceNumber));
-			// Info:
-			// Operators OPERATOR_GREATER_THEN_OR_EQUAL, OPERATOR_LESS_THEN_OR_EQUAL and OPERATOR_RANGE are not supported by the CGMS sample from SDK
-			// The "Operation not supported" response will be received
+			startSync(RecordAccessControlPoint.OPERATOR_GREATER_THEN_OR_EQUAL, highWater + 1);
+			startOperation(RACPEngine.Operation.recordsFrom(highWater + 1));
 		}
 	}
 
 	public void deleteAllRecords() {
-		if (mRecordAccessControlPointCharacteristic == null)
+		if (mRecordAccessControlPointCharacteristic == null || mRACP.isBusy())
 			return;
 
-		clear();
 		mCallbacks.onOperationStarted(mBluetoothDevice);
-
-		final BluetoothGattCharacteristic characteristic = mRecordAccessControlPointCharacteristic;
-		writeCharacteristic(characteristic, getOpCode(OP_CODE_DELETE_STORED_RECORDS, OPERATOR_ALL_RECORDS));
+		startOperation(mDeleteAllRecordsOperation);
 	}
 }
-
@@ -46,4 +46,23 @@ public interface CGMSManagerCallbacks extends BleManagerCallbacks {
 
     void onNumberOfRecordsRequested(final BluetoothDevice device, final int value);
 
+    /**
+     * Called when a sync has been completed successfully.
+     *
+     * @param device         the sensor
+     * @param transferred    number of records obtained
+     * @param skipped        number of records not requested, as they had been obtained by previous syncs
+     * @param durationMillis duration of the sync
+     * @param savedMillis    estimated time that transferring the skipped records would take
+     */
+    void onRecordsSynchronized(final BluetoothDevice device, final int transferred, final int skipped, final long durationMillis, final long savedMillis);
+
+    /**
+     * Called when the glucose trend has changed, after each new CGM value and when a sync has been completed.
+     *
+     * @param device the sensor
+     * @param trend  the current trend, with {@link CGMSTrend#predictionRaised} set when a new threshold crossing is predicted
+     */
+    void onTrendUpdated(final BluetoothDevice device, final CGMSTrend trend);
+
 }
@@ -0,0 +1,627 @@
+/*
+ * Copyright (c) 2015, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package no.nordicsemi.android.nrftoolbox.cgms;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * A durable store of CGM records of a single sensor. A 14-day sensor reports about 20 000 records, so they are kept
+ * in primitive columns instead of objects, in memory and in an append-only file.
+ * <p>
+ * Records are stored in pages of a fixed number of records. Each page holds three columns: sequence numbers
+ * (<code>int</code>), glucose concentrations (<code>float</code>) and timestamps (<code>long</code>). The file starts
+ * with a header, all numbers in big endian:
+ * </p>
+ * <pre>
+ * offset  size  field
+ * 0       4     magic, "CGMS"
+ * 4       2     format version
+ * 6       2     reserved
+ * 8       4     page size, number of records in a page
+ * 12      4     number of committed records
+ * 16      4     the last sequence number of the current session, or -1
+ * 20      8     start time of the current session in milliseconds since epoch, or 0 if unknown
+ * 28      4     reserved
+ * </pre>
+ * followed by pages of <code>16 * page size</code> bytes: the sequence number column, the concentration column and
+ * the timestamp column. The number of records in the header is written after the columns have been flushed, so a
+ * batch of inserts is committed atomically. Records written after the last commit are ignored when the file is opened.
+ * If the file is shorter than the committed records require, f.e. it was truncated by a failing storage, the complete
+ * records are kept and {@link #isTruncated()} returns true.
+ * <p>
+ * Records are appended in the order of sequence numbers within a session. Records added in a batch are sorted before
+ * commit, so values notified while older records are being reported are stored in order. Records with a sequence
+ * number not greater than the last one committed in the session are duplicates and are dropped. Timestamps must be
+ * non-decreasing, which allows finding a time range by a binary search in the sparse index of the first timestamp
+ * of each page, and then within the page, in O(log n). Records older than the record before them are rejected
+ * on commit.
+ * </p>
+ * <p>
+ * Pending records, added since the last commit, may be read by index like the committed ones, so they can be shown
+ * as they arrive, but they are lost if the process dies. The time index and range queries cover committed records only.
+ * </p>
+ * <p>
+ * Changes are reported to the {@link OnChangeListener}, so a list may insert the new rows without reloading.
+ * </p>
+ * All methods are thread safe.
+ */
+public class CGMSRecordStore implements Closeable {
+	public static final int DEFAULT_PAGE_SIZE = 1024;
+	/** The maximum page size, 1 MB of columns. A header with a larger page size is not valid. */
+	public static final int MAX_PAGE_SIZE = 65536;
+
+	private static final int MAGIC = 0x43474D53; // CGMS
+	private static final short VERSION = 1;
+	private static final int HEADER_SIZE = 32;
+	private static final int RECORD_SIZE = 4 + 4 + 8;
+
+	public interface RecordVisitor {
+		/**
+		 * Called for each record in the range, in order.
+		 *
+		 * @param index          the index of the record in the store
+		 * @param sequenceNumber the sequence number
+		 * @param concentration  glucose concentration in mg/dL
+		 * @param timestamp      the time of the measurement in milliseconds since epoch
+		 */
+		void onRecord(final int index, final int sequenceNumber, final float concentration, final long timestamp);
+	}
+
+	public interface OnChangeListener {
+		/**
+		 * Called when records have been inserted at the given index, while holding the lock of the store.
+		 * It may be called on any thread and should not block or call the store.
+		 *
+		 * @param index the index of the first record inserted
+		 * @param count the number of records inserted
+		 */
+		void onRecordsInserted(final int index, final int count);
+
+		/**
+		 * Called when records have changed in any other way, f.e. the store has been cleared, while holding the lock
+		 * of the store. It may be called on any thread and should not block or call the store.
+		 */
+		void onRecordsChanged();
+	}
+
+	private static final class Page {
+		final int[] sequenceNumbers;
+		final float[] concentrations;
+		final long[] timestamps;
+
+		Page(final int size) {
+			sequenceNumbers = new int[size];
+			concentrations = new float[size];
+			timestamps = new long[size];
+		}
+	}
+
+	private final RandomAccessFile mFile;
+	private final FileChannel mChannel;
+	private final int mPageSize;
+	private final ByteBuffer mBuffer;
+	private final ArrayList<Page> mPages = new ArrayList<>();
+	/** The sparse index: timestamp of the first record of each page with committed records. */
+	private long[] mPageStartTimes = new long[16];
+
+	/** Number of committed records. */
+	private int mCount;
+	/** Number of records added since the last commit, stored after the committed ones. */
+	private int mPendingCount;
+	/** The last committed sequence number of the current session, or -1. */
+	private int mLastSequenceNumber;
+	/** Start time of the current session, or 0 if unknown. */
+	private long mSessionStartTime;
+	/** True if committed records were missing at the end of the file when it was opened. */
+	private boolean mTruncated;
+	private OnChangeListener mOnChangeListener;
+
+	public CGMSRecordStore(final File file) throws IOException {
+		this(file, DEFAULT_PAGE_SIZE);
+	}
+
+	/**
+	 * Opens the store, creating the file if it does not exist. A file with a different format is cleared.
+	 *
+	 * @param file     the file
+	 * @param pageSize number of records in a page, used for new files only, at most {@link #MAX_PAGE_SIZE}
+	 * @throws IOException if the file could not be opened or read
+	 */
+	public CGMSRecordStore(final File file, final int pageSize) throws IOException {
+		if (pageSize <= 0 || pageSize > MAX_PAGE_SIZE)
+			throw new IllegalArgumentException("Invalid page size: " + pageSize);
+		mFile = new RandomAccessFile(file, "rw");
+		mChannel = mFile.getChannel();
+		try {
+			final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+			final boolean valid = mChannel.read(header, 0) == HEADER_SIZE
+					&& header.getInt(0) == MAGIC && header.getShort(4) == VERSION
+					&& header.getInt(8) > 0 && header.getInt(8) <= MAX_PAGE_SIZE && header.getInt(12) >= 0;
+			mPageSize = valid ? header.getInt(8) : pageSize;
+			mBuffer = ByteBuffer.allocate(mPageSize * 8);
+			if (valid) {
+				mCount = header.getInt(12);
+				mLastSequenceNumber = header.getInt(16);
+				mSessionStartTime = header.getLong(20);
+				recoverTruncatedTail();
+				load();
+			} else {
+				mLastSequenceNumber = -1;
+				mChannel.truncate(0);
+				writeHeader();
+			}
+		} catch (final IOException e) {
+			mFile.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Limits the number of committed records to those fully present in the file. The header is written after
+	 * the columns, so only a damaged file may be shorter. The header is rewritten with the number of recovered records.
+	 */
+	private void recoverTruncatedTail() throws IOException {
+		final long length = mChannel.size();
+		int recovered = 0;
+		while (recovered < mCount) {
+			final int page = recovered / mPageSize;
+			// The timestamp column is the last one of a page, a record is complete if its timestamp is
+			final long timestampsOffset = pageOffset(page) + mPageSize * 8L;
+			final long available = Math.max(0, (length - timestampsOffset) / 8);
+			final int count = (int) Math.min(available, Math.min(mPageSize, mCount - page * mPageSize));
+			recovered += count;
+			if (count < mPageSize)
+				break;
+		}
+		if (recovered == mCount)
+			return;
+
+		mTruncated = true;
+		mCount = recovered;
+		if (recovered == 0) {
+			mLastSequenceNumber = -1;
+		} else if (mLastSequenceNumber >= 0) {
+			// Records of the current session were lost, the last complete one is the last committed
+			final ByteBuffer buffer = ByteBuffer.allocate(4);
+			final int page = (recovered - 1) / mPageSize;
+			mChannel.read(buffer, pageOffset(page) + (recovered - 1 - page * mPageSize) * 4L);
+			mLastSequenceNumber = Math.min(mLastSequenceNumber, buffer.getInt(0));
+		}
+		writeHeader();
+	}
+
+	private void load() throws IOException {
+		final int pages = (mCount + mPageSize - 1) / mPageSize;
+		for (int p = 0; p < pages; ++p) {
+			final Page page = new Page(mPageSize);
+			final int count = Math.min(mPageSize, mCount - p * mPageSize);
+			final long offset = pageOffset(p);
+			readColumn(offset, count * 4);
+			mBuffer.asIntBuffer().get(page.sequenceNumbers, 0, count);
+			readColumn(offset + mPageSize * 4L, count * 4);
+			mBuffer.asFloatBuffer().get(page.concentrations, 0, count);
+			readColumn(offset + mPageSize * 8L, count * 8);
+			mBuffer.asLongBuffer().get(page.timestamps, 0, count);
+			mPages.add(page);
+			setPageStartTime(p, page.timestamps[0]);
+		}
+	}
+
+	private void readColumn(final long position, final int length) throws IOException {
+		mBuffer.clear().limit(length);
+		while (mBuffer.hasRemaining()) {
+			if (mChannel.read(mBuffer, position + mBuffer.position()) < 0)
+				throw new IOException("Unexpected end of file");
+		}
+		mBuffer.flip();
+	}
+
+	private long pageOffset(final int page) {
+		return HEADER_SIZE + (long) page * mPageSize * RECORD_SIZE;
+	}
+
+	private void setPageStartTime(final int page, final long time) {
+		if (page == mPageStartTimes.length)
+			mPageStartTimes = Arrays.copyOf(mPageStartTimes, page * 2);
+		mPageStartTimes[page] = time;
+	}
+
+	/**
+	 * Sets the listener notified about changes of the records, or null.
+	 */
+	public synchronized void setOnChangeListener(final OnChangeListener listener) {
+		mOnChangeListener = listener;
+	}
+
+	/**
+	 * Returns the number of records, including pending ones.
+	 */
+	public synchronized int size() {
+		return mCount + mPendingCount;
+	}
+
+	/**
+	 * Returns the number of committed records.
+	 */
+	public synchronized int getCommittedCount() {
+		return mCount;
+	}
+
+	/**
+	 * Returns <code>true</code> if committed records were missing at the end of the file when it was opened. They are lost,
+	 * records obtained from the sensor after them should be obtained again.
+	 */
+	public synchronized boolean isTruncated() {
+		return mTruncated;
+	}
+
+	/**
+	 * Returns the last sequence number committed in the current session, or -1.
+	 */
+	public synchronized int getLastSequenceNumber() {
+		return mLastSequenceNumber;
+	}
+
+	public synchronized int getSequenceNumber(final int index) {
+		checkIndex(index);
+		return mPages.get(index / mPageSize).sequenceNumbers[index % mPageSize];
+	}
+
+	public synchronized float getConcentration(final int index) {
+		checkIndex(index);
+		return mPages.get(index / mPageSize).concentrations[index % mPageSize];
+	}
+
+	public synchronized long getTimestamp(final int index) {
+		checkIndex(index);
+		return mPages.get(index / mPageSize).timestamps[index % mPageSize];
+	}
+
+	private void checkIndex(final int index) {
+		if (index < 0 || index >= mCount + mPendingCount)
+			throw new IndexOutOfBoundsException("Index: " + index + ", size: " + (mCount + mPendingCount));
+	}
+
+	/**
+	 * Passes the record to the visitor, while holding the lock.
+	 *
+	 * @return false if there is no record with the given index, f.e. the store has been cleared
+	 */
+	public synchronized boolean get(final int index, final RecordVisitor visitor) {
+		if (index < 0 || index >= mCount + mPendingCount)
+			return false;
+		final Page page = mPages.get(index / mPageSize);
+		final int i = index % mPageSize;
+		visitor.onRecord(index, page.sequenceNumbers[i], page.concentrations[i], page.timestamps[i]);
+		return true;
+	}
+
+	/**
+	 * Returns the index of the first committed record with timestamp not lower than the given time, or
+	 * {@link #getCommittedCount()} if there is no such record. O(log n).
+	 */
+	public synchronized int lowerBound(final long time) {
+		if (mCount == 0)
+			return 0;
+		final int pages = (mCount + mPageSize - 1) / mPageSize;
+		// The last page starting at or before the time, the record must be in it or at the start of the next one
+		int low = 0, high = pages - 1;
+		while (low < high) {
+			final int mid = (low + high + 1) >>> 1;
+			if (mPageStartTimes[mid] <= time)
+				low = mid;
+			else
+				high = mid - 1;
+		}
+		final long[] timestamps = mPages.get(low).timestamps;
+		int from = 0, to = Math.min(mPageSize, mCount - low * mPageSize);
+		while (from < to) {
+			final int mid = (from + to) >>> 1;
+			if (timestamps[mid] < time)
+				from = mid + 1;
+			else
+				to = mid;
+		}
+		return low * mPageSize + from;
+	}
+
+	/**
+	 * Calls the visitor for each committed record with timestamp in the given range, without allocating memory.
+	 * The store is locked while iterating, the visitor should not block.
+	 *
+	 * @param from    the start of the range in milliseconds since epoch, inclusive
+	 * @param to      the end of the range in milliseconds since epoch, exclusive
+	 * @param visitor the visitor
+	 * @return the number of records visited
+	 */
+	public synchronized int query(final long from, final long to, final RecordVisitor visitor) {
+		final int start = lowerBound(from);
+		final int end = Math.max(start, lowerBound(to));
+		for (int i = start; i < end; ++i) {
+			final Page page = mPages.get(i / mPageSize);
+			final int j = i % mPageSize;
+			visitor.onRecord(i, page.sequenceNumbers[j], page.concentrations[j], page.timestamps[j]);
+		}
+		return end - start;
+	}
+
+	/**
+	 * Adds a record to the current batch. It becomes durable after {@link #commit()}.
+	 *
+	 * @return false if the record is a duplicate of a committed one and was dropped
+	 */
+	public synchronized boolean add(final int sequenceNumber, final float concentration, final long timestamp) {
+		if (sequenceNumber <= mLastSequenceNumber)
+			return false;
+
+		// Find the position in the batch, usually at its end
+		int position = mCount + mPendingCount;
+		while (position > mCount && sequenceNumberAt(position - 1) >= sequenceNumber)
+			position--;
+		if (position < mCount + mPendingCount && sequenceNumberAt(position) == sequenceNumber) {
+			set(position, sequenceNumber, concentration, timestamp);
+			if (mOnChangeListener != null)
+				mOnChangeListener.onRecordsChanged();
+			return true;
+		}
+
+		final int end = mCount + mPendingCount;
+		if (end / mPageSize == mPages.size())
+			mPages.add(new Page(mPageSize));
+		for (int i = end; i > position; --i)
+			move(i - 1, i);
+		set(position, sequenceNumber, concentration, timestamp);
+		mPendingCount++;
+		if (mOnChangeListener != null)
+			mOnChangeListener.onRecordsInserted(position, 1);
+		return true;
+	}
+
+	private int sequenceNumberAt(final int index) {
+		return mPages.get(index / mPageSize).sequenceNumbers[index % mPageSize];
+	}
+
+	private void set(final int index, final int sequenceNumber, final float concentration, final long timestamp) {
+		final Page page = mPages.get(index / mPageSize);
+		final int i = index % mPageSize;
+		page.sequenceNumbers[i] = sequenceNumber;
+		page.concentrations[i] = concentration;
+		page.timestamps[i] = timestamp;
+	}
+
+	private void move(final int from, final int to) {
+		final Page source = mPages.get(from / mPageSize);
+		final int i = from % mPageSize;
+		set(to, source.sequenceNumbers[i], source.concentrations[i], source.timestamps[i]);
+	}
+
+	/**
+	 * Returns the number of records added since the last commit.
+	 */
+	public synchronized int getPendingCount() {
+		return mPendingCount;
+	}
+
+	/**
+	 * Commits the pending records if their sequence numbers directly follow the last committed one, without gaps.
+	 * Committing records after a gap would make the store drop the missing ones as duplicates, see {@link #commit()}.
+	 *
+	 * @return true if the records have been committed
+	 * @throws IOException if writing failed. The records stay pending and commit may be retried.
+	 */
+	public synchronized boolean commitContiguous() throws IOException {
+		if (mPendingCount == 0 || mLastSequenceNumber < 0)
+			return false;
+		final int first = sequenceNumberAt(mCount);
+		final int last = sequenceNumberAt(mCount + mPendingCount - 1);
+		if (first != mLastSequenceNumber + 1 || last - first != mPendingCount - 1)
+			return false;
+		commit();
+		return true;
+	}
+
+	/**
+	 * Writes the records added since the last commit to the file and adds them to the time index. The columns are flushed to
+	 * the storage before the header, so either all or none of the records are committed if the process dies.
+	 * Records with a timestamp older than the record before them are rejected, as the time index requires
+	 * non-decreasing timestamps.
+	 *
+	 * @return the number of rejected records
+	 * @throws IOException if writing failed. The records stay pending and commit may be retried.
+	 */
+	public synchronized int commit() throws IOException {
+		if (mPendingCount == 0)
+			return 0;
+
+		final int start = mCount;
+		final int rejected = rejectOutOfOrder();
+		if (rejected > 0 && mOnChangeListener != null)
+			mOnChangeListener.onRecordsChanged();
+		if (mPendingCount == 0)
+			return rejected;
+		final int end = mCount + mPendingCount;
+
+		for (int p = start / mPageSize; p <= (end - 1) / mPageSize; ++p) {
+			final Page page = mPages.get(p);
+			final int from = Math.max(start, p * mPageSize) - p * mPageSize;
+			final int to = Math.min(end, (p + 1) * mPageSize) - p * mPageSize;
+			final long offset = pageOffset(p);
+
+			mBuffer.clear();
+			mBuffer.asIntBuffer().put(page.sequenceNumbers, from, to - from);
+			writeColumn(offset + from * 4L, (to - from) * 4);
+			mBuffer.clear();
+			mBuffer.asFloatBuffer().put(page.concentrations, from, to - from);
+			writeColumn(offset + mPageSize * 4L + from * 4L, (to - from) * 4);
+			mBuffer.clear();
+			mBuffer.asLongBuffer().put(page.timestamps, from, to - from);
+			writeColumn(offset + mPageSize * 8L + from * 8L, (to - from) * 8);
+		}
+		mChannel.force(false);
+
+		final int lastSequenceNumber = sequenceNumberAt(end - 1);
+		writeHeader(end, lastSequenceNumber, mSessionStartTime);
+		mChannel.force(false);
+
+		for (int p = (start + mPageSize - 1) / mPageSize; p <= (end - 1) / mPageSize; ++p)
+			setPageStartTime(p, mPages.get(p).timestamps[0]);
+		mCount = end;
+		mPendingCount = 0;
+		mLastSequenceNumber = lastSequenceNumber;
+		return rejected;
+	}
+
+	/**
+	 * Removes pending records with a timestamp older than the record before them.
+	 *
+	 * @return the number of removed records
+	 */
+	private int rejectOutOfOrder() {
+		final int start = mCount;
+		final int end = mCount + mPendingCount;
+		long previous = start > 0 ? getTimestampAt(start - 1) : Long.MIN_VALUE;
+		int kept = start;
+		for (int i = start; i < end; ++i) {
+			final long timestamp = getTimestampAt(i);
+			if (timestamp < previous)
+				continue;
+			if (kept != i)
+				move(i, kept);
+			kept++;
+			previous = timestamp;
+		}
+		mPendingCount = kept - start;
+		removeUnusedPages();
+		return end - kept;
+	}
+
+	private long getTimestampAt(final int index) {
+		return mPages.get(index / mPageSize).timestamps[index % mPageSize];
+	}
+
+	private void removeUnusedPages() {
+		while (mPages.size() > (mCount + mPendingCount + mPageSize - 1) / mPageSize)
+			mPages.remove(mPages.size() - 1);
+	}
+
+	private void writeColumn(final long position, final int length) throws IOException {
+		mBuffer.position(0).limit(length);
+		while (mBuffer.hasRemaining())
+			mChannel.write(mBuffer, position + mBuffer.position());
+	}
+
+	/**
+	 * Discards the records added since the last commit.
+	 */
+	public synchronized void rollback() {
+		if (mPendingCount > 0 && mOnChangeListener != null)
+			mOnChangeListener.onRecordsChanged();
+		mPendingCount = 0;
+		removeUnusedPages();
+	}
+
+	/**
+	 * Starts a new session of the sensor, in which sequence numbers start again from 0. Records of previous sessions
+	 * are kept. Pending records are committed first.
+	 *
+	 * @param startTime the time the session was started in milliseconds since epoch, see {@link #getSessionStartTime()}
+	 * @throws IOException if writing failed
+	 */
+	public synchronized void startSession(final long startTime) throws IOException {
+		commit();
+		writeHeader(mCount, -1, startTime);
+		mChannel.force(false);
+		mLastSequenceNumber = -1;
+		mSessionStartTime = startTime;
+	}
+
+	/**
+	 * Returns the start time of the current session in milliseconds since epoch, or 0 if unknown. Sequence numbers are
+	 * minutes since the session start, so the timestamps of records are calculated from this time, also after reconnection.
+	 */
+	public synchronized long getSessionStartTime() {
+		return mSessionStartTime;
+	}
+
+	/**
+	 * Sets the start time of the current session, f.e. an estimate if the session was not started by this store.
+	 *
+	 * @param startTime the time in milliseconds since epoch
+	 * @throws IOException if writing failed
+	 */
+	public synchronized void setSessionStartTime(final long startTime) throws IOException {
+		writeHeader(mCount, mLastSequenceNumber, startTime);
+		mChannel.force(false);
+		mSessionStartTime = startTime;
+	}
+
+	/**
+	 * Removes all records, including pending ones. The session start time is kept, as the session of the sensor continues.
+	 *
+	 * @throws IOException if writing failed
+	 */
+	public synchronized void clear() throws IOException {
+		mCount = 0;
+		mPendingCount = 0;
+		mLastSequenceNumber = -1;
+		mPages.clear();
+		if (mOnChangeListener != null)
+			mOnChangeListener.onRecordsChanged();
+		mChannel.truncate(HEADER_SIZE);
+		writeHeader();
+	}
+
+	private void writeHeader() throws IOException {
+		writeHeader(mCount, mLastSequenceNumber, mSessionStartTime);
+		mChannel.force(false);
+	}
+
+	private void writeHeader(final int count, final int lastSequenceNumber, final long sessionStartTime) throws IOException {
+		final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+		header.putInt(0, MAGIC);
+		header.putShort(4, VERSION);
+		header.putInt(8, mPageSize);
+		header.putInt(12, count);
+		header.putInt(16, lastSequenceNumber);
+		header.putLong(20, sessionStartTime);
+		while (header.hasRemaining())
+			mChannel.write(header, header.position());
+	}
+
+	/**
+	 * Closes the file. Pending records are discarded.
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		if (mPendingCount > 0 && mOnChangeListener != null)
+			mOnChangeListener.onRecordsChanged();
+		mPendingCount = 0;
+		mFile.close();
+	}
+}
@@ -1,79 +1,163 @@
 package no.nordicsemi.android.nrftoolbox.cgms;
 
 import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.support.v7.widget.RecyclerView;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
-import android.widget.BaseAdapter;
 import android.widget.TextView;
 
 import java.text.SimpleDateFormat;
-import java.util.ArrayList;
 import java.util.Date;
-import java.util.List;
 import java.util.Locale;
 
 import no.nordicsemi.android.nrftoolbox.R;
+import no.nordicsemi.android.nrftoolbox.widget.ChangeCoalescer;
 
-public class CGMSRecordsAdapter extends BaseAdapter {
+/**
+ * Shows the records directly from the {@link CGMSRecordStore}, reading the columns of each visible row.
+ * No record objects are created.
+ * <p>
+ * Records are added to the store on another thread. Changes reported by the store are coalesced and the list is notified
+ * at most once per frame, with a range insert when records have been appended, so a bulk download does not rebind the
+ * whole list for each record.
+ * </p>
+ */
+public class CGMSRecordsAdapter extends RecyclerView.Adapter<CGMSRecordsAdapter.ViewHolder> {
 	private final static SimpleDateFormat mTimeFormat = new SimpleDateFormat("dd.MM.yyyy HH:mm", Locale.US);
 
-	private List<CGMSRecord> mRecords;
+	private final Handler mHandler = new Handler(Looper.getMainLooper());
+	private final ChangeCoalescer mChanges;
+	private CGMSRecordStore mStore;
+	/** Number of records the list has been notified about. Records are added on another thread. */
+	private int mCount;
 	private LayoutInflater mInflater;
 
 	public CGMSRecordsAdapter(final Context context) {
-		mRecords = new ArrayList<>();
-		mInflater = (LayoutInflater) context.getSystemService(Context.LAYOUT_INFLATER_SERVICE);
+		mInflater = LayoutInflater.from(context);
+		mChanges = new ChangeCoalescer(mChangeListener, SystemClock::uptimeMillis);
 	}
 
-	@Override
-	public int getCount() {
-		return mRecords.size();
-	}
+	/**
+	 * Shows the records from the given store. Setting the same store again does nothing, new records are shown
+	 * as the store reports them.
+	 *
+	 * @param store the store, or null to show no records
+	 */
+	public void setRecordStore(final CGMSRecordStore store) {
+		if (store == mStore)
+			return;
 
-	@Override
-	public Object getItem(int i) {
-		return null;
+		if (mStore != null)
+			mStore.setOnChangeListener(null);
+		mHandler.removeCallbacks(mPoll);
+		mChanges.reset();
+		mStore = store;
+		if (store != null) {
+			// The records added before the listener is set are counted, the following are reported
+			synchronized (store) {
+				store.setOnChangeListener(mOnChangeListener);
+				mCount = store.size();
+			}
+		} else {
+			mCount = 0;
+		}
+		notifyDataSetChanged();
 	}
 
-	@Override
-	public long getItemId(int i) {
-		return i;
-	}
+	/**
+	 * Called by the store on the thread adding records.
+	 */
+	private final CGMSRecordStore.OnChangeListener mOnChangeListener = new CGMSRecordStore.OnChangeListener() {
+		@Override
+		public void onRecordsInserted(final int index, final int count) {
+			if (mChanges.onItemRangeInserted(index, count))
+				mHandler.post(mPoll);
+		}
 
-	@Override
-	public View getView(final int position, View convertView, ViewGroup parent) {
-		ViewHolder viewHolder;
-		if (convertView == null) {
-			convertView = mInflater.inflate(R.layout.activity_feature_cgms_item, parent, false);
-			viewHolder = new ViewHolder();
-			viewHolder.concentration = convertView.findViewById(R.id.cgms_concentration);
-			viewHolder.time = convertView.findViewById(R.id.time);
-			viewHolder.details = convertView.findViewById(R.id.details);
-			convertView.setTag(viewHolder);
-		} else {
-			viewHolder = (ViewHolder) convertView.getTag();
+		@Override
+		public void onRecordsChanged() {
+			if (mChanges.onDataSetChanged())
+				mHandler.post(mPoll);
 		}
+	};
 
-		final CGMSRecord cgmsRecord = mRecords.get(position);
-		viewHolder.concentration.setText(String.valueOf(cgmsRecord.glucoseConcentration));
-		viewHolder.details.setText(viewHolder.details.getResources().getString(R.string.cgms_details, cgmsRecord.sequenceNumber));
-		viewHolder.time.setText(mTimeFormat.format(new Date(cgmsRecord.timestamp)));
+	private final Runnable mPoll = new Runnable() {
+		@Override
+		public void run() {
+			final long delay = mChanges.poll();
+			if (delay >= 0)
+				mHandler.postDelayed(this, delay);
+		}
+	};
 
-		return convertView;
+	/**
+	 * Called on the UI thread, at most once per frame.
+	 */
+	private final ChangeCoalescer.Listener mChangeListener = new ChangeCoalescer.Listener() {
+		@Override
+		public void onItemRangeInserted(final int positionStart, final int itemCount) {
+			mCount += itemCount;
+			notifyItemRangeInserted(positionStart, itemCount);
+		}
+
+		@Override
+		public void onDataSetChanged() {
+			final CGMSRecordStore store = mStore;
+			if (store != null) {
+				// Changes reported since the notification was dispatched are counted here already
+				synchronized (store) {
+					mChanges.reset();
+					mCount = store.size();
+				}
+			} else {
+				mCount = 0;
+			}
+			notifyDataSetChanged();
+		}
+	};
+
+	@Override
+	public ViewHolder onCreateViewHolder(final ViewGroup parent, final int viewType) {
+		final View view = mInflater.inflate(R.layout.activity_feature_cgms_item, parent, false);
+		return new ViewHolder(view);
 	}
 
-	public void addItem(final CGMSRecord record) {
-		mRecords.add(record);
+	@Override
+	public void onBindViewHolder(final ViewHolder holder, final int position) {
+		// The store may have been cleared before the list was notified
+		if (mStore == null || !mStore.get(position, holder)) {
+			holder.concentration.setText(null);
+			holder.details.setText(null);
+			holder.time.setText(null);
+		}
 	}
 
-	public void clear() {
-		mRecords.clear();
+	@Override
+	public int getItemCount() {
+		return mCount;
 	}
 
-	private static class ViewHolder {
-		TextView time;
-		TextView details;
-		TextView concentration;
+	public static class ViewHolder extends RecyclerView.ViewHolder implements CGMSRecordStore.RecordVisitor {
+		private final TextView time;
+		private final TextView details;
+		private final TextView concentration;
+
+		ViewHolder(final View view) {
+			super(view);
+			concentration = view.findViewById(R.id.cgms_concentration);
+			time = view.findViewById(R.id.time);
+			details = view.findViewById(R.id.details);
+		}
+
+		@Override
+		public void onRecord(final int index, final int sequenceNumber, final float concentration, final long timestamp) {
+			this.concentration.setText(String.valueOf(concentration));
+			details.setText(details.getResources().getString(R.string.cgms_details, sequenceNumber));
+			time.setText(mTimeFormat.format(new Date(timestamp)));
+		}
 	}
 }
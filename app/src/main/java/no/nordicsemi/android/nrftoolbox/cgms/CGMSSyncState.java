@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2015, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package no.nordicsemi.android.nrftoolbox.cgms;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+/**
+ * Keeps the synchronization state of each sensor, so a sync may request only records newer than those obtained before,
+ * also after the app was restarted. The state is kept in private shared preferences, keyed by the device address.
+ * <p>
+ * The high-water mark is the highest sequence number (time offset) of a record obtained by a completed sync. All records
+ * up to it have been obtained, so the next sync may start after it.
+ * </p>
+ */
+/* package */ class CGMSSyncState {
+	private static final String PREFERENCES = "cgms_sync";
+	private static final String KEY_HIGH_WATER = "high_water_";
+	private static final String KEY_RECORD_COUNT = "record_count_";
+	private static final String KEY_MICROS_PER_RECORD = "micros_per_record_";
+
+	private final SharedPreferences mPreferences;
+
+	/* package */ CGMSSyncState(final Context context) {
+		mPreferences = context.getSharedPreferences(PREFERENCES, Context.MODE_PRIVATE);
+	}
+
+	/**
+	 * Returns the highest sequence number obtained from the sensor, or -1 if unknown.
+	 */
+	/* package */ int getHighWater(final String address) {
+		return mPreferences.getInt(KEY_HIGH_WATER + address, -1);
+	}
+
+	/**
+	 * Returns the number of records obtained up to the high-water mark.
+	 */
+	/* package */ int getRecordCount(final String address) {
+		return mPreferences.getInt(KEY_RECORD_COUNT + address, 0);
+	}
+
+	/**
+	 * Returns the average transfer time of a single record measured during the last sync that obtained any, in microseconds.
+	 */
+	/* package */ long getMicrosPerRecord(final String address) {
+		return mPreferences.getLong(KEY_MICROS_PER_RECORD + address, 0);
+	}
+
+	/* package */ void update(final String address, final int highWater, final int recordCount, final long microsPerRecord) {
+		mPreferences.edit()
+				.putInt(KEY_HIGH_WATER + address, highWater)
+				.putInt(KEY_RECORD_COUNT + address, recordCount)
+				.putLong(KEY_MICROS_PER_RECORD + address, microsPerRecord)
+				.apply();
+	}
+
+	/**
+	 * Forgets the state of the sensor, f.e. when a new session has been started and the sequence numbers start from 0.
+	 */
+	/* package */ void clear(final String address) {
+		mPreferences.edit()
+				.remove(KEY_HIGH_WATER + address)
+				.remove(KEY_RECORD_COUNT + address)
+				.apply();
+	}
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2015, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.nrftoolbox.cgms;
+
+import android.os.Parcel;
+import android.os.Parcelable;
+
+/**
+ * A snapshot of the {@link CGMSTrendEngine} state, sent to the activity.
+ */
+public class CGMSTrend implements Parcelable {
+	/** The rate of change in mg/dL per minute, or NaN if not known yet. */
+	public final float rateOfChange;
+	/** The mean concentration in mg/dL. */
+	public final float mean;
+	/** The coefficient of variation in percent. */
+	public final float coefficientOfVariation;
+	public final float timeBelowRange;
+	public final float timeInRange;
+	public final float timeAboveRange;
+	/** The current prediction, see {@link CGMSTrendEngine#PREDICTION_LOW} and others. */
+	public final int prediction;
+	/** Whether the prediction has just started. */
+	public final boolean predictionRaised;
+	/** Minutes to the predicted threshold crossing, or NaN if there is no prediction. */
+	public final float minutesToThreshold;
+
+	/* package */ CGMSTrend(final CGMSTrendEngine engine, final boolean live) {
+		synchronized (engine) {
+			rateOfChange = (float) engine.getRateOfChange();
+			mean = (float) engine.getMean();
+			coefficientOfVariation = (float) engine.getCoefficientOfVariation();
+			timeBelowRange = engine.getTimeBelowRange();
+			timeInRange = engine.getTimeInRange();
+			timeAboveRange = engine.getTimeAboveRange();
+			prediction = engine.getPrediction();
+			predictionRaised = live && engine.getRaisedPrediction() != CGMSTrendEngine.PREDICTION_NONE;
+			minutesToThreshold = (float) engine.getMinutesToThreshold();
+		}
+	}
+
+	protected CGMSTrend(final Parcel in) {
+		rateOfChange = in.readFloat();
+		mean = in.readFloat();
+		coefficientOfVariation = in.readFloat();
+		timeBelowRange = in.readFloat();
+		timeInRange = in.readFloat();
+		timeAboveRange = in.readFloat();
+		prediction = in.readInt();
+		predictionRaised = in.readInt() != 0;
+		minutesToThreshold = in.readFloat();
+	}
+
+	public static final Creator<CGMSTrend> CREATOR = new Creator<CGMSTrend>() {
+		@Override
+		public CGMSTrend createFromParcel(final Parcel in) {
+			return new CGMSTrend(in);
+		}
+
+		@Override
+		public CGMSTrend[] newArray(final int size) {
+			return new CGMSTrend[size];
+		}
+	};
+
+	@Override
+	public int describeContents() {
+		return 0;
+	}
+
+	@Override
+	public void writeToParcel(final Parcel parcel, final int flags) {
+		parcel.writeFloat(rateOfChange);
+		parcel.writeFloat(mean);
+		parcel.writeFloat(coefficientOfVariation);
+		parcel.writeFloat(timeBelowRange);
+		parcel.writeFloat(timeInRange);
+		parcel.writeFloat(timeAboveRange);
+		parcel.writeInt(prediction);
+		parcel.writeInt(predictionRaised ? 1 : 0);
+		parcel.writeFloat(minutesToThreshold);
+	}
+}
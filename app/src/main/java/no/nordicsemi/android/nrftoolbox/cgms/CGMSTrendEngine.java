@@ -0,0 +1,362 @@
+/*
+ * Copyright (c) 2015, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.nrftoolbox.cgms;
+
+/**
+ * Incremental glucose analytics, updated with each CGM measurement in O(1) amortized time.
+ * <p>
+ * The engine keeps two sliding windows of samples in ring buffers with running sums:
+ * <ul>
+ * <li>the rate window (15 minutes by default) gives the rate of change, the slope of the least squares line
+ * through its samples, and the prediction of threshold crossings,</li>
+ * <li>the statistics window (24 hours by default) gives the mean, the coefficient of variation and the
+ * time below, in and above the target range.</li>
+ * </ul>
+ * The sums are recomputed from the buffer each time as many samples have been evicted as the buffer holds,
+ * relative to the oldest sample, so rounding errors do not accumulate and the time values stay small.
+ * </p>
+ * <p>
+ * A threshold crossing is predicted when the line through the current value with the current rate of change
+ * crosses the low or high limit within the prediction horizon. A prediction is raised once, when it starts.
+ * </p>
+ * Samples must be added in time order, older ones are rejected. All methods are thread safe.
+ */
+public class CGMSTrendEngine {
+	public static final int PREDICTION_NONE = 0;
+	public static final int PREDICTION_LOW = 1;
+	public static final int PREDICTION_HIGH = 2;
+
+	public static final long DEFAULT_RATE_WINDOW = 15 * 60000L;
+	public static final long DEFAULT_STATISTICS_WINDOW = 24 * 3600000L;
+	public static final long DEFAULT_PREDICTION_HORIZON = 30 * 60000L;
+	/** The default low limit of the target range in mg/dL. */
+	public static final float DEFAULT_LOW = 70.0f;
+	/** The default high limit of the target range in mg/dL. */
+	public static final float DEFAULT_HIGH = 180.0f;
+
+	/** The minimum number of samples in the rate window needed to calculate the rate of change. */
+	private static final int MIN_RATE_SAMPLES = 3;
+	private static final double MILLIS_PER_MINUTE = 60000.0;
+
+	/**
+	 * Samples from the last {@link #length} milliseconds, with running sums of time (in minutes since
+	 * {@link #origin}) and value.
+	 */
+	private static final class Window {
+		private final long length;
+		private final float low;
+		private final float high;
+
+		private long[] times = new long[16];
+		private float[] values = new float[16];
+		private int head;
+		private int size;
+		private int evicted;
+
+		private long origin;
+		private double sumT, sumTT, sumTV, sumV, sumVV;
+		private int below, above;
+
+		Window(final long length, final float low, final float high) {
+			this.length = length;
+			this.low = low;
+			this.high = high;
+		}
+
+		void add(final long time, final float value) {
+			// Evict samples that are out of the window now
+			while (size > 0 && times[head] <= time - length) {
+				remove(times[head], values[head]);
+				head = (head + 1) % times.length;
+				size--;
+				evicted++;
+			}
+			if (size == 0) {
+				clearSums();
+				origin = time;
+				evicted = 0;
+			} else if (evicted >= times.length) {
+				rebuild();
+			}
+
+			if (size == times.length)
+				grow();
+			final int tail = (head + size) % times.length;
+			times[tail] = time;
+			values[tail] = value;
+			size++;
+			insert(time, value);
+		}
+
+		/**
+		 * Returns the slope of the least squares line through the samples, in mg/dL per minute,
+		 * or {@link Double#NaN} if there are not enough samples.
+		 */
+		double getSlope() {
+			if (size < MIN_RATE_SAMPLES)
+				return Double.NaN;
+			final double denominator = size * sumTT - sumT * sumT;
+			if (denominator <= 1e-9)
+				return Double.NaN;
+			return (size * sumTV - sumT * sumV) / denominator;
+		}
+
+		double getMean() {
+			return size > 0 ? sumV / size : Double.NaN;
+		}
+
+		double getStandardDeviation() {
+			if (size == 0)
+				return Double.NaN;
+			final double mean = sumV / size;
+			return Math.sqrt(Math.max(0.0, sumVV / size - mean * mean));
+		}
+
+		void clear() {
+			head = size = evicted = 0;
+			clearSums();
+		}
+
+		private void insert(final long time, final float value) {
+			final double t = (time - origin) / MILLIS_PER_MINUTE;
+			sumT += t;
+			sumTT += t * t;
+			sumTV += t * value;
+			sumV += value;
+			sumVV += (double) value * value;
+			if (value < low)
+				below++;
+			else if (value > high)
+				above++;
+		}
+
+		private void remove(final long time, final float value) {
+			final double t = (time - origin) / MILLIS_PER_MINUTE;
+			sumT -= t;
+			sumTT -= t * t;
+			sumTV -= t * value;
+			sumV -= value;
+			sumVV -= (double) value * value;
+			if (value < low)
+				below--;
+			else if (value > high)
+				above--;
+		}
+
+		private void clearSums() {
+			sumT = sumTT = sumTV = sumV = sumVV = 0.0;
+			below = above = 0;
+		}
+
+		/** Recomputes the sums relative to the oldest sample. Called at most once per buffer length of evictions. */
+		private void rebuild() {
+			clearSums();
+			origin = times[head];
+			for (int i = 0; i < size; ++i) {
+				final int j = (head + i) % times.length;
+				insert(times[j], values[j]);
+			}
+			evicted = 0;
+		}
+
+		private void grow() {
+			final long[] newTimes = new long[times.length * 2];
+			final float[] newValues = new float[values.length * 2];
+			for (int i = 0; i < size; ++i) {
+				final int j = (head + i) % times.length;
+				newTimes[i] = times[j];
+				newValues[i] = values[j];
+			}
+			times = newTimes;
+			values = newValues;
+			head = 0;
+		}
+	}
+
+	private final Window mRateWindow;
+	private final Window mStatisticsWindow;
+	private final float mLow;
+	private final float mHigh;
+	private final double mHorizonMinutes;
+
+	private int mCount;
+	private long mLastTimestamp;
+	private float mLastConcentration;
+	private int mPrediction;
+	private int mRaisedPrediction;
+	private double mMinutesToThreshold = Double.NaN;
+
+	public CGMSTrendEngine() {
+		this(DEFAULT_RATE_WINDOW, DEFAULT_STATISTICS_WINDOW, DEFAULT_LOW, DEFAULT_HIGH, DEFAULT_PREDICTION_HORIZON);
+	}
+
+	/**
+	 * Creates the engine.
+	 *
+	 * @param rateWindow        the length of the window used for the rate of change, in milliseconds
+	 * @param statisticsWindow  the length of the window used for the mean, variation and time in range, in milliseconds
+	 * @param low               the low limit of the target range in mg/dL
+	 * @param high              the high limit of the target range in mg/dL
+	 * @param predictionHorizon how far threshold crossings are predicted, in milliseconds
+	 */
+	public CGMSTrendEngine(final long rateWindow, final long statisticsWindow, final float low, final float high, final long predictionHorizon) {
+		mRateWindow = new Window(rateWindow, low, high);
+		mStatisticsWindow = new Window(statisticsWindow, low, high);
+		mLow = low;
+		mHigh = high;
+		mHorizonMinutes = predictionHorizon / MILLIS_PER_MINUTE;
+	}
+
+	/**
+	 * Adds a sample and updates the trend. Use {@link #getRaisedPrediction()} to check whether the sample
+	 * started a new threshold crossing prediction.
+	 *
+	 * @param timestamp     the time of the measurement in milliseconds
+	 * @param concentration the glucose concentration in mg/dL
+	 * @return false if the sample was rejected, as it was not newer than the last one or the value was not finite
+	 */
+	public synchronized boolean add(final long timestamp, final float concentration) {
+		if (mCount > 0 && timestamp <= mLastTimestamp)
+			return false;
+		if (Float.isNaN(concentration) || Float.isInfinite(concentration))
+			return false;
+
+		mRateWindow.add(timestamp, concentration);
+		mStatisticsWindow.add(timestamp, concentration);
+		mCount++;
+		mLastTimestamp = timestamp;
+		mLastConcentration = concentration;
+
+		int prediction = PREDICTION_NONE;
+		double minutes = Double.NaN;
+		final double rate = mRateWindow.getSlope();
+		if (rate < 0 && concentration >= mLow) {
+			minutes = (concentration - mLow) / -rate;
+			if (minutes <= mHorizonMinutes)
+				prediction = PREDICTION_LOW;
+		} else if (rate > 0 && concentration <= mHigh) {
+			minutes = (mHigh - concentration) / rate;
+			if (minutes <= mHorizonMinutes)
+				prediction = PREDICTION_HIGH;
+		}
+		mRaisedPrediction = prediction != PREDICTION_NONE && prediction != mPrediction ? prediction : PREDICTION_NONE;
+		mPrediction = prediction;
+		mMinutesToThreshold = prediction != PREDICTION_NONE ? minutes : Double.NaN;
+		return true;
+	}
+
+	/**
+	 * Removes all samples.
+	 */
+	public synchronized void reset() {
+		mRateWindow.clear();
+		mStatisticsWindow.clear();
+		mCount = 0;
+		mLastTimestamp = 0;
+		mLastConcentration = 0;
+		mPrediction = mRaisedPrediction = PREDICTION_NONE;
+		mMinutesToThreshold = Double.NaN;
+	}
+
+	/**
+	 * Returns the number of samples added since the engine was created or reset.
+	 */
+	public synchronized int getCount() {
+		return mCount;
+	}
+
+	public synchronized long getLastTimestamp() {
+		return mLastTimestamp;
+	}
+
+	public synchronized float getLastConcentration() {
+		return mLastConcentration;
+	}
+
+	/**
+	 * Returns the rate of change in mg/dL per minute, or {@link Double#NaN} if the rate window has not enough samples.
+	 */
+	public synchronized double getRateOfChange() {
+		return mRateWindow.getSlope();
+	}
+
+	/**
+	 * Returns the mean concentration in the statistics window in mg/dL, or {@link Double#NaN} if there are no samples.
+	 */
+	public synchronized double getMean() {
+		return mStatisticsWindow.getMean();
+	}
+
+	/**
+	 * Returns the coefficient of variation in the statistics window in percent, or {@link Double#NaN} if there are no samples.
+	 */
+	public synchronized double getCoefficientOfVariation() {
+		final double mean = mStatisticsWindow.getMean();
+		return mean > 0 ? 100.0 * mStatisticsWindow.getStandardDeviation() / mean : Double.NaN;
+	}
+
+	/**
+	 * Returns the percentage of samples in the statistics window below the target range.
+	 */
+	public synchronized float getTimeBelowRange() {
+		final Window window = mStatisticsWindow;
+		return window.size > 0 ? 100.0f * window.below / window.size : 0.0f;
+	}
+
+	/**
+	 * Returns the percentage of samples in the statistics window within the target range.
+	 */
+	public synchronized float getTimeInRange() {
+		final Window window = mStatisticsWindow;
+		return window.size > 0 ? 100.0f * (window.size - window.below - window.above) / window.size : 0.0f;
+	}
+
+	/**
+	 * Returns the percentage of samples in the statistics window above the target range.
+	 */
+	public synchronized float getTimeAboveRange() {
+		final Window window = mStatisticsWindow;
+		return window.size > 0 ? 100.0f * window.above / window.size : 0.0f;
+	}
+
+	/**
+	 * Returns the current prediction, {@link #PREDICTION_LOW}, {@link #PREDICTION_HIGH} or {@link #PREDICTION_NONE}.
+	 */
+	public synchronized int getPrediction() {
+		return mPrediction;
+	}
+
+	/**
+	 * Returns the prediction started by the last sample, or {@link #PREDICTION_NONE} if it did not start any.
+	 */
+	public synchronized int getRaisedPrediction() {
+		return mRaisedPrediction;
+	}
+
+	/**
+	 * Returns the number of minutes until the predicted threshold crossing, or {@link Double#NaN} if there is no prediction.
+	 */
+	public synchronized double getMinutesToThreshold() {
+		return mMinutesToThreshold;
+	}
+}
@@ -10,7 +10,6 @@ import android.content.Intent;
 import android.content.IntentFilter;
 import android.support.v4.app.NotificationCompat;
 import android.support.v4.content.LocalBroadcastManager;
-import android.util.SparseArray;
 
 import no.nordicsemi.android.ble.BleManager;
 import no.nordicsemi.android.log.Logger;
@@ -23,6 +22,7 @@ public class CGMService extends BleProfileService implements CGMSManagerCallback
     private static final String ACTION_DISCONNECT = "no.nordicsemi.android.nrftoolbox.cgms.ACTION_DISCONNECT";
     public static final String BROADCAST_NEW_CGMS_VALUE = "no.nordicsemi.android.nrftoolbox.cgms.BROADCAST_NEW_CGMS_VALUE";
     public static final String BROADCAST_DATA_SET_CLEAR = "no.nordicsemi.android.nrftoolbox.cgms.BROADCAST_DATA_SET_CLEAR";
+    public static final String BROADCAST_TREND = "no.nordicsemi.android.nrftoolbox.cgms.BROADCAST_TREND";
     public static final String OPERATION_STARTED = "no.nordicsemi.android.nrftoolbox.cgms.OPERATION_STARTED";
     public static final String OPERATION_COMPLETED = "no.nordicsemi.android.nrftoolbox.cgms.OPERATION_COMPLETED";
     public static final String OPERATION_SUPPORTED = "no.nordicsemi.android.nrftoolbox.cgms.OPERATION_SUPPORTED";
@@ -30,6 +30,7 @@ public class CGMService extends BleProfileService implements CGMSManagerCallback
     public static final String OPERATION_FAILED = "no.nordicsemi.android.nrftoolbox.cgms.OPERATION_FAILED";
     public static final String OPERATION_ABORTED = "no.nordicsemi.android.nrftoolbox.cgms.OPERATION_ABORTED";
     public static final String EXTRA_CGMS_RECORD = "no.nordicsemi.android.nrftoolbox.cgms.EXTRA_CGMS_RECORD";
+    public static final String EXTRA_CGMS_TREND = "no.nordicsemi.android.nrftoolbox.cgms.EXTRA_CGMS_TREND";
     public static final String EXTRA_DATA = "no.nordicsemi.android.nrftoolbox.cgms.EXTRA_DATA";
 
     private final static int NOTIFICATION_ID = 229;
@@ -45,12 +46,12 @@ public class CGMService extends BleProfileService implements CGMSManagerCallback
 
     public class CGMSBinder extends LocalBinder {
         /**
-         * Returns all records as a sparse array where sequence number is the key.
+         * Returns the store with all records obtained from the sensor.
          *
-         * @return the records list
+         * @return the record store, or null if the sensor has not been connected yet
          */
-        public SparseArray<CGMSRecord> getRecords() {
-            return mManager.getRecords();
+        public CGMSRecordStore getRecordStore() {
+            return mManager.getRecordStore();
         }
 
         /**
@@ -93,7 +94,8 @@ public class CGMService extends BleProfileService implements CGMSManagerCallback
         }
 
 		/**
-         * Sends the request to obtain all records from glucose device with sequence number greater than the last one already obtained.
+         * Sends the request to obtain all records from glucose device with sequence number greater than the last one obtained
+         * by previous syncs, see {@link CGMSManager#refreshRecords()}.
          * The data will be returned to Glucose Measurement characteristic as a series of notifications followed by Record Access Control Point
          * indication with status code ({@link CGMSManager#RESPONSE_SUCCESS} or other in case of error.
          */
@@ -145,6 +147,7 @@ public class CGMService extends BleProfileService implements CGMSManagerCallback
         unregisterReceiver(mDisconnectActionBroadcastReceiver);
 
         super.onDestroy();
+        mManager.closeRecordStore();
     }
 
     @Override
@@ -271,4 +274,27 @@ public class CGMService extends BleProfileService implements CGMSManagerCallback
     public void onNumberOfRecordsRequested(final BluetoothDevice device, int value) {
         showToast(getResources().getQuantityString(R.plurals.gls_progress, value, value));
     }
+
+    @Override
+    public void onRecordsSynchronized(final BluetoothDevice device, final int transferred, final int skipped, final long durationMillis, final long savedMillis) {
+        final String message = getString(R.string.cgms_sync_statistics, transferred, durationMillis, skipped, savedMillis);
+        Logger.i(getLogSession(), message);
+        if (skipped > 0)
+            showToast(message);
+    }
+
+    @Override
+    public void onTrendUpdated(final BluetoothDevice device, final CGMSTrend trend) {
+        final Intent broadcast = new Intent(BROADCAST_TREND);
+        broadcast.putExtra(EXTRA_DEVICE, getBluetoothDevice());
+        broadcast.putExtra(EXTRA_CGMS_TREND, trend);
+        LocalBroadcastManager.getInstance(this).sendBroadcast(broadcast);
+
+        if (trend.predictionRaised) {
+            final int messageResId = trend.prediction == CGMSTrendEngine.PREDICTION_LOW ? R.string.cgms_prediction_low : R.string.cgms_prediction_high;
+            final String message = getString(messageResId, Math.round(trend.minutesToThreshold));
+            Logger.w(getLogSession(), message);
+            showToast(message);
+        }
+    }
 }
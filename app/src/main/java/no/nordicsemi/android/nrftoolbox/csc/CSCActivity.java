@@ -23,23 +23,22 @@
 package no.nordicsemi.android.nrftoolbox.csc;
 
 import android.bluetooth.BluetoothDevice;
-import android.content.BroadcastReceiver;
-import android.content.Context;
 import android.content.Intent;
-import android.content.IntentFilter;
 import android.content.SharedPreferences;
 import android.os.Bundle;
+import android.os.Handler;
 import android.preference.PreferenceManager;
-import android.support.v4.content.LocalBroadcastManager;
 import android.view.Menu;
 import android.widget.TextView;
 
 import java.util.Locale;
 import java.util.UUID;
+import java.util.concurrent.Executor;
 
 import no.nordicsemi.android.nrftoolbox.R;
 import no.nordicsemi.android.nrftoolbox.csc.settings.SettingsActivity;
 import no.nordicsemi.android.nrftoolbox.csc.settings.SettingsFragment;
+import no.nordicsemi.android.nrftoolbox.event.EventBus;
 import no.nordicsemi.android.nrftoolbox.profile.BleProfileService;
 import no.nordicsemi.android.nrftoolbox.profile.BleProfileServiceReadyActivity;
 
@@ -53,6 +52,9 @@ public class CSCActivity extends BleProfileServiceReadyActivity<CSCService.CSCBi
 	private TextView mTotalDistanceUnitView;
 	private TextView mGearRatioView;
 
+	/** Delivers the events on the main thread. */
+	private final Executor mMainThreadExecutor = new Handler()::post;
+
 	@Override
 	protected void onCreateView(final Bundle savedInstanceState) {
 		setContentView(R.layout.activity_feature_csc);
@@ -61,13 +63,15 @@ public class CSCActivity extends BleProfileServiceReadyActivity<CSCService.CSCBi
 
 	@Override
 	protected void onInitialize(final Bundle savedInstanceState) {
-		LocalBroadcastManager.getInstance(this).registerReceiver(mBroadcastReceiver, makeIntentFilter());
+		CSCService.WHEEL_EVENTS.subscribe(mWheelListener, mMainThreadExecutor);
+		CSCService.CRANK_EVENTS.subscribe(mCrankListener, mMainThreadExecutor);
 	}
 
 	@Override
 	protected void onDestroy() {
 		super.onDestroy();
-		LocalBroadcastManager.getInstance(this).unregisterReceiver(mBroadcastReceiver);
+		CSCService.WHEEL_EVENTS.unsubscribe(mWheelListener);
+		CSCService.CRANK_EVENTS.unsubscribe(mCrankListener);
 	}
 
 	private void setGui() {
@@ -219,30 +223,13 @@ public class CSCActivity extends BleProfileServiceReadyActivity<CSCService.CSCBi
 		mCadenceView.setText(String.format(Locale.US, "%d", cadence));
 	}
 
-	private final  BroadcastReceiver mBroadcastReceiver = new BroadcastReceiver() {
-		@Override
-		public void onReceive(final Context context, final Intent intent) {
-			final String action = intent.getAction();
-
-			if (CSCService.BROADCAST_WHEEL_DATA.equals(action)) {
-				final float speed = intent.getFloatExtra(CSCService.EXTRA_SPEED, 0.0f); // [m/s]
-				final float distance = intent.getFloatExtra(CSCService.EXTRA_DISTANCE, CSCManagerCallbacks.NOT_AVAILABLE);
-				final float totalDistance = intent.getFloatExtra(CSCService.EXTRA_TOTAL_DISTANCE, CSCManagerCallbacks.NOT_AVAILABLE);
-				// Update GUI
-				onMeasurementReceived(speed, distance, totalDistance);
-			} else if (CSCService.BROADCAST_CRANK_DATA.equals(action)) {
-				final float ratio = intent.getFloatExtra(CSCService.EXTRA_GEAR_RATIO, 0);
-				final int cadence = intent.getIntExtra(CSCService.EXTRA_CADENCE, 0);
-				// Update GUI
-				onGearRatioUpdate(ratio, cadence);
-			}
-		}
+	private final EventBus.Listener<CSCWheelEvent> mWheelListener = event -> {
+		// Update GUI
+		onMeasurementReceived(event.speed, event.distance, event.totalDistance);
 	};
 
-	private static IntentFilter makeIntentFilter() {
-		final IntentFilter intentFilter = new IntentFilter();
-		intentFilter.addAction(CSCService.BROADCAST_WHEEL_DATA);
-		intentFilter.addAction(CSCService.BROADCAST_CRANK_DATA);
-		return intentFilter;
-	}
+	private final EventBus.Listener<CSCCrankEvent> mCrankListener = event -> {
+		// Update GUI
+		onGearRatioUpdate(event.gearRatio, event.cadence);
+	};
 }
@@ -31,21 +31,22 @@ import java.util.Deque;
 import java.util.LinkedList;
 import java.util.UUID;
 
-import no.nordicsemi.android.ble.BleManager;
 import no.nordicsemi.android.ble.Request;
-import no.nordicsemi.android.log.Logger;
+import no.nordicsemi.android.nrftoolbox.parser.CSCMeasurement;
 import no.nordicsemi.android.nrftoolbox.parser.CSCMeasurementParser;
+import no.nordicsemi.android.nrftoolbox.parser.CharacteristicValue;
+import no.nordicsemi.android.nrftoolbox.profile.RecordingBleManager;
+import no.nordicsemi.android.nrftoolbox.utility.DeferredLogger;
 
-public class CSCManager extends BleManager<CSCManagerCallbacks> {
+public class CSCManager extends RecordingBleManager<CSCManagerCallbacks> {
 	/** Cycling Speed and Cadence service UUID */
 	public final static UUID CYCLING_SPEED_AND_CADENCE_SERVICE_UUID = UUID.fromString("00001816-0000-1000-8000-00805f9b34fb");
 	/** Cycling Speed and Cadence Measurement characteristic UUID */
 	private static final UUID CSC_MEASUREMENT_CHARACTERISTIC_UUID = UUID.fromString("00002A5B-0000-1000-8000-00805f9b34fb");
 
-	private static final byte WHEEL_REVOLUTIONS_DATA_PRESENT = 0x01; // 1 bit
-	private static final byte CRANK_REVOLUTION_DATA_PRESENT = 0x02; // 1 bit
-
 	private BluetoothGattCharacteristic mCSCMeasurementCharacteristic;
+	private final CharacteristicValue mValue = new CharacteristicValue();
+	private final CSCMeasurement mMeasurement = new CSCMeasurement();
 
 	public CSCManager(final Context context) {
 		super(context);
@@ -59,7 +60,7 @@ public class CSCManager extends BleManager<CSCManagerCallbacks> {
 	/**
 	 * BluetoothGatt callbacks for connection/disconnection, service discovery, receiving indication, etc
 	 */
-	private final BleManagerGattCallback mGattCallback = new BleManagerGattCallback() {
+	private final BleManagerGattCallback mGattCallback = new RecordingGattCallback() {
 
 		@Override
 		protected Deque<Request> initGatt(final BluetoothGatt gatt) {
@@ -84,37 +85,19 @@ public class CSCManager extends BleManager<CSCManagerCallbacks> {
 
 		@Override
 		public void onCharacteristicNotified(final BluetoothGatt gatt, final BluetoothGattCharacteristic characteristic) {
-			Logger.a(mLogSession, "\"" + CSCMeasurementParser.parse(characteristic) + "\" received");
+			super.onCharacteristicNotified(gatt, characteristic);
 
 			// Decode the new data
-			int offset = 0;
-			final int flags = characteristic.getValue()[offset]; // 1 byte
-			offset += 1;
-
-			final boolean wheelRevPresent = (flags & WHEEL_REVOLUTIONS_DATA_PRESENT) > 0;
-			final boolean crankRevPreset = (flags & CRANK_REVOLUTION_DATA_PRESENT) > 0;
-
-			if (wheelRevPresent) {
-				final int wheelRevolutions = characteristic.getIntValue(BluetoothGattCharacteristic.FORMAT_UINT32, offset);
-				offset += 4;
-
-				final int lastWheelEventTime = characteristic.getIntValue(BluetoothGattCharacteristic.FORMAT_UINT16, offset); // 1/1024 s
-				offset += 2;
-
-				// Notify listener about the new measurement
-				mCallbacks.onWheelMeasurementReceived(gatt.getDevice(), wheelRevolutions, lastWheelEventTime);
-			}
-
-			if (crankRevPreset) {
-				final int crankRevolutions = characteristic.getIntValue(BluetoothGattCharacteristic.FORMAT_UINT16, offset);
-				offset += 2;
-
-				final int lastCrankEventTime = characteristic.getIntValue(BluetoothGattCharacteristic.FORMAT_UINT16, offset);
-				// offset += 2;
-
-				// Notify listener about the new measurement
-				mCallbacks.onCrankMeasurementReceived(gatt.getDevice(), crankRevolutions, lastCrankEventTime);
-			}
+			final CSCMeasurement measurement = mMeasurement;
+			if (!CSCMeasurementParser.decode(mValue.set(characteristic.getValue()), measurement))
+				return;
+			DeferredLogger.received(mLogSession, CSCMeasurementParser::format, measurement);
+
+			// Notify listener about the new measurement
+			if (measurement.wheelRevolutionsPresent)
+				mCallbacks.onWheelMeasurementReceived(gatt.getDevice(), measurement.wheelRevolutions, measurement.lastWheelEventTime);
+			if (measurement.crankRevolutionsPresent)
+				mCallbacks.onCrankMeasurementReceived(gatt.getDevice(), measurement.crankRevolutions, measurement.lastCrankEventTime);
 		}
 	};
 }
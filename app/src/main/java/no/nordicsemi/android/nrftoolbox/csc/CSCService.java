@@ -32,8 +32,8 @@ import android.content.Intent;
 import android.content.IntentFilter;
 import android.content.SharedPreferences;
 import android.preference.PreferenceManager;
+import android.support.annotation.NonNull;
 import android.support.v4.app.NotificationCompat;
-import android.support.v4.content.LocalBroadcastManager;
 
 import no.nordicsemi.android.ble.BleManager;
 import no.nordicsemi.android.log.Logger;
@@ -41,11 +41,19 @@ import no.nordicsemi.android.nrftoolbox.FeaturesActivity;
 import no.nordicsemi.android.nrftoolbox.R;
 import no.nordicsemi.android.nrftoolbox.ToolboxApplication;
 import no.nordicsemi.android.nrftoolbox.csc.settings.SettingsFragment;
+import no.nordicsemi.android.nrftoolbox.event.EventBus;
+import no.nordicsemi.android.nrftoolbox.event.LocalBroadcastBridge;
 import no.nordicsemi.android.nrftoolbox.profile.BleProfileService;
 
 public class CSCService extends BleProfileService implements CSCManagerCallbacks {
 	private static final String TAG = "CSCService";
 
+	/** Wheel data events. Subscribe with an executor to be notified on the main thread. */
+	public static final EventBus<CSCWheelEvent> WHEEL_EVENTS = new EventBus<>(CSCWheelEvent::new);
+	/** Crank data events. Subscribe with an executor to be notified on the main thread. */
+	public static final EventBus<CSCCrankEvent> CRANK_EVENTS = new EventBus<>(CSCCrankEvent::new);
+
+	/** Local broadcast sent only when the broadcast bridge is enabled, see {@link #setBroadcastBridgeEnabled(Context, boolean)}. */
 	public static final String BROADCAST_WHEEL_DATA = "no.nordicsemi.android.nrftoolbox.csc.BROADCAST_WHEEL_DATA";
 	public static final String EXTRA_SPEED = "no.nordicsemi.android.nrftoolbox.csc.EXTRA_SPEED";
 	/** Distance in meters */
@@ -53,6 +61,7 @@ public class CSCService extends BleProfileService implements CSCManagerCallbacks
 	/** Total distance in meters */
 	public static final String EXTRA_TOTAL_DISTANCE = "no.nordicsemi.android.nrftoolbox.csc.EXTRA_TOTAL_DISTANCE";
 
+	/** Local broadcast sent only when the broadcast bridge is enabled, see {@link #setBroadcastBridgeEnabled(Context, boolean)}. */
 	public static final String BROADCAST_CRANK_DATA = "no.nordicsemi.android.nrftoolbox.csc.BROADCAST_CRANK_DATA";
 	public static final String EXTRA_GEAR_RATIO = "no.nordicsemi.android.nrftoolbox.csc.EXTRA_GEAR_RATIO";
 	public static final String EXTRA_CADENCE = "no.nordicsemi.android.nrftoolbox.csc.EXTRA_CADENCE";
@@ -68,6 +77,9 @@ public class CSCService extends BleProfileService implements CSCManagerCallbacks
 	private int mLastCrankRevolutions = -1;
 	private int mLastCrankEventTime = -1;
 
+	private static LocalBroadcastBridge<CSCWheelEvent> sWheelBridge;
+	private static LocalBroadcastBridge<CSCCrankEvent> sCrankBridge;
+
 	private final static int NOTIFICATION_ID = 200;
 	private final static int OPEN_ACTIVITY_REQ = 0;
 	private final static int DISCONNECT_REQ = 1;
@@ -81,6 +93,51 @@ public class CSCService extends BleProfileService implements CSCManagerCallbacks
 		// empty
 	}
 
+	/**
+	 * Enables or disables sending {@link #BROADCAST_WHEEL_DATA} and {@link #BROADCAST_CRANK_DATA} for each event.
+	 * The broadcasts are disabled by default, subscribe to {@link #WHEEL_EVENTS} and {@link #CRANK_EVENTS} instead.
+	 *
+	 * @param context the context
+	 * @param enabled true to send the broadcasts
+	 */
+	public static synchronized void setBroadcastBridgeEnabled(@NonNull final Context context, final boolean enabled) {
+		if (enabled == (sWheelBridge != null))
+			return;
+
+		if (enabled) {
+			sWheelBridge = new LocalBroadcastBridge<CSCWheelEvent>(context.getApplicationContext()) {
+				@NonNull
+				@Override
+				protected Intent createIntent(@NonNull final CSCWheelEvent event) {
+					final Intent broadcast = new Intent(BROADCAST_WHEEL_DATA);
+					broadcast.putExtra(EXTRA_DEVICE, event.device);
+					broadcast.putExtra(EXTRA_SPEED, event.speed);
+					broadcast.putExtra(EXTRA_DISTANCE, event.distance);
+					broadcast.putExtra(EXTRA_TOTAL_DISTANCE, event.totalDistance);
+					return broadcast;
+				}
+			};
+			sCrankBridge = new LocalBroadcastBridge<CSCCrankEvent>(context.getApplicationContext()) {
+				@NonNull
+				@Override
+				protected Intent createIntent(@NonNull final CSCCrankEvent event) {
+					final Intent broadcast = new Intent(BROADCAST_CRANK_DATA);
+					broadcast.putExtra(EXTRA_DEVICE, event.device);
+					broadcast.putExtra(EXTRA_GEAR_RATIO, event.gearRatio);
+					broadcast.putExtra(EXTRA_CADENCE, event.cadence);
+					return broadcast;
+				}
+			};
+			WHEEL_EVENTS.subscribe(sWheelBridge);
+			CRANK_EVENTS.subscribe(sCrankBridge);
+		} else {
+			WHEEL_EVENTS.unsubscribe(sWheelBridge);
+			CRANK_EVENTS.unsubscribe(sCrankBridge);
+			sWheelBridge = null;
+			sCrankBridge = null;
+		}
+	}
+
 	@Override
 	protected LocalBinder getBinder() {
 		return mBinder;
@@ -146,12 +203,12 @@ public class CSCService extends BleProfileService implements CSCManagerCallbacks
 			final float speed = distanceDifference / timeDifference;
 			mWheelCadence = (wheelRevolutions - mLastWheelRevolutions) * 60.0f / timeDifference;
 
-			final Intent broadcast = new Intent(BROADCAST_WHEEL_DATA);
-			broadcast.putExtra(EXTRA_DEVICE, getBluetoothDevice());
-			broadcast.putExtra(EXTRA_SPEED, speed);
-			broadcast.putExtra(EXTRA_DISTANCE, distance);
-			broadcast.putExtra(EXTRA_TOTAL_DISTANCE, totalDistance);
-			LocalBroadcastManager.getInstance(this).sendBroadcast(broadcast);
+			final CSCWheelEvent event = WHEEL_EVENTS.obtain();
+			event.device = getBluetoothDevice();
+			event.speed = speed;
+			event.distance = distance;
+			event.totalDistance = totalDistance;
+			WHEEL_EVENTS.publish(event);
 		}
 		mLastWheelRevolutions = wheelRevolutions;
 		mLastWheelEventTime = lastWheelEventTime;
@@ -175,11 +232,11 @@ public class CSCService extends BleProfileService implements CSCManagerCallbacks
 			if (crankCadence > 0) {
 				final float gearRatio = mWheelCadence / crankCadence;
 
-				final Intent broadcast = new Intent(BROADCAST_CRANK_DATA);
-				broadcast.putExtra(EXTRA_DEVICE, getBluetoothDevice());
-				broadcast.putExtra(EXTRA_GEAR_RATIO, gearRatio);
-				broadcast.putExtra(EXTRA_CADENCE, (int) crankCadence);
-				LocalBroadcastManager.getInstance(this).sendBroadcast(broadcast);
+				final CSCCrankEvent event = CRANK_EVENTS.obtain();
+				event.device = getBluetoothDevice();
+				event.gearRatio = gearRatio;
+				event.cadence = (int) crankCadence;
+				CRANK_EVENTS.publish(event);
 			}
 		}
 		mLastCrankRevolutions = crankRevolutions;
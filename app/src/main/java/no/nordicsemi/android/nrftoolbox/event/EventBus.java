@@ -0,0 +1,290 @@
+/*
+ * Copyright (c) 2015, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.nrftoolbox.event;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A typed, lock-free publish/subscribe bus for measurement events.
+ * <p>
+ * The list of subscriptions is an immutable array replaced with compare-and-set on each change, so publishing
+ * only reads a volatile reference and never blocks. Events are taken from a small pool with {@link #obtain()} and
+ * returned to it when the last listener has been notified, so publishing does not allocate in the steady state.
+ * </p>
+ * <p>
+ * Listeners subscribed without an executor are called on the publishing thread, usually a binder thread.
+ * Listeners subscribed with an executor, e.g. one posting to the main thread, are called from that executor.
+ * The event stays out of the pool until all of them have returned.
+ * </p>
+ *
+ * @param <E> the event type
+ */
+public class EventBus<E extends PooledEvent> {
+	public interface Listener<E> {
+		/**
+		 * Called when an event has been published. The event is reused afterwards and must not be kept.
+		 *
+		 * @param event the event
+		 */
+		void onEvent(final E event);
+	}
+
+	public interface Factory<E> {
+		E create();
+	}
+
+	public static final int DEFAULT_POOL_SIZE = 16;
+
+	private final Factory<E> mFactory;
+	private final AtomicReferenceArray<E> mPool;
+	private final AtomicReference<Subscriptions<E>> mSubscriptions = new AtomicReference<>(new Subscriptions<>(EventBus.<E>newSubscriptionArray(0)));
+	private final AtomicLong mPublishedCount = new AtomicLong();
+	private final AtomicLong mCreatedCount = new AtomicLong();
+
+	public EventBus(final Factory<E> factory) {
+		this(factory, DEFAULT_POOL_SIZE);
+	}
+
+	/**
+	 * Creates the bus.
+	 *
+	 * @param factory  the factory used to create new events when the pool is empty
+	 * @param poolSize maximum number of events kept in the pool
+	 */
+	public EventBus(final Factory<E> factory, final int poolSize) {
+		if (poolSize < 1)
+			throw new IllegalArgumentException("Pool size must be positive");
+		mFactory = factory;
+		mPool = new AtomicReferenceArray<>(poolSize);
+	}
+
+	/**
+	 * Subscribes the listener. It will be called on the publishing thread.
+	 *
+	 * @param listener the listener
+	 */
+	public void subscribe(final Listener<E> listener) {
+		subscribe(listener, null);
+	}
+
+	/**
+	 * Subscribes the listener. It will be called using the given executor, or on the publishing thread if the executor is null.
+	 * Subscribing the same listener twice has no effect.
+	 *
+	 * @param listener the listener
+	 * @param executor the executor used to notify the listener, e.g. <code>new Handler(Looper.getMainLooper())::post</code>
+	 */
+	public void subscribe(final Listener<E> listener, final Executor executor) {
+		Subscriptions<E> current;
+		Subscriptions<E> updated;
+		do {
+			current = mSubscriptions.get();
+			if (current.indexOf(listener) >= 0)
+				return;
+			final Subscription<E>[] array = newSubscriptionArray(current.array.length + 1);
+			System.arraycopy(current.array, 0, array, 0, current.array.length);
+			array[current.array.length] = new Subscription<>(listener, executor);
+			updated = new Subscriptions<>(array);
+		} while (!mSubscriptions.compareAndSet(current, updated));
+	}
+
+	/**
+	 * Removes the listener. Events already handed over to the listener's executor will still be delivered.
+	 *
+	 * @param listener the listener to be removed
+	 */
+	public void unsubscribe(final Listener<E> listener) {
+		Subscriptions<E> current;
+		Subscriptions<E> updated;
+		do {
+			current = mSubscriptions.get();
+			final int index = current.indexOf(listener);
+			if (index < 0)
+				return;
+			final Subscription<E>[] array = newSubscriptionArray(current.array.length - 1);
+			System.arraycopy(current.array, 0, array, 0, index);
+			System.arraycopy(current.array, index + 1, array, index, array.length - index);
+			updated = new Subscriptions<>(array);
+		} while (!mSubscriptions.compareAndSet(current, updated));
+	}
+
+	/**
+	 * Returns true if there is at least one listener subscribed. Publishers may use it to skip computing the values.
+	 */
+	public boolean hasSubscribers() {
+		return mSubscriptions.get().array.length > 0;
+	}
+
+	/**
+	 * Returns an event from the pool, or a new one if the pool is empty. The event has to be passed to {@link #publish(PooledEvent)}.
+	 *
+	 * @return the event to be filled
+	 */
+	public E obtain() {
+		final int size = mPool.length();
+		for (int i = 0; i < size; ++i) {
+			if (mPool.get(i) != null) {
+				final E event = mPool.getAndSet(i, null);
+				if (event != null)
+					return event;
+			}
+		}
+		mCreatedCount.incrementAndGet();
+		return mFactory.create();
+	}
+
+	/**
+	 * Notifies all subscribed listeners about the event. The event must not be used by the caller afterwards.
+	 *
+	 * @param event the event obtained with {@link #obtain()}
+	 */
+	public void publish(final E event) {
+		final Subscriptions<E> subscriptions = mSubscriptions.get();
+		mPublishedCount.incrementAndGet();
+
+		// The publisher holds one reference until all synchronous listeners have been called
+		final int asyncCount = subscriptions.asyncCount;
+		if (event.mDeliveries.length < asyncCount) {
+			final Delivery<?>[] deliveries = new Delivery<?>[asyncCount];
+			System.arraycopy(event.mDeliveries, 0, deliveries, 0, event.mDeliveries.length);
+			for (int i = event.mDeliveries.length; i < asyncCount; ++i)
+				deliveries[i] = new Delivery<>(this, event);
+			event.mDeliveries = deliveries;
+		}
+		event.mReferences.set(1 + asyncCount);
+
+		int delivery = 0;
+		for (final Subscription<E> subscription : subscriptions.array) {
+			if (subscription.executor == null) {
+				subscription.listener.onEvent(event);
+			} else {
+				final Delivery<E> d = delivery(event, delivery++);
+				d.mBus = this;
+				d.mListener = subscription.listener;
+				subscription.executor.execute(d);
+			}
+		}
+		release(event);
+	}
+
+	/**
+	 * Returns the number of events published since the bus was created.
+	 */
+	public long getPublishedCount() {
+		return mPublishedCount.get();
+	}
+
+	/**
+	 * Returns the number of events created because the pool was empty. It should stop growing once the pool has warmed up.
+	 */
+	public long getCreatedCount() {
+		return mCreatedCount.get();
+	}
+
+	/**
+	 * Returns the reusable delivery of the event. Deliveries are created in {@link #publish(PooledEvent)} for the event
+	 * they are stored in, so their type matches the type of the event.
+	 */
+	@SuppressWarnings("unchecked")
+	private static <E extends PooledEvent> Delivery<E> delivery(final E event, final int index) {
+		return (Delivery<E>) event.mDeliveries[index];
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <E> Subscription<E>[] newSubscriptionArray(final int length) {
+		return (Subscription<E>[]) new Subscription<?>[length];
+	}
+
+	private void release(final E event) {
+		if (event.mReferences.decrementAndGet() == 0) {
+			event.onRecycle();
+			final int size = mPool.length();
+			for (int i = 0; i < size; ++i) {
+				if (mPool.compareAndSet(i, null, event))
+					return;
+			}
+			// The pool is full, the event will be garbage collected
+		}
+	}
+
+	/**
+	 * A reusable task notifying a single listener using its executor.
+	 */
+	static final class Delivery<E extends PooledEvent> implements Runnable {
+		private final E mEvent;
+		private EventBus<E> mBus;
+		private Listener<E> mListener;
+
+		private Delivery(final EventBus<E> bus, final E event) {
+			mBus = bus;
+			mEvent = event;
+		}
+
+		@Override
+		public void run() {
+			final EventBus<E> bus = mBus;
+			final Listener<E> listener = mListener;
+			// Don't keep the listener after the event has been delivered, it may be an Activity
+			mListener = null;
+			try {
+				listener.onEvent(mEvent);
+			} finally {
+				bus.release(mEvent);
+			}
+		}
+	}
+
+	private static final class Subscription<E> {
+		private final Listener<E> listener;
+		private final Executor executor;
+
+		private Subscription(final Listener<E> listener, final Executor executor) {
+			this.listener = listener;
+			this.executor = executor;
+		}
+	}
+
+	private static final class Subscriptions<E> {
+		private final Subscription<E>[] array;
+		private final int asyncCount;
+
+		private Subscriptions(final Subscription<E>[] array) {
+			this.array = array;
+			int count = 0;
+			for (final Subscription<E> subscription : array)
+				if (subscription.executor != null)
+					count++;
+			this.asyncCount = count;
+		}
+
+		private int indexOf(final Listener<E> listener) {
+			for (int i = 0; i < array.length; ++i)
+				if (array[i].listener == listener)
+					return i;
+			return -1;
+		}
+	}
+}
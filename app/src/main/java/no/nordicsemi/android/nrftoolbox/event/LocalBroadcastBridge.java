@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) 2015, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.nrftoolbox.event;
+
+import android.content.Context;
+import android.content.Intent;
+import android.support.annotation.NonNull;
+import android.support.v4.content.LocalBroadcastManager;
+
+/**
+ * A listener converting events back to the {@link LocalBroadcastManager} broadcasts that were sent before the {@link EventBus} was introduced.
+ * It should be subscribed only when such broadcasts are needed, as each of them allocates an Intent and is delivered on the main thread.
+ *
+ * @param <E> the event type
+ */
+public abstract class LocalBroadcastBridge<E extends PooledEvent> implements EventBus.Listener<E> {
+	private final LocalBroadcastManager mBroadcastManager;
+
+	protected LocalBroadcastBridge(@NonNull final Context context) {
+		mBroadcastManager = LocalBroadcastManager.getInstance(context);
+	}
+
+	@Override
+	public void onEvent(final E event) {
+		mBroadcastManager.sendBroadcast(createIntent(event));
+	}
+
+	/**
+	 * Creates the broadcast Intent with the values of the event.
+	 *
+	 * @param event the event
+	 * @return the broadcast to be sent
+	 */
+	@NonNull
+	protected abstract Intent createIntent(@NonNull final E event);
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright (c) 2015, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.nrftoolbox.event;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Base class of events published on an {@link EventBus}. Events are obtained from the bus with {@link EventBus#obtain()},
+ * filled and published. The bus returns them to its pool after all listeners have been notified, so a listener
+ * must copy the values it needs and must not keep a reference to the event after {@link EventBus.Listener#onEvent(PooledEvent)} returns.
+ */
+public abstract class PooledEvent {
+	/** Number of pending deliveries. The event is returned to the pool when it drops to 0. */
+	final AtomicInteger mReferences = new AtomicInteger();
+	/** Reusable deliveries to listeners notified using an executor. */
+	EventBus.Delivery<?>[] mDeliveries = new EventBus.Delivery<?>[0];
+
+	/**
+	 * Called when the event is returned to the pool. Implementations should clear references to other objects here.
+	 */
+	protected void onRecycle() {
+		// empty default implementation
+	}
+}
@@ -31,31 +31,71 @@ import android.widget.BaseExpandableListAdapter;
 import android.widget.TextView;
 
 import no.nordicsemi.android.nrftoolbox.R;
+import no.nordicsemi.android.nrftoolbox.widget.PagedRecordSource;
 
+/**
+ * Shows glucose records of a meter from its local history, within a range of sequence numbers. Records are read from
+ * the {@link GlucoseRecordStore} in pages when they are shown, only a few recently used pages are kept in memory,
+ * see {@link PagedRecordSource}.
+ */
 public class ExpandableRecordAdapter extends BaseExpandableListAdapter {
-	private final GlucoseManager mGlucoseManager;
+	private final GlucoseRecordStore mRecordStore;
+	private final PagedRecordSource<GlucoseRecord> mRecords;
 	private final LayoutInflater mInflater;
 	private final Context mContext;
+	private String mDevice;
+	private int mFirst;
+	private int mLast = -1;
 
-	public ExpandableRecordAdapter(final Context context, final GlucoseManager manager) {
-		mGlucoseManager = manager;
+	public ExpandableRecordAdapter(final Context context, final GlucoseRecordStore store) {
+		mRecordStore = store;
+		mRecords = new PagedRecordSource<>(GlucoseRecord.class, mLoader);
 		mContext = context;
 		mInflater = LayoutInflater.from(context);
 	}
 
+	private final PagedRecordSource.Loader<GlucoseRecord> mLoader = new PagedRecordSource.Loader<GlucoseRecord>() {
+		@Override
+		public int getCount() {
+			return mDevice != null && mFirst <= mLast ? mRecordStore.getCount(mDevice, mFirst, mLast) : 0;
+		}
+
+		@Override
+		public int load(final int offset, final GlucoseRecord[] page) {
+			return mDevice != null && mFirst <= mLast ? mRecordStore.query(mDevice, mFirst, mLast, offset, page) : 0;
+		}
+	};
+
+	/**
+	 * Shows the records of the meter with sequence numbers in the given range. The number of records is read again
+	 * and the pages in memory are dropped, call it also when records have been saved or removed.
+	 *
+	 * @param device the meter address, or null to show no records
+	 * @param first  the lowest sequence number shown
+	 * @param last   the highest sequence number shown, lower than the first one to show no records
+	 */
+	public void setRecords(final String device, final int first, final int last) {
+		mDevice = device;
+		mFirst = first;
+		mLast = last;
+		mRecords.invalidate();
+		notifyDataSetChanged();
+	}
+
 	@Override
 	public int getGroupCount() {
-		return mGlucoseManager.getRecords().size();
+		return mRecords.getCount();
 	}
 
 	@Override
 	public Object getGroup(int groupPosition) {
-		return mGlucoseManager.getRecords().valueAt(groupPosition);
+		return mRecords.get(groupPosition);
 	}
 
 	@Override
 	public long getGroupId(final int groupPosition) {
-		return mGlucoseManager.getRecords().keyAt(groupPosition);
+		final GlucoseRecord record = (GlucoseRecord) getGroup(groupPosition);
+		return record != null ? record.sequenceNumber : -1;
 	}
 
 	@Override
@@ -91,6 +131,8 @@ public class ExpandableRecordAdapter extends BaseExpandableListAdapter {
 	@Override
 	public int getChildrenCount(final int groupPosition) {
 		final GlucoseRecord record = (GlucoseRecord) getGroup(groupPosition);
+		if (record == null)
+			return 0; // the records have been removed, the list is being reloaded
 		int count = 1 + (record.status != 0 ? 1 : 0); // Sample Location and optional Sensor Status Annunciation
 		if (record.context != null) {
 			final GlucoseRecord.MeasurementContext context = record.context;
@@ -23,11 +23,9 @@ package no.nordicsemi.android.nrftoolbox.gls;
 
 import android.bluetooth.BluetoothDevice;
 import android.os.Bundle;
-import android.util.SparseArray;
 import android.view.MenuInflater;
 import android.view.MenuItem;
 import android.view.View;
-import android.widget.BaseExpandableListAdapter;
 import android.widget.PopupMenu;
 import android.widget.TextView;
 
@@ -42,12 +40,13 @@ public class GlucoseActivity extends BleProfileExpandableListActivity implements
 	@SuppressWarnings("unused")
 	private static final String TAG = "GlucoseActivity";
 
-	private BaseExpandableListAdapter mAdapter;
+	private ExpandableRecordAdapter mAdapter;
 	private GlucoseManager mGlucoseManager;
 
 	private View mControlPanelStd;
 	private View mControlPanelAbort;
 	private TextView mUnitView;
+	private String mDeviceAddress;
 
 	@Override
 	protected void onCreateView(final Bundle savedInstanceState) {
@@ -70,10 +69,11 @@ public class GlucoseActivity extends BleProfileExpandableListActivity implements
 			menu.setOnMenuItemClickListener(GlucoseActivity.this);
 			MenuInflater inflater = menu.getMenuInflater();
 			inflater.inflate(R.menu.gls_more, menu.getMenu());
+			inflater.inflate(R.menu.gls_history, menu.getMenu());
 			menu.show();
 		});
 
-		setListAdapter(mAdapter = new ExpandableRecordAdapter(this, mGlucoseManager));
+		setListAdapter(mAdapter = new ExpandableRecordAdapter(this, mGlucoseManager.getRecordStore()));
 	}
 
 	@Override
@@ -95,6 +95,9 @@ public class GlucoseActivity extends BleProfileExpandableListActivity implements
 		case R.id.action_clear:
 			mGlucoseManager.clear();
 			break;
+		case R.id.action_delete_history:
+			mGlucoseManager.deleteHistory();
+			break;
 		case R.id.action_delete_all:
 			mGlucoseManager.deleteAllRecords();
 			break;
@@ -124,7 +127,9 @@ public class GlucoseActivity extends BleProfileExpandableListActivity implements
 
 	@Override
 	protected void setDefaultUI() {
-		mGlucoseManager.clear();
+		mDeviceAddress = null;
+		mAdapter.setRecords(null, 0, -1);
+		mUnitView.setVisibility(View.GONE);
 	}
 
 	private void setOperationInProgress(final boolean progress) {
@@ -134,6 +139,17 @@ public class GlucoseActivity extends BleProfileExpandableListActivity implements
 		});
 	}
 
+	@Override
+	public void onDeviceReady(final BluetoothDevice device) {
+		super.onDeviceReady(device);
+		// Show the records obtained from this meter before
+		runOnUiThread(() -> {
+			mDeviceAddress = device.getAddress();
+			mGlucoseManager.showHistory();
+			showRecords();
+		});
+	}
+
 	@Override
 	public void onDeviceDisconnected(final BluetoothDevice device) {
 		super.onDeviceDisconnected(device);
@@ -148,40 +164,54 @@ public class GlucoseActivity extends BleProfileExpandableListActivity implements
 	@Override
 	public void onOperationCompleted(final BluetoothDevice device) {
 		setOperationInProgress(false);
-
-		runOnUiThread(() -> {
-			final SparseArray<GlucoseRecord> records = mGlucoseManager.getRecords();
-			if (records.size() > 0) {
-				final int unit = records.valueAt(0).unit;
-				mUnitView.setVisibility(View.VISIBLE);
-				mUnitView.setText(unit == GlucoseRecord.UNIT_kgpl ? R.string.gls_unit_mgpdl : R.string.gls_unit_mmolpl);
-			} else {
-				mUnitView.setVisibility(View.GONE);
-			}
-			mAdapter.notifyDataSetChanged();
-		});
+		showRecords();
 	}
 
 	@Override
 	public void onOperationAborted(final BluetoothDevice device) {
 		setOperationInProgress(false);
+		showRecords();
 	}
 
 	@Override
 	public void onOperationNotSupported(final BluetoothDevice device) {
 		setOperationInProgress(false);
+		showRecords();
 		showToast(R.string.gls_operation_not_supported);
 	}
 
 	@Override
 	public void onOperationFailed(final BluetoothDevice device) {
 		setOperationInProgress(false);
+		showRecords();
 		showToast(R.string.gls_operation_failed);
 	}
 
+	/**
+	 * Reloads the list after records have been saved, also in chunks during a download or by an operation that did not
+	 * complete, or removed, or the list has been cleared. Only the number of records is read, rows are loaded when shown.
+	 */
+	private void showRecords() {
+		runOnUiThread(() -> {
+			mAdapter.setRecords(mDeviceAddress, mGlucoseManager.getFirstShown(), mGlucoseManager.getLastShown());
+			showUnit();
+		});
+	}
+
+	private void showUnit() {
+		if (mAdapter.getGroupCount() > 0) {
+			final int unit = ((GlucoseRecord) mAdapter.getGroup(0)).unit;
+			mUnitView.setVisibility(View.VISIBLE);
+			mUnitView.setText(unit == GlucoseRecord.UNIT_kgpl ? R.string.gls_unit_mgpdl : R.string.gls_unit_mmolpl);
+		} else {
+			mUnitView.setVisibility(View.GONE);
+		}
+	}
+
 	@Override
 	public void onDatasetChanged(final BluetoothDevice device) {
-		// Do nothing. Refreshing the list is done in onOperationCompleted
+		// A chunk of records has been saved, also during a download
+		showRecords();
 	}
 
 	@Override
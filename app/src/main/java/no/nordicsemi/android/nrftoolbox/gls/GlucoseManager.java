@@ -21,28 +21,32 @@
  */
 package no.nordicsemi.android.nrftoolbox.gls;
 
+import android.bluetooth.BluetoothDevice;
 import android.bluetooth.BluetoothGatt;
 import android.bluetooth.BluetoothGattCharacteristic;
 import android.bluetooth.BluetoothGattService;
 import android.content.Context;
 import android.os.Handler;
-import android.util.SparseArray;
 
 import java.util.Calendar;
 import java.util.Deque;
 import java.util.LinkedList;
 import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
-import no.nordicsemi.android.ble.BleManager;
 import no.nordicsemi.android.ble.Request;
-import no.nordicsemi.android.log.Logger;
 import no.nordicsemi.android.nrftoolbox.parser.GlucoseMeasurementContextParser;
 import no.nordicsemi.android.nrftoolbox.parser.GlucoseMeasurementParser;
 import no.nordicsemi.android.nrftoolbox.parser.RecordAccessControlPointParser;
+import no.nordicsemi.android.nrftoolbox.profile.RecordingBleManager;
+import no.nordicsemi.android.nrftoolbox.profile.racp.RACPEngine;
+import no.nordicsemi.android.nrftoolbox.profile.racp.RecordAccessControlPoint;
 import no.nordicsemi.android.nrftoolbox.utility.DebugLogger;
+import no.nordicsemi.android.nrftoolbox.utility.DeferredLogger;
 
 @SuppressWarnings("unused")
-public class GlucoseManager extends BleManager<GlucoseManagerCallbacks> {
+public class GlucoseManager extends RecordingBleManager<GlucoseManagerCallbacks> {
 	private static final String TAG = "GlucoseManager";
 
 	/**
@@ -65,68 +69,49 @@ public class GlucoseManager extends BleManager<GlucoseManagerCallbacks> {
 	 * Record Access Control Point characteristic UUID
 	 */
 	private final static UUID RACP_CHARACTERISTIC = UUID.fromString("00002A52-0000-1000-8000-00805f9b34fb");
-
-	private final static int OP_CODE_REPORT_STORED_RECORDS = 1;
-	private final static int OP_CODE_DELETE_STORED_RECORDS = 2;
-	private final static int OP_CODE_ABORT_OPERATION = 3;
-	private final static int OP_CODE_REPORT_NUMBER_OF_RECORDS = 4;
-	private final static int OP_CODE_NUMBER_OF_STORED_RECORDS_RESPONSE = 5;
-	private final static int OP_CODE_RESPONSE_CODE = 6;
-
-	private final static int OPERATOR_NULL = 0;
-	private final static int OPERATOR_ALL_RECORDS = 1;
-	private final static int OPERATOR_LESS_THEN_OR_EQUAL = 2;
-	private final static int OPERATOR_GREATER_THEN_OR_EQUAL = 3;
-	private final static int OPERATOR_WITHING_RANGE = 4;
-	private final static int OPERATOR_FIRST_RECORD = 5;
-	private final static int OPERATOR_LAST_RECORD = 6;
-
-	/**
-	 * The filter type is used for range operators ({@link #OPERATOR_LESS_THEN_OR_EQUAL},
-     * {@link #OPERATOR_GREATER_THEN_OR_EQUAL}, {@link #OPERATOR_WITHING_RANGE}.<br/>
-	 * The syntax of the operand is: [Filter Type][Minimum][Maximum].<br/>
-	 * This filter selects the records by the sequence number.
-	 */
-	private final static int FILTER_TYPE_SEQUENCE_NUMBER = 1;
 	/**
-	 * The filter type is used for range operators ({@link #OPERATOR_LESS_THEN_OR_EQUAL},
-     * {@link #OPERATOR_GREATER_THEN_OR_EQUAL}, {@link #OPERATOR_WITHING_RANGE}.<br/>
-	 * The syntax of the operand is: [Filter Type][Minimum][Maximum].<br/>
-	 * This filter selects the records by the user facing time (base time + offset time).
+	 * Number of records obtained after which they are written to the storage, before the operation completes. Pending
+	 * records are not shown in the list, chunks let it grow during a long download and keep each transaction short.
 	 */
-	private final static int FILTER_TYPE_USER_FACING_TIME = 2;
-
-	private final static int RESPONSE_SUCCESS = 1;
-	private final static int RESPONSE_OP_CODE_NOT_SUPPORTED = 2;
-	private final static int RESPONSE_INVALID_OPERATOR = 3;
-	private final static int RESPONSE_OPERATOR_NOT_SUPPORTED = 4;
-	private final static int RESPONSE_INVALID_OPERAND = 5;
-	private final static int RESPONSE_NO_RECORDS_FOUND = 6;
-	private final static int RESPONSE_ABORT_UNSUCCESSFUL = 7;
-	private final static int RESPONSE_PROCEDURE_NOT_COMPLETED = 8;
-	private final static int RESPONSE_OPERAND_NOT_SUPPORTED = 9;
+	private final static int COMMIT_CHUNK_SIZE = 32;
 
 	private BluetoothGattCharacteristic mGlucoseMeasurementCharacteristic;
 	private BluetoothGattCharacteristic mGlucoseMeasurementContextCharacteristic;
 	private BluetoothGattCharacteristic mRecordAccessControlPointCharacteristic;
 
-	private final SparseArray<GlucoseRecord> mRecords = new SparseArray<>();
-	private boolean mAbort;
+	private final GlucoseRecordStore mRecordStore;
+	/** Commits the records, so that the storage is not written on the GATT callback thread. */
+	private final ExecutorService mCommitExecutor = Executors.newSingleThreadExecutor();
 	private Handler mHandler;
-	private static GlucoseManager mInstance;
+	private final RACPEngine mRACP;
+	private final RACPEngine.Operation mAllRecordsOperation = RACPEngine.Operation.allRecords();
+	private final RACPEngine.Operation mFirstRecordOperation = RACPEngine.Operation.singleRecord(false);
+	private final RACPEngine.Operation mLastRecordOperation = RACPEngine.Operation.singleRecord(true);
+	private final RACPEngine.Operation mDeleteAllRecordsOperation = RACPEngine.Operation.deleteAllRecords();
+	/** True while records newer than the last stored one are requested, see {@link #refreshRecords()}. */
+	private boolean mSyncSinceLast;
+	/**
+	 * The range of sequence numbers of the records list, which shows a part of the local history. The list is empty
+	 * if the first is greater than the last. Accessed on the UI thread only.
+	 */
+	private int mFirstShown = Integer.MAX_VALUE;
+	private int mLastShown = -1;
+	private static GlucoseManager sInstance;
 
 	/**
 	 * Returns the singleton implementation of GlucoseManager
 	 */
 	public static GlucoseManager getGlucoseManager(final Context context) {
-		if (mInstance == null)
-			mInstance = new GlucoseManager(context);
-		return mInstance;
+		if (sInstance == null)
+			sInstance = new GlucoseManager(context);
+		return sInstance;
 	}
 
 	public GlucoseManager(final Context context) {
 		super(context);
 		mHandler = new Handler();
+		mRecordStore = GlucoseRecordStore.getInstance(context);
+		mRACP = new RACPEngine(mRACPTransport, mRACPListener);
 	}
 
 	@Override
@@ -137,7 +122,7 @@ public class GlucoseManager extends BleManager<GlucoseManagerCallbacks> {
 	/**
 	 * BluetoothGatt callbacks for connection/disconnection, service discovery, receiving notification, etc
 	 */
-	private final BleManagerGattCallback mGattCallback = new BleManagerGattCallback() {
+	private final BleManagerGattCallback mGattCallback = new RecordingGattCallback() {
 
 		@Override
 		protected Deque<Request> initGatt(final BluetoothGatt gatt) {
@@ -185,19 +170,28 @@ public class GlucoseManager extends BleManager<GlucoseManagerCallbacks> {
 			mGlucoseMeasurementCharacteristic = null;
 			mGlucoseMeasurementContextCharacteristic = null;
 			mRecordAccessControlPointCharacteristic = null;
+			mRACP.reset();
+			mHandler.removeCallbacks(mRACPPoll);
+			mSyncSinceLast = false;
+			// Keep the records obtained before the link was lost
+			commitRecords();
 		}
 
 		@Override
 		protected void onCharacteristicWrite(final BluetoothGatt gatt, final BluetoothGattCharacteristic characteristic) {
-			Logger.a(mLogSession, "\"" + RecordAccessControlPointParser.parse(characteristic) + "\" sent");
+			super.onCharacteristicWrite(gatt, characteristic);
+
+			DeferredLogger.sent(mLogSession, RecordAccessControlPointParser::parse, characteristic.getValue());
 		}
 
 		@Override
 		public void onCharacteristicNotified(final BluetoothGatt gatt, final BluetoothGattCharacteristic characteristic) {
+			super.onCharacteristicNotified(gatt, characteristic);
+
 			final UUID uuid = characteristic.getUuid();
 
 			if (GM_CHARACTERISTIC.equals(uuid)) {
-				Logger.a(mLogSession, "\"" + GlucoseMeasurementParser.parse(characteristic) + "\" received");
+				DeferredLogger.received(mLogSession, GlucoseMeasurementParser::parse, characteristic.getValue());
 
 				int offset = 0;
 				final int flags = characteristic.getIntValue(BluetoothGattCharacteristic.FORMAT_UINT8, offset);
@@ -213,6 +207,7 @@ public class GlucoseManager extends BleManager<GlucoseManagerCallbacks> {
 				final GlucoseRecord record = new GlucoseRecord();
 				record.sequenceNumber = characteristic.getIntValue(BluetoothGattCharacteristic.FORMAT_UINT16, offset);
 				offset += 2;
+				mRACP.onRecordReceived();
 
 				final int year = characteristic.getIntValue(BluetoothGattCharacteristic.FORMAT_UINT16, offset);
 				final int month = characteristic.getIntValue(BluetoothGattCharacteristic.FORMAT_UINT8, offset + 2) - 1; // months are 1-based
@@ -260,17 +255,20 @@ public class GlucoseManager extends BleManager<GlucoseManagerCallbacks> {
 				//				record.context.medicationUnit = GlucoseRecord.MeasurementContext.UNIT_kg;
 				//				record.context.HbA1c = 213.3f;
 
-				// data set modifications must be done in UI thread
-				mHandler.post(() -> {
-					// insert the new record to storage
-					mRecords.put(record.sequenceNumber, record);
+				// add the new record to the batch, it is written to the storage in chunks and when the operation completes
+				final BluetoothDevice device = gatt.getDevice();
+				mRecordStore.add(device.getAddress(), record);
 
-					// if there is no context information following the measurement data, notify callback about the new record
-					if (!contextInfoFollows)
-						mCallbacks.onDatasetChanged(gatt.getDevice());
+				final int sequenceNumber = record.sequenceNumber;
+				mHandler.post(() -> {
+					// the record is added to the records list, it is shown when committed
+					mFirstShown = Math.min(mFirstShown, sequenceNumber);
+					mLastShown = Math.max(mLastShown, sequenceNumber);
 				});
+				if (mRecordStore.getPendingCount() >= COMMIT_CHUNK_SIZE)
+					commitRecords();
 			} else if (GM_CONTEXT_CHARACTERISTIC.equals(uuid)) {
-				Logger.a(mLogSession, "\"" + GlucoseMeasurementContextParser.parse(characteristic) + "\" received");
+				DeferredLogger.received(mLogSession, GlucoseMeasurementContextParser::parse, characteristic.getValue());
 
 				int offset = 0;
 				final int flags = characteristic.getIntValue(BluetoothGattCharacteristic.FORMAT_UINT8, offset);
@@ -288,14 +286,7 @@ public class GlucoseManager extends BleManager<GlucoseManagerCallbacks> {
 				final int sequenceNumber = characteristic.getIntValue(BluetoothGattCharacteristic.FORMAT_UINT16, offset);
 				offset += 2;
 
-				final GlucoseRecord record = mRecords.get(sequenceNumber);
-				if (record == null) {
-					DebugLogger.w(TAG, "Context information with unknown sequence number: " + sequenceNumber);
-					return;
-				}
-
 				final GlucoseRecord.MeasurementContext context = new GlucoseRecord.MeasurementContext();
-				record.context = context;
 
 				if (moreFlagsPresent)
 					offset += 1;
@@ -335,186 +326,243 @@ public class GlucoseManager extends BleManager<GlucoseManagerCallbacks> {
 					context.HbA1c = characteristic.getFloatValue(BluetoothGattCharacteristic.FORMAT_SFLOAT, offset);
 				}
 
-				// notify callback about the new record
-				mCallbacks.onDatasetChanged(gatt.getDevice());
+				// the context is merged with the measurement with the same sequence number when records are read,
+				// it is shown when committed with the next chunk
+				mRecordStore.addContext(gatt.getDevice().getAddress(), sequenceNumber, context);
 			}
 		}
 
 		@Override
 		protected void onCharacteristicIndicated(final BluetoothGatt gatt, final BluetoothGattCharacteristic characteristic) {
-			Logger.a(mLogSession, "\"" + RecordAccessControlPointParser.parse(characteristic) + "\" received");
+			super.onCharacteristicIndicated(gatt, characteristic);
 
-			// Record Access Control Point characteristic
-			int offset = 0;
-			final int opCode = characteristic.getIntValue(BluetoothGattCharacteristic.FORMAT_UINT8, offset);
-			offset += 2; // skip the operator
+			DeferredLogger.received(mLogSession, RecordAccessControlPointParser::parse, characteristic.getValue());
 
-			if (opCode == OP_CODE_NUMBER_OF_STORED_RECORDS_RESPONSE) {
-				// We've obtained the number of all records
-				final int number = characteristic.getIntValue(BluetoothGattCharacteristic.FORMAT_UINT16, offset);
+			// The engine writes the next request of the operation, if any
+			mRACP.onResponse(characteristic.getValue());
+			pollRACP();
+		}
+	};
 
-				mCallbacks.onNumberOfRecordsRequested(gatt.getDevice(), number);
+	/**
+	 * Reports the results of RACP operations. Records obtained are written to the storage, also when the operation
+	 * did not complete. A sync since the last record rejected by the meter, as it can't filter by sequence number,
+	 * falls back to all records.
+	 */
+	private final RACPEngine.Listener mRACPListener = new RACPEngine.Listener() {
+		@Override
+		public void onNumberOfRecords(final int number) {
+			mCallbacks.onNumberOfRecordsRequested(mBluetoothDevice, number);
+		}
 
-				// Request the records
-				if (number > 0) {
-					final BluetoothGattCharacteristic racpCharacteristic = mRecordAccessControlPointCharacteristic;
-					writeCharacteristic(racpCharacteristic, getOpCode(OP_CODE_REPORT_STORED_RECORDS, OPERATOR_ALL_RECORDS));
-				} else {
-					mCallbacks.onOperationCompleted(gatt.getDevice());
-				}
-			} else if (opCode == OP_CODE_RESPONSE_CODE) {
-				final int requestedOpCode = characteristic.getIntValue(BluetoothGattCharacteristic.FORMAT_UINT8, offset);
-				final int responseCode = characteristic.getIntValue(BluetoothGattCharacteristic.FORMAT_UINT8, offset + 1);
-				DebugLogger.d(TAG, "Response result for: " + requestedOpCode + " is: " + responseCode);
-
-				switch (responseCode) {
-					case RESPONSE_SUCCESS:
-						if (!mAbort)
-							mCallbacks.onOperationCompleted(gatt.getDevice());
-						else
-							mCallbacks.onOperationAborted(gatt.getDevice());
-						break;
-					case RESPONSE_NO_RECORDS_FOUND:
-						mCallbacks.onOperationCompleted(gatt.getDevice());
-						break;
-					case RESPONSE_OP_CODE_NOT_SUPPORTED:
-						mCallbacks.onOperationNotSupported(gatt.getDevice());
-						break;
-					case RESPONSE_PROCEDURE_NOT_COMPLETED:
-					case RESPONSE_ABORT_UNSUCCESSFUL:
-					default:
-						mCallbacks.onOperationFailed(gatt.getDevice());
-						break;
-				}
-				mAbort = false;
+		@Override
+		public void onCompleted(final int records) {
+			mSyncSinceLast = false;
+			commitRecords();
+			mCallbacks.onOperationCompleted(mBluetoothDevice);
+		}
+
+		@Override
+		public void onAborted() {
+			mSyncSinceLast = false;
+			commitRecords();
+			mCallbacks.onOperationAborted(mBluetoothDevice);
+		}
+
+		@Override
+		public void onFailed(final int opCode, final int responseCode) {
+			DebugLogger.d(TAG, "Response result for: " + opCode + " is: " + responseCode);
+			if (mSyncSinceLast && RecordAccessControlPoint.isFilterNotSupported(responseCode)) {
+				DebugLogger.d(TAG, "Filtering by sequence number not supported, requesting all records");
+				mSyncSinceLast = false;
+				startOperation(mAllRecordsOperation);
+				return;
 			}
+
+			mSyncSinceLast = false;
+			commitRecords();
+			if (responseCode == RecordAccessControlPoint.RESPONSE_OP_CODE_NOT_SUPPORTED)
+				mCallbacks.onOperationNotSupported(mBluetoothDevice);
+			else
+				mCallbacks.onOperationFailed(mBluetoothDevice);
+		}
+
+		@Override
+		public void onTimeout(final int opCode) {
+			DebugLogger.w(TAG, "No response for: " + opCode);
+			mSyncSinceLast = false;
+			commitRecords();
+			mCallbacks.onOperationFailed(mBluetoothDevice);
 		}
 	};
 
 	/**
-	 * Writes given operation parameters to the characteristic
-	 *
-	 * @param opCode   the operation code
-	 * @param operator the operator (see {@link #OPERATOR_NULL} and others
-	 * @param params   optional parameters (one for >=, <=, two for the range, none for other operators)
+	 * Writes RACP requests given by the engine. The request is copied, the engine reuses the buffer.
+	 */
+	private final RACPEngine.Transport mRACPTransport = (buffer, offset, length) -> {
+		final BluetoothGattCharacteristic characteristic = mRecordAccessControlPointCharacteristic;
+		if (characteristic != null)
+			enqueue(Request.newWriteRequest(characteristic, buffer, offset, length));
+	};
+
+	private final Runnable mRACPPoll = this::pollRACP;
+
+	/**
+	 * Times out the RACP request if the glucose device has not responded, and schedules the next check.
+	 */
+	private void pollRACP() {
+		mHandler.removeCallbacks(mRACPPoll);
+		final long delay = mRACP.poll();
+		if (delay >= 0)
+			mHandler.postDelayed(mRACPPoll, delay);
+	}
+
+	private void startOperation(final RACPEngine.Operation operation) {
+		if (mRACP.start(operation))
+			pollRACP();
+	}
+
+	/**
+	 * Writes the records obtained so far to the storage in the background. The list is refreshed when they are saved,
+	 * see {@link GlucoseManagerCallbacks#onDatasetChanged(BluetoothDevice)}.
 	 */
-	private byte[] getOpCode(final int opCode, final int operator, final Integer... params) {
-        // 1 byte for opCode, 1 for operator, 1 for filter type (if parameters exists) and 2 for each parameter
-		final int size = 2 + ((params.length > 0) ? 1 : 0) + params.length * 2;
-		final byte[] data = new byte[size];
-
-		// Write the operation code
-		int offset = 0;
-		data[offset++] = (byte) opCode;
-
-		// Write the operator. This is always present but may be equal to OPERATOR_NULL
-		data[offset++] = (byte) operator;
-
-		// If parameters exists, append them. Parameters should be sorted from minimum to maximum.
-        // Currently only one or two params are allowed
-		if (params.length > 0) {
-			// Our implementation use only sequence number as a filer type
-			data[offset++] = FILTER_TYPE_SEQUENCE_NUMBER;
-
-			for (final Integer i : params) {
-				data[offset++] = (byte) (i & 0xFF);
-				data[offset++] = (byte) ((i >> 8) & 0xFF);
+	private void commitRecords() {
+		final BluetoothDevice device = mBluetoothDevice;
+		mCommitExecutor.execute(() -> {
+			final int records = mRecordStore.commit();
+			if (records > 0) {
+				DebugLogger.d(TAG, records + " records saved");
+				// Posted after the updates of the shown range of these records
+				mHandler.post(() -> mCallbacks.onDatasetChanged(device));
 			}
-		}
-		return data;
+		});
 	}
 
 	/**
-	 * Returns all records as a sparse array where sequence number is the key.
+	 * Returns the local history of glucose records of all meters.
 	 *
-	 * @return the records list
+	 * @return the record store
 	 */
-	public SparseArray<GlucoseRecord> getRecords() {
-		return mRecords;
+	public GlucoseRecordStore getRecordStore() {
+		return mRecordStore;
 	}
 
 	/**
-	 * Clears the records list locally
+	 * Returns the lowest sequence number of the records list, see {@link #getLastShown()}.
+	 */
+	public int getFirstShown() {
+		return mFirstShown;
+	}
+
+	/**
+	 * Returns the highest sequence number of the records list. It is lower than {@link #getFirstShown()} if the list is empty.
+	 */
+	public int getLastShown() {
+		return mLastShown;
+	}
+
+	/**
+	 * Shows the whole local history of the meter in the records list.
+	 */
+	public void showHistory() {
+		mFirstShown = 0;
+		mLastShown = 0xFFFF;
+	}
+
+	/**
+	 * Clears the records list locally. The records stay in the local history, see {@link #deleteHistory()}.
 	 */
 	public void clear() {
-		mRecords.clear();
+		mFirstShown = Integer.MAX_VALUE;
+		mLastShown = -1;
 		mCallbacks.onOperationCompleted(mBluetoothDevice);
 	}
 
+	/**
+	 * Removes the records of the connected meter from the local history and clears the records list.
+	 * The next refresh obtains all records.
+	 */
+	public void deleteHistory() {
+		final BluetoothDevice device = mBluetoothDevice;
+		if (device != null) {
+			// After the records being committed, so they are removed as well
+			mCommitExecutor.execute(() -> {
+				mRecordStore.clear(device.getAddress());
+				mHandler.post(() -> mCallbacks.onDatasetChanged(device));
+			});
+		}
+		clear();
+	}
+
 	/**
 	 * Sends the request to obtain the last (most recent) record from glucose device. The data will
      * be returned to Glucose Measurement characteristic as a notification followed by Record Access
-	 * Control Point indication with status code ({@link #RESPONSE_SUCCESS} or other in case of error.
+	 * Control Point indication with status code ({@link RecordAccessControlPoint#RESPONSE_SUCCESS} or other in case of error.
+	 * The list shows only this record, it is added to the local history.
 	 */
 	public void getLastRecord() {
-		if (mRecordAccessControlPointCharacteristic == null)
+		if (mRecordAccessControlPointCharacteristic == null || mRACP.isBusy())
 			return;
 
 		clear();
 		mCallbacks.onOperationStarted(mBluetoothDevice);
-
-		final BluetoothGattCharacteristic characteristic = mRecordAccessControlPointCharacteristic;
-		writeCharacteristic(characteristic, getOpCode(OP_CODE_REPORT_STORED_RECORDS, OPERATOR_LAST_RECORD));
+		startOperation(mLastRecordOperation);
 	}
 
 	/**
 	 * Sends the request to obtain the first (oldest) record from glucose device. The data will be
      * returned to Glucose Measurement characteristic as a notification followed by Record Access
-     * Control Point indication with status code ({@link #RESPONSE_SUCCESS} or other in case of error.
+     * Control Point indication with status code ({@link RecordAccessControlPoint#RESPONSE_SUCCESS} or other in case of error.
+	 * The list shows only this record, it is added to the local history.
 	 */
 	public void getFirstRecord() {
-		if (mRecordAccessControlPointCharacteristic == null)
+		if (mRecordAccessControlPointCharacteristic == null || mRACP.isBusy())
 			return;
 
 		clear();
 		mCallbacks.onOperationStarted(mBluetoothDevice);
-
-		final BluetoothGattCharacteristic characteristic = mRecordAccessControlPointCharacteristic;
-		writeCharacteristic(characteristic, getOpCode(OP_CODE_REPORT_STORED_RECORDS, OPERATOR_FIRST_RECORD));
+		startOperation(mFirstRecordOperation);
 	}
 
 	/**
 	 * Sends the request to obtain all records from glucose device. Initially we want to notify
-     * him/her about the number of the records so the {@link #OP_CODE_REPORT_NUMBER_OF_RECORDS}
-     * is send. The data will be returned to Glucose Measurement characteristic as a notification
-     * followed by Record Access Control Point indication with status code ({@link #RESPONSE_SUCCESS}
+     * him/her about the number of the records, the records are requested as soon as the device reports it. The data will be returned to Glucose Measurement characteristic as a notification
+     * followed by Record Access Control Point indication with status code ({@link RecordAccessControlPoint#RESPONSE_SUCCESS}
      * or other in case of error.
+	 * <p>
+	 * The list shows only these records. They are merged into the local history, records already stored are replaced.
+	 * Use {@link #refreshRecords()} to obtain only the new ones.
 	 */
 	public void getAllRecords() {
-		if (mRecordAccessControlPointCharacteristic == null)
+		if (mRecordAccessControlPointCharacteristic == null || mRACP.isBusy())
 			return;
 
 		clear();
 		mCallbacks.onOperationStarted(mBluetoothDevice);
-
-		final BluetoothGattCharacteristic characteristic = mRecordAccessControlPointCharacteristic;
-		writeCharacteristic(characteristic, getOpCode(OP_CODE_REPORT_NUMBER_OF_RECORDS, OPERATOR_ALL_RECORDS));
+		startOperation(mAllRecordsOperation);
 	}
 
 	/**
-	 * Sends the request to obtain from the glucose device all records newer than the newest one
-     * from local storage. The data will be returned to Glucose Measurement characteristic as a
-     * notification followed by Record Access Control Point indication with status code
-     * ({@link #RESPONSE_SUCCESS} or other in case of error.
-	 * <p>
-	 * Refresh button will not download records older than the oldest in the local memory.
-     * E.g. if you have pressed Last and then Refresh, than it will try to get only newer records.
-     * However, if there are no records, it will download all existing (using {@link #getAllRecords()}).
+	 * Sends the request to obtain only records newer than the last one in the local history of this meter, also
+	 * stored before the app was restarted. Sequence numbers on the meter are monotonic, so records with sequence
+	 * numbers greater or equal to the next one are requested, after requesting their number with the same filter.
+	 * The new records are added to the list. If there are no records in the history, all records are requested (using
+	 * {@link #getAllRecords()}). If the meter does not support filtering by sequence number, all records are requested
+	 * and merged into the history.
+	 * The data will be returned to Glucose Measurement characteristic as a notification followed by Record Access
+	 * Control Point indication with status code ({@link RecordAccessControlPoint#RESPONSE_SUCCESS} or other in case of error.
 	 */
 	public void refreshRecords() {
-		if (mRecordAccessControlPointCharacteristic == null)
+		if (mRecordAccessControlPointCharacteristic == null || mRACP.isBusy())
 			return;
 
-		if (mRecords.size() == 0) {
+		final int lastSequenceNumber = mRecordStore.getLastSequenceNumber(mBluetoothDevice.getAddress());
+		if (lastSequenceNumber < 0 || lastSequenceNumber >= 0xFFFF) {
 			getAllRecords();
 		} else {
 			mCallbacks.onOperationStarted(mBluetoothDevice);
-
-			// obtain the last sequence number
-			final int sequenceNumber = mRecords.keyAt(mRecords.size() - 1) + 1;
-
-			final BluetoothGattCharacteristic characteristic = mRecordAccessControlPointCharacteristic;
-			writeCharacteristic(characteristic, getOpCode(OP_CODE_REPORT_STORED_RECORDS, OPERATOR_GREATER_THEN_OR_EQUAL, sequenceNumber));
+			mSyncSinceLast = true;
+			startOperation(RACPEngine.Operation.recordsFrom(lastSequenceNumber + 1));
 			// Info:
 			// Operators OPERATOR_LESS_THEN_OR_EQUAL and OPERATOR_RANGE are not supported by Nordic Semiconductor Glucose Service in SDK 4.4.2.
 		}
@@ -527,25 +575,24 @@ public class GlucoseManager extends BleManager<GlucoseManagerCallbacks> {
 		if (mRecordAccessControlPointCharacteristic == null)
 			return;
 
-		mAbort = true;
-		final BluetoothGattCharacteristic characteristic = mRecordAccessControlPointCharacteristic;
-		writeCharacteristic(characteristic, getOpCode(OP_CODE_ABORT_OPERATION, OPERATOR_NULL));
+		if (mRACP.abort())
+			pollRACP();
 	}
 
 	/**
 	 * Sends the request to delete all data from the device. A Record Access Control Point indication
-     * with status code ({@link #RESPONSE_SUCCESS} (or other in case of error) will be send.
+     * with status code ({@link RecordAccessControlPoint#RESPONSE_SUCCESS} (or other in case of error) will be send.
+	 * <p>
+	 * The local history is kept, use {@link #deleteHistory()} to remove it.
 	 * <p>
 	 * FIXME This method is not supported by Nordic Semiconductor Glucose Service in SDK 4.4.2.
 	 */
 	public void deleteAllRecords() {
-		if (mRecordAccessControlPointCharacteristic == null)
+		if (mRecordAccessControlPointCharacteristic == null || mRACP.isBusy())
 			return;
 
 		clear();
 		mCallbacks.onOperationStarted(mBluetoothDevice);
-
-		final BluetoothGattCharacteristic characteristic = mRecordAccessControlPointCharacteristic;
-		writeCharacteristic(characteristic, getOpCode(OP_CODE_DELETE_STORED_RECORDS, OPERATOR_ALL_RECORDS));
+		startOperation(mDeleteAllRecordsOperation);
 	}
 }
@@ -0,0 +1,436 @@
+/*
+ * Copyright (c) 2015, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package no.nordicsemi.android.nrftoolbox.gls;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+import android.util.SparseArray;
+
+import java.util.Calendar;
+
+/**
+ * The local history of glucose records, kept in a database. Records are keyed by the address of the meter and the
+ * sequence number, which is monotonic on the meter, so the next sync only needs to request records newer than the last
+ * one stored, see {@link #getLastSequenceNumber(String)}.
+ * <p>
+ * Measurement context is kept in a separate table with the same key and joined when records are read, so a context
+ * is merged with its measurement regardless of the order in which they arrive.
+ * </p>
+ * <p>
+ * Records and contexts are added to a batch in memory and written in a single transaction by {@link #commit()}. Pending
+ * records are not returned by queries. Records are read in pages, see {@link #query(String, int, GlucoseRecord[])}.
+ * </p>
+ * All methods are thread safe.
+ */
+public class GlucoseRecordStore {
+	/** Database file name */
+	private static final String DATABASE_NAME = "toolbox_gls.db";
+	/** Database version */
+	private static final int DATABASE_VERSION = 1;
+
+	private interface Tables {
+		/** Glucose measurements, one row per meter and sequence number. */
+		String RECORDS = "records";
+		/** Measurement contexts, with the key of the measurement they belong to. */
+		String CONTEXTS = "contexts";
+	}
+
+	private interface Columns {
+		String DEVICE = "device";
+		String SEQUENCE_NUMBER = "sequence_number";
+		String TIME = "time";
+		String TIME_OFFSET = "time_offset";
+		String CONCENTRATION = "concentration";
+		String UNIT = "unit";
+		String TYPE = "type";
+		String SAMPLE_LOCATION = "sample_location";
+		String STATUS = "status";
+		String CARBOHYDRATE_ID = "carbohydrate_id";
+		String CARBOHYDRATE_UNITS = "carbohydrate_units";
+		String MEAL = "meal";
+		String TESTER = "tester";
+		String HEALTH = "health";
+		String EXERCISE_DURATION = "exercise_duration";
+		String EXERCISE_INTENSITY = "exercise_intensity";
+		String MEDICATION_ID = "medication_id";
+		String MEDICATION_QUANTITY = "medication_quantity";
+		String MEDICATION_UNIT = "medication_unit";
+		String HBA1C = "hba1c";
+	}
+
+	private static final String DEVICE_SELECTION = Columns.DEVICE + "=?";
+
+	private static final String INSERT_RECORD = "INSERT OR REPLACE INTO " + Tables.RECORDS + "(" + Columns.DEVICE + ", " + Columns.SEQUENCE_NUMBER + ", "
+			+ Columns.TIME + ", " + Columns.TIME_OFFSET + ", " + Columns.CONCENTRATION + ", " + Columns.UNIT + ", " + Columns.TYPE + ", "
+			+ Columns.SAMPLE_LOCATION + ", " + Columns.STATUS + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+	private static final String INSERT_CONTEXT = "INSERT OR REPLACE INTO " + Tables.CONTEXTS + "(" + Columns.DEVICE + ", " + Columns.SEQUENCE_NUMBER + ", "
+			+ Columns.CARBOHYDRATE_ID + ", " + Columns.CARBOHYDRATE_UNITS + ", " + Columns.MEAL + ", " + Columns.TESTER + ", " + Columns.HEALTH + ", "
+			+ Columns.EXERCISE_DURATION + ", " + Columns.EXERCISE_INTENSITY + ", " + Columns.MEDICATION_ID + ", " + Columns.MEDICATION_QUANTITY + ", "
+			+ Columns.MEDICATION_UNIT + ", " + Columns.HBA1C + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+	private static final String COUNT = "SELECT COUNT(*) FROM " + Tables.RECORDS + " WHERE " + DEVICE_SELECTION
+			+ " AND " + Columns.SEQUENCE_NUMBER + " BETWEEN ? AND ?";
+
+	private static final String LAST_SEQUENCE_NUMBER = "SELECT IFNULL(MAX(" + Columns.SEQUENCE_NUMBER + "), -1) FROM " + Tables.RECORDS + " WHERE " + DEVICE_SELECTION;
+
+	/**
+	 * Records of a meter within a range of sequence numbers, in their order, with their contexts, if any.
+	 * The context columns start at 8.
+	 */
+	private static final String QUERY = "SELECT r." + Columns.SEQUENCE_NUMBER + ", r." + Columns.TIME + ", r." + Columns.TIME_OFFSET + ", r." + Columns.CONCENTRATION
+			+ ", r." + Columns.UNIT + ", r." + Columns.TYPE + ", r." + Columns.SAMPLE_LOCATION + ", r." + Columns.STATUS + ", c." + Columns.SEQUENCE_NUMBER
+			+ ", c." + Columns.CARBOHYDRATE_ID + ", c." + Columns.CARBOHYDRATE_UNITS + ", c." + Columns.MEAL + ", c." + Columns.TESTER + ", c." + Columns.HEALTH
+			+ ", c." + Columns.EXERCISE_DURATION + ", c." + Columns.EXERCISE_INTENSITY + ", c." + Columns.MEDICATION_ID + ", c." + Columns.MEDICATION_QUANTITY
+			+ ", c." + Columns.MEDICATION_UNIT + ", c." + Columns.HBA1C
+			+ " FROM " + Tables.RECORDS + " r LEFT JOIN " + Tables.CONTEXTS + " c ON c." + Columns.DEVICE + "=r." + Columns.DEVICE
+			+ " AND c." + Columns.SEQUENCE_NUMBER + "=r." + Columns.SEQUENCE_NUMBER
+			+ " WHERE r." + Columns.DEVICE + "=? AND r." + Columns.SEQUENCE_NUMBER + " BETWEEN ? AND ?"
+			+ " ORDER BY r." + Columns.SEQUENCE_NUMBER + " LIMIT ? OFFSET ?";
+
+	private static GlucoseRecordStore sInstance;
+
+	private final SQLiteDatabase mDatabase;
+	private final SQLiteStatement mInsertRecord;
+	private final SQLiteStatement mInsertContext;
+	private final SQLiteStatement mCount;
+	private final SQLiteStatement mLastSequenceNumber;
+	private final String[] mQueryArgs = new String[5];
+
+	/** The meter of the pending records. */
+	private String mPendingDevice;
+	private SparseArray<GlucoseRecord> mPendingRecords = new SparseArray<>();
+	private SparseArray<GlucoseRecord.MeasurementContext> mPendingContexts = new SparseArray<>();
+
+	/**
+	 * Returns the singleton instance of the store.
+	 */
+	public static synchronized GlucoseRecordStore getInstance(final Context context) {
+		if (sInstance == null)
+			sInstance = new GlucoseRecordStore(context.getApplicationContext());
+		return sInstance;
+	}
+
+	private GlucoseRecordStore(final Context context) {
+		mDatabase = new SQLiteHelper(context).getWritableDatabase();
+		mInsertRecord = mDatabase.compileStatement(INSERT_RECORD);
+		mInsertContext = mDatabase.compileStatement(INSERT_CONTEXT);
+		mCount = mDatabase.compileStatement(COUNT);
+		mLastSequenceNumber = mDatabase.compileStatement(LAST_SEQUENCE_NUMBER);
+	}
+
+	/**
+	 * Returns the number of committed records of the meter with sequence numbers in the given range.
+	 *
+	 * @param device the meter address
+	 * @param first  the lowest sequence number
+	 * @param last   the highest sequence number
+	 */
+	public synchronized int getCount(final String device, final int first, final int last) {
+		mCount.bindString(1, device);
+		mCount.bindLong(2, first);
+		mCount.bindLong(3, last);
+		return (int) mCount.simpleQueryForLong();
+	}
+
+	/**
+	 * Returns the highest committed sequence number of the meter, or -1 if there are no records.
+	 *
+	 * @param device the meter address
+	 */
+	public synchronized int getLastSequenceNumber(final String device) {
+		mLastSequenceNumber.bindString(1, device);
+		return (int) mLastSequenceNumber.simpleQueryForLong();
+	}
+
+	/**
+	 * Reads a page of committed records of the meter with sequence numbers in the given range, in their order.
+	 *
+	 * @param device the meter address
+	 * @param first  the lowest sequence number
+	 * @param last   the highest sequence number
+	 * @param offset the index of the first record within the range
+	 * @param page   the array to be filled, its length is the page size
+	 * @return the number of records read, lower than the page size at the end
+	 */
+	public synchronized int query(final String device, final int first, final int last, final int offset, final GlucoseRecord[] page) {
+		final String[] args = mQueryArgs;
+		args[0] = device;
+		args[1] = String.valueOf(first);
+		args[2] = String.valueOf(last);
+		args[3] = String.valueOf(page.length);
+		args[4] = String.valueOf(offset);
+
+		final Cursor cursor = mDatabase.rawQuery(QUERY, args);
+		try {
+			int count = 0;
+			while (count < page.length && cursor.moveToNext())
+				page[count++] = readRecord(cursor);
+			return count;
+		} finally {
+			cursor.close();
+		}
+	}
+
+	private static GlucoseRecord readRecord(final Cursor cursor) {
+		final GlucoseRecord record = new GlucoseRecord();
+		record.sequenceNumber = cursor.getInt(0);
+		record.time = Calendar.getInstance();
+		record.time.setTimeInMillis(cursor.getLong(1));
+		record.timeOffset = cursor.getInt(2);
+		record.glucoseConcentration = cursor.getFloat(3);
+		record.unit = cursor.getInt(4);
+		record.type = cursor.getInt(5);
+		record.sampleLocation = cursor.getInt(6);
+		record.status = cursor.getInt(7);
+
+		if (!cursor.isNull(8)) {
+			final GlucoseRecord.MeasurementContext context = new GlucoseRecord.MeasurementContext();
+			context.carbohydrateId = cursor.getInt(9);
+			context.carbohydrateUnits = cursor.getFloat(10);
+			context.meal = cursor.getInt(11);
+			context.tester = cursor.getInt(12);
+			context.health = cursor.getInt(13);
+			context.exerciseDuration = cursor.getInt(14);
+			context.exerciseIntensity = cursor.getInt(15);
+			context.medicationId = cursor.getInt(16);
+			context.medicationQuantity = cursor.getFloat(17);
+			context.medicationUnit = cursor.getInt(18);
+			context.HbA1c = cursor.getFloat(19);
+			record.context = context;
+		}
+		return record;
+	}
+
+	/**
+	 * Adds the record to the current batch. A record with the same sequence number replaces the stored one, keeping
+	 * its context. Records of another meter are committed first.
+	 *
+	 * @param device the meter address
+	 * @param record the record
+	 */
+	public void add(final String device, final GlucoseRecord record) {
+		synchronized (this) {
+			if (setPendingDevice(device)) {
+				mPendingRecords.put(record.sequenceNumber, record);
+				return;
+			}
+		}
+		commit();
+		add(device, record);
+	}
+
+	/**
+	 * Adds the context of the record with the given sequence number to the current batch. The measurement may be
+	 * added before or after it, also in another batch.
+	 *
+	 * @param device         the meter address
+	 * @param sequenceNumber the sequence number of the measurement
+	 * @param context        the measurement context
+	 */
+	public void addContext(final String device, final int sequenceNumber, final GlucoseRecord.MeasurementContext context) {
+		synchronized (this) {
+			if (setPendingDevice(device)) {
+				mPendingContexts.put(sequenceNumber, context);
+				return;
+			}
+		}
+		commit();
+		addContext(device, sequenceNumber, context);
+	}
+
+	/**
+	 * Sets the meter of the current batch, if it is empty. Returns false if the batch contains records of another meter.
+	 * The batch can't be committed while holding the lock of the store, see {@link #commit()}.
+	 */
+	private boolean setPendingDevice(final String device) {
+		if (mPendingDevice != null && !mPendingDevice.equals(device) && (mPendingRecords.size() > 0 || mPendingContexts.size() > 0))
+			return false;
+		mPendingDevice = device;
+		return true;
+	}
+
+	/**
+	 * Returns the number of records added since the last commit.
+	 */
+	public synchronized int getPendingCount() {
+		return mPendingRecords.size();
+	}
+
+	/**
+	 * Writes the records and contexts added since the last commit in a single transaction. The batch is taken over
+	 * at once, the records added while it is being written belong to the next one. It should not be called on
+	 * the main thread.
+	 *
+	 * @return the number of records written
+	 */
+	public int commit() {
+		synchronized (mWriteLock) {
+			final String device;
+			final SparseArray<GlucoseRecord> records;
+			final SparseArray<GlucoseRecord.MeasurementContext> contexts;
+			synchronized (this) {
+				device = mPendingDevice;
+				records = mPendingRecords;
+				contexts = mPendingContexts;
+				if (records.size() == 0 && contexts.size() == 0)
+					return 0;
+				mPendingRecords = mCommittedRecords;
+				mPendingContexts = mCommittedContexts;
+				mPendingDevice = null;
+			}
+
+			mDatabase.beginTransaction();
+			try {
+				final SQLiteStatement insertRecord = mInsertRecord;
+				for (int i = 0; i < records.size(); ++i) {
+					final GlucoseRecord record = records.valueAt(i);
+					insertRecord.bindString(1, device);
+					insertRecord.bindLong(2, record.sequenceNumber);
+					insertRecord.bindLong(3, record.time.getTimeInMillis());
+					insertRecord.bindLong(4, record.timeOffset);
+					insertRecord.bindDouble(5, record.glucoseConcentration);
+					insertRecord.bindLong(6, record.unit);
+					insertRecord.bindLong(7, record.type);
+					insertRecord.bindLong(8, record.sampleLocation);
+					insertRecord.bindLong(9, record.status);
+					insertRecord.executeInsert();
+				}
+
+				final SQLiteStatement insertContext = mInsertContext;
+				for (int i = 0; i < contexts.size(); ++i) {
+					final GlucoseRecord.MeasurementContext context = contexts.valueAt(i);
+					insertContext.bindString(1, device);
+					insertContext.bindLong(2, contexts.keyAt(i));
+					insertContext.bindLong(3, context.carbohydrateId);
+					insertContext.bindDouble(4, context.carbohydrateUnits);
+					insertContext.bindLong(5, context.meal);
+					insertContext.bindLong(6, context.tester);
+					insertContext.bindLong(7, context.health);
+					insertContext.bindLong(8, context.exerciseDuration);
+					insertContext.bindLong(9, context.exerciseIntensity);
+					insertContext.bindLong(10, context.medicationId);
+					insertContext.bindDouble(11, context.medicationQuantity);
+					insertContext.bindLong(12, context.medicationUnit);
+					insertContext.bindDouble(13, context.HbA1c);
+					insertContext.executeInsert();
+				}
+				mDatabase.setTransactionSuccessful();
+			} finally {
+				mDatabase.endTransaction();
+			}
+
+			// The arrays are reused by the batch after the next one
+			final int count = records.size();
+			records.clear();
+			contexts.clear();
+			mCommittedRecords = records;
+			mCommittedContexts = contexts;
+			return count;
+		}
+	}
+
+	/**
+	 * Discards the records and contexts added since the last commit.
+	 */
+	public synchronized void rollback() {
+		mPendingRecords.clear();
+		mPendingContexts.clear();
+		mPendingDevice = null;
+	}
+
+	/**
+	 * Removes all records of the meter, including pending ones. A batch being written is written first.
+	 *
+	 * @param device the meter address
+	 */
+	public void clear(final String device) {
+		synchronized (mWriteLock) {
+			synchronized (this) {
+				if (device.equals(mPendingDevice))
+					rollback();
+			}
+
+			final String[] args = new String[] { device };
+			mDatabase.beginTransaction();
+			try {
+				mDatabase.delete(Tables.RECORDS, DEVICE_SELECTION, args);
+				mDatabase.delete(Tables.CONTEXTS, DEVICE_SELECTION, args);
+				mDatabase.setTransactionSuccessful();
+			} finally {
+				mDatabase.endTransaction();
+			}
+		}
+	}
+
+	private class SQLiteHelper extends SQLiteOpenHelper {
+
+		/**
+		 * The SQL code that creates the records table. The primary key index is used to find the records of a meter
+		 * in the order of sequence numbers and the last sequence number.
+		 *
+		 * <pre>
+		 * ----------------------------------------------------------------------------------------------------------
+		 * |                                                RECORDS                                                 |
+		 * ----------------------------------------------------------------------------------------------------------
+		 * | device (text, pk) | sequence_number (int, pk) | time (int) | time_offset (int) | concentration (real) |
+		 * | unit (int) | type (int) | sample_location (int) | status (int)                                          |
+		 * ----------------------------------------------------------------------------------------------------------
+		 * </pre>
+		 */
+		private static final String CREATE_RECORDS = "CREATE TABLE " + Tables.RECORDS + "(" + Columns.DEVICE + " TEXT NOT NULL, "
+				+ Columns.SEQUENCE_NUMBER + " INTEGER NOT NULL, " + Columns.TIME + " INTEGER NOT NULL, " + Columns.TIME_OFFSET + " INTEGER NOT NULL, "
+				+ Columns.CONCENTRATION + " REAL NOT NULL, " + Columns.UNIT + " INTEGER NOT NULL, " + Columns.TYPE + " INTEGER NOT NULL, "
+				+ Columns.SAMPLE_LOCATION + " INTEGER NOT NULL, " + Columns.STATUS + " INTEGER NOT NULL, "
+				+ "PRIMARY KEY(" + Columns.DEVICE + ", " + Columns.SEQUENCE_NUMBER + "))";
+
+		/**
+		 * The SQL code that creates the measurement contexts table, with the same key as records.
+		 */
+		private static final String CREATE_CONTEXTS = "CREATE TABLE " + Tables.CONTEXTS + "(" + Columns.DEVICE + " TEXT NOT NULL, "
+				+ Columns.SEQUENCE_NUMBER + " INTEGER NOT NULL, " + Columns.CARBOHYDRATE_ID + " INTEGER NOT NULL, " + Columns.CARBOHYDRATE_UNITS + " REAL NOT NULL, "
+				+ Columns.MEAL + " INTEGER NOT NULL, " + Columns.TESTER + " INTEGER NOT NULL, " + Columns.HEALTH + " INTEGER NOT NULL, "
+				+ Columns.EXERCISE_DURATION + " INTEGER NOT NULL, " + Columns.EXERCISE_INTENSITY + " INTEGER NOT NULL, " + Columns.MEDICATION_ID + " INTEGER NOT NULL, "
+				+ Columns.MEDICATION_QUANTITY + " REAL NOT NULL, " + Columns.MEDICATION_UNIT + " INTEGER NOT NULL, " + Columns.HBA1C + " REAL NOT NULL, "
+				+ "PRIMARY KEY(" + Columns.DEVICE + ", " + Columns.SEQUENCE_NUMBER + "))";
+
+		public SQLiteHelper(final Context context) {
+			super(context, DATABASE_NAME, null, DATABASE_VERSION);
+			// Records are written in the background while the list reads them
+			setWriteAheadLoggingEnabled(true);
+		}
+
+		@Override
+		public void onCreate(final SQLiteDatabase db) {
+			db.execSQL(CREATE_RECORDS);
+			db.execSQL(CREATE_CONTEXTS);
+		}
+
+		@Override
+		public void onUpgrade(final SQLiteDatabase db, final int oldVersion, final int newVersion) {
+			// This method does nothing for now.
+		}
+	}
+}
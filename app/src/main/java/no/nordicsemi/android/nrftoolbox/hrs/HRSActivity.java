@@ -24,7 +24,6 @@ package no.nordicsemi.android.nrftoolbox.hrs;
 import android.bluetooth.BluetoothAdapter;
 import android.bluetooth.BluetoothDevice;
 import android.content.Intent;
-import android.graphics.Point;
 import android.os.Bundle;
 import android.os.Handler;
 import android.support.annotation.NonNull;
@@ -63,7 +62,8 @@ public class HRSActivity extends BleProfileActivity implements HRSManagerCallbac
 
 	private GraphicalView mGraphView;
 	private LineGraphView mLineGraph;
-	private TextView mHRSValue, mHRSPosition;
+	private TextView mHRSValue, mHRSPosition, mHRVValue;
+	private HRSManager mManager;
 
 	private int mHrmValue = 0;
 	private int mCounter = 0;
@@ -78,6 +78,7 @@ public class HRSActivity extends BleProfileActivity implements HRSManagerCallbac
 		mLineGraph = LineGraphView.getLineGraphView();
 		mHRSValue = findViewById(R.id.text_hrs_value);
 		mHRSPosition = findViewById(R.id.text_hrs_position);
+		mHRVValue = findViewById(R.id.text_hrs_hrv);
 		showGraph();
 	}
 
@@ -152,7 +153,7 @@ public class HRSActivity extends BleProfileActivity implements HRSManagerCallbac
 
 	private void updateGraph(final int hrmValue) {
 		mCounter++;
-		mLineGraph.addValue(new Point(mCounter, hrmValue));
+		mLineGraph.addValue(mCounter, hrmValue);
 		mGraphView.repaint();
 	}
 
@@ -161,11 +162,25 @@ public class HRSActivity extends BleProfileActivity implements HRSManagerCallbac
 		public void run() {
 			if (mHrmValue > 0)
 				updateGraph(mHrmValue);
+			updateHRV();
 			if (isGraphInProgress)
 				mHandler.postDelayed(mRepeatTask, REFRESH_INTERVAL);
 		}
 	};
 
+	/**
+	 * Shows the HRV metrics calculated from all RR-intervals received since the device connected.
+	 */
+	private void updateHRV() {
+		final HRSCapture capture = mManager.getCapture();
+		final double rmssd = capture.getRMSSD();
+		if (Double.isNaN(rmssd)) {
+			mHRVValue.setText(R.string.hrs_hrv_not_available);
+		} else {
+			mHRVValue.setText(getString(R.string.hrs_hrv, rmssd, capture.getSDNN(), capture.getPNN50()));
+		}
+	}
+
 	void startShowGraph() {
 		isGraphInProgress = true;
 		mRepeatTask.run();
@@ -178,7 +193,7 @@ public class HRSActivity extends BleProfileActivity implements HRSManagerCallbac
 
 	@Override
 	protected BleManager<HRSManagerCallbacks> initializeManager() {
-		final HRSManager manager = HRSManager.getInstance(getApplicationContext());
+		final HRSManager manager = mManager = HRSManager.getInstance(getApplicationContext());
 		manager.setGattCallbacks(this);
 		return manager;
 	}
@@ -238,6 +253,7 @@ public class HRSActivity extends BleProfileActivity implements HRSManagerCallbac
 	protected void setDefaultUI() {
 		mHRSValue.setText(R.string.not_available_value);
 		mHRSPosition.setText(R.string.not_available);
+		mHRVValue.setText(R.string.hrs_hrv_not_available);
 		clearGraph();
 	}
 
@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2015, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.nrftoolbox.hrs;
+
+import no.nordicsemi.android.nrftoolbox.parser.HeartRateMeasurement;
+
+/**
+ * Records every Heart Rate Measurement notification and every RR-interval with the time it was received.
+ * Values are stored in ring buffers of primitives, so the memory used is bounded by the capacities, and the HRV metrics
+ * are updated with each interval, see {@link HRVStatistics}. The buffers grow with the session, so a capture that has
+ * not received any notifications takes a few kilobytes.
+ * <p>
+ * The capture is filled on the thread receiving notifications and may be read from any other thread.
+ * </p>
+ */
+public class HRSCapture {
+	/** Number of heart rate values kept, 24 hours of notifications sent each second. */
+	public static final int DEFAULT_HEART_RATE_CAPACITY = 24 * 60 * 60;
+	/** Number of RR-intervals kept, 24 hours at 120 BPM. */
+	public static final int DEFAULT_RR_INTERVAL_CAPACITY = 24 * 60 * 120;
+
+	private static final int SENSOR_CONTACT_NOT_DETECTED = 2;
+
+	private final TimeSeriesBuffer mHeartRates;
+	private final TimeSeriesBuffer mRRIntervals;
+	private final HRVStatistics mStatistics = new HRVStatistics();
+	private long mNotificationCount;
+
+	public HRSCapture() {
+		this(DEFAULT_HEART_RATE_CAPACITY, DEFAULT_RR_INTERVAL_CAPACITY);
+	}
+
+	/**
+	 * Creates the capture.
+	 *
+	 * @param heartRateCapacity  maximum number of heart rate values kept
+	 * @param rrIntervalCapacity maximum number of RR-intervals kept
+	 */
+	public HRSCapture(final int heartRateCapacity, final int rrIntervalCapacity) {
+		mHeartRates = new TimeSeriesBuffer(heartRateCapacity);
+		mRRIntervals = new TimeSeriesBuffer(rrIntervalCapacity);
+	}
+
+	/**
+	 * Records the decoded measurement.
+	 *
+	 * @param timestamp   the time the notification was received in milliseconds
+	 * @param measurement the measurement
+	 */
+	public synchronized void add(final long timestamp, final HeartRateMeasurement measurement) {
+		mNotificationCount++;
+		mHeartRates.add(timestamp, measurement.heartRate);
+
+		// Intervals measured without skin contact are recorded, but they must not be compared with the following ones
+		final boolean contactLost = measurement.sensorContactStatus == SENSOR_CONTACT_NOT_DETECTED;
+		if (contactLost)
+			mStatistics.breakSequence();
+
+		for (int i = 0; i < measurement.rrIntervalCount; ++i) {
+			final int rrInterval = measurement.rrIntervals[i];
+			mRRIntervals.add(timestamp, rrInterval);
+			if (!contactLost)
+				mStatistics.add(rrInterval * 1000.0 / 1024.0);
+		}
+	}
+
+	/**
+	 * Removes all values and resets the HRV metrics.
+	 */
+	public synchronized void clear() {
+		mNotificationCount = 0;
+		mHeartRates.clear();
+		mRRIntervals.clear();
+		mStatistics.clear();
+	}
+
+	/**
+	 * Returns the number of notifications recorded, including those already overwritten in the buffer.
+	 */
+	public synchronized long getNotificationCount() {
+		return mNotificationCount;
+	}
+
+	/**
+	 * Copies the most recent heart rate values, oldest first.
+	 *
+	 * @param timestamps the array for the receive timestamps, or null
+	 * @param values     the array for the heart rate values in BPM
+	 * @return the number of values copied, limited by the length of the arrays
+	 */
+	public synchronized int getHeartRates(final long[] timestamps, final int[] values) {
+		return copy(mHeartRates, timestamps, values);
+	}
+
+	/**
+	 * Copies the most recent RR-intervals, oldest first.
+	 *
+	 * @param timestamps the array for the receive timestamps, or null
+	 * @param values     the array for the intervals in 1/1024 s
+	 * @return the number of intervals copied, limited by the length of the arrays
+	 */
+	public synchronized int getRRIntervals(final long[] timestamps, final int[] values) {
+		return copy(mRRIntervals, timestamps, values);
+	}
+
+	public synchronized int getHeartRateCount() {
+		return mHeartRates.size();
+	}
+
+	public synchronized int getRRIntervalCount() {
+		return mRRIntervals.size();
+	}
+
+	public synchronized double getRMSSD() {
+		return mStatistics.getRMSSD();
+	}
+
+	public synchronized double getSDNN() {
+		return mStatistics.getSDNN();
+	}
+
+	public synchronized double getPNN50() {
+		return mStatistics.getPNN50();
+	}
+
+	public synchronized double getMeanRR() {
+		return mStatistics.getMeanRR();
+	}
+
+	private static int copy(final TimeSeriesBuffer buffer, final long[] timestamps, final int[] values) {
+		int count = Math.min(buffer.size(), values.length);
+		if (timestamps != null)
+			count = Math.min(count, timestamps.length);
+		final int offset = buffer.size() - count;
+		for (int i = 0; i < count; ++i) {
+			if (timestamps != null)
+				timestamps[i] = buffer.getTimestamp(offset + i);
+			values[i] = buffer.getValue(offset + i);
+		}
+		return count;
+	}
+}
@@ -25,28 +25,34 @@ import android.bluetooth.BluetoothGatt;
 import android.bluetooth.BluetoothGattCharacteristic;
 import android.bluetooth.BluetoothGattService;
 import android.content.Context;
+import android.os.SystemClock;
 
 import java.util.Deque;
 import java.util.LinkedList;
 import java.util.UUID;
 
-import no.nordicsemi.android.ble.BleManager;
 import no.nordicsemi.android.ble.Request;
-import no.nordicsemi.android.log.Logger;
 import no.nordicsemi.android.nrftoolbox.R;
 import no.nordicsemi.android.nrftoolbox.parser.BodySensorLocationParser;
+import no.nordicsemi.android.nrftoolbox.parser.CharacteristicValue;
+import no.nordicsemi.android.nrftoolbox.parser.HeartRateMeasurement;
 import no.nordicsemi.android.nrftoolbox.parser.HeartRateMeasurementParser;
+import no.nordicsemi.android.nrftoolbox.profile.RecordingBleManager;
+import no.nordicsemi.android.nrftoolbox.utility.DeferredLogger;
 
 /**
  * HRSManager class performs BluetoothGatt operations for connection, service discovery, enabling notification and reading characteristics. All operations required to connect to device with BLE HR
  * Service and reading heart rate values are performed here. HRSActivity implements HRSManagerCallbacks in order to receive callbacks of BluetoothGatt operations
  */
-public class HRSManager extends BleManager<HRSManagerCallbacks> {
+public class HRSManager extends RecordingBleManager<HRSManagerCallbacks> {
 	public final static UUID HR_SERVICE_UUID = UUID.fromString("0000180D-0000-1000-8000-00805f9b34fb");
 	private static final UUID HR_SENSOR_LOCATION_CHARACTERISTIC_UUID = UUID.fromString("00002A38-0000-1000-8000-00805f9b34fb");
 	private static final UUID HR_CHARACTERISTIC_UUID = UUID.fromString("00002A37-0000-1000-8000-00805f9b34fb");
 
 	private BluetoothGattCharacteristic mHRCharacteristic, mHRLocationCharacteristic;
+	private final CharacteristicValue mValue = new CharacteristicValue();
+	private final HeartRateMeasurement mMeasurement = new HeartRateMeasurement();
+	private final HRSCapture mCapture = new HRSCapture();
 
 	private static HRSManager managerInstance = null;
 
@@ -64,6 +70,13 @@ public class HRSManager extends BleManager<HRSManagerCallbacks> {
 		super(context);
 	}
 
+	/**
+	 * Returns the capture with all heart rate values and RR-intervals received since the last connection, and the HRV metrics.
+	 */
+	public HRSCapture getCapture() {
+		return mCapture;
+	}
+
 	@Override
 	protected BleManagerGattCallback getGattCallback() {
 		return mGattCallback;
@@ -72,10 +85,12 @@ public class HRSManager extends BleManager<HRSManagerCallbacks> {
 	/**
 	 * BluetoothGatt callbacks for connection/disconnection, service discovery, receiving notification, etc
 	 */
-	private final BleManagerGattCallback mGattCallback = new BleManagerGattCallback() {
+	private final BleManagerGattCallback mGattCallback = new RecordingGattCallback() {
 
 		@Override
 		protected Deque<Request> initGatt(final BluetoothGatt gatt) {
+			mCapture.clear();
+
 			final LinkedList<Request> requests = new LinkedList<>();
 			if (mHRLocationCharacteristic != null)
 				requests.add(Request.newReadRequest(mHRLocationCharacteristic));
@@ -103,7 +118,9 @@ public class HRSManager extends BleManager<HRSManagerCallbacks> {
 
 		@Override
 		public void onCharacteristicRead(final BluetoothGatt gatt, final BluetoothGattCharacteristic characteristic) {
-			Logger.a(mLogSession, "\"" + BodySensorLocationParser.parse(characteristic) + "\" received");
+			super.onCharacteristicRead(gatt, characteristic);
+
+			DeferredLogger.received(mLogSession, BodySensorLocationParser::parse, characteristic.getValue());
 
 			final String sensorPosition = getBodySensorPosition(characteristic.getValue()[0]);
 			//This will send callback to HRSActivity when HR sensor position on body is found in HR device
@@ -118,16 +135,19 @@ public class HRSManager extends BleManager<HRSManagerCallbacks> {
 
 		@Override
 		public void onCharacteristicNotified(final BluetoothGatt gatt, final BluetoothGattCharacteristic characteristic) {
-			Logger.a(mLogSession, "\"" + HeartRateMeasurementParser.parse(characteristic) + "\" received");
+			super.onCharacteristicNotified(gatt, characteristic);
+
+			// Decode the packet once into the reusable holder
+			final HeartRateMeasurement measurement = mMeasurement;
+			if (!HeartRateMeasurementParser.decode(mValue.set(characteristic.getValue()), measurement))
+				return;
+			DeferredLogger.received(mLogSession, HeartRateMeasurementParser::format, measurement);
+
+			// Record every notification and RR-interval, the activity shows only one value per second
+			mCapture.add(SystemClock.elapsedRealtime(), measurement);
 
-			int hrValue;
-			if (isHeartRateInUINT16(characteristic.getValue()[0])) {
-				hrValue = characteristic.getIntValue(BluetoothGattCharacteristic.FORMAT_UINT16, 1);
-			} else {
-				hrValue = characteristic.getIntValue(BluetoothGattCharacteristic.FORMAT_UINT8, 1);
-			}
 			//This will send callback to HRSActivity when new HR value is received from HR device
-			mCallbacks.onHRValueReceived(gatt.getDevice(), hrValue);
+			mCallbacks.onHRValueReceived(gatt.getDevice(), measurement.heartRate);
 		}
 	};
 
@@ -141,11 +161,4 @@ public class HRSManager extends BleManager<HRSManagerCallbacks> {
 		return locations[bodySensorPositionValue];
 	}
 
-	/**
-	 * This method will check if Heart rate value is in 8 bits or 16 bits
-	 */
-	private boolean isHeartRateInUINT16(final byte value) {
-		return ((value & 0x01) != 0);
-	}
-
 }
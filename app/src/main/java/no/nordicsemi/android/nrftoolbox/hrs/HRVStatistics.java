@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2015, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.nrftoolbox.hrs;
+
+/**
+ * Heart rate variability metrics calculated incrementally from consecutive RR-intervals.
+ * Each interval is processed in constant time and memory:
+ * <ul>
+ * <li>SDNN - standard deviation of the intervals, using Welford's algorithm,</li>
+ * <li>RMSSD - root mean square of successive differences,</li>
+ * <li>pNN50 - percentage of successive differences greater than 50 ms.</li>
+ * </ul>
+ */
+public class HRVStatistics {
+	private static final double NN50_THRESHOLD = 50.0; // [ms]
+
+	private long mCount;
+	private double mMean;
+	private double mSquaredDeviations;
+
+	private double mPrevious = Double.NaN;
+	private long mDifferenceCount;
+	private double mSquaredDifferences;
+	private long mNN50Count;
+
+	/**
+	 * Adds the next RR-interval.
+	 *
+	 * @param rrInterval the interval in milliseconds
+	 */
+	public void add(final double rrInterval) {
+		mCount++;
+		final double delta = rrInterval - mMean;
+		mMean += delta / mCount;
+		mSquaredDeviations += delta * (rrInterval - mMean);
+
+		if (!Double.isNaN(mPrevious)) {
+			final double difference = rrInterval - mPrevious;
+			mDifferenceCount++;
+			mSquaredDifferences += difference * difference;
+			if (Math.abs(difference) > NN50_THRESHOLD)
+				mNN50Count++;
+		}
+		mPrevious = rrInterval;
+	}
+
+	/**
+	 * Breaks the sequence of intervals, e.g. after a beat was missed. The next interval will not be compared with the previous one.
+	 */
+	public void breakSequence() {
+		mPrevious = Double.NaN;
+	}
+
+	public void clear() {
+		mCount = 0;
+		mMean = 0;
+		mSquaredDeviations = 0;
+		mPrevious = Double.NaN;
+		mDifferenceCount = 0;
+		mSquaredDifferences = 0;
+		mNN50Count = 0;
+	}
+
+	/**
+	 * Returns the number of intervals added.
+	 */
+	public long getCount() {
+		return mCount;
+	}
+
+	/**
+	 * Returns the mean RR-interval in milliseconds, or NaN if no intervals were added.
+	 */
+	public double getMeanRR() {
+		return mCount > 0 ? mMean : Double.NaN;
+	}
+
+	/**
+	 * Returns the standard deviation of the RR-intervals in milliseconds, or NaN if fewer than 2 intervals were added.
+	 */
+	public double getSDNN() {
+		return mCount > 1 ? Math.sqrt(mSquaredDeviations / (mCount - 1)) : Double.NaN;
+	}
+
+	/**
+	 * Returns the root mean square of successive differences in milliseconds, or NaN if there are no successive intervals.
+	 */
+	public double getRMSSD() {
+		return mDifferenceCount > 0 ? Math.sqrt(mSquaredDifferences / mDifferenceCount) : Double.NaN;
+	}
+
+	/**
+	 * Returns the percentage of successive differences greater than 50 ms, or NaN if there are no successive intervals.
+	 */
+	public double getPNN50() {
+		return mDifferenceCount > 0 ? 100.0 * mNN50Count / mDifferenceCount : Double.NaN;
+	}
+}
@@ -24,7 +24,6 @@ package no.nordicsemi.android.nrftoolbox.hrs;
 import android.content.Context;
 import android.graphics.Color;
 import android.graphics.Paint.Align;
-import android.graphics.Point;
 
 import org.achartengine.ChartFactory;
 import org.achartengine.GraphicalView;
@@ -33,12 +32,24 @@ import org.achartengine.model.TimeSeries;
 import org.achartengine.model.XYMultipleSeriesDataset;
 import org.achartengine.renderer.XYMultipleSeriesRenderer;
 import org.achartengine.renderer.XYSeriesRenderer;
+import org.achartengine.util.MathHelper;
 
 /**
- * This class uses external library AChartEngine to show dynamic real time line graph for HR values
+ * This class uses external library AChartEngine to show dynamic real time line graph for HR values.
+ * Values are kept in a {@link TimeSeriesBuffer} holding the last {@link #WINDOW_SIZE} samples. The chart series contains only
+ * at most {@link #MAX_RENDERED_POINTS} points downsampled from it, so neither the memory nor the repaint time grow with the session.
  */
 public class LineGraphView {
-	//TimeSeries will hold the data in x,y format for single chart
+	/** Number of samples kept and shown on the graph. With 1 sample per second this is 5 minutes. */
+	public static final int WINDOW_SIZE = 300;
+	/** Maximum number of points added to the chart series. */
+	public static final int MAX_RENDERED_POINTS = 120;
+
+	//TimeSeriesBuffer holds the samples in the visible window
+	private final TimeSeriesBuffer mBuffer = new TimeSeriesBuffer(WINDOW_SIZE);
+	private final long[] mRenderedX = new long[MAX_RENDERED_POINTS];
+	private final int[] mRenderedY = new int[MAX_RENDERED_POINTS];
+	//TimeSeries will hold the data in x,y format for single chart, downsampled from the buffer
 	private TimeSeries mSeries = new TimeSeries("Heart Rate");
 	//XYMultipleSeriesDataset will contain all the TimeSeries
 	private XYMultipleSeriesDataset mDataset = new XYMultipleSeriesDataset();
@@ -105,17 +116,37 @@ public class LineGraphView {
 	}
 
 	/**
-	 * add new x,y value to chart
+	 * add new x,y value to chart, the oldest value is removed when the window is full
 	 */
-	public void addValue(Point p) {
-		mSeries.add(p.x, p.y);
+	public void addValue(final long x, final int y) {
+		mBuffer.add(x, y);
+		updateSeries();
 	}
 
 	/**
 	 * clear all previous values of chart
 	 */
 	public void clearGraph() {
+		mBuffer.clear();
+		mSeries.clear();
+		// let the chart calculate the X axis range again
+		mMultiRenderer.setXAxisMin(MathHelper.NULL_VALUE);
+		mMultiRenderer.setXAxisMax(MathHelper.NULL_VALUE);
+	}
+
+	/**
+	 * Replaces the points of the chart series with the downsampled content of the buffer and scrolls the X axis to the window
+	 */
+	private void updateSeries() {
+		final int count = mBuffer.downsample(MAX_RENDERED_POINTS, mRenderedX, mRenderedY);
 		mSeries.clear();
+		for (int i = 0; i < count; ++i)
+			mSeries.add(mRenderedX[i], mRenderedY[i]);
+
+		if (mBuffer.size() > 1) {
+			mMultiRenderer.setXAxisMin(mBuffer.getTimestamp(0));
+			mMultiRenderer.setXAxisMax(mBuffer.getTimestamp(mBuffer.size() - 1));
+		}
 	}
 
 }
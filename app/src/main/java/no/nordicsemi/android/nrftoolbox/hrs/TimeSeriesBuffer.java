@@ -0,0 +1,170 @@
+/*
+ * Copyright (c) 2015, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.nrftoolbox.hrs;
+
+/**
+ * A fixed-capacity ring buffer of (timestamp, value) samples. When full, each new sample overwrites the oldest one,
+ * so the memory used does not depend on the duration of the session. The arrays are allocated small and grow
+ * with the number of samples up to the capacity, so an unused buffer takes little memory.
+ * Samples are indexed from the oldest (0) to the newest ({@link #size()} - 1).
+ */
+public class TimeSeriesBuffer {
+	private static final int INITIAL_SIZE = 256;
+
+	private final int mCapacity;
+	private long[] mTimestamps;
+	private int[] mValues;
+	/** Index of the oldest sample. */
+	private int mStart;
+	private int mSize;
+
+	/**
+	 * Creates the buffer.
+	 *
+	 * @param capacity maximum number of samples kept
+	 */
+	public TimeSeriesBuffer(final int capacity) {
+		if (capacity < 1)
+			throw new IllegalArgumentException("Capacity must be positive");
+		mCapacity = capacity;
+		mTimestamps = new long[Math.min(INITIAL_SIZE, capacity)];
+		mValues = new int[mTimestamps.length];
+	}
+
+	/**
+	 * Appends a sample, overwriting the oldest one if the buffer is full.
+	 *
+	 * @param timestamp the timestamp, in any unit, not lower than the one of the previous sample
+	 * @param value     the value
+	 */
+	public void add(final long timestamp, final int value) {
+		if (mSize == mValues.length && mSize < mCapacity)
+			grow();
+		final int capacity = mValues.length;
+		int index = mStart + mSize;
+		if (index >= capacity)
+			index -= capacity;
+		mTimestamps[index] = timestamp;
+		mValues[index] = value;
+		if (mSize < capacity)
+			mSize++;
+		else if (++mStart == capacity)
+			mStart = 0;
+	}
+
+	public void clear() {
+		mStart = 0;
+		mSize = 0;
+	}
+
+	public int size() {
+		return mSize;
+	}
+
+	public int capacity() {
+		return mCapacity;
+	}
+
+	public long getTimestamp(final int index) {
+		return mTimestamps[toArrayIndex(index)];
+	}
+
+	public int getValue(final int index) {
+		return mValues[toArrayIndex(index)];
+	}
+
+	/**
+	 * Reduces the samples to at most <code>maxPoints</code> points that may be drawn instead of all samples.
+	 * If there are more samples, they are split into <code>maxPoints / 2</code> buckets and the minimum and the maximum
+	 * of each bucket are returned in time order, so peaks are preserved.
+	 *
+	 * @param maxPoints  maximum number of points, at least 2
+	 * @param timestamps the array for the timestamps of the points, at least <code>maxPoints</code> long
+	 * @param values     the array for the values of the points, at least <code>maxPoints</code> long
+	 * @return the number of points written
+	 */
+	public int downsample(final int maxPoints, final long[] timestamps, final int[] values) {
+		if (maxPoints < 2)
+			throw new IllegalArgumentException("At least 2 points are required");
+
+		final int size = mSize;
+		if (size <= maxPoints) {
+			for (int i = 0; i < size; ++i) {
+				final int index = toArrayIndex(i);
+				timestamps[i] = mTimestamps[index];
+				values[i] = mValues[index];
+			}
+			return size;
+		}
+
+		final int buckets = maxPoints / 2;
+		int count = 0;
+		for (int bucket = 0; bucket < buckets; ++bucket) {
+			final int from = (int) ((long) bucket * size / buckets);
+			final int to = (int) ((long) (bucket + 1) * size / buckets);
+
+			int min = from, max = from;
+			for (int i = from + 1; i < to; ++i) {
+				final int value = getValue(i);
+				if (value < getValue(min))
+					min = i;
+				if (value > getValue(max))
+					max = i;
+			}
+
+			final int first = Math.min(min, max);
+			final int second = Math.max(min, max);
+			count = put(first, count, timestamps, values);
+			if (second != first)
+				count = put(second, count, timestamps, values);
+		}
+		return count;
+	}
+
+	private int put(final int sample, final int count, final long[] timestamps, final int[] values) {
+		final int index = toArrayIndex(sample);
+		timestamps[count] = mTimestamps[index];
+		values[count] = mValues[index];
+		return count + 1;
+	}
+
+	/**
+	 * Doubles the arrays, up to the capacity. The buffer never wraps before it is full, so the samples start at index 0.
+	 */
+	private void grow() {
+		final int length = (int) Math.min((long) mValues.length * 2, mCapacity);
+		final long[] timestamps = new long[length];
+		final int[] values = new int[length];
+		System.arraycopy(mTimestamps, 0, timestamps, 0, mSize);
+		System.arraycopy(mValues, 0, values, 0, mSize);
+		mTimestamps = timestamps;
+		mValues = values;
+	}
+
+	private int toArrayIndex(final int index) {
+		if (index < 0 || index >= mSize)
+			throw new IndexOutOfBoundsException("Index: " + index + ", size: " + mSize);
+		final int arrayIndex = mStart + index;
+		return arrayIndex < mValues.length ? arrayIndex : arrayIndex - mValues.length;
+	}
+}
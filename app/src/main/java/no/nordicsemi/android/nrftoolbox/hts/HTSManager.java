@@ -30,17 +30,17 @@ import java.util.Deque;
 import java.util.LinkedList;
 import java.util.UUID;
 
-import no.nordicsemi.android.ble.BleManager;
 import no.nordicsemi.android.ble.Request;
-import no.nordicsemi.android.log.Logger;
 import no.nordicsemi.android.nrftoolbox.parser.TemperatureMeasurementParser;
+import no.nordicsemi.android.nrftoolbox.profile.RecordingBleManager;
 import no.nordicsemi.android.nrftoolbox.utility.DebugLogger;
+import no.nordicsemi.android.nrftoolbox.utility.DeferredLogger;
 
 /**
  * HTSManager class performs BluetoothGatt operations for connection, service discovery, enabling indication and reading characteristics. All operations required to connect to device with BLE HT
  * Service and reading health thermometer values are performed here. HTSActivity implements HTSManagerCallbacks in order to receive callbacks of BluetoothGatt operations
  */
-public class HTSManager extends BleManager<HTSManagerCallbacks> {
+public class HTSManager extends RecordingBleManager<HTSManagerCallbacks> {
 	private static final String TAG = "HTSManager";
 
 	/** Health Thermometer service UUID */
@@ -69,7 +69,7 @@ public class HTSManager extends BleManager<HTSManagerCallbacks> {
 	/**
 	 * BluetoothGatt callbacks for connection/disconnection, service discovery, receiving indication, etc
 	 */
-	private final BleManagerGattCallback mGattCallback = new BleManagerGattCallback() {
+	private final BleManagerGattCallback mGattCallback = new RecordingGattCallback() {
 
 		@Override
 		protected Deque<Request> initGatt(final BluetoothGatt gatt) {
@@ -94,7 +94,9 @@ public class HTSManager extends BleManager<HTSManagerCallbacks> {
 
 		@Override
 		public void onCharacteristicIndicated(final BluetoothGatt gatt, final BluetoothGattCharacteristic characteristic) {
-			Logger.a(mLogSession, "\"" + TemperatureMeasurementParser.parse(characteristic) + "\" received");
+			super.onCharacteristicIndicated(gatt, characteristic);
+
+			DeferredLogger.received(mLogSession, TemperatureMeasurementParser::parse, characteristic.getValue());
 
 			try {
 				final double tempValue = decodeTemperature(characteristic.getValue());
@@ -0,0 +1,143 @@
+/*
+ * Copyright (c) 2015, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package no.nordicsemi.android.nrftoolbox.parser;
+
+import java.nio.charset.Charset;
+
+/**
+ * Advertising data decoded from the raw bytes of an advertising packet and scan response. An instance may be reused for
+ * all packets, see {@link AdvertisingDataParser#decode(byte[], AdvertisingData)}. Variable length fields, like the name
+ * or manufacturer data, are not copied, they are given as offsets to {@link #data}.
+ * <p>
+ * Service UUIDs are stored as 128-bit values. 16 and 32-bit UUIDs are expanded using the Bluetooth Base UUID.
+ * </p>
+ */
+public class AdvertisingData {
+	/** The maximum number of service UUIDs kept, enough for an advertising packet and a scan response full of 16-bit UUIDs. */
+	public static final int MAX_SERVICE_UUIDS = 32;
+	/** The maximum number of manufacturer data and service data entries kept. */
+	public static final int MAX_DATA_ENTRIES = 8;
+	public static final int NO_FLAGS = -1;
+	public static final int NO_TX_POWER_LEVEL = Integer.MIN_VALUE;
+	/** The least significant bits of the Bluetooth Base UUID 00000000-0000-1000-8000-00805F9B34FB. */
+	public static final long BASE_UUID_LSB = 0x800000805F9B34FBL;
+	/** The most significant bits of the Bluetooth Base UUID, without the 32-bit value. */
+	public static final long BASE_UUID_MSB = 0x0000000000001000L;
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	/** The raw data, not copied */
+	public byte[] data;
+	/** Flags, or {@link #NO_FLAGS} if not present */
+	public int flags;
+	/** TX power level in dBm, or {@link #NO_TX_POWER_LEVEL} if not present */
+	public int txPowerLevel;
+
+	/** Offset of the local name in {@link #data}, or -1 if not present */
+	public int nameOffset;
+	/** Length of the local name in bytes */
+	public int nameLength;
+	/** True if the complete local name was advertised, false if shortened */
+	public boolean nameComplete;
+
+	/** Service UUIDs, only the first {@link #serviceUuidCount} values are valid */
+	public final long[] serviceUuidMsb = new long[MAX_SERVICE_UUIDS];
+	public final long[] serviceUuidLsb = new long[MAX_SERVICE_UUIDS];
+	public int serviceUuidCount;
+
+	/** Manufacturer data: company identifiers, and offsets and lengths of the data following them in {@link #data} */
+	public final int[] manufacturerIds = new int[MAX_DATA_ENTRIES];
+	public final int[] manufacturerDataOffsets = new int[MAX_DATA_ENTRIES];
+	public final int[] manufacturerDataLengths = new int[MAX_DATA_ENTRIES];
+	public int manufacturerDataCount;
+
+	/** Service data: service UUIDs, and offsets and lengths of the data following them in {@link #data} */
+	public final long[] serviceDataUuidMsb = new long[MAX_DATA_ENTRIES];
+	public final long[] serviceDataUuidLsb = new long[MAX_DATA_ENTRIES];
+	public final int[] serviceDataOffsets = new int[MAX_DATA_ENTRIES];
+	public final int[] serviceDataLengths = new int[MAX_DATA_ENTRIES];
+	public int serviceDataCount;
+
+	/** Number of UUIDs or data entries not kept as the arrays were full */
+	public int droppedCount;
+
+	/**
+	 * Returns the most significant bits of a 16 or 32-bit UUID expanded using the Bluetooth Base UUID.
+	 */
+	public static long expandUuid(final long uuid) {
+		return (uuid << 32) | BASE_UUID_MSB;
+	}
+
+	/**
+	 * Returns true if the UUID is derived from the Bluetooth Base UUID, that is, it can be shortened to 16 or 32 bits.
+	 */
+	public static boolean isShortUuid(final long msb, final long lsb) {
+		return lsb == BASE_UUID_LSB && (msb & 0xFFFFFFFFL) == BASE_UUID_MSB;
+	}
+
+	/**
+	 * Returns the local name. This allocates a new String, use {@link #nameStartsWith(byte[])} to compare the name.
+	 *
+	 * @return the name, or null if not present
+	 */
+	public String getName() {
+		return nameOffset >= 0 ? new String(data, nameOffset, nameLength, UTF_8) : null;
+	}
+
+	/**
+	 * Returns true if the local name starts with the given prefix encoded in UTF-8.
+	 */
+	public boolean nameStartsWith(final byte[] prefix) {
+		if (nameOffset < 0 || nameLength < prefix.length)
+			return false;
+		for (int i = 0; i < prefix.length; ++i)
+			if (data[nameOffset + i] != prefix[i])
+				return false;
+		return true;
+	}
+
+	/**
+	 * Returns true if the given service UUID is advertised.
+	 */
+	public boolean hasServiceUuid(final long msb, final long lsb) {
+		for (int i = 0; i < serviceUuidCount; ++i)
+			if (serviceUuidMsb[i] == msb && serviceUuidLsb[i] == lsb)
+				return true;
+		return false;
+	}
+
+	/**
+	 * Clears all fields.
+	 */
+	public void clear() {
+		data = null;
+		flags = NO_FLAGS;
+		txPowerLevel = NO_TX_POWER_LEVEL;
+		nameOffset = -1;
+		nameLength = 0;
+		nameComplete = false;
+		serviceUuidCount = 0;
+		manufacturerDataCount = 0;
+		serviceDataCount = 0;
+		droppedCount = 0;
+	}
+}
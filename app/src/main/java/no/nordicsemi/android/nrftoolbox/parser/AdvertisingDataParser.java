@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) 2015, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package no.nordicsemi.android.nrftoolbox.parser;
+
+/**
+ * Decodes the AD structures of an advertising packet, optionally followed by a scan response, as returned by
+ * ScanRecord#getBytes(). Each structure consists of a length byte, an AD type and data. All AD types used for
+ * filtering are decoded in a single pass over the bytes, without allocating memory.
+ */
+public class AdvertisingDataParser {
+	public static final int TYPE_FLAGS = 0x01;
+	public static final int TYPE_UUID16_INCOMPLETE = 0x02;
+	public static final int TYPE_UUID16_COMPLETE = 0x03;
+	public static final int TYPE_UUID32_INCOMPLETE = 0x04;
+	public static final int TYPE_UUID32_COMPLETE = 0x05;
+	public static final int TYPE_UUID128_INCOMPLETE = 0x06;
+	public static final int TYPE_UUID128_COMPLETE = 0x07;
+	public static final int TYPE_SHORTENED_LOCAL_NAME = 0x08;
+	public static final int TYPE_COMPLETE_LOCAL_NAME = 0x09;
+	public static final int TYPE_TX_POWER_LEVEL = 0x0A;
+	public static final int TYPE_SERVICE_DATA_UUID16 = 0x16;
+	public static final int TYPE_SERVICE_DATA_UUID32 = 0x20;
+	public static final int TYPE_SERVICE_DATA_UUID128 = 0x21;
+	public static final int TYPE_MANUFACTURER_SPECIFIC_DATA = 0xFF;
+
+	/**
+	 * Decodes the advertising data into the given holder. No objects are allocated.
+	 * A structure with length 0 marks the end of the data, the rest is padding.
+	 *
+	 * @param data the raw advertising data
+	 * @param out  the holder to be filled
+	 * @return true if the data were valid, false if a structure exceeded the data. Structures before it are decoded.
+	 */
+	public static boolean decode(final byte[] data, final AdvertisingData out) {
+		out.clear();
+		out.data = data;
+		if (data == null)
+			return false;
+
+		int offset = 0;
+		while (offset < data.length) {
+			final int length = data[offset] & 0xFF;
+			if (length == 0)
+				break;
+			if (offset + 1 + length > data.length)
+				return false;
+
+			final int type = data[offset + 1] & 0xFF;
+			final int start = offset + 2;
+			final int dataLength = length - 1;
+			switch (type) {
+				case TYPE_FLAGS:
+					if (dataLength > 0)
+						out.flags = data[start] & 0xFF;
+					break;
+				case TYPE_UUID16_INCOMPLETE:
+				case TYPE_UUID16_COMPLETE:
+					for (int o = start; o + 2 <= start + dataLength; o += 2)
+						addServiceUuid(out, AdvertisingData.expandUuid(uint16(data, o)), AdvertisingData.BASE_UUID_LSB);
+					break;
+				case TYPE_UUID32_INCOMPLETE:
+				case TYPE_UUID32_COMPLETE:
+					for (int o = start; o + 4 <= start + dataLength; o += 4)
+						addServiceUuid(out, AdvertisingData.expandUuid(uint32(data, o)), AdvertisingData.BASE_UUID_LSB);
+					break;
+				case TYPE_UUID128_INCOMPLETE:
+				case TYPE_UUID128_COMPLETE:
+					for (int o = start; o + 16 <= start + dataLength; o += 16)
+						addServiceUuid(out, int64(data, o + 8), int64(data, o));
+					break;
+				case TYPE_SHORTENED_LOCAL_NAME:
+					// The complete name takes precedence
+					if (!out.nameComplete) {
+						out.nameOffset = start;
+						out.nameLength = dataLength;
+					}
+					break;
+				case TYPE_COMPLETE_LOCAL_NAME:
+					out.nameOffset = start;
+					out.nameLength = dataLength;
+					out.nameComplete = true;
+					break;
+				case TYPE_TX_POWER_LEVEL:
+					if (dataLength > 0)
+						out.txPowerLevel = data[start];
+					break;
+				case TYPE_SERVICE_DATA_UUID16:
+					if (dataLength >= 2)
+						addServiceData(out, AdvertisingData.expandUuid(uint16(data, start)), AdvertisingData.BASE_UUID_LSB, start + 2, dataLength - 2);
+					break;
+				case TYPE_SERVICE_DATA_UUID32:
+					if (dataLength >= 4)
+						addServiceData(out, AdvertisingData.expandUuid(uint32(data, start)), AdvertisingData.BASE_UUID_LSB, start + 4, dataLength - 4);
+					break;
+				case TYPE_SERVICE_DATA_UUID128:
+					if (dataLength >= 16)
+						addServiceData(out, int64(data, start + 8), int64(data, start), start + 16, dataLength - 16);
+					break;
+				case TYPE_MANUFACTURER_SPECIFIC_DATA:
+					if (dataLength >= 2) {
+						if (out.manufacturerDataCount == AdvertisingData.MAX_DATA_ENTRIES) {
+							out.droppedCount++;
+							break;
+						}
+						final int i = out.manufacturerDataCount++;
+						out.manufacturerIds[i] = (int) uint16(data, start);
+						out.manufacturerDataOffsets[i] = start + 2;
+						out.manufacturerDataLengths[i] = dataLength - 2;
+					}
+					break;
+				default:
+					// other AD types are not used
+					break;
+			}
+			offset += 1 + length;
+		}
+		return true;
+	}
+
+	private static void addServiceUuid(final AdvertisingData out, final long msb, final long lsb) {
+		if (out.serviceUuidCount == AdvertisingData.MAX_SERVICE_UUIDS) {
+			out.droppedCount++;
+			return;
+		}
+		out.serviceUuidMsb[out.serviceUuidCount] = msb;
+		out.serviceUuidLsb[out.serviceUuidCount++] = lsb;
+	}
+
+	private static void addServiceData(final AdvertisingData out, final long msb, final long lsb, final int offset, final int length) {
+		if (out.serviceDataCount == AdvertisingData.MAX_DATA_ENTRIES) {
+			out.droppedCount++;
+			return;
+		}
+		final int i = out.serviceDataCount++;
+		out.serviceDataUuidMsb[i] = msb;
+		out.serviceDataUuidLsb[i] = lsb;
+		out.serviceDataOffsets[i] = offset;
+		out.serviceDataLengths[i] = length;
+	}
+
+	private static long uint16(final byte[] data, final int offset) {
+		return (data[offset] & 0xFF) | (data[offset + 1] & 0xFF) << 8;
+	}
+
+	private static long uint32(final byte[] data, final int offset) {
+		return uint16(data, offset) | uint16(data, offset + 2) << 16;
+	}
+
+	private static long int64(final byte[] data, final int offset) {
+		return uint32(data, offset) | uint32(data, offset + 4) << 32;
+	}
+}
@@ -21,17 +21,24 @@
  */
 package no.nordicsemi.android.nrftoolbox.parser;
 
-import android.bluetooth.BluetoothGattCharacteristic;
-
 public class AlertLevelParser {
+	/**
+	 * Parses the given value, see {@link #parse(CharacteristicValue)}.
+	 * @param value the characteristic value
+	 * @return the human readable value
+	 */
+	public static String parse(final byte[] value) {
+		return parse(new CharacteristicValue(value));
+	}
+
 	/**
 	 * Parses the alert level.
 	 * 
 	 * @param characteristic
 	 * @return alert level in human readable format
 	 */
-	public static String parse(final BluetoothGattCharacteristic characteristic) {
-		final int value = characteristic.getIntValue(BluetoothGattCharacteristic.FORMAT_UINT8, 0);
+	public static String parse(final CharacteristicValue characteristic) {
+		final int value = characteristic.getIntValue(CharacteristicValue.FORMAT_UINT8, 0);
 
 		switch (value) {
 		case 0:
@@ -21,11 +21,18 @@
  */
 package no.nordicsemi.android.nrftoolbox.parser;
 
-import android.bluetooth.BluetoothGattCharacteristic;
-
 public class BodySensorLocationParser {
 
-	public static String parse(final BluetoothGattCharacteristic characteristic) {
+	/**
+	 * Parses the given value, see {@link #parse(CharacteristicValue)}.
+	 * @param value the characteristic value
+	 * @return the human readable value
+	 */
+	public static String parse(final byte[] value) {
+		return parse(new CharacteristicValue(value));
+	}
+
+	public static String parse(final CharacteristicValue characteristic) {
 		final int value = unsignedByteToInt(characteristic.getValue()[0]);
 
 		switch (value) {
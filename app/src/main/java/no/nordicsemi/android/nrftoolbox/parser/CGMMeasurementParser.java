@@ -21,8 +21,6 @@
  */
 package no.nordicsemi.android.nrftoolbox.parser;
 
-import android.bluetooth.BluetoothGattCharacteristic;
-
 import java.util.Locale;
 
 public class CGMMeasurementParser {
@@ -55,7 +53,16 @@ public class CGMMeasurementParser {
 	private static final int SSA_RESULT_LOWER_THAN_DEVICE_CAN_PROCESS = 1 << 22;
 	private static final int SSA_RESULT_HIGHER_THAN_DEVICE_CAN_PROCESS = 1 << 23;
 
-	public static String parse(final BluetoothGattCharacteristic characteristic) {
+	/**
+	 * Parses the given value, see {@link #parse(CharacteristicValue)}.
+	 * @param value the characteristic value
+	 * @return the human readable value
+	 */
+	public static String parse(final byte[] value) {
+		return parse(new CharacteristicValue(value));
+	}
+
+	public static String parse(final CharacteristicValue characteristic) {
 		// The CGM Measurement characteristic is a variable length structure containing one or more CGM Measurement records
 		int totalSize = characteristic.getValue().length;
 
@@ -69,10 +76,10 @@ public class CGMMeasurementParser {
 		return builder.toString();
 	}
 
-	private static int parseRecord(final StringBuilder builder, final BluetoothGattCharacteristic characteristic, int offset) {
+	private static int parseRecord(final StringBuilder builder, final CharacteristicValue characteristic, int offset) {
 		// Read size and flags bytes
-		final int size = characteristic.getIntValue(BluetoothGattCharacteristic.FORMAT_UINT8, offset++);
-		final int flags = characteristic.getIntValue(BluetoothGattCharacteristic.FORMAT_UINT8, offset++);
+		final int size = characteristic.getIntValue(CharacteristicValue.FORMAT_UINT8, offset++);
+		final int flags = characteristic.getIntValue(CharacteristicValue.FORMAT_UINT8, offset++);
 
 		/*
 		 * false 	CGM Trend Information is not preset
@@ -105,18 +112,18 @@ public class CGMMeasurementParser {
 		final boolean ssaStatusOctetPresent = (flags & FLAGS_SENSOR_STATUS_ANNUNCIATION_STATUS_OCTET_PRESENT) > 0;
 
 		// Read CGM Glucose Concentration
-		final float glucoseConcentration = characteristic.getFloatValue(BluetoothGattCharacteristic.FORMAT_SFLOAT, offset);
+		final float glucoseConcentration = characteristic.getFloatValue(CharacteristicValue.FORMAT_SFLOAT, offset);
 		offset += 2;
 
 		// Read time offset
-		final int timeOffset = characteristic.getIntValue(BluetoothGattCharacteristic.FORMAT_UINT16, offset);
+		final int timeOffset = characteristic.getIntValue(CharacteristicValue.FORMAT_UINT16, offset);
 		offset += 2;
 
 		builder.append("Glucose concentration: ").append(glucoseConcentration).append(" mg/dL\n");
 		builder.append("Sequence number: ").append(timeOffset).append(" (Time Offset in min)\n");
 
 		if (ssaWarningOctetPresent) {
-			final int ssaWarningOctet = characteristic.getIntValue(BluetoothGattCharacteristic.FORMAT_UINT8, offset++);
+			final int ssaWarningOctet = characteristic.getIntValue(CharacteristicValue.FORMAT_UINT8, offset++);
 			builder.append("Warnings:\n");
 			if ((ssaWarningOctet & SSA_SESSION_STOPPED) > 0)
 				builder.append("- Session Stopped\n");
@@ -133,7 +140,7 @@ public class CGMMeasurementParser {
 		}
 
 		if (ssaCalTempOctetPresent) {
-			final int ssaCalTempOctet = characteristic.getIntValue(BluetoothGattCharacteristic.FORMAT_UINT8, offset++);
+			final int ssaCalTempOctet = characteristic.getIntValue(CharacteristicValue.FORMAT_UINT8, offset++);
 			builder.append("Cal/Temp Info:\n");
 			if ((ssaCalTempOctet & SSA_TIME_SYNC_REQUIRED) > 0)
 				builder.append("- Time Synchronization Required\n");
@@ -150,7 +157,7 @@ public class CGMMeasurementParser {
 		}
 
 		if (ssaStatusOctetPresent) {
-			final int ssaStatusOctet = characteristic.getIntValue(BluetoothGattCharacteristic.FORMAT_UINT8, offset++);
+			final int ssaStatusOctet = characteristic.getIntValue(CharacteristicValue.FORMAT_UINT8, offset++);
 			builder.append("Status:\n");
 			if ((ssaStatusOctet & SSA_RESULT_LOWER_THAN_PATIENT_LOW_LEVEL) > 0)
 				builder.append("- Result Lower then Patient Low Level\n");
@@ -171,19 +178,19 @@ public class CGMMeasurementParser {
 		}
 
 		if (cgmTrendInformationPresent) {
-			final float trend = characteristic.getFloatValue(BluetoothGattCharacteristic.FORMAT_SFLOAT, offset);
+			final float trend = characteristic.getFloatValue(CharacteristicValue.FORMAT_SFLOAT, offset);
 			offset += 2;
 			builder.append("Trend: ").append(trend).append(" mg/dL/min\n");
 		}
 
 		if (cgmQualityPresent) {
-			final float quality = characteristic.getFloatValue(BluetoothGattCharacteristic.FORMAT_SFLOAT, offset);
+			final float quality = characteristic.getFloatValue(CharacteristicValue.FORMAT_SFLOAT, offset);
 			offset += 2;
 			builder.append("Quality: ").append(quality).append("%\n");
 		}
 
 		if (size > offset + 1) {
-			final int crc = characteristic.getIntValue(BluetoothGattCharacteristic.FORMAT_UINT16, offset);
+			final int crc = characteristic.getIntValue(CharacteristicValue.FORMAT_UINT16, offset);
 			// offset += 2;
 			builder.append(String.format(Locale.US, "E2E-CRC: 0x%04X\n", crc));
 		}
@@ -0,0 +1,54 @@
+/*
+ * Copyright (c) 2015, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.nrftoolbox.parser;
+
+/**
+ * A mutable Cycling Speed and Cadence Measurement. An instance may be reused for all packets received from a sensor,
+ * see {@link CSCMeasurementParser#decode(CharacteristicValue, CSCMeasurement)}.
+ */
+public class CSCMeasurement {
+	/** True if the wheel revolution data are present */
+	public boolean wheelRevolutionsPresent;
+	/** Cumulative wheel revolutions */
+	public int wheelRevolutions;
+	/** Last wheel event time in 1/1024 s */
+	public int lastWheelEventTime;
+	/** True if the crank revolution data are present */
+	public boolean crankRevolutionsPresent;
+	/** Cumulative crank revolutions */
+	public int crankRevolutions;
+	/** Last crank event time in 1/1024 s */
+	public int lastCrankEventTime;
+
+	/**
+	 * Clears all fields.
+	 */
+	public void clear() {
+		wheelRevolutionsPresent = false;
+		wheelRevolutions = 0;
+		lastWheelEventTime = 0;
+		crankRevolutionsPresent = false;
+		crankRevolutions = 0;
+		lastCrankEventTime = 0;
+	}
+}
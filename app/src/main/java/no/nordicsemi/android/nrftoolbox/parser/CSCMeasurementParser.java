@@ -21,52 +21,86 @@
  */
 package no.nordicsemi.android.nrftoolbox.parser;
 
-import android.bluetooth.BluetoothGattCharacteristic;
-
 import java.util.Locale;
 
 public class CSCMeasurementParser {
 	private static final byte WHEEL_REV_DATA_PRESENT = 0x01; // 1 bit
 	private static final byte CRANK_REV_DATA_PRESENT = 0x02; // 1 bit
 
-	public static String parse(final BluetoothGattCharacteristic characteristic) {
+	/**
+	 * Parses the given value, see {@link #parse(CharacteristicValue)}.
+	 * @param value the characteristic value
+	 * @return the human readable value
+	 */
+	public static String parse(final byte[] value) {
+		return parse(new CharacteristicValue(value));
+	}
+
+	public static String parse(final CharacteristicValue characteristic) {
+		final CSCMeasurement measurement = new CSCMeasurement();
+		decode(characteristic, measurement);
+		return format(measurement);
+	}
+
+	/**
+	 * Decodes the CSC Measurement into the given holder. No objects are allocated.
+	 * @param characteristic the characteristic value
+	 * @param out the holder to be filled
+	 * @return true if the value was valid, false if it was too short
+	 */
+	public static boolean decode(final CharacteristicValue characteristic, final CSCMeasurement out) {
+		out.clear();
+		if (!characteristic.hasValue(CharacteristicValue.FORMAT_UINT8, 0))
+			return false;
+
 		int offset = 0;
-		final int flags = characteristic.getValue()[offset]; // 1 byte
+		final int flags = characteristic.getInt(CharacteristicValue.FORMAT_UINT8, offset); // 1 byte
 		offset += 1;
 
 		final boolean wheelRevPresent = (flags & WHEEL_REV_DATA_PRESENT) > 0;
 		final boolean crankRevPreset = (flags & CRANK_REV_DATA_PRESENT) > 0;
 
-		int wheelRevolutions = 0;
-		int lastWheelEventTime = 0;
 		if (wheelRevPresent) {
-			wheelRevolutions = characteristic.getIntValue(BluetoothGattCharacteristic.FORMAT_UINT32, offset);
+			if (characteristic.length() < offset + 6)
+				return false;
+			out.wheelRevolutionsPresent = true;
+			out.wheelRevolutions = characteristic.getInt(CharacteristicValue.FORMAT_UINT32, offset);
 			offset += 4;
 
-			lastWheelEventTime = characteristic.getIntValue(BluetoothGattCharacteristic.FORMAT_UINT16, offset); // 1/1024 s
+			out.lastWheelEventTime = characteristic.getInt(CharacteristicValue.FORMAT_UINT16, offset); // 1/1024 s
 			offset += 2;
 		}
 
-		int crankRevolutions = 0;
-		int lastCrankEventTime = 0;
 		if (crankRevPreset) {
-			crankRevolutions = characteristic.getIntValue(BluetoothGattCharacteristic.FORMAT_UINT16, offset);
+			if (characteristic.length() < offset + 4)
+				return false;
+			out.crankRevolutionsPresent = true;
+			out.crankRevolutions = characteristic.getInt(CharacteristicValue.FORMAT_UINT16, offset);
 			offset += 2;
 
-			lastCrankEventTime = characteristic.getIntValue(BluetoothGattCharacteristic.FORMAT_UINT16, offset);
+			out.lastCrankEventTime = characteristic.getInt(CharacteristicValue.FORMAT_UINT16, offset);
 			//offset += 2;
 		}
+		return true;
+	}
 
+	/**
+	 * Converts the decoded measurement into a human readable String.
+	 * @param measurement the measurement
+	 * @return the human readable value
+	 */
+	public static String format(final CSCMeasurement measurement) {
 		final StringBuilder builder = new StringBuilder();
-		if (wheelRevPresent) {
-			builder.append(String.format(Locale.US, "Wheel rev: %d,\n", wheelRevolutions));
-			builder.append(String.format(Locale.US, "Last wheel event time: %d ms,\n", lastWheelEventTime));
+		if (measurement.wheelRevolutionsPresent) {
+			builder.append(String.format(Locale.US, "Wheel rev: %d,\n", measurement.wheelRevolutions));
+			builder.append(String.format(Locale.US, "Last wheel event time: %d ms,\n", measurement.lastWheelEventTime));
 		}
-		if (crankRevPreset) {
-			builder.append(String.format(Locale.US, "Crank rev: %d,\n", crankRevolutions));
-			builder.append(String.format(Locale.US, "Last crank event time: %d ms,\n", lastCrankEventTime));
+		if (measurement.crankRevolutionsPresent) {
+			builder.append(String.format(Locale.US, "Crank rev: %d,\n", measurement.crankRevolutions));
+			builder.append(String.format(Locale.US, "Last crank event time: %d ms,\n", measurement.lastCrankEventTime));
 		}
-		builder.setLength(builder.length() - 2);
+		if (builder.length() > 1)
+			builder.setLength(builder.length() - 2);
 		return builder.toString();
 	}
 }
@@ -0,0 +1,180 @@
+/*
+ * Copyright (c) 2015, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.nrftoolbox.parser;
+
+/**
+ * A byte array backed characteristic value. It reads values the same way as {@link android.bluetooth.BluetoothGattCharacteristic} does,
+ * but does not depend on the Android framework, so the parsers may be used and benchmarked on a plain JVM.
+ * <p>
+ * The value may be replaced using {@link #set(byte[])}, so a single instance may be reused for many packets.
+ * </p>
+ */
+public class CharacteristicValue {
+	/** Characteristic value format type uint8 */
+	public static final int FORMAT_UINT8 = 0x11;
+	/** Characteristic value format type uint16 */
+	public static final int FORMAT_UINT16 = 0x12;
+	/** Characteristic value format type uint32 */
+	public static final int FORMAT_UINT32 = 0x14;
+	/** Characteristic value format type sint8 */
+	public static final int FORMAT_SINT8 = 0x21;
+	/** Characteristic value format type sint16 */
+	public static final int FORMAT_SINT16 = 0x22;
+	/** Characteristic value format type sint32 */
+	public static final int FORMAT_SINT32 = 0x24;
+	/** Characteristic value format type sfloat (16-bit float) */
+	public static final int FORMAT_SFLOAT = 0x32;
+	/** Characteristic value format type float (32-bit float) */
+	public static final int FORMAT_FLOAT = 0x34;
+
+	private byte[] mValue;
+
+	public CharacteristicValue() {
+		// empty
+	}
+
+	public CharacteristicValue(final byte[] value) {
+		mValue = value;
+	}
+
+	/**
+	 * Replaces the value. The array is not copied.
+	 * @param value the new value
+	 * @return this instance
+	 */
+	public CharacteristicValue set(final byte[] value) {
+		mValue = value;
+		return this;
+	}
+
+	/**
+	 * Returns the value. The array is not copied.
+	 * @return the value
+	 */
+	public byte[] getValue() {
+		return mValue;
+	}
+
+	/**
+	 * Returns the length of the value.
+	 * @return number of bytes, 0 if the value is null
+	 */
+	public int length() {
+		return mValue != null ? mValue.length : 0;
+	}
+
+	/**
+	 * Returns the integer value at the given offset, or null if the value is too short.
+	 * @param formatType one of the FORMAT_UINT* or FORMAT_SINT* constants
+	 * @param offset offset of the value
+	 * @return the integer value
+	 */
+	public Integer getIntValue(final int formatType, final int offset) {
+		if (!hasValue(formatType, offset))
+			return null;
+		return getInt(formatType, offset);
+	}
+
+	/**
+	 * Returns the float value at the given offset, or null if the value is too short.
+	 * @param formatType {@link #FORMAT_SFLOAT} or {@link #FORMAT_FLOAT}
+	 * @param offset offset of the value
+	 * @return the float value
+	 */
+	public Float getFloatValue(final int formatType, final int offset) {
+		if (!hasValue(formatType, offset))
+			return null;
+		return getFloat(formatType, offset);
+	}
+
+	/**
+	 * Returns true if the value has enough bytes to read a number of the given format at the given offset.
+	 * @param formatType one of the FORMAT_* constants
+	 * @param offset offset of the value
+	 * @return true if the number may be read
+	 */
+	public boolean hasValue(final int formatType, final int offset) {
+		return mValue != null && offset >= 0 && offset + getTypeLen(formatType) <= mValue.length;
+	}
+
+	/**
+	 * Returns the integer value at the given offset without boxing. The caller must make sure the value is long enough.
+	 * @param formatType one of the FORMAT_UINT* or FORMAT_SINT* constants
+	 * @param offset offset of the value
+	 * @return the integer value
+	 */
+	public int getInt(final int formatType, final int offset) {
+		final byte[] value = mValue;
+		switch (formatType) {
+			case FORMAT_UINT8:
+				return value[offset] & 0xFF;
+			case FORMAT_UINT16:
+				return (value[offset] & 0xFF) | ((value[offset + 1] & 0xFF) << 8);
+			case FORMAT_UINT32:
+			case FORMAT_SINT32:
+				return (value[offset] & 0xFF) | ((value[offset + 1] & 0xFF) << 8) | ((value[offset + 2] & 0xFF) << 16) | ((value[offset + 3] & 0xFF) << 24);
+			case FORMAT_SINT8:
+				return value[offset];
+			case FORMAT_SINT16:
+				return (short) ((value[offset] & 0xFF) | ((value[offset + 1] & 0xFF) << 8));
+			default:
+				throw new IllegalArgumentException("Unsupported format: " + formatType);
+		}
+	}
+
+	/**
+	 * Returns the float value at the given offset without boxing. The caller must make sure the value is long enough.
+	 * @param formatType {@link #FORMAT_SFLOAT} or {@link #FORMAT_FLOAT}
+	 * @param offset offset of the value
+	 * @return the float value
+	 */
+	public float getFloat(final int formatType, final int offset) {
+		final byte[] value = mValue;
+		switch (formatType) {
+			case FORMAT_SFLOAT: {
+				final int b0 = value[offset] & 0xFF;
+				final int b1 = value[offset + 1] & 0xFF;
+				final int mantissa = unsignedToSigned(b0 + ((b1 & 0x0F) << 8), 12);
+				final int exponent = unsignedToSigned(b1 >> 4, 4);
+				return (float) (mantissa * Math.pow(10, exponent));
+			}
+			case FORMAT_FLOAT: {
+				final int mantissa = unsignedToSigned((value[offset] & 0xFF) + ((value[offset + 1] & 0xFF) << 8) + ((value[offset + 2] & 0xFF) << 16), 24);
+				return (float) (mantissa * Math.pow(10, value[offset + 3]));
+			}
+			default:
+				throw new IllegalArgumentException("Unsupported format: " + formatType);
+		}
+	}
+
+	private static int getTypeLen(final int formatType) {
+		return formatType & 0xF;
+	}
+
+	private static int unsignedToSigned(int unsigned, final int size) {
+		if ((unsigned & (1 << (size - 1))) != 0) {
+			unsigned = -1 * ((1 << (size - 1)) - (unsigned & ((1 << (size - 1)) - 1)));
+		}
+		return unsigned;
+	}
+}
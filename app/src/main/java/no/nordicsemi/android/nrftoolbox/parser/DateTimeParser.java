@@ -21,19 +21,26 @@
  */
 package no.nordicsemi.android.nrftoolbox.parser;
 
-import android.bluetooth.BluetoothGattCharacteristic;
-
 import java.util.Calendar;
 import java.util.Locale;
 
 public class DateTimeParser {
+	/**
+	 * Parses the given value, see {@link #parse(CharacteristicValue)}.
+	 * @param value the characteristic value
+	 * @return the human readable value
+	 */
+	public static String parse(final byte[] value) {
+		return parse(new CharacteristicValue(value));
+	}
+
 	/**
 	 * Parses the date and time info.
 	 * 
 	 * @param characteristic
 	 * @return time in human readable format
 	 */
-	public static String parse(final BluetoothGattCharacteristic characteristic) {
+	public static String parse(final CharacteristicValue characteristic) {
 		return parse(characteristic, 0);
 	}
 
@@ -45,13 +52,13 @@ public class DateTimeParser {
 	 *            offset to start reading the time
 	 * @return time in human readable format
 	 */
-	/* package */static String parse(final BluetoothGattCharacteristic characteristic, final int offset) {
-		final int year = characteristic.getIntValue(BluetoothGattCharacteristic.FORMAT_UINT16, offset);
-		final int month = characteristic.getIntValue(BluetoothGattCharacteristic.FORMAT_UINT8, offset + 2);
-		final int day = characteristic.getIntValue(BluetoothGattCharacteristic.FORMAT_UINT8, offset + 3);
-		final int hours = characteristic.getIntValue(BluetoothGattCharacteristic.FORMAT_UINT8, offset + 4);
-		final int minutes = characteristic.getIntValue(BluetoothGattCharacteristic.FORMAT_UINT8, offset + 5);
-		final int seconds = characteristic.getIntValue(BluetoothGattCharacteristic.FORMAT_UINT8, offset + 6);
+	/* package */static String parse(final CharacteristicValue characteristic, final int offset) {
+		final int year = characteristic.getIntValue(CharacteristicValue.FORMAT_UINT16, offset);
+		final int month = characteristic.getIntValue(CharacteristicValue.FORMAT_UINT8, offset + 2);
+		final int day = characteristic.getIntValue(CharacteristicValue.FORMAT_UINT8, offset + 3);
+		final int hours = characteristic.getIntValue(CharacteristicValue.FORMAT_UINT8, offset + 4);
+		final int minutes = characteristic.getIntValue(CharacteristicValue.FORMAT_UINT8, offset + 5);
+		final int seconds = characteristic.getIntValue(CharacteristicValue.FORMAT_UINT8, offset + 6);
 
 		final Calendar calendar = Calendar.getInstance();
 		calendar.set(year, month - 1, day, hours, minutes, seconds);
@@ -22,8 +22,6 @@
 
 package no.nordicsemi.android.nrftoolbox.parser;
 
-import android.bluetooth.BluetoothGattCharacteristic;
-
 public class GlucoseMeasurementParser {
 	private static final int UNIT_kgpl = 0;
 	private static final int UNIT_molpl = 1;
@@ -41,11 +39,20 @@ public class GlucoseMeasurementParser {
 	private static final int STATUS_GENERAL_DEVICE_FAULT = 0x0400;
 	private static final int STATUS_TIME_FAULT = 0x0800;
 
-	public static String parse(final BluetoothGattCharacteristic characteristic) {
+	/**
+	 * Parses the given value, see {@link #parse(CharacteristicValue)}.
+	 * @param value the characteristic value
+	 * @return the human readable value
+	 */
+	public static String parse(final byte[] value) {
+		return parse(new CharacteristicValue(value));
+	}
+
+	public static String parse(final CharacteristicValue characteristic) {
 		final StringBuilder builder = new StringBuilder();
 
 		int offset = 0;
-		final int flags = characteristic.getIntValue(BluetoothGattCharacteristic.FORMAT_UINT8, offset);
+		final int flags = characteristic.getIntValue(CharacteristicValue.FORMAT_UINT8, offset);
 		offset += 1;
 
 		final boolean timeOffsetPresent = (flags & 0x01) > 0;
@@ -55,7 +62,7 @@ public class GlucoseMeasurementParser {
 		final boolean contextInfoFollows = (flags & 0x10) > 0;
 
 		// create and fill the new record
-		final int sequenceNumber = characteristic.getIntValue(BluetoothGattCharacteristic.FORMAT_UINT16, offset);
+		final int sequenceNumber = characteristic.getIntValue(CharacteristicValue.FORMAT_UINT16, offset);
 		builder.append("Sequence Number: ").append(sequenceNumber);
 		offset += 2;
 
@@ -64,14 +71,14 @@ public class GlucoseMeasurementParser {
 
 		if (timeOffsetPresent) {
 			// time offset is ignored in the current release
-			final int timeOffset = characteristic.getIntValue(BluetoothGattCharacteristic.FORMAT_SINT16, offset);
+			final int timeOffset = characteristic.getIntValue(CharacteristicValue.FORMAT_SINT16, offset);
 			builder.append("\nTime Offset: ").append(timeOffset).append(" min");
 			offset += 2;
 		}
 
 		if (typeAndLocationPresent) {
-			final float glucoseConcentration = characteristic.getFloatValue(BluetoothGattCharacteristic.FORMAT_SFLOAT, offset);
-			final int typeAndLocation = characteristic.getIntValue(BluetoothGattCharacteristic.FORMAT_UINT8, offset + 2);
+			final float glucoseConcentration = characteristic.getFloatValue(CharacteristicValue.FORMAT_SFLOAT, offset);
+			final int typeAndLocation = characteristic.getIntValue(CharacteristicValue.FORMAT_UINT8, offset + 2);
 			final int type = (typeAndLocation & 0xF0) >> 4; // TODO this way or around?
 			final int sampleLocation = (typeAndLocation & 0x0F);
 			builder.append("\nGlucose Concentration: ").append(glucoseConcentration).append(concentrationUnit == UNIT_kgpl ? " kg/l" : " mol/l");
@@ -81,7 +88,7 @@ public class GlucoseMeasurementParser {
 		}
 
 		if (sensorStatusAnnunciationPresent) {
-			final int status = characteristic.getIntValue(BluetoothGattCharacteristic.FORMAT_UINT16, offset);
+			final int status = characteristic.getIntValue(CharacteristicValue.FORMAT_UINT16, offset);
 			builder.append("Status:\n").append(getStatusAnnunciation(status));
 		}
 
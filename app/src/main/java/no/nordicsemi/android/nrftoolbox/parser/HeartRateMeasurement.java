@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2015, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.nrftoolbox.parser;
+
+/**
+ * A mutable Heart Rate Measurement. An instance may be reused for all packets received from a sensor,
+ * see {@link HeartRateMeasurementParser#decode(CharacteristicValue, HeartRateMeasurement)}.
+ */
+public class HeartRateMeasurement {
+	/** The maximum number of RR-intervals that fit in a single attribute value. */
+	public static final int MAX_RR_INTERVALS = 255;
+
+	/** Heart rate value in beats per minute */
+	public int heartRate;
+	/**
+	 * Sensor contact status, one of the following:<br/>
+	 * 0, 1 Sensor Contact feature is not supported<br/>
+	 * 2 Sensor Contact feature is supported, but contact is not detected<br/>
+	 * 3 Sensor Contact feature is supported and contact is detected
+	 */
+	public int sensorContactStatus;
+	/** True if the Energy Expended field is present */
+	public boolean energyExpendedPresent;
+	/** Energy expended in kilo Joules. -1 if not present */
+	public int energyExpended;
+	/** True if the RR-Interval field is present */
+	public boolean rrIntervalsPresent;
+	/** RR-intervals in 1/1024 s. Only the first {@link #rrIntervalCount} values are valid */
+	public final int[] rrIntervals = new int[MAX_RR_INTERVALS];
+	/** Number of RR-intervals in the last packet */
+	public int rrIntervalCount;
+
+	/**
+	 * Returns the RR-interval with the given index in milliseconds.
+	 * @param index the index, lower than {@link #rrIntervalCount}
+	 * @return the RR-interval in milliseconds
+	 */
+	public float getRRIntervalMillis(final int index) {
+		return rrIntervals[index] * 1000.0f / 1024.0f;
+	}
+
+	/**
+	 * Clears all fields.
+	 */
+	public void clear() {
+		heartRate = 0;
+		sensorContactStatus = 0;
+		energyExpendedPresent = false;
+		energyExpended = -1;
+		rrIntervalsPresent = false;
+		rrIntervalCount = 0;
+	}
+}
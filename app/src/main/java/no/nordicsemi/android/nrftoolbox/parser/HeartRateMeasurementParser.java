@@ -21,10 +21,6 @@
  */
 package no.nordicsemi.android.nrftoolbox.parser;
 
-import android.bluetooth.BluetoothGattCharacteristic;
-
-import java.util.ArrayList;
-import java.util.List;
 import java.util.Locale;
 
 public class HeartRateMeasurementParser {
@@ -33,9 +29,34 @@ public class HeartRateMeasurementParser {
 	private static final byte ENERGY_EXPANDED_STATUS = 0x08; // 1 bit
 	private static final byte RR_INTERVAL = 0x10; // 1 bit
 
-	public static String parse(final BluetoothGattCharacteristic characteristic) {
+	/**
+	 * Parses the given value, see {@link #parse(CharacteristicValue)}.
+	 * @param value the characteristic value
+	 * @return the human readable value
+	 */
+	public static String parse(final byte[] value) {
+		return parse(new CharacteristicValue(value));
+	}
+
+	public static String parse(final CharacteristicValue characteristic) {
+		final HeartRateMeasurement measurement = new HeartRateMeasurement();
+		decode(characteristic, measurement);
+		return format(measurement);
+	}
+
+	/**
+	 * Decodes the Heart Rate Measurement into the given holder. No objects are allocated.
+	 * @param characteristic the characteristic value
+	 * @param out the holder to be filled
+	 * @return true if the value was valid, false if it was too short
+	 */
+	public static boolean decode(final CharacteristicValue characteristic, final HeartRateMeasurement out) {
+		out.clear();
+		if (!characteristic.hasValue(CharacteristicValue.FORMAT_UINT8, 0))
+			return false;
+
 		int offset = 0;
-		final int flags = characteristic.getIntValue(BluetoothGattCharacteristic.FORMAT_UINT8, offset++);
+		final int flags = characteristic.getInt(CharacteristicValue.FORMAT_UINT8, offset++);
 
 		/*
 		 * false 	Heart Rate Value Format is set to UINT8. Units: beats per minute (bpm) 
@@ -49,43 +70,56 @@ public class HeartRateMeasurementParser {
 		 * 2 	Sensor Contact feature is supported, but contact is not detected
 		 * 3 	Sensor Contact feature is supported and contact is detected
 		 */
-		final int sensorContactStatus = (flags & SENSOR_CONTACT_STATUS) >> 1;
+		out.sensorContactStatus = (flags & SENSOR_CONTACT_STATUS) >> 1;
 
 		/*
 		 * false 	Energy Expended field is not present
 		 * true 	Energy Expended field is present. Units: kilo Joules
 		 */
-		final boolean energyExpandedStatus = (flags & ENERGY_EXPANDED_STATUS) > 0;
+		out.energyExpendedPresent = (flags & ENERGY_EXPANDED_STATUS) > 0;
 
 		/*
 		 * false 	RR-Interval values are not present.
 		 * true 	One or more RR-Interval values are present. Units: 1/1024 seconds
 		 */
-		final boolean rrIntervalStatus = (flags & RR_INTERVAL) > 0;
+		out.rrIntervalsPresent = (flags & RR_INTERVAL) > 0;
 
 		// heart rate value is 8 or 16 bit long
-		int heartRateValue = characteristic.getIntValue(value16bit ? BluetoothGattCharacteristic.FORMAT_UINT16 : BluetoothGattCharacteristic.FORMAT_UINT8, offset++); // bits per minute
-		if (value16bit)
-			offset++;
+		final int format = value16bit ? CharacteristicValue.FORMAT_UINT16 : CharacteristicValue.FORMAT_UINT8;
+		if (!characteristic.hasValue(format, offset))
+			return false;
+		out.heartRate = characteristic.getInt(format, offset); // bits per minute
+		offset += value16bit ? 2 : 1;
 
 		// energy expanded value is present if a flag was set
-		int energyExpanded = -1;
-		if (energyExpandedStatus)
-			energyExpanded = characteristic.getIntValue(BluetoothGattCharacteristic.FORMAT_UINT16, offset);
-		offset += 2;
+		if (out.energyExpendedPresent) {
+			if (!characteristic.hasValue(CharacteristicValue.FORMAT_UINT16, offset))
+				return false;
+			out.energyExpended = characteristic.getInt(CharacteristicValue.FORMAT_UINT16, offset);
+			offset += 2;
+		}
 
 		// RR-interval is set when a flag is set
-		final List<Float> rrIntervals = new ArrayList<>();
-		if (rrIntervalStatus) {
-			for (int o = offset; o < characteristic.getValue().length; o += 2) {
-				final int units = characteristic.getIntValue(BluetoothGattCharacteristic.FORMAT_UINT16, o);
-				rrIntervals.add(units * 1000.0f / 1024.0f); // RR interval is in [1/1024s]
+		if (out.rrIntervalsPresent) {
+			final int length = characteristic.length();
+			int count = 0;
+			for (int o = offset; o + 1 < length && count < HeartRateMeasurement.MAX_RR_INTERVALS; o += 2) {
+				out.rrIntervals[count++] = characteristic.getInt(CharacteristicValue.FORMAT_UINT16, o); // RR interval is in [1/1024s]
 			}
+			out.rrIntervalCount = count;
 		}
+		return true;
+	}
 
+	/**
+	 * Converts the decoded measurement into a human readable String.
+	 * @param measurement the measurement
+	 * @return the human readable value
+	 */
+	public static String format(final HeartRateMeasurement measurement) {
 		final StringBuilder builder = new StringBuilder();
-		builder.append("Heart Rate Measurement: ").append(heartRateValue).append(" bpm");
-		switch (sensorContactStatus) {
+		builder.append("Heart Rate Measurement: ").append(measurement.heartRate).append(" bpm");
+		switch (measurement.sensorContactStatus) {
 		case 0:
 		case 1:
 			builder.append(",\nSensor Contact Not Supported");
@@ -97,12 +131,12 @@ public class HeartRateMeasurementParser {
 			builder.append(",\nContact is Detected");
 			break;
 		}
-		if (energyExpandedStatus)
-			builder.append(",\nEnergy Expanded: ").append(energyExpanded).append(" kJ");
-		if (rrIntervalStatus) {
+		if (measurement.energyExpendedPresent)
+			builder.append(",\nEnergy Expanded: ").append(measurement.energyExpended).append(" kJ");
+		if (measurement.rrIntervalsPresent) {
 			builder.append(",\nRR Interval: ");
-			for (final Float interval : rrIntervals)
-				builder.append(String.format(Locale.US, "%.02f ms, ", interval));
+			for (int i = 0; i < measurement.rrIntervalCount; ++i)
+				builder.append(String.format(Locale.US, "%.02f ms, ", measurement.getRRIntervalMillis(i)));
 			builder.setLength(builder.length() - 2); // remove the ", " at the end
 		}
 		return builder.toString();
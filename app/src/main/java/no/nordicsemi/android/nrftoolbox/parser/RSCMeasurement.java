@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2015, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.nrftoolbox.parser;
+
+/**
+ * A mutable Running Speed and Cadence Measurement. An instance may be reused for all packets received from a sensor,
+ * see {@link RSCMeasurementParser#decode(CharacteristicValue, RSCMeasurement)}.
+ */
+public class RSCMeasurement {
+	/** Instantaneous speed in 1/256 m/s */
+	public int instantaneousSpeed;
+	/** Instantaneous cadence in steps per minute */
+	public int instantaneousCadence;
+	/** True if the instantaneous stride length is present */
+	public boolean strideLengthPresent;
+	/** Instantaneous stride length in cm */
+	public int instantaneousStrideLength;
+	/** True if the total distance is present */
+	public boolean totalDistancePresent;
+	/** Total distance in 1/10 m */
+	public long totalDistance;
+	/** True if running, false if walking */
+	public boolean running;
+
+	/**
+	 * Returns the instantaneous speed.
+	 * @return speed in m/s
+	 */
+	public float getSpeed() {
+		return instantaneousSpeed / 256.0f;
+	}
+
+	/**
+	 * Clears all fields.
+	 */
+	public void clear() {
+		instantaneousSpeed = 0;
+		instantaneousCadence = 0;
+		strideLengthPresent = false;
+		instantaneousStrideLength = 0;
+		totalDistancePresent = false;
+		totalDistance = 0;
+		running = false;
+	}
+}
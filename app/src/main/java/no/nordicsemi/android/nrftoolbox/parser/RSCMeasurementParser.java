@@ -21,8 +21,6 @@
  */
 package no.nordicsemi.android.nrftoolbox.parser;
 
-import android.bluetooth.BluetoothGattCharacteristic;
-
 import java.util.Locale;
 
 public class RSCMeasurementParser {
@@ -30,44 +28,80 @@ public class RSCMeasurementParser {
 	private static final byte TOTAL_DISTANCE_PRESENT = 0x02; // 1 bit
 	private static final byte WALKING_OR_RUNNING_STATUS_BITS = 0x04; // 1 bit
 
-	public static String parse(final BluetoothGattCharacteristic characteristic) {
+	/**
+	 * Parses the given value, see {@link #parse(CharacteristicValue)}.
+	 * @param value the characteristic value
+	 * @return the human readable value
+	 */
+	public static String parse(final byte[] value) {
+		return parse(new CharacteristicValue(value));
+	}
+
+	public static String parse(final CharacteristicValue characteristic) {
+		final RSCMeasurement measurement = new RSCMeasurement();
+		decode(characteristic, measurement);
+		return format(measurement);
+	}
+
+	/**
+	 * Decodes the RSC Measurement into the given holder. No objects are allocated.
+	 * @param characteristic the characteristic value
+	 * @param out the holder to be filled
+	 * @return true if the value was valid, false if it was too short
+	 */
+	public static boolean decode(final CharacteristicValue characteristic, final RSCMeasurement out) {
+		out.clear();
+		if (characteristic.length() < 4)
+			return false;
+
 		int offset = 0;
-		final int flags = characteristic.getValue()[offset]; // 1 byte
+		final int flags = characteristic.getInt(CharacteristicValue.FORMAT_UINT8, offset); // 1 byte
 		offset += 1;
 
 		final boolean islmPresent = (flags & INSTANTANEOUS_STRIDE_LENGTH_PRESENT) > 0;
 		final boolean tdPreset = (flags & TOTAL_DISTANCE_PRESENT) > 0;
-		final boolean running = (flags & WALKING_OR_RUNNING_STATUS_BITS) > 0;
-		final boolean walking = !running;
+		out.running = (flags & WALKING_OR_RUNNING_STATUS_BITS) > 0;
 
-		final float instantaneousSpeed = (float) characteristic.getIntValue(BluetoothGattCharacteristic.FORMAT_UINT16, offset) / 256.0f; // 1/256 m/s
+		out.instantaneousSpeed = characteristic.getInt(CharacteristicValue.FORMAT_UINT16, offset); // 1/256 m/s
 		offset += 2;
 
-		final int instantaneousCadence = characteristic.getIntValue(BluetoothGattCharacteristic.FORMAT_UINT8, offset);
+		out.instantaneousCadence = characteristic.getInt(CharacteristicValue.FORMAT_UINT8, offset);
 		offset += 1;
 
-		float instantaneousStrideLength = 0;
 		if (islmPresent) {
-			instantaneousStrideLength = (float) characteristic.getIntValue(BluetoothGattCharacteristic.FORMAT_UINT16, offset) / 100.0f; // 1/100 m
+			if (!characteristic.hasValue(CharacteristicValue.FORMAT_UINT16, offset))
+				return false;
+			out.strideLengthPresent = true;
+			out.instantaneousStrideLength = characteristic.getInt(CharacteristicValue.FORMAT_UINT16, offset); // 1/100 m
 			offset += 2;
 		}
 
-		float totalDistance = 0;
 		if (tdPreset) {
-			totalDistance = (float) characteristic.getIntValue(BluetoothGattCharacteristic.FORMAT_UINT32, offset) / 10.0f;
+			if (!characteristic.hasValue(CharacteristicValue.FORMAT_UINT32, offset))
+				return false;
+			out.totalDistancePresent = true;
+			out.totalDistance = characteristic.getInt(CharacteristicValue.FORMAT_UINT32, offset) & 0xFFFFFFFFL; // 1/10 m
 			// offset += 4;
 		}
+		return true;
+	}
 
+	/**
+	 * Converts the decoded measurement into a human readable String.
+	 * @param measurement the measurement
+	 * @return the human readable value
+	 */
+	public static String format(final RSCMeasurement measurement) {
 		final StringBuilder builder = new StringBuilder();
-		builder.append(String.format(Locale.US, "Speed: %.2f m/s, Cadence: %d RPM,\n", instantaneousSpeed, instantaneousCadence));
-		if (islmPresent)
-			builder.append(String.format(Locale.US, "Instantaneous Stride Length: %.2f m,\n", instantaneousStrideLength));
-		if (tdPreset)
-			builder.append(String.format(Locale.US, "Total Distance: %.1f m,\n", totalDistance));
-		if (walking)
-			builder.append("Status: WALKING");
-		else
+		builder.append(String.format(Locale.US, "Speed: %.2f m/s, Cadence: %d RPM,\n", measurement.getSpeed(), measurement.instantaneousCadence));
+		if (measurement.strideLengthPresent)
+			builder.append(String.format(Locale.US, "Instantaneous Stride Length: %.2f m,\n", measurement.instantaneousStrideLength / 100.0f));
+		if (measurement.totalDistancePresent)
+			builder.append(String.format(Locale.US, "Total Distance: %.1f m,\n", measurement.totalDistance / 10.0f));
+		if (measurement.running)
 			builder.append("Status: RUNNING");
+		else
+			builder.append("Status: WALKING");
 		return builder.toString();
 	}
 }
@@ -21,8 +21,6 @@
  */
 package no.nordicsemi.android.nrftoolbox.parser;
 
-import android.bluetooth.BluetoothGattCharacteristic;
-
 import java.util.Locale;
 
 public class TemperatureMeasurementParser {
@@ -30,9 +28,18 @@ public class TemperatureMeasurementParser {
 	private static final byte TIMESTAMP_FLAG = 0x02; // 1 bits
 	private static final byte TEMPERATURE_TYPE_FLAG = 0x04; // 1 bit
 
-	public static String parse(final BluetoothGattCharacteristic characteristic) {
+	/**
+	 * Parses the given value, see {@link #parse(CharacteristicValue)}.
+	 * @param value the characteristic value
+	 * @return the human readable value
+	 */
+	public static String parse(final byte[] value) {
+		return parse(new CharacteristicValue(value));
+	}
+
+	public static String parse(final CharacteristicValue characteristic) {
 		int offset = 0;
-		final int flags = characteristic.getIntValue(BluetoothGattCharacteristic.FORMAT_UINT8, offset++);
+		final int flags = characteristic.getIntValue(CharacteristicValue.FORMAT_UINT8, offset++);
 
 		/*
 		 * false 	Temperature is in Celsius degrees 
@@ -52,7 +59,7 @@ public class TemperatureMeasurementParser {
 		 */
 		final boolean temperatureTypeIncluded = (flags & TEMPERATURE_TYPE_FLAG) > 0;
 
-		final float tempValue = characteristic.getFloatValue(BluetoothGattCharacteristic.FORMAT_FLOAT, offset);
+		final float tempValue = characteristic.getFloatValue(CharacteristicValue.FORMAT_FLOAT, offset);
 		offset += 4;
 
 		String dateTime = null;
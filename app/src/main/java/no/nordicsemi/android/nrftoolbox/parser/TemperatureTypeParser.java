@@ -21,15 +21,22 @@
  */
 package no.nordicsemi.android.nrftoolbox.parser;
 
-import android.bluetooth.BluetoothGattCharacteristic;
-
 public class TemperatureTypeParser {
 
-	public static String parse(final BluetoothGattCharacteristic characteristic) {
+	/**
+	 * Parses the given value, see {@link #parse(CharacteristicValue)}.
+	 * @param value the characteristic value
+	 * @return the human readable value
+	 */
+	public static String parse(final byte[] value) {
+		return parse(new CharacteristicValue(value));
+	}
+
+	public static String parse(final CharacteristicValue characteristic) {
 		return parse(characteristic, 0);
 	}
 
-	/* package */static String parse(final BluetoothGattCharacteristic characteristic, final int offset) {
+	/* package */static String parse(final CharacteristicValue characteristic, final int offset) {
 		final int type = characteristic.getValue()[offset];
 
 		switch (type) {
@@ -21,21 +21,28 @@
  */
 package no.nordicsemi.android.nrftoolbox.parser;
 
-import android.bluetooth.BluetoothGattCharacteristic;
-
 // TODO this method may be used for developing purposes to log the data from your device using the nRF Logger application.
 public class TemplateParser {
 	// TODO add some flags, if needed
 	private static final byte HEART_RATE_VALUE_FORMAT = 0x01; // 1 bit
 
+	/**
+	 * Parses the given value, see {@link #parse(CharacteristicValue)}.
+	 * @param value the characteristic value
+	 * @return the human readable value
+	 */
+	public static String parse(final byte[] value) {
+		return parse(new CharacteristicValue(value));
+	}
+
 	/**
 	 * This method converts the value of the characteristic to the String. The String is then logged in the nRF logger log session
 	 * @param characteristic the characteristic to be parsed
 	 * @return human readable value of the characteristic
 	 */
-	public static String parse(final BluetoothGattCharacteristic characteristic) {
+	public static String parse(final CharacteristicValue characteristic) {
 		int offset = 0;
-		final int flags = characteristic.getIntValue(BluetoothGattCharacteristic.FORMAT_UINT8, offset++);
+		final int flags = characteristic.getIntValue(CharacteristicValue.FORMAT_UINT8, offset++);
 
 		/*
 		 * In the template we are using the HRM values as an example.
@@ -45,7 +52,7 @@ public class TemplateParser {
 		final boolean value16bit = (flags & HEART_RATE_VALUE_FORMAT) > 0;
 
 		// heart rate value is 8 or 16 bit long
-		int value = characteristic.getIntValue(value16bit ? BluetoothGattCharacteristic.FORMAT_UINT16 : BluetoothGattCharacteristic.FORMAT_UINT8, offset++); // bits per minute
+		int value = characteristic.getIntValue(value16bit ? CharacteristicValue.FORMAT_UINT16 : CharacteristicValue.FORMAT_UINT8, offset++); // bits per minute
 		if (value16bit)
 			offset++;
 
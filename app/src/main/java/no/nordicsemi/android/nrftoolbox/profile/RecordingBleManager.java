@@ -0,0 +1,192 @@
+/*
+ * Copyright (c) 2015, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.nrftoolbox.profile;
+
+import android.bluetooth.BluetoothGatt;
+import android.bluetooth.BluetoothGattCharacteristic;
+import android.content.Context;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import no.nordicsemi.android.ble.BleManager;
+import no.nordicsemi.android.ble.BleManagerCallbacks;
+import no.nordicsemi.android.nrftoolbox.recorder.ReplayEngine;
+import no.nordicsemi.android.nrftoolbox.recorder.SessionFormat;
+import no.nordicsemi.android.nrftoolbox.recorder.SessionRecorder;
+
+/**
+ * Base class of the profile managers that allows recording all notifications, indications, reads and writes with a {@link SessionRecorder}
+ * and replaying them with a {@link ReplayEngine}. The manager's GATT callback must extend {@link RecordingGattCallback} and call
+ * the super implementation when overriding onCharacteristicNotified, onCharacteristicIndicated, onCharacteristicRead or onCharacteristicWrite.
+ * <p>
+ * Recording is disabled by default. One recorder is shared by all managers, so packets from all connected devices are recorded in a single session.
+ * </p>
+ *
+ * @param <E> the callbacks type
+ */
+public abstract class RecordingBleManager<E extends BleManagerCallbacks> extends BleManager<E> {
+	private static final String SESSIONS_DIRECTORY = "sessions";
+
+	private static volatile SessionRecorder sRecorder;
+
+	private final Map<UUID, BluetoothGattCharacteristic> mReplayCharacteristics = new HashMap<>();
+	/** Set only on the thread passing a replayed packet to the callback, so live packets received meanwhile are not affected. */
+	private final ThreadLocal<Boolean> mReplaying = new ThreadLocal<>();
+
+	public RecordingBleManager(final Context context) {
+		super(context);
+	}
+
+	/**
+	 * Returns a replay target passing recorded packets to the GATT callback of this manager, as if they were received from the device.
+	 * The callbacks, and the service and UI behind them, are called on the thread running the {@link ReplayEngine}.
+	 * Replayed packets are not recorded again.
+	 * <p>
+	 * Managers report the device returned by {@link BluetoothGatt#getDevice()}, and a {@link BluetoothGatt} can't be created by the app,
+	 * so the GATT of an open connection has to be given.
+	 * </p>
+	 *
+	 * @param gatt the GATT object passed to the callbacks
+	 * @return the replay target
+	 */
+	@NonNull
+	public ReplayEngine.Target createReplayTarget(@NonNull final BluetoothGatt gatt) {
+		final RecordingGattCallback callback = (RecordingGattCallback) getGattCallback();
+		return packet -> {
+			BluetoothGattCharacteristic characteristic = mReplayCharacteristics.get(packet.uuid);
+			if (characteristic == null) {
+				// A detached copy, so the replayed values do not overwrite the ones of the real characteristics
+				characteristic = new BluetoothGattCharacteristic(packet.uuid, 0, 0);
+				mReplayCharacteristics.put(packet.uuid, characteristic);
+			}
+			characteristic.setValue(packet.getValue());
+
+			mReplaying.set(Boolean.TRUE);
+			try {
+				callback.dispatch(gatt, characteristic, packet.type);
+			} finally {
+				mReplaying.remove();
+			}
+		};
+	}
+
+	/**
+	 * Starts a new recording session in the app's external files directory. A session that is already being recorded is closed.
+	 * As this method creates the first segment file, it should not be called on the main thread.
+	 *
+	 * @param context the context
+	 * @return the recorder
+	 * @throws IOException if the session could not be created
+	 */
+	public static synchronized SessionRecorder startSessionRecording(@NonNull final Context context) throws IOException {
+		final File directory = new File(context.getExternalFilesDir(null), SESSIONS_DIRECTORY);
+		final SessionRecorder recorder = new SessionRecorder(directory);
+		stopSessionRecording();
+		sRecorder = recorder;
+		return recorder;
+	}
+
+	/**
+	 * Stops the current recording session, if any.
+	 */
+	public static synchronized void stopSessionRecording() {
+		final SessionRecorder recorder = sRecorder;
+		sRecorder = null;
+		if (recorder != null)
+			recorder.close();
+	}
+
+	/**
+	 * Returns the recorder of the current session, or null if recording is disabled.
+	 */
+	@Nullable
+	public static SessionRecorder getSessionRecorder() {
+		return sRecorder;
+	}
+
+	/**
+	 * Returns true if called on the thread passing a replayed packet to the GATT callback. Managers may use it to skip
+	 * side effects that only make sense for a live connection, e.g. returning credits for written packets.
+	 * Callbacks of the live connection running at the same time on other threads return false.
+	 */
+	protected boolean isReplaying() {
+		return mReplaying.get() != null;
+	}
+
+	private void record(final BluetoothGatt gatt, final BluetoothGattCharacteristic characteristic, final int type) {
+		final SessionRecorder recorder = sRecorder;
+		if (recorder != null && !isReplaying()) {
+			final long address = SessionFormat.parseAddress(gatt.getDevice().getAddress());
+			recorder.record(System.currentTimeMillis(), address, characteristic.getUuid(), type, characteristic.getValue());
+		}
+	}
+
+	/**
+	 * GATT callback recording packets when a session is being recorded.
+	 */
+	protected abstract class RecordingGattCallback extends BleManagerGattCallback {
+
+		private void dispatch(final BluetoothGatt gatt, final BluetoothGattCharacteristic characteristic, final int type) {
+			switch (type) {
+				case SessionFormat.TYPE_NOTIFICATION:
+					onCharacteristicNotified(gatt, characteristic);
+					break;
+				case SessionFormat.TYPE_INDICATION:
+					onCharacteristicIndicated(gatt, characteristic);
+					break;
+				case SessionFormat.TYPE_READ:
+					onCharacteristicRead(gatt, characteristic);
+					break;
+				case SessionFormat.TYPE_WRITE:
+					onCharacteristicWrite(gatt, characteristic);
+					break;
+			}
+		}
+
+		@Override
+		protected void onCharacteristicNotified(final BluetoothGatt gatt, final BluetoothGattCharacteristic characteristic) {
+			record(gatt, characteristic, SessionFormat.TYPE_NOTIFICATION);
+		}
+
+		@Override
+		protected void onCharacteristicIndicated(final BluetoothGatt gatt, final BluetoothGattCharacteristic characteristic) {
+			record(gatt, characteristic, SessionFormat.TYPE_INDICATION);
+		}
+
+		@Override
+		protected void onCharacteristicRead(final BluetoothGatt gatt, final BluetoothGattCharacteristic characteristic) {
+			record(gatt, characteristic, SessionFormat.TYPE_READ);
+		}
+
+		@Override
+		protected void onCharacteristicWrite(final BluetoothGatt gatt, final BluetoothGattCharacteristic characteristic) {
+			record(gatt, characteristic, SessionFormat.TYPE_WRITE);
+		}
+	}
+}
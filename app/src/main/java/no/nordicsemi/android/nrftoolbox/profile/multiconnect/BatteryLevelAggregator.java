@@ -0,0 +1,296 @@
+/*
+ * Copyright (c) 2015, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package no.nordicsemi.android.nrftoolbox.profile.multiconnect;
+
+import java.util.Arrays;
+
+/**
+ * Caches battery levels of many devices, spreads their reads in time and aggregates the changes.
+ * <p>
+ * {@link #refresh(long[], int)} plans reads of the devices whose cached value is older than the time-to-live,
+ * staggered evenly across a time window instead of sent all at once. Devices that sent a value without being read
+ * have notifications enabled and report changes themselves, so they are not read until they disconnect or their
+ * notifications are disabled. Devices whose notifications were disabled are read on the next refresh regardless
+ * of the age of their value, as the read enables the notifications again. Changed values are collected and
+ * published together to the {@link Listener} after a short delay.
+ * </p>
+ * <p>
+ * Like the {@link ConnectionScheduler} this class doesn't run any thread: {@link #poll()} must be called after
+ * each refresh or received value, and again after the delay it returns. The reader and the listener are called
+ * from {@link #poll()}, outside the lock. Other methods may be called from any thread.
+ * </p>
+ */
+public class BatteryLevelAggregator {
+	public static final long DEFAULT_TIME_TO_LIVE = 5 * 60000;
+	public static final long DEFAULT_READ_WINDOW = 3000;
+	public static final long DEFAULT_PUBLISH_DELAY = 500;
+
+	public interface Reader {
+		/**
+		 * Reads the battery level of the device. The value must be reported using {@link BatteryLevelAggregator#onValue(long, int)}.
+		 */
+		void readBatteryLevel(final long address);
+	}
+
+	public interface Listener {
+		/**
+		 * Called with all values changed since the last call.
+		 *
+		 * @param addresses the addresses of the devices
+		 * @param levels    the battery levels of the devices, in the same order
+		 */
+		void onBatteryLevelsChanged(final long[] addresses, final int[] levels);
+	}
+
+	private static class Entry {
+		final long address;
+		int level = -1;
+		long updated;
+		boolean notifying;
+		/** Notifications were disabled, the value is not fresh until the device is read again. */
+		boolean expired;
+		boolean readPending;
+		long readDue = Long.MAX_VALUE;
+		boolean changed;
+
+		Entry(final long address) {
+			this.address = address;
+		}
+	}
+
+	private final Reader mReader;
+	private final Listener mListener;
+	private final ConnectionScheduler.Clock mClock;
+	private final DeviceRegistry<Entry> mEntries = new DeviceRegistry<>();
+	private long mTimeToLive = DEFAULT_TIME_TO_LIVE;
+	private long mReadWindow = DEFAULT_READ_WINDOW;
+	private long mPublishDelay = DEFAULT_PUBLISH_DELAY;
+	private int mChangedCount;
+	private long mPublishDue = Long.MAX_VALUE;
+	private long[] mToRead = new long[4];
+
+	public BatteryLevelAggregator(final Reader reader, final Listener listener, final ConnectionScheduler.Clock clock) {
+		mReader = reader;
+		mListener = listener;
+		mClock = clock;
+	}
+
+	public synchronized BatteryLevelAggregator setTimeToLive(final long timeToLive) {
+		mTimeToLive = timeToLive;
+		return this;
+	}
+
+	/**
+	 * Sets the time across which the reads requested by a single refresh are spread.
+	 */
+	public synchronized BatteryLevelAggregator setReadWindow(final long readWindow) {
+		mReadWindow = readWindow;
+		return this;
+	}
+
+	/**
+	 * Sets the time for which changes are collected before being published.
+	 */
+	public synchronized BatteryLevelAggregator setPublishDelay(final long publishDelay) {
+		mPublishDelay = publishDelay;
+		return this;
+	}
+
+	/**
+	 * Returns the last known battery level of the device, or -1 if unknown.
+	 */
+	public synchronized int getLevel(final long address) {
+		final Entry entry = mEntries.get(address);
+		return entry != null ? entry.level : -1;
+	}
+
+	/**
+	 * Returns <code>true</code> if the battery level of the device is known and either younger than the time-to-live,
+	 * or the device sends notifications. A value received before the notifications were disabled is not fresh.
+	 */
+	public synchronized boolean isFresh(final long address) {
+		final Entry entry = mEntries.get(address);
+		return entry != null && isFresh(entry, mClock.now());
+	}
+
+	/**
+	 * Returns <code>true</code> if the device has sent a value without being read, so it has notifications enabled.
+	 */
+	public synchronized boolean isNotifying(final long address) {
+		final Entry entry = mEntries.get(address);
+		return entry != null && entry.notifying;
+	}
+
+	/**
+	 * Plans reading the battery level of the devices whose value is not fresh and which do not send notifications.
+	 * The reads are spread evenly across the read window.
+	 *
+	 * @param addresses the addresses of connected devices
+	 * @param count     number of addresses in the array to use
+	 */
+	public synchronized void refresh(final long[] addresses, final int count) {
+		final long now = mClock.now();
+		int stale = 0;
+		for (int i = 0; i < count; ++i) {
+			final Entry entry = getOrCreate(addresses[i]);
+			if (!isFresh(entry, now)) {
+				entry.readPending = false;
+				if (stale == mToRead.length)
+					mToRead = Arrays.copyOf(mToRead, stale * 2);
+				mToRead[stale++] = entry.address;
+			}
+		}
+		for (int i = 0; i < stale; ++i)
+			mEntries.get(mToRead[i]).readDue = now + mReadWindow * i / stale;
+	}
+
+	/**
+	 * Reports a battery level value. A value which was not read is a notification.
+	 */
+	public synchronized void onValue(final long address, final int level) {
+		final Entry entry = getOrCreate(address);
+		if (entry.readPending)
+			entry.readPending = false;
+		else
+			entry.notifying = true;
+		entry.expired = false;
+		entry.readDue = Long.MAX_VALUE;
+		entry.updated = mClock.now();
+
+		if (entry.level != level) {
+			entry.level = level;
+			if (!entry.changed) {
+				entry.changed = true;
+				if (mChangedCount++ == 0)
+					mPublishDue = entry.updated + mPublishDelay;
+			}
+		}
+	}
+
+	/**
+	 * Reports a read of the battery level started by someone else, for example by the BleManager during the device
+	 * initialization. The next value is classified as the response, not as a notification.
+	 */
+	public synchronized void onReadStarted(final long address) {
+		final Entry entry = getOrCreate(address);
+		entry.readPending = true;
+		entry.readDue = Long.MAX_VALUE;
+	}
+
+	/**
+	 * Called when the battery level notifications of the device have been disabled. The value is no longer updated,
+	 * so the device will be read on the next refresh, even if the value is younger than the time-to-live.
+	 */
+	public synchronized void onNotificationsDisabled(final long address) {
+		final Entry entry = mEntries.get(address);
+		if (entry != null) {
+			entry.notifying = false;
+			entry.expired = true;
+		}
+	}
+
+	/**
+	 * Called when the device has disconnected. Its planned read is cancelled, the last value stays in the cache.
+	 */
+	public synchronized void onDisconnected(final long address) {
+		final Entry entry = mEntries.get(address);
+		if (entry != null) {
+			entry.notifying = false;
+			entry.readPending = false;
+			entry.readDue = Long.MAX_VALUE;
+		}
+	}
+
+	/**
+	 * Removes the device from the cache.
+	 */
+	public synchronized void remove(final long address) {
+		final Entry entry = mEntries.remove(address);
+		if (entry != null && entry.changed) {
+			entry.changed = false;
+			if (--mChangedCount == 0)
+				mPublishDue = Long.MAX_VALUE;
+		}
+	}
+
+	/**
+	 * Starts the reads that are due and publishes the changed values if the publish delay has passed.
+	 *
+	 * @return the delay in milliseconds after which this method must be called again, or -1 if nothing is planned
+	 */
+	public long poll() {
+		final long now;
+		final long[] toRead;
+		long[] changedAddresses = null;
+		int[] changedLevels = null;
+		long next = Long.MAX_VALUE;
+		synchronized (this) {
+			now = mClock.now();
+			int readCount = 0;
+			for (final Entry entry : mEntries.values()) {
+				if (entry.readDue <= now) {
+					entry.readDue = Long.MAX_VALUE;
+					entry.readPending = true;
+					if (readCount == mToRead.length)
+						mToRead = Arrays.copyOf(mToRead, readCount * 2);
+					mToRead[readCount++] = entry.address;
+				} else {
+					next = Math.min(next, entry.readDue);
+				}
+			}
+			toRead = Arrays.copyOf(mToRead, readCount);
+
+			if (mPublishDue <= now) {
+				changedAddresses = new long[mChangedCount];
+				changedLevels = new int[mChangedCount];
+				int i = 0;
+				for (final Entry entry : mEntries.values()) {
+					if (entry.changed) {
+						entry.changed = false;
+						changedAddresses[i] = entry.address;
+						changedLevels[i++] = entry.level;
+					}
+				}
+				mChangedCount = 0;
+				mPublishDue = Long.MAX_VALUE;
+			}
+			next = Math.min(next, mPublishDue);
+		}
+		for (final long address : toRead)
+			mReader.readBatteryLevel(address);
+		if (changedAddresses != null)
+			mListener.onBatteryLevelsChanged(changedAddresses, changedLevels);
+		return next == Long.MAX_VALUE ? -1 : Math.max(0, next - now);
+	}
+
+	private boolean isFresh(final Entry entry, final long now) {
+		// Notifications are sent when the level changes, a quiet notifying device has the same level
+		return entry.level >= 0 && (entry.notifying || !entry.expired && now - entry.updated < mTimeToLive);
+	}
+
+	private Entry getOrCreate(final long address) {
+		Entry entry = mEntries.get(address);
+		if (entry == null)
+			mEntries.put(address, entry = new Entry(address));
+		return entry;
+	}
+}
@@ -32,13 +32,14 @@ import android.content.IntentFilter;
 import android.os.Binder;
 import android.os.Handler;
 import android.os.IBinder;
+import android.os.SystemClock;
 import android.support.annotation.StringRes;
 import android.support.v4.content.LocalBroadcastManager;
 import android.widget.Toast;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
 
 import no.nordicsemi.android.ble.BleManager;
@@ -46,6 +47,8 @@ import no.nordicsemi.android.ble.BleManagerCallbacks;
 import no.nordicsemi.android.ble.utils.ILogger;
 import no.nordicsemi.android.log.ILogSession;
 import no.nordicsemi.android.log.LogContract;
+import no.nordicsemi.android.nrftoolbox.scanner.BackgroundScannerService;
+import no.nordicsemi.android.nrftoolbox.scanner.DeviceCache;
 
 public abstract class BleMulticonnectProfileService extends Service implements BleManagerCallbacks {
 	@SuppressWarnings("unused")
@@ -55,7 +58,8 @@ public abstract class BleMulticonnectProfileService extends Service implements B
 	public static final String BROADCAST_SERVICES_DISCOVERED = "no.nordicsemi.android.nrftoolbox.BROADCAST_SERVICES_DISCOVERED";
 	public static final String BROADCAST_DEVICE_READY = "no.nordicsemi.android.nrftoolbox.DEVICE_READY";
 	public static final String BROADCAST_BOND_STATE = "no.nordicsemi.android.nrftoolbox.BROADCAST_BOND_STATE";
-	public static final String BROADCAST_BATTERY_LEVEL = "no.nordicsemi.android.nrftoolbox.BROADCAST_BATTERY_LEVEL";
+	/** Battery levels of all devices that changed in the last publish period, see {@link BatteryLevelAggregator}. */
+	public static final String BROADCAST_BATTERY_LEVELS = "no.nordicsemi.android.nrftoolbox.BROADCAST_BATTERY_LEVELS";
 	public static final String BROADCAST_ERROR = "no.nordicsemi.android.nrftoolbox.BROADCAST_ERROR";
 
 	public static final String EXTRA_DEVICE = "no.nordicsemi.android.nrftoolbox.EXTRA_DEVICE";
@@ -63,7 +67,8 @@ public abstract class BleMulticonnectProfileService extends Service implements B
 	public static final String EXTRA_BOND_STATE = "no.nordicsemi.android.nrftoolbox.EXTRA_BOND_STATE";
 	public static final String EXTRA_SERVICE_PRIMARY = "no.nordicsemi.android.nrftoolbox.EXTRA_SERVICE_PRIMARY";
 	public static final String EXTRA_SERVICE_SECONDARY = "no.nordicsemi.android.nrftoolbox.EXTRA_SERVICE_SECONDARY";
-	public static final String EXTRA_BATTERY_LEVEL = "no.nordicsemi.android.nrftoolbox.EXTRA_BATTERY_LEVEL";
+	public static final String EXTRA_DEVICES = "no.nordicsemi.android.nrftoolbox.EXTRA_DEVICES";
+	public static final String EXTRA_BATTERY_LEVELS = "no.nordicsemi.android.nrftoolbox.EXTRA_BATTERY_LEVELS";
 	public static final String EXTRA_ERROR_MESSAGE = "no.nordicsemi.android.nrftoolbox.EXTRA_ERROR_MESSAGE";
 	public static final String EXTRA_ERROR_CODE = "no.nordicsemi.android.nrftoolbox.EXTRA_ERROR_CODE";
 
@@ -73,8 +78,18 @@ public abstract class BleMulticonnectProfileService extends Service implements B
 	public static final int STATE_CONNECTING = 2;
 	public static final int STATE_DISCONNECTING = 3;
 
-	private HashMap<BluetoothDevice, BleManager<BleManagerCallbacks>> mBleManagers;
-	private List<BluetoothDevice> mManagedDevices;
+	/** BleManagers of all devices ever connected, keyed by the device address. They are kept after disconnection to keep the log session. */
+	private DeviceRegistry<BleManager<BleManagerCallbacks>> mBleManagers;
+	/** Devices currently managed by the service, keyed by their address, in the order they were added. */
+	private DeviceRegistry<BluetoothDevice> mManagedDevices;
+	/** Limits the number of simultaneous connection attempts and retries the failed ones. */
+	private ConnectionScheduler mConnectionScheduler;
+	/** Devices whose connection attempt timed out and is being cancelled. They stay managed and are retried after the disconnection. */
+	private DeviceRegistry<BluetoothDevice> mTimedOutDevices;
+	/** Devices seen by the scanners, used to connect to those in range first. */
+	private DeviceCache mDeviceCache;
+	/** Caches battery levels of all devices and spreads their reads in time. */
+	private BatteryLevelAggregator mBatteryLevels;
 	private Handler mHandler;
 
 	protected boolean mBinded;
@@ -110,7 +125,7 @@ public abstract class BleMulticonnectProfileService extends Service implements B
 		 * @return unmodifiable list of devices managed by the service
 		 */
 		public final List<BluetoothDevice> getManagedDevices() {
-			return Collections.unmodifiableList(mManagedDevices);
+			return mManagedDevices.values();
 		}
 
 		/**
@@ -130,21 +145,23 @@ public abstract class BleMulticonnectProfileService extends Service implements B
 		public void connect(final BluetoothDevice device, final ILogSession session) {
 			// If a device is in managed devices it means that it's already connected, or was connected
 			// using autoConnect and the link was lost but Android is already trying to connect to it.
-			if (mManagedDevices.contains(device))
+			final long address = DeviceRegistry.toKey(device.getAddress());
+			if (mManagedDevices.contains(address))
 				return;
-			mManagedDevices.add(device);
+			mManagedDevices.put(address, device);
 
-			BleManager<BleManagerCallbacks> manager = mBleManagers.get(device);
+			BleManager<BleManagerCallbacks> manager = mBleManagers.get(address);
 			if (manager != null) {
 				if (session != null)
 					manager.setLogger(session);
-				manager.connect(device);
 			} else {
-				mBleManagers.put(device, manager = initializeManager());
+				mBleManagers.put(address, manager = initializeManager());
 				manager.setGattCallbacks(BleMulticonnectProfileService.this);
 				manager.setLogger(session);
-				manager.connect(device);
 			}
+			// The connection will start when the scheduler allows it
+			mConnectionScheduler.request(address, ConnectionScheduler.PRIORITY_USER);
+			scheduleConnections();
 		}
 
 		/**
@@ -154,11 +171,16 @@ public abstract class BleMulticonnectProfileService extends Service implements B
 		 * @param device target device to disconnect and forget
 		 */
 		public void disconnect(final BluetoothDevice device) {
-			final BleManager<BleManagerCallbacks> manager = mBleManagers.get(device);
-			if (manager != null && manager.isConnected()) {
-				manager.disconnect();
+			final long address = DeviceRegistry.toKey(device.getAddress());
+			final BleManager<BleManagerCallbacks> manager = mBleManagers.get(address);
+			final boolean connecting = mConnectionScheduler.isConnecting(address);
+			mConnectionScheduler.cancel(address);
+			mTimedOutDevices.remove(address);
+			if (manager != null && (isConnected(device) || connecting)) {
+				disconnectDevice(device, manager);
 			}
-			mManagedDevices.remove(device);
+			mManagedDevices.remove(address);
+			scheduleConnections();
 		}
 
 		/**
@@ -167,8 +189,7 @@ public abstract class BleMulticonnectProfileService extends Service implements B
 		 * @return <code>true</code> if device is connected to the sensor, <code>false</code> otherwise
 		 */
 		public final boolean isConnected(final BluetoothDevice device) {
-			final BleManager<BleManagerCallbacks> manager = mBleManagers.get(device);
-			return manager != null && manager.isConnected();
+			return BleMulticonnectProfileService.this.isConnected(device);
 		}
 
 		/**
@@ -177,8 +198,7 @@ public abstract class BleMulticonnectProfileService extends Service implements B
 		 * @return the connection state, as in {@link BleManager#getConnectionState()}.
 		 */
 		public final int getConnectionState(final BluetoothDevice device) {
-			final BleManager<BleManagerCallbacks> manager = mBleManagers.get(device);
-			return manager != null ? manager.getConnectionState() : BluetoothGatt.STATE_DISCONNECTED;
+			return BleMulticonnectProfileService.this.getConnectionState(device);
 		}
 
 		/**
@@ -187,8 +207,16 @@ public abstract class BleMulticonnectProfileService extends Service implements B
 		 * @return battery value or -1 if no value was received or Battery Level characteristic was not found
 		 */
 		public int getBatteryValue(final BluetoothDevice device) {
-			final BleManager<BleManagerCallbacks> manager = mBleManagers.get(device);
-			return manager.getBatteryValue();
+			return mBatteryLevels.getLevel(DeviceRegistry.toKey(device.getAddress()));
+		}
+
+		/**
+		 * Returns the connection statistics of the given device: number of attempts and failures and the connection latency.
+		 * @param device the target device
+		 * @return the statistics or null if the device has never been connected by the service
+		 */
+		public ConnectionScheduler.Statistics getConnectionStatistics(final BluetoothDevice device) {
+			return mConnectionScheduler.getStatistics(DeviceRegistry.toKey(device.getAddress()));
 		}
 
 		/**
@@ -202,14 +230,14 @@ public abstract class BleMulticonnectProfileService extends Service implements B
 
 		@Override
 		public void log(final BluetoothDevice device, final int level, final String message) {
-			final BleManager<BleManagerCallbacks> manager = mBleManagers.get(device);
+			final BleManager<BleManagerCallbacks> manager = mBleManagers.get(DeviceRegistry.toKey(device.getAddress()));
 			if (manager != null)
 				manager.log(level, message);
 		}
 
 		@Override
 		public void log(final BluetoothDevice device, final int level, @StringRes final int messageRes, final Object... params) {
-			final BleManager<BleManagerCallbacks> manager = mBleManagers.get(device);
+			final BleManager<BleManagerCallbacks> manager = mBleManagers.get(DeviceRegistry.toKey(device.getAddress()));
 			if (manager != null)
 				manager.log(level, messageRes, params);
 		}
@@ -227,6 +255,116 @@ public abstract class BleMulticonnectProfileService extends Service implements B
 		}
 	}
 
+	private final ConnectionScheduler.Connector mConnector = new ConnectionScheduler.Connector() {
+		@Override
+		public void connect(final long address) {
+			final BluetoothDevice device = mManagedDevices.get(address);
+			final BleManager<BleManagerCallbacks> manager = mBleManagers.get(address);
+			if (device == null || manager == null) {
+				mConnectionScheduler.cancel(address);
+				return;
+			}
+			connectDevice(device, manager);
+		}
+
+		@Override
+		public void cancel(final long address) {
+			final BluetoothDevice device = mManagedDevices.get(address);
+			final BleManager<BleManagerCallbacks> manager = mBleManagers.get(address);
+			if (device != null && manager != null) {
+				// The disconnection will be reported to onDeviceDisconnected(..), which will keep the device managed
+				manager.log(LogContract.Log.Level.WARNING, "Connection timed out");
+				mTimedOutDevices.put(address, device);
+				disconnectDevice(device, manager);
+			}
+		}
+	};
+
+	private final DeviceCache.Listener mDeviceSeenListener = (address, time) -> {
+		final ConnectionScheduler scheduler = mConnectionScheduler;
+		final DeviceRegistry<BluetoothDevice> managedDevices = mManagedDevices;
+		if (scheduler == null || managedDevices == null)
+			return;
+		final long key = DeviceRegistry.toKey(address);
+		if (managedDevices.contains(key)) {
+			// The cache uses the wall clock, the scheduler the elapsed real time
+			scheduler.onDeviceSeen(key, SystemClock.elapsedRealtime() - Math.max(0, System.currentTimeMillis() - time));
+		}
+	};
+
+	private final Runnable mPollConnections = new Runnable() {
+		@Override
+		public void run() {
+			if (mConnectionScheduler == null)
+				return;
+			final long delay = mConnectionScheduler.poll();
+			if (delay >= 0 && mHandler != null)
+				mHandler.postDelayed(this, delay);
+		}
+	};
+
+	/**
+	 * Lets the connection scheduler start waiting connections in the UI thread. Must be called after each request
+	 * and after each connection attempt has finished. This method is thread safe.
+	 */
+	private void scheduleConnections() {
+		final Handler handler = mHandler;
+		if (handler != null) {
+			handler.removeCallbacks(mPollConnections);
+			handler.post(mPollConnections);
+		}
+	}
+
+	private final BatteryLevelAggregator.Reader mBatteryLevelReader = address -> {
+		final BleManager<BleManagerCallbacks> manager = mBleManagers.get(address);
+		// This method will read the Battery Level value, if possible and then try to enable battery notifications (if it has NOTIFY property).
+		// If the Battery Level characteristic has only the NOTIFY property, it will only try to enable notifications.
+		if (manager != null && manager.isConnected())
+			manager.readBatteryLevel();
+	};
+
+	private final BatteryLevelAggregator.Listener mBatteryLevelListener = (addresses, levels) -> {
+		final ArrayList<BluetoothDevice> devices = new ArrayList<>(addresses.length);
+		final int[] values = new int[addresses.length];
+		for (int i = 0; i < addresses.length; ++i) {
+			final BluetoothDevice device = mManagedDevices.get(addresses[i]);
+			// The device might have been removed in the meantime
+			if (device != null) {
+				values[devices.size()] = levels[i];
+				devices.add(device);
+			}
+		}
+		if (devices.isEmpty())
+			return;
+
+		final Intent broadcast = new Intent(BROADCAST_BATTERY_LEVELS);
+		broadcast.putParcelableArrayListExtra(EXTRA_DEVICES, devices);
+		broadcast.putExtra(EXTRA_BATTERY_LEVELS, Arrays.copyOf(values, devices.size()));
+		LocalBroadcastManager.getInstance(this).sendBroadcast(broadcast);
+	};
+
+	private final Runnable mPollBatteryLevels = new Runnable() {
+		@Override
+		public void run() {
+			if (mBatteryLevels == null)
+				return;
+			final long delay = mBatteryLevels.poll();
+			if (delay >= 0 && mHandler != null)
+				mHandler.postDelayed(this, delay);
+		}
+	};
+
+	/**
+	 * Lets the battery level aggregator start planned reads and publish changes in the UI thread. This method is thread safe.
+	 */
+	private void scheduleBatteryLevels() {
+		final Handler handler = mHandler;
+		if (handler != null) {
+			handler.removeCallbacks(mPollBatteryLevels);
+			handler.post(mPollBatteryLevels);
+		}
+	}
+
 	/**
 	 * Returns a handler that is created in onCreate().
 	 * The handler may be used to postpone execution of some operations or to run them in UI thread.
@@ -257,12 +395,20 @@ public abstract class BleMulticonnectProfileService extends Service implements B
 
 		if (!mActivityIsChangingConfiguration) {
 			onRebind();
-			// This method will read the Battery Level value from each connected device, if possible and then try to enable battery notifications (if it has NOTIFY property).
-			// If the Battery Level characteristic has only the NOTIFY property, it will only try to enable notifications.
-			for (final BleManager<BleManagerCallbacks> manager : mBleManagers.values()) {
-				if (manager.isConnected())
-					manager.readBatteryLevel();
+			// Reading the Battery Level of all devices at once would stall the GATT queues and the UI. The aggregator spreads
+			// the reads in time and skips devices with fresh values, for example those sending notifications. Devices whose
+			// notifications were disabled in onUnbind are always read, as the read enables the notifications again.
+			final List<BluetoothDevice> devices = mManagedDevices.values();
+			final long[] addresses = new long[devices.size()];
+			int count = 0;
+			for (final BluetoothDevice device : devices) {
+				final long address = DeviceRegistry.toKey(device.getAddress());
+				final BleManager<BleManagerCallbacks> manager = mBleManagers.get(address);
+				if (manager != null && manager.isConnected())
+					addresses[count++] = address;
 			}
+			mBatteryLevels.refresh(addresses, count);
+			scheduleBatteryLevels();
 		}
 	}
 
@@ -284,9 +430,13 @@ public abstract class BleMulticonnectProfileService extends Service implements B
 				onUnbind();
 				// When we are connected, but the application is not open, we are not really interested in battery level notifications.
 				// But we will still be receiving other values, if enabled.
-				for (final BleManager<BleManagerCallbacks> manager : mBleManagers.values()) {
-					if (manager.isConnected())
+				for (final BluetoothDevice device : mManagedDevices.values()) {
+					final long address = DeviceRegistry.toKey(device.getAddress());
+					final BleManager<BleManagerCallbacks> manager = mBleManagers.get(address);
+					if (manager != null && manager.isConnected()) {
 						manager.setBatteryNotifications(false);
+						mBatteryLevels.onNotificationsDisabled(address);
+					}
 				}
 			} else {
 				// The last activity has disconnected from the service and there are no devices to manage. The service may be stopped.
@@ -313,12 +463,19 @@ public abstract class BleMulticonnectProfileService extends Service implements B
 		mHandler = new Handler();
 
 		// Initialize the map of BLE managers
-		mBleManagers = new HashMap<>();
-		mManagedDevices = new ArrayList<>();
+		mBleManagers = new DeviceRegistry<>();
+		mManagedDevices = new DeviceRegistry<>();
+		mConnectionScheduler = new ConnectionScheduler(mConnector, SystemClock::elapsedRealtime);
+		mTimedOutDevices = new DeviceRegistry<>();
+		mBatteryLevels = new BatteryLevelAggregator(mBatteryLevelReader, mBatteryLevelListener, SystemClock::elapsedRealtime);
 
 		// Register broadcast receivers
 		registerReceiver(mBluetoothStateBroadcastReceiver, new IntentFilter(BluetoothAdapter.ACTION_STATE_CHANGED));
 
+		// Waiting devices seen by the scanner connect first
+		mDeviceCache = BackgroundScannerService.getDeviceCache(this);
+		mDeviceCache.addListener(mDeviceSeenListener);
+
 		// Service has now been created
 		onServiceCreated();
 
@@ -371,6 +528,8 @@ public abstract class BleMulticonnectProfileService extends Service implements B
 	public void onDestroy() {
 		super.onDestroy();
 		onServiceStopped();
+		mHandler.removeCallbacks(mPollConnections);
+		mHandler.removeCallbacks(mPollBatteryLevels);
 		mHandler = null;
 	}
 
@@ -380,6 +539,7 @@ public abstract class BleMulticonnectProfileService extends Service implements B
 	protected void onServiceStopped() {
 		// Unregister broadcast receivers
 		unregisterReceiver(mBluetoothStateBroadcastReceiver);
+		mDeviceCache.removeListener(mDeviceSeenListener);
 
 		// The managers map may not be empty if the service was killed by the system
 		for (final BleManager<BleManagerCallbacks> manager : mBleManagers.values()) {
@@ -397,7 +557,10 @@ public abstract class BleMulticonnectProfileService extends Service implements B
 	 * Method called when Bluetooth Adapter has been disabled.
 	 */
 	protected void onBluetoothDisabled() {
-		// do nothing, BleManagers have their own Bluetooth State broadcast received and will close themselves
+		// BleManagers have their own Bluetooth State broadcast received and will close themselves.
+		// Attempts waiting in the scheduler would fail, they will be requested again when Bluetooth is enabled.
+		for (final BluetoothDevice device : mManagedDevices.values())
+			mConnectionScheduler.cancel(DeviceRegistry.toKey(device.getAddress()));
 	}
 
 	/**
@@ -408,11 +571,12 @@ public abstract class BleMulticonnectProfileService extends Service implements B
 	 * devices that were connected before the Bluetooth was turned off.
 	 */
 	protected void onBluetoothEnabled() {
-		for (final BluetoothDevice device : mManagedDevices) {
-			final BleManager<BleManagerCallbacks> manager = mBleManagers.get(device);
-			if (!manager.isConnected())
-				manager.connect(device);
+		for (final BluetoothDevice device : mManagedDevices.values()) {
+			// Reconnecting all devices at once would make some attempts time out, the scheduler limits the number of them
+			if (!isConnected(device))
+				mConnectionScheduler.request(DeviceRegistry.toKey(device.getAddress()), ConnectionScheduler.PRIORITY_RECONNECT);
 		}
+		scheduleConnections();
 	}
 
 	@Override
@@ -431,6 +595,13 @@ public abstract class BleMulticonnectProfileService extends Service implements B
 
 	@Override
 	public void onDeviceConnected(final BluetoothDevice device) {
+		final long address = DeviceRegistry.toKey(device.getAddress());
+		mTimedOutDevices.remove(address);
+		mConnectionScheduler.onConnected(address);
+		// The BleManager reads the Battery Level during initialization, the value is not a notification
+		mBatteryLevels.onReadStarted(address);
+		scheduleConnections();
+
 		final Intent broadcast = new Intent(BROADCAST_CONNECTION_STATE);
 		broadcast.putExtra(EXTRA_DEVICE, device);
 		broadcast.putExtra(EXTRA_CONNECTION_STATE, STATE_CONNECTED);
@@ -451,10 +622,26 @@ public abstract class BleMulticonnectProfileService extends Service implements B
 		// invoked ONLY when user requested disconnection (using Disconnect button). If the device
 		// disconnects due to a link loss, the onLinklossOccur(BluetoothDevice) method will be called instead.
 
+		final long address = DeviceRegistry.toKey(device.getAddress());
+		if (mTimedOutDevices.remove(address) != null) {
+			// The connection attempt timed out and was cancelled by the scheduler, which will retry it after a back-off delay
+			mBatteryLevels.onDisconnected(address);
+			scheduleConnections();
+
+			final Intent broadcast = new Intent(BROADCAST_CONNECTION_STATE);
+			broadcast.putExtra(EXTRA_DEVICE, device);
+			broadcast.putExtra(EXTRA_CONNECTION_STATE, STATE_LINK_LOSS);
+			LocalBroadcastManager.getInstance(this).sendBroadcast(broadcast);
+			return;
+		}
+
 		// We no longer want to keep the device in the service
-		mManagedDevices.remove(device);
-		// The BleManager is not removed from the HashMap in order to keep the device's log session.
-		// mBleManagers.remove(device);
+		mManagedDevices.remove(address);
+		mConnectionScheduler.cancel(address);
+		mBatteryLevels.remove(address);
+		scheduleConnections();
+		// The BleManager is not removed from the registry in order to keep the device's log session.
+		// mBleManagers.remove(device.getAddress());
 
 		// Do not use the device argument here unless you change calling onDeviceDisconnected from the binder above
 		final Intent broadcast = new Intent(BROADCAST_CONNECTION_STATE);
@@ -470,6 +657,13 @@ public abstract class BleMulticonnectProfileService extends Service implements B
 
 	@Override
 	public void onLinklossOccur(final BluetoothDevice device) {
+		// A failed connection attempt is reported as a link loss. It will be retried after a back-off delay.
+		final long address = DeviceRegistry.toKey(device.getAddress());
+		mConnectionScheduler.onDeviceSeen(address, SystemClock.elapsedRealtime());
+		mConnectionScheduler.onConnectionFailed(address);
+		mBatteryLevels.onDisconnected(address);
+		scheduleConnections();
+
 		final Intent broadcast = new Intent(BROADCAST_CONNECTION_STATE);
 		broadcast.putExtra(EXTRA_DEVICE, device);
 		broadcast.putExtra(EXTRA_CONNECTION_STATE, STATE_LINK_LOSS);
@@ -495,8 +689,12 @@ public abstract class BleMulticonnectProfileService extends Service implements B
 	@Override
 	public void onDeviceNotSupported(final BluetoothDevice device) {
 		// We don't like this device, remove it from both collections
-		mManagedDevices.remove(device);
-		mBleManagers.remove(device);
+		final long address = DeviceRegistry.toKey(device.getAddress());
+		mManagedDevices.remove(address);
+		mBleManagers.remove(address);
+		mConnectionScheduler.cancel(address);
+		mBatteryLevels.remove(address);
+		scheduleConnections();
 
 		final Intent broadcast = new Intent(BROADCAST_SERVICES_DISCOVERED);
 		broadcast.putExtra(EXTRA_DEVICE, device);
@@ -509,10 +707,9 @@ public abstract class BleMulticonnectProfileService extends Service implements B
 
 	@Override
 	public void onBatteryValueReceived(final BluetoothDevice device, final int value) {
-		final Intent broadcast = new Intent(BROADCAST_BATTERY_LEVEL);
-		broadcast.putExtra(EXTRA_DEVICE, device);
-		broadcast.putExtra(EXTRA_BATTERY_LEVEL, value);
-		LocalBroadcastManager.getInstance(this).sendBroadcast(broadcast);
+		// Values of all devices are collected and broadcast together as BROADCAST_BATTERY_LEVELS
+		mBatteryLevels.onValue(DeviceRegistry.toKey(device.getAddress()), value);
+		scheduleBatteryLevels();
 	}
 
 	@Override
@@ -537,6 +734,12 @@ public abstract class BleMulticonnectProfileService extends Service implements B
 
 	@Override
 	public void onError(final BluetoothDevice device, final String message, final int errorCode) {
+		final long address = DeviceRegistry.toKey(device.getAddress());
+		if (mConnectionScheduler.isConnecting(address)) {
+			mConnectionScheduler.onConnectionFailed(address);
+			scheduleConnections();
+		}
+
 		final Intent broadcast = new Intent(BROADCAST_ERROR);
 		broadcast.putExtra(EXTRA_DEVICE, device);
 		broadcast.putExtra(EXTRA_ERROR_MESSAGE, message);
@@ -571,7 +774,7 @@ public abstract class BleMulticonnectProfileService extends Service implements B
 	 * @return the BleManager or null
 	 */
 	protected BleManager<? extends BleManagerCallbacks> getBleManager(final BluetoothDevice device) {
-		return mBleManagers.get(device);
+		return mBleManagers.get(DeviceRegistry.toKey(device.getAddress()));
 	}
 
 	/**
@@ -579,7 +782,7 @@ public abstract class BleMulticonnectProfileService extends Service implements B
 	 * @return list of managed devices
 	 */
 	protected List<BluetoothDevice> getManagedDevices() {
-		return Collections.unmodifiableList(mManagedDevices);
+		return mManagedDevices.values();
 	}
 
 	/**
@@ -588,8 +791,8 @@ public abstract class BleMulticonnectProfileService extends Service implements B
 	 */
 	protected List<BluetoothDevice> getConnectedDevices() {
 		final List<BluetoothDevice> list = new ArrayList<>();
-		for (BluetoothDevice device : mManagedDevices) {
-			if (mBleManagers.get(device).isConnected())
+		for (final BluetoothDevice device : mManagedDevices.values()) {
+			if (isConnected(device))
 				list.add(device);
 		}
 		return Collections.unmodifiableList(list);
@@ -601,7 +804,38 @@ public abstract class BleMulticonnectProfileService extends Service implements B
 	 * @return <code>true</code> if device is connected to the sensor, <code>false</code> otherwise
 	 */
 	protected boolean isConnected(final BluetoothDevice device) {
-		final BleManager<BleManagerCallbacks> manager = mBleManagers.get(device);
+		final BleManager<BleManagerCallbacks> manager = mBleManagers.get(DeviceRegistry.toKey(device.getAddress()));
 		return manager != null && manager.isConnected();
 	}
+
+	/**
+	 * Returns the connection state of given device.
+	 * @param device the target device
+	 * @return the connection state, as in {@link BleManager#getConnectionState()}
+	 */
+	protected int getConnectionState(final BluetoothDevice device) {
+		final BleManager<BleManagerCallbacks> manager = mBleManagers.get(DeviceRegistry.toKey(device.getAddress()));
+		return manager != null ? manager.getConnectionState() : BluetoothGatt.STATE_DISCONNECTED;
+	}
+
+	/**
+	 * Starts a connection attempt, when the connection scheduler allows it. The result is reported to the {@link BleManagerCallbacks}
+	 * methods of the service. A subclass may override this method, together with {@link #disconnectDevice(BluetoothDevice, BleManager)},
+	 * {@link #isConnected(BluetoothDevice)} and {@link #getConnectionState(BluetoothDevice)}, to connect devices that are not reached
+	 * with their BleManager, for example simulated ones.
+	 * @param device the target device
+	 * @param manager the BleManager of the device
+	 */
+	protected void connectDevice(final BluetoothDevice device, final BleManager<BleManagerCallbacks> manager) {
+		manager.connect(device);
+	}
+
+	/**
+	 * Disconnects the device, or cancels the connection attempt.
+	 * @param device the target device
+	 * @param manager the BleManager of the device
+	 */
+	protected void disconnectDevice(final BluetoothDevice device, final BleManager<BleManagerCallbacks> manager) {
+		manager.disconnect();
+	}
 }
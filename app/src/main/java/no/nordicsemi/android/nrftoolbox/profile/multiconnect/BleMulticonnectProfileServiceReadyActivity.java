@@ -143,10 +143,13 @@ public abstract class BleMulticonnectProfileServiceReadyActivity<E extends BleMu
 					}
 					break;
 				}
-				case BleMulticonnectProfileService.BROADCAST_BATTERY_LEVEL: {
-					final int value = intent.getIntExtra(BleMulticonnectProfileService.EXTRA_BATTERY_LEVEL, -1);
-					if (value > 0)
-						onBatteryValueReceived(bluetoothDevice, value);
+				case BleMulticonnectProfileService.BROADCAST_BATTERY_LEVELS: {
+					final List<BluetoothDevice> devices = intent.getParcelableArrayListExtra(BleMulticonnectProfileService.EXTRA_DEVICES);
+					final int[] values = intent.getIntArrayExtra(BleMulticonnectProfileService.EXTRA_BATTERY_LEVELS);
+					for (int i = 0; i < devices.size(); ++i) {
+						if (values[i] > 0)
+							onBatteryValueReceived(devices.get(i), values[i]);
+					}
 					break;
 				}
 				case BleMulticonnectProfileService.BROADCAST_ERROR: {
@@ -254,7 +257,7 @@ public abstract class BleMulticonnectProfileServiceReadyActivity<E extends BleMu
 		intentFilter.addAction(BleMulticonnectProfileService.BROADCAST_SERVICES_DISCOVERED);
 		intentFilter.addAction(BleMulticonnectProfileService.BROADCAST_DEVICE_READY);
 		intentFilter.addAction(BleMulticonnectProfileService.BROADCAST_BOND_STATE);
-		intentFilter.addAction(BleMulticonnectProfileService.BROADCAST_BATTERY_LEVEL);
+		intentFilter.addAction(BleMulticonnectProfileService.BROADCAST_BATTERY_LEVELS);
 		intentFilter.addAction(BleMulticonnectProfileService.BROADCAST_ERROR);
 		return intentFilter;
 	}
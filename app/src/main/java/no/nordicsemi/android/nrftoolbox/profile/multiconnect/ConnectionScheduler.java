@@ -0,0 +1,387 @@
+/*
+ * Copyright (c) 2015, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package no.nordicsemi.android.nrftoolbox.profile.multiconnect;
+
+import java.util.Arrays;
+
+/**
+ * Schedules connection attempts to many devices, so that only a limited number of attempts is in progress at a time.
+ * <p>
+ * Requested connections wait in a queue ordered by priority, user requests first, and by the time the device was last
+ * seen, most recent first. A failed or timed out attempt is retried with exponential back-off. Connection latency is
+ * measured per device.
+ * </p>
+ * <p>
+ * The scheduler doesn't run any thread. The owner must call {@link #poll()} after each request or reported result, and
+ * again after the delay returned by it. Connection attempts are started using the {@link Connector}, outside the
+ * scheduler's lock. Other methods may be called from any thread.
+ * </p>
+ */
+public class ConnectionScheduler {
+	/** Connection requested by the user. */
+	public static final int PRIORITY_USER = 0;
+	/** Reconnection to a device which has been connected before, for example after Bluetooth was enabled. */
+	public static final int PRIORITY_RECONNECT = 1;
+
+	public static final int DEFAULT_MAX_CONCURRENT_CONNECTIONS = 2;
+	public static final long DEFAULT_CONNECTION_TIMEOUT = 30000;
+	public static final long DEFAULT_INITIAL_BACKOFF = 1000;
+	public static final long DEFAULT_MAX_BACKOFF = 60000;
+
+	private static final long[] EMPTY = new long[0];
+
+	private static final int STATE_IDLE = 0;
+	private static final int STATE_WAITING = 1;
+	private static final int STATE_CONNECTING = 2;
+	private static final int STATE_CONNECTED = 3;
+
+	public interface Connector {
+		/**
+		 * Starts connecting to the device. The result must be reported using {@link ConnectionScheduler#onConnected(long)}
+		 * or {@link ConnectionScheduler#onConnectionFailed(long)}.
+		 */
+		void connect(final long address);
+
+		/**
+		 * Cancels the connection attempt that timed out. {@link ConnectionScheduler#onConnectionFailed(long)} does not need to be called.
+		 */
+		void cancel(final long address);
+	}
+
+	public interface Clock {
+		/** Returns a monotonic time in milliseconds. */
+		long now();
+	}
+
+	/**
+	 * Connection statistics of a single device. All times are in milliseconds.
+	 */
+	public static class Statistics {
+		public int attempts;
+		public int failures;
+		public int timeouts;
+		public int connections;
+		public long lastLatency;
+		public long minLatency;
+		public long maxLatency;
+		public double meanLatency;
+	}
+
+	private static class Entry {
+		final long address;
+		int state = STATE_IDLE;
+		int priority;
+		long lastSeen;
+		/** Sequence number of the request, to keep FIFO order of equal entries. */
+		long sequence;
+		/** Time before which the attempt must not start, after a failure. */
+		long notBefore;
+		long attemptStart;
+		int consecutiveFailures;
+
+		int attempts;
+		int failures;
+		int timeouts;
+		int connections;
+		long lastLatency;
+		long minLatency = Long.MAX_VALUE;
+		long maxLatency;
+		long totalLatency;
+
+		Entry(final long address) {
+			this.address = address;
+		}
+	}
+
+	private final Connector mConnector;
+	private final Clock mClock;
+	private final DeviceRegistry<Entry> mEntries = new DeviceRegistry<>();
+	private int mMaxConcurrentConnections = DEFAULT_MAX_CONCURRENT_CONNECTIONS;
+	private long mConnectionTimeout = DEFAULT_CONNECTION_TIMEOUT;
+	private long mInitialBackoff = DEFAULT_INITIAL_BACKOFF;
+	private long mMaxBackoff = DEFAULT_MAX_BACKOFF;
+	private int mInFlight;
+	private long mSequence;
+	/** Addresses to connect or cancel, collected under the lock. */
+	private long[] mToConnect = new long[4];
+	private long[] mToCancel = new long[4];
+
+	public ConnectionScheduler(final Connector connector) {
+		this(connector, () -> System.nanoTime() / 1000000L);
+	}
+
+	public ConnectionScheduler(final Connector connector, final Clock clock) {
+		mConnector = connector;
+		mClock = clock;
+	}
+
+	public synchronized ConnectionScheduler setMaxConcurrentConnections(final int maxConcurrentConnections) {
+		if (maxConcurrentConnections < 1)
+			throw new IllegalArgumentException("At least one connection must be allowed");
+		mMaxConcurrentConnections = maxConcurrentConnections;
+		return this;
+	}
+
+	/**
+	 * Sets the time after which a connection attempt is cancelled and retried. 0 disables the timeout.
+	 */
+	public synchronized ConnectionScheduler setConnectionTimeout(final long connectionTimeout) {
+		mConnectionTimeout = connectionTimeout;
+		return this;
+	}
+
+	/**
+	 * Sets the delay before the first retry, doubled after each consecutive failure up to the maximum.
+	 */
+	public synchronized ConnectionScheduler setBackoff(final long initialBackoff, final long maxBackoff) {
+		mInitialBackoff = initialBackoff;
+		mMaxBackoff = maxBackoff;
+		return this;
+	}
+
+	/**
+	 * Requests connection to the device. If the device is already waiting with a lower priority, its priority is raised.
+	 * A user request also clears the back-off of a device that failed to connect before.
+	 *
+	 * @param address  the device address, see {@link DeviceRegistry#toKey(String)}
+	 * @param priority one of the PRIORITY_* constants
+	 */
+	public synchronized void request(final long address, final int priority) {
+		final Entry entry = getOrCreate(address);
+		switch (entry.state) {
+			case STATE_IDLE:
+				entry.state = STATE_WAITING;
+				entry.priority = priority;
+				entry.sequence = mSequence++;
+				entry.notBefore = 0;
+				entry.consecutiveFailures = 0;
+				break;
+			case STATE_WAITING:
+				if (priority < entry.priority)
+					entry.priority = priority;
+				if (priority == PRIORITY_USER)
+					entry.notBefore = 0;
+				break;
+			default:
+				// Already connecting or connected
+				break;
+		}
+	}
+
+	/**
+	 * Cancels the request. The connector is not notified, the caller should disconnect the device if it is connecting.
+	 */
+	public synchronized void cancel(final long address) {
+		final Entry entry = mEntries.get(address);
+		if (entry == null)
+			return;
+		if (entry.state == STATE_CONNECTING)
+			mInFlight--;
+		entry.state = STATE_IDLE;
+	}
+
+	/**
+	 * Records the time the device was seen, for example in an advertising packet. Waiting devices seen recently
+	 * connect first.
+	 */
+	public synchronized void onDeviceSeen(final long address, final long time) {
+		getOrCreate(address).lastSeen = time;
+	}
+
+	public synchronized void onConnected(final long address) {
+		final Entry entry = mEntries.get(address);
+		if (entry == null)
+			return;
+		final long now = mClock.now();
+		if (entry.state == STATE_CONNECTING) {
+			mInFlight--;
+			final long latency = now - entry.attemptStart;
+			entry.connections++;
+			entry.lastLatency = latency;
+			entry.minLatency = Math.min(entry.minLatency, latency);
+			entry.maxLatency = Math.max(entry.maxLatency, latency);
+			entry.totalLatency += latency;
+		}
+		entry.state = STATE_CONNECTED;
+		entry.consecutiveFailures = 0;
+		entry.lastSeen = now;
+	}
+
+	/**
+	 * Reports that the connection attempt failed. The attempt will be retried after the back-off delay.
+	 * If the device was connected it is not reconnected, call {@link #request(long, int)} for that.
+	 */
+	public synchronized void onConnectionFailed(final long address) {
+		final Entry entry = mEntries.get(address);
+		if (entry == null)
+			return;
+		if (entry.state == STATE_CONNECTING) {
+			mInFlight--;
+			entry.failures++;
+			retryLater(entry, mClock.now());
+		} else if (entry.state == STATE_CONNECTED) {
+			entry.state = STATE_IDLE;
+		}
+	}
+
+	/**
+	 * Reports that the device disconnected. A device that was connecting is treated as failed.
+	 */
+	public void onDisconnected(final long address) {
+		onConnectionFailed(address);
+	}
+
+	public synchronized boolean isConnecting(final long address) {
+		final Entry entry = mEntries.get(address);
+		return entry != null && entry.state == STATE_CONNECTING;
+	}
+
+	public synchronized boolean isWaiting(final long address) {
+		final Entry entry = mEntries.get(address);
+		return entry != null && entry.state == STATE_WAITING;
+	}
+
+	public synchronized int getConnectingCount() {
+		return mInFlight;
+	}
+
+	/**
+	 * Returns the statistics of the device or null if it was never requested.
+	 */
+	public synchronized Statistics getStatistics(final long address) {
+		final Entry entry = mEntries.get(address);
+		if (entry == null)
+			return null;
+		final Statistics statistics = new Statistics();
+		statistics.attempts = entry.attempts;
+		statistics.failures = entry.failures;
+		statistics.timeouts = entry.timeouts;
+		statistics.connections = entry.connections;
+		statistics.lastLatency = entry.lastLatency;
+		statistics.minLatency = entry.connections > 0 ? entry.minLatency : 0;
+		statistics.maxLatency = entry.maxLatency;
+		statistics.meanLatency = entry.connections > 0 ? (double) entry.totalLatency / entry.connections : 0;
+		return statistics;
+	}
+
+	/**
+	 * Cancels timed out attempts and starts the waiting ones, as long as the limit allows.
+	 *
+	 * @return the delay in milliseconds after which this method must be called again, or -1 if there is nothing to wait for
+	 * (it must still be called after the next request or reported result)
+	 */
+	public long poll() {
+		final long nextTime;
+		final long now;
+		final long[] toCancel, toConnect;
+		synchronized (this) {
+			now = mClock.now();
+			final int cancelCount = cancelTimedOut(now);
+			final int connectCount = startDue(now);
+			nextTime = getNextTime();
+			// Copied, as another thread may poll as soon as the lock is released
+			toCancel = cancelCount > 0 ? Arrays.copyOf(mToCancel, cancelCount) : EMPTY;
+			toConnect = connectCount > 0 ? Arrays.copyOf(mToConnect, connectCount) : EMPTY;
+		}
+		for (final long address : toCancel)
+			mConnector.cancel(address);
+		for (final long address : toConnect)
+			mConnector.connect(address);
+		return nextTime == Long.MAX_VALUE ? -1 : Math.max(0, nextTime - now);
+	}
+
+	private int cancelTimedOut(final long now) {
+		if (mConnectionTimeout <= 0)
+			return 0;
+		int count = 0;
+		for (final Entry entry : mEntries.values()) {
+			if (entry.state == STATE_CONNECTING && now - entry.attemptStart >= mConnectionTimeout) {
+				mInFlight--;
+				entry.failures++;
+				entry.timeouts++;
+				retryLater(entry, now);
+				if (count == mToCancel.length)
+					mToCancel = Arrays.copyOf(mToCancel, count * 2);
+				mToCancel[count++] = entry.address;
+			}
+		}
+		return count;
+	}
+
+	private int startDue(final long now) {
+		int count = 0;
+		while (mInFlight < mMaxConcurrentConnections) {
+			Entry best = null;
+			for (final Entry entry : mEntries.values()) {
+				if (entry.state == STATE_WAITING && entry.notBefore <= now && (best == null || isBefore(entry, best)))
+					best = entry;
+			}
+			if (best == null)
+				break;
+
+			best.state = STATE_CONNECTING;
+			best.attemptStart = now;
+			best.attempts++;
+			mInFlight++;
+			if (count == mToConnect.length)
+				mToConnect = Arrays.copyOf(mToConnect, count * 2);
+			mToConnect[count++] = best.address;
+		}
+		return count;
+	}
+
+	/**
+	 * Returns the time of the next timeout or retry, {@link Long#MAX_VALUE} if none.
+	 */
+	private long getNextTime() {
+		long next = Long.MAX_VALUE;
+		final boolean slotsAvailable = mInFlight < mMaxConcurrentConnections;
+		for (final Entry entry : mEntries.values()) {
+			if (entry.state == STATE_CONNECTING && mConnectionTimeout > 0)
+				next = Math.min(next, entry.attemptStart + mConnectionTimeout);
+			else if (entry.state == STATE_WAITING && slotsAvailable)
+				next = Math.min(next, entry.notBefore);
+		}
+		return next;
+	}
+
+	private void retryLater(final Entry entry, final long now) {
+		final int shift = Math.min(entry.consecutiveFailures++, 30);
+		entry.state = STATE_WAITING;
+		entry.notBefore = now + Math.min(mMaxBackoff, mInitialBackoff << shift);
+	}
+
+	private static boolean isBefore(final Entry a, final Entry b) {
+		if (a.priority != b.priority)
+			return a.priority < b.priority;
+		if (a.lastSeen != b.lastSeen)
+			return a.lastSeen > b.lastSeen;
+		return a.sequence < b.sequence;
+	}
+
+	private Entry getOrCreate(final long address) {
+		Entry entry = mEntries.get(address);
+		if (entry == null)
+			mEntries.put(address, entry = new Entry(address));
+		return entry;
+	}
+}
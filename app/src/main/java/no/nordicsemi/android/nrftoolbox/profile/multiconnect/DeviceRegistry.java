@@ -0,0 +1,253 @@
+/*
+ * Copyright (c) 2015, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package no.nordicsemi.android.nrftoolbox.profile.multiconnect;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import no.nordicsemi.android.nrftoolbox.recorder.SessionFormat;
+
+/**
+ * A map of values keyed by the 48-bit Bluetooth device address, packed to a <code>long</code>.
+ * <p>
+ * The entries are kept in an open addressing hash table with linear probing, so a lookup doesn't allocate memory
+ * nor calculate the String hash code. The table is copy-on-write: each modification creates a new table which is then
+ * published atomically. Lookups and iteration are lock-free and safe from any thread, they always see a consistent
+ * snapshot. Modifications are synchronized and cost O(N), which is fine as devices are added and removed rarely
+ * compared to how often they are looked up.
+ * </p>
+ *
+ * @param <V> the value type
+ */
+public class DeviceRegistry<V> {
+	/** Used to mark free slots. A 48-bit address never has all 64 bits set. */
+	private static final long FREE = -1L;
+
+	private static final class Table<V> {
+		/** Keys in slots, {@link #FREE} if the slot is free. The length is a power of 2. */
+		final long[] keys;
+		final Object[] values;
+		/** The addresses in insertion order. */
+		final long[] order;
+		/** The values in insertion order. */
+		final List<V> list;
+
+		Table(final long[] keys, final Object[] values, final long[] order, final List<V> list) {
+			this.keys = keys;
+			this.values = values;
+			this.order = order;
+			this.list = list;
+		}
+	}
+
+	private volatile Table<V> mTable;
+
+	public DeviceRegistry() {
+		clear();
+	}
+
+	/**
+	 * Converts the address in format XX:XX:XX:XX:XX:XX to the key used by the registry.
+	 * Addresses in other formats are parsed with {@link SessionFormat#parseAddress(String)}.
+	 */
+	public static long toKey(final String address) {
+		// Fast path for the format returned by BluetoothDevice#getAddress()
+		if (address.length() == 17) {
+			long key = 0;
+			for (int i = 0; i < 17; i += 3) {
+				final int high = Character.digit(address.charAt(i), 16);
+				final int low = Character.digit(address.charAt(i + 1), 16);
+				if (high < 0 || low < 0 || (i < 15 && address.charAt(i + 2) != ':'))
+					return SessionFormat.parseAddress(address);
+				key = (key << 8) | (high << 4) | low;
+			}
+			return key;
+		}
+		return SessionFormat.parseAddress(address);
+	}
+
+	public V get(final long address) {
+		final Table<V> table = mTable;
+		final int slot = find(table.keys, address);
+		return slot >= 0 ? DeviceRegistry.<V>cast(table.values[slot]) : null;
+	}
+
+	public V get(final String address) {
+		return get(toKey(address));
+	}
+
+	public boolean contains(final long address) {
+		return find(mTable.keys, address) >= 0;
+	}
+
+	public boolean contains(final String address) {
+		return contains(toKey(address));
+	}
+
+	public int size() {
+		return mTable.list.size();
+	}
+
+	public boolean isEmpty() {
+		return mTable.list.isEmpty();
+	}
+
+	/**
+	 * Returns an unmodifiable snapshot of the values in insertion order. The list is not affected by later modifications.
+	 * This method does not allocate memory.
+	 */
+	public List<V> values() {
+		return mTable.list;
+	}
+
+	/**
+	 * Adds or replaces the value for given address. A replaced value keeps its position in {@link #values()}.
+	 *
+	 * @return the previous value or null
+	 */
+	public synchronized V put(final long address, final V value) {
+		if (value == null)
+			throw new NullPointerException("value");
+
+		final Table<V> table = mTable;
+		final int slot = find(table.keys, address);
+		final long[] order;
+		final Object[] list;
+		final V previous;
+		if (slot >= 0) {
+			previous = cast(table.values[slot]);
+			order = table.order;
+			list = table.list.toArray();
+			list[indexOf(order, address)] = value;
+		} else {
+			previous = null;
+			order = Arrays.copyOf(table.order, table.order.length + 1);
+			order[table.order.length] = address;
+			list = Arrays.copyOf(table.list.toArray(), order.length);
+			list[table.order.length] = value;
+		}
+		mTable = createTable(order, list);
+		return previous;
+	}
+
+	public V put(final String address, final V value) {
+		return put(toKey(address), value);
+	}
+
+	/**
+	 * Removes the value for given address.
+	 *
+	 * @return the removed value or null
+	 */
+	public synchronized V remove(final long address) {
+		final Table<V> table = mTable;
+		final int slot = find(table.keys, address);
+		if (slot < 0)
+			return null;
+
+		final int index = indexOf(table.order, address);
+		final int length = table.order.length - 1;
+		final long[] order = new long[length];
+		System.arraycopy(table.order, 0, order, 0, index);
+		System.arraycopy(table.order, index + 1, order, index, length - index);
+		final Object[] oldList = table.list.toArray();
+		final Object[] list = new Object[length];
+		System.arraycopy(oldList, 0, list, 0, index);
+		System.arraycopy(oldList, index + 1, list, index, length - index);
+		mTable = createTable(order, list);
+
+		return cast(table.values[slot]);
+	}
+
+	public V remove(final String address) {
+		return remove(toKey(address));
+	}
+
+	public synchronized void clear() {
+		mTable = createTable(new long[0], new Object[0]);
+	}
+
+	private static <V> Table<V> createTable(final long[] order, final Object[] list) {
+		// Keep the load factor at most 0.5 for short probe sequences
+		int capacity = 8;
+		while (capacity < order.length * 2)
+			capacity <<= 1;
+		final long[] keys = new long[capacity];
+		Arrays.fill(keys, FREE);
+		final Table<V> table = new Table<>(keys, new Object[capacity], order, Collections.unmodifiableList(DeviceRegistry.<V>asList(list)));
+		for (int i = 0; i < order.length; ++i)
+			insert(table, order[i], list[i]);
+		return table;
+	}
+
+	/**
+	 * Values are stored in <code>Object</code> arrays, as generic arrays can't be created. Only values of type V are ever stored.
+	 */
+	@SuppressWarnings("unchecked")
+	private static <V> V cast(final Object value) {
+		return (V) value;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <V> List<V> asList(final Object[] values) {
+		return (List<V>) Arrays.asList(values);
+	}
+
+	private static void insert(final Table<?> table, final long address, final Object value) {
+		final long[] keys = table.keys;
+		final int mask = keys.length - 1;
+		int slot = hash(address) & mask;
+		while (keys[slot] != FREE)
+			slot = (slot + 1) & mask;
+		keys[slot] = address;
+		table.values[slot] = value;
+	}
+
+	private static int find(final long[] keys, final long address) {
+		final int mask = keys.length - 1;
+		int slot = hash(address) & mask;
+		long key;
+		while ((key = keys[slot]) != FREE) {
+			if (key == address)
+				return slot;
+			slot = (slot + 1) & mask;
+		}
+		return -1;
+	}
+
+	private static int indexOf(final long[] order, final long address) {
+		for (int i = 0; i < order.length; ++i)
+			if (order[i] == address)
+				return i;
+		return -1;
+	}
+
+	private static int hash(final long address) {
+		// Addresses of devices from one vendor share the upper bytes, mix all bits (finalizer of MurmurHash3)
+		long h = address;
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		return (int) h;
+	}
+}
@@ -0,0 +1,456 @@
+/*
+ * Copyright (c) 2015, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.nrftoolbox.profile.racp;
+
+import java.util.Arrays;
+
+/**
+ * Runs operations on the Record Access Control Point (RACP) of a glucose sensor.
+ * <p>
+ * An {@link Operation} is a chain of requests, f.e. report the number of records, report them and delete them.
+ * When a request succeeds, the engine writes the next one straight away, from the thread that delivered the indication,
+ * so the chain does not wait for the UI. If the number of records is 0, or no records are found, the remaining requests
+ * are skipped. An operation in progress may be aborted.
+ * </p>
+ * <p>
+ * A request times out if the server sends neither a response nor a record for the timeout. The engine doesn't run
+ * any thread, the owner must call {@link #poll()} after starting or aborting an operation and after each response,
+ * and again after the delay returned by it. Requests are encoded into a single reused buffer and responses are decoded
+ * into a reused {@link RACPResponse}, so running an operation doesn't allocate memory.
+ * </p>
+ * Methods may be called from any thread. The listener and the transport are called without the engine lock held, so the
+ * listener may start another operation, f.e. a fallback without a filter. Requests are written in the order they were
+ * issued, a request issued by another thread before it was written is superseded and not written.
+ */
+public class RACPEngine {
+	public static final long DEFAULT_TIMEOUT = 10000;
+
+	private static final int STATE_IDLE = 0;
+	private static final int STATE_RUNNING = 1;
+	private static final int STATE_ABORTING = 2;
+
+	private static final int EVENT_NONE = 0;
+	private static final int EVENT_COMPLETED = 1;
+	private static final int EVENT_ABORTED = 2;
+	private static final int EVENT_FAILED = 3;
+
+	private static final Operation ABORT = new Operation()
+			.add(RecordAccessControlPoint.OP_CODE_ABORT_OPERATION, RecordAccessControlPoint.OPERATOR_NULL);
+
+	public interface Transport {
+		/**
+		 * Writes the request to the RACP characteristic. The buffer is reused, it must be copied if the write is queued.
+		 */
+		void write(final byte[] buffer, final int offset, final int length);
+	}
+
+	public interface Clock {
+		/** Returns a monotonic time in milliseconds. */
+		long now();
+	}
+
+	public interface Listener {
+		/**
+		 * Called when the server reported the number of records. If it is 0, the operation completes.
+		 */
+		void onNumberOfRecords(final int number);
+
+		/**
+		 * Called when all requests of the operation succeeded, or the remaining ones were skipped as there were no records.
+		 *
+		 * @param records number of records reported by the server during the operation, see {@link #onRecordReceived()}
+		 */
+		void onCompleted(final int records);
+
+		void onAborted();
+
+		/**
+		 * Called when the server rejected a request.
+		 *
+		 * @param opCode       the op code of the request
+		 * @param responseCode the response code, see {@link RecordAccessControlPoint#RESPONSE_OP_CODE_NOT_SUPPORTED} and others
+		 */
+		void onFailed(final int opCode, final int responseCode);
+
+		/**
+		 * Called when the server did not respond to the request in time.
+		 */
+		void onTimeout(final int opCode);
+	}
+
+	/**
+	 * A chain of RACP requests, written one after another. An operation may be started many times, but it must not
+	 * be modified while running.
+	 */
+	public static class Operation {
+		/** Op code, operator, number of operands, minimum and maximum for each request. */
+		private static final int STEP_SIZE = 5;
+
+		private int[] mSteps = new int[4 * STEP_SIZE];
+		private int mCount;
+		private int mFilterType = RecordAccessControlPoint.FILTER_TYPE_SEQUENCE_NUMBER;
+
+		/**
+		 * Sets the filter type of the requests with operands. Sequence number is used by default.
+		 */
+		public Operation setFilterType(final int filterType) {
+			mFilterType = filterType;
+			return this;
+		}
+
+		public Operation add(final int opCode, final int operator) {
+			return add(opCode, operator, 0, 0, 0);
+		}
+
+		/**
+		 * Adds a request with a single operand, used by {@link RecordAccessControlPoint#OPERATOR_LESS_THEN_OR_EQUAL}
+		 * and {@link RecordAccessControlPoint#OPERATOR_GREATER_THEN_OR_EQUAL}.
+		 */
+		public Operation add(final int opCode, final int operator, final int operand) {
+			return add(opCode, operator, 1, operand, 0);
+		}
+
+		/**
+		 * Adds a request with the range of records, used by {@link RecordAccessControlPoint#OPERATOR_WITHING_RANGE}.
+		 */
+		public Operation add(final int opCode, final int operator, final int minimum, final int maximum) {
+			return add(opCode, operator, 2, minimum, maximum);
+		}
+
+		/**
+		 * Returns the operation reporting the number of all records, followed by the records.
+		 */
+		public static Operation allRecords() {
+			return new Operation()
+					.add(RecordAccessControlPoint.OP_CODE_REPORT_NUMBER_OF_RECORDS, RecordAccessControlPoint.OPERATOR_ALL_RECORDS)
+					.add(RecordAccessControlPoint.OP_CODE_REPORT_STORED_RECORDS, RecordAccessControlPoint.OPERATOR_ALL_RECORDS);
+		}
+
+		/**
+		 * Returns the operation reporting the number of records with sequence number greater than or equal to the given one,
+		 * followed by the records.
+		 */
+		public static Operation recordsFrom(final int sequenceNumber) {
+			return new Operation()
+					.add(RecordAccessControlPoint.OP_CODE_REPORT_NUMBER_OF_RECORDS, RecordAccessControlPoint.OPERATOR_GREATER_THEN_OR_EQUAL, sequenceNumber)
+					.add(RecordAccessControlPoint.OP_CODE_REPORT_STORED_RECORDS, RecordAccessControlPoint.OPERATOR_GREATER_THEN_OR_EQUAL, sequenceNumber);
+		}
+
+		/**
+		 * Returns the operation reporting the first (oldest) or the last (most recent) record.
+		 */
+		public static Operation singleRecord(final boolean last) {
+			return new Operation().add(RecordAccessControlPoint.OP_CODE_REPORT_STORED_RECORDS,
+					last ? RecordAccessControlPoint.OPERATOR_LAST_RECORD : RecordAccessControlPoint.OPERATOR_FIRST_RECORD);
+		}
+
+		public static Operation deleteAllRecords() {
+			return new Operation().add(RecordAccessControlPoint.OP_CODE_DELETE_STORED_RECORDS, RecordAccessControlPoint.OPERATOR_ALL_RECORDS);
+		}
+
+		public int getCount() {
+			return mCount;
+		}
+
+		public int getOpCode(final int index) {
+			return mSteps[index * STEP_SIZE];
+		}
+
+		private Operation add(final int opCode, final int operator, final int operands, final int minimum, final int maximum) {
+			final int offset = mCount * STEP_SIZE;
+			if (offset == mSteps.length)
+				mSteps = Arrays.copyOf(mSteps, mSteps.length * 2);
+			mSteps[offset] = opCode;
+			mSteps[offset + 1] = operator;
+			mSteps[offset + 2] = operands;
+			mSteps[offset + 3] = minimum;
+			mSteps[offset + 4] = maximum;
+			mCount++;
+			return this;
+		}
+
+		private int encode(final int index, final RACPRequestEncoder encoder) {
+			final int offset = index * STEP_SIZE;
+			final int opCode = mSteps[offset];
+			final int operator = mSteps[offset + 1];
+			switch (mSteps[offset + 2]) {
+				case 0:
+					return encoder.encode(opCode, operator);
+				case 1:
+					return encoder.encode(opCode, operator, mFilterType, mSteps[offset + 3]);
+				default:
+					return encoder.encode(opCode, operator, mFilterType, mSteps[offset + 3], mSteps[offset + 4]);
+			}
+		}
+	}
+
+	private final Transport mTransport;
+	private final Clock mClock;
+	private final Listener mListener;
+	private final RACPRequestEncoder mEncoder = new RACPRequestEncoder();
+	private final RACPResponse mResponse = new RACPResponse();
+	private long mTimeout = DEFAULT_TIMEOUT;
+
+	private int mState = STATE_IDLE;
+	private Operation mOperation;
+	private int mStep;
+	private int mRecords;
+	private long mDeadline;
+	/** The number of requests issued, guarded by this. */
+	private int mRequests;
+	/** The number of the last request written, guarded by the encoder. */
+	private int mWritten;
+
+	public RACPEngine(final Transport transport, final Listener listener) {
+		this(transport, listener, () -> System.nanoTime() / 1000000L);
+	}
+
+	public RACPEngine(final Transport transport, final Listener listener, final Clock clock) {
+		mTransport = transport;
+		mListener = listener;
+		mClock = clock;
+	}
+
+	/**
+	 * Sets the time the server has to respond to a request or send the next record. 0 disables the timeout.
+	 */
+	public synchronized RACPEngine setTimeout(final long timeout) {
+		mTimeout = timeout;
+		return this;
+	}
+
+	/**
+	 * Returns true if an operation is in progress or being aborted.
+	 */
+	public synchronized boolean isBusy() {
+		return mState != STATE_IDLE;
+	}
+
+	/**
+	 * Returns the op code of the request in progress, or 0 if the engine is idle.
+	 */
+	public synchronized int getCurrentOpCode() {
+		if (mState == STATE_ABORTING)
+			return RecordAccessControlPoint.OP_CODE_ABORT_OPERATION;
+		return mState == STATE_RUNNING ? mOperation.getOpCode(mStep) : 0;
+	}
+
+	/**
+	 * Starts the operation by writing its first request.
+	 *
+	 * @return false if another operation is in progress or the operation is empty
+	 */
+	public boolean start(final Operation operation) {
+		final int request;
+		synchronized (this) {
+			if (mState != STATE_IDLE || operation.getCount() == 0)
+				return false;
+			mState = STATE_RUNNING;
+			mOperation = operation;
+			mStep = 0;
+			mRecords = 0;
+			request = issue();
+		}
+		write(operation, 0, request);
+		return true;
+	}
+
+	/**
+	 * Writes the Abort Operation request. The listener is notified when the server confirms it.
+	 *
+	 * @return false if there is no operation in progress
+	 */
+	public boolean abort() {
+		final int request;
+		synchronized (this) {
+			if (mState != STATE_RUNNING)
+				return false;
+			mState = STATE_ABORTING;
+			request = issue();
+		}
+		write(ABORT, 0, request);
+		return true;
+	}
+
+	/**
+	 * Stops the operation without notifying the listener, f.e. when the device has disconnected.
+	 */
+	public synchronized void reset() {
+		mState = STATE_IDLE;
+		mOperation = null;
+	}
+
+	/**
+	 * Counts a record reported by the server and restarts the timeout. Records are notified or indicated on another
+	 * characteristic, so the owner must report them.
+	 */
+	public synchronized void onRecordReceived() {
+		if (mState == STATE_IDLE)
+			return;
+		mRecords++;
+		mDeadline = mClock.now() + mTimeout;
+	}
+
+	/**
+	 * Handles an indication from the RACP characteristic, writing the next request of the operation if the previous
+	 * one succeeded.
+	 *
+	 * @param data the value of the characteristic
+	 */
+	public void onResponse(final byte[] data) {
+		final int event;
+		final boolean numberReported;
+		final int number, opCode, responseCode, records;
+		final Operation operation;
+		final int step, request;
+		synchronized (this) {
+			final RACPResponse response = mResponse;
+			if (mState == STATE_IDLE || !RACPResponse.decode(data, response))
+				return;
+			final int requests = mRequests;
+
+			numberReported = response.opCode == RecordAccessControlPoint.OP_CODE_NUMBER_OF_STORED_RECORDS_RESPONSE && mState == STATE_RUNNING
+					&& mOperation.getOpCode(mStep) == RecordAccessControlPoint.OP_CODE_REPORT_NUMBER_OF_RECORDS;
+			number = response.numberOfRecords;
+			opCode = response.requestedOpCode;
+			responseCode = response.responseCode;
+			if (mState == STATE_ABORTING)
+				event = handleAbortResponse(response);
+			else if (numberReported)
+				event = number > 0 ? next() : complete();
+			else if (response.opCode == RecordAccessControlPoint.OP_CODE_RESPONSE_CODE && opCode == mOperation.getOpCode(mStep))
+				event = handleResponseCode(responseCode);
+			else
+				// A late response to a previous operation
+				event = EVENT_NONE;
+			records = mRecords;
+			// The next request of the operation, if issued
+			operation = mOperation;
+			step = mStep;
+			request = mRequests != requests ? mRequests : 0;
+		}
+
+		if (request != 0)
+			write(operation, step, request);
+		if (numberReported)
+			mListener.onNumberOfRecords(number);
+		dispatch(event, opCode, responseCode, records);
+	}
+
+	/**
+	 * Times out the request if the server has not responded in time.
+	 *
+	 * @return the delay in milliseconds after which this method must be called again, or -1 if there is nothing to wait for
+	 * (it must still be called after the next operation is started)
+	 */
+	public long poll() {
+		final int opCode;
+		synchronized (this) {
+			if (mState == STATE_IDLE || mTimeout <= 0)
+				return -1;
+			final long now = mClock.now();
+			if (now < mDeadline)
+				return mDeadline - now;
+			opCode = getCurrentOpCode();
+			reset();
+		}
+		mListener.onTimeout(opCode);
+		return -1;
+	}
+
+	private int handleResponseCode(final int responseCode) {
+		switch (responseCode) {
+			case RecordAccessControlPoint.RESPONSE_SUCCESS:
+				return next();
+			case RecordAccessControlPoint.RESPONSE_NO_RECORDS_FOUND:
+				return complete();
+			default:
+				reset();
+				return EVENT_FAILED;
+		}
+	}
+
+	/**
+	 * Some servers respond to the aborted request before confirming the abort, such responses are ignored.
+	 * Only a response to the Abort Operation request completes the abort.
+	 */
+	private int handleAbortResponse(final RACPResponse response) {
+		if (response.opCode != RecordAccessControlPoint.OP_CODE_RESPONSE_CODE
+				|| response.requestedOpCode != RecordAccessControlPoint.OP_CODE_ABORT_OPERATION)
+			return EVENT_NONE;
+		reset();
+		return response.responseCode == RecordAccessControlPoint.RESPONSE_SUCCESS ? EVENT_ABORTED : EVENT_FAILED;
+	}
+
+	private int next() {
+		if (++mStep == mOperation.getCount())
+			return complete();
+		issue();
+		return EVENT_NONE;
+	}
+
+	private int complete() {
+		reset();
+		return EVENT_COMPLETED;
+	}
+
+	/**
+	 * Starts the timeout of a new request, which the caller writes after releasing the lock.
+	 *
+	 * @return the number of the request, see {@link #write(Operation, int, int)}
+	 */
+	private int issue() {
+		mDeadline = mClock.now() + mTimeout;
+		if (++mRequests == 0)
+			mRequests = 1;
+		return mRequests;
+	}
+
+	/**
+	 * Encodes and writes the step of the operation, unless a request issued later has been written already.
+	 * The encoder lock only keeps the reused buffer until the transport has copied it.
+	 */
+	private void write(final Operation operation, final int step, final int request) {
+		synchronized (mEncoder) {
+			if (mWritten != 0 && request - mWritten <= 0)
+				return;
+			mWritten = request;
+			final int length = operation.encode(step, mEncoder);
+			mTransport.write(mEncoder.getBuffer(), 0, length);
+		}
+	}
+
+	private void dispatch(final int event, final int opCode, final int responseCode, final int records) {
+		switch (event) {
+			case EVENT_COMPLETED:
+				mListener.onCompleted(records);
+				break;
+			case EVENT_ABORTED:
+				mListener.onAborted();
+				break;
+			case EVENT_FAILED:
+				mListener.onFailed(opCode, responseCode);
+				break;
+		}
+	}
+}
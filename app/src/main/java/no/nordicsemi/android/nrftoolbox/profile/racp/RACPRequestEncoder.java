@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2015, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.nrftoolbox.profile.racp;
+
+/**
+ * Encodes Record Access Control Point requests into a single buffer, sized for the longest request.
+ * The buffer is overwritten by each request, so it must be written or copied before the next one is encoded.
+ * <p>
+ * Request format: [Op Code][Operator], followed for range operators by [Filter Type][Minimum] and [Maximum],
+ * both UINT16 little endian.
+ * </p>
+ */
+public class RACPRequestEncoder {
+	/** Op code, operator, filter type and two 16-bit operands. */
+	public static final int MAX_LENGTH = 7;
+
+	private final byte[] mBuffer = new byte[MAX_LENGTH];
+
+	/**
+	 * Returns the buffer with the last encoded request at offset 0.
+	 */
+	public byte[] getBuffer() {
+		return mBuffer;
+	}
+
+	/**
+	 * Encodes a request without operand, f.e. {@link RecordAccessControlPoint#OPERATOR_ALL_RECORDS}.
+	 *
+	 * @return the length of the request
+	 */
+	public int encode(final int opCode, final int operator) {
+		mBuffer[0] = (byte) opCode;
+		mBuffer[1] = (byte) operator;
+		return 2;
+	}
+
+	/**
+	 * Encodes a request with a single operand, used by {@link RecordAccessControlPoint#OPERATOR_LESS_THEN_OR_EQUAL}
+	 * and {@link RecordAccessControlPoint#OPERATOR_GREATER_THEN_OR_EQUAL}.
+	 *
+	 * @return the length of the request
+	 */
+	public int encode(final int opCode, final int operator, final int filterType, final int operand) {
+		encode(opCode, operator);
+		mBuffer[2] = (byte) filterType;
+		mBuffer[3] = (byte) (operand & 0xFF);
+		mBuffer[4] = (byte) ((operand >> 8) & 0xFF);
+		return 5;
+	}
+
+	/**
+	 * Encodes a request with the minimum and maximum, used by {@link RecordAccessControlPoint#OPERATOR_WITHING_RANGE}.
+	 *
+	 * @return the length of the request
+	 */
+	public int encode(final int opCode, final int operator, final int filterType, final int minimum, final int maximum) {
+		encode(opCode, operator, filterType, minimum);
+		mBuffer[5] = (byte) (maximum & 0xFF);
+		mBuffer[6] = (byte) ((maximum >> 8) & 0xFF);
+		return MAX_LENGTH;
+	}
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2015, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.nrftoolbox.profile.racp;
+
+/**
+ * A decoded Record Access Control Point indication. The same instance may be reused for each indication,
+ * see {@link #decode(byte[], RACPResponse)}.
+ */
+public class RACPResponse {
+	/** {@link RecordAccessControlPoint#OP_CODE_NUMBER_OF_STORED_RECORDS_RESPONSE} or {@link RecordAccessControlPoint#OP_CODE_RESPONSE_CODE}. */
+	public int opCode;
+	/** The op code of the request this is the response to, only for {@link RecordAccessControlPoint#OP_CODE_RESPONSE_CODE}. */
+	public int requestedOpCode;
+	/** One of the RESPONSE_* codes, only for {@link RecordAccessControlPoint#OP_CODE_RESPONSE_CODE}. */
+	public int responseCode;
+	/** The number of records, only for {@link RecordAccessControlPoint#OP_CODE_NUMBER_OF_STORED_RECORDS_RESPONSE}. */
+	public int numberOfRecords;
+
+	/**
+	 * Decodes the indication.
+	 *
+	 * @param data the value of the characteristic
+	 * @param out  the response to fill
+	 * @return false if the data is not a valid response
+	 */
+	public static boolean decode(final byte[] data, final RACPResponse out) {
+		if (data == null || data.length < 4)
+			return false;
+
+		// The operator at offset 1 is always Null in responses
+		out.opCode = data[0] & 0xFF;
+		switch (out.opCode) {
+			case RecordAccessControlPoint.OP_CODE_NUMBER_OF_STORED_RECORDS_RESPONSE:
+				out.numberOfRecords = (data[2] & 0xFF) | (data[3] & 0xFF) << 8;
+				out.requestedOpCode = out.responseCode = 0;
+				return true;
+			case RecordAccessControlPoint.OP_CODE_RESPONSE_CODE:
+				out.requestedOpCode = data[2] & 0xFF;
+				out.responseCode = data[3] & 0xFF;
+				out.numberOfRecords = 0;
+				return true;
+			default:
+				return false;
+		}
+	}
+}
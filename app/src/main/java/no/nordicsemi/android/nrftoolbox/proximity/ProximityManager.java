@@ -32,9 +32,9 @@ import java.util.UUID;
 
 import no.nordicsemi.android.ble.BleManager;
 import no.nordicsemi.android.ble.Request;
-import no.nordicsemi.android.log.Logger;
 import no.nordicsemi.android.nrftoolbox.parser.AlertLevelParser;
 import no.nordicsemi.android.nrftoolbox.utility.DebugLogger;
+import no.nordicsemi.android.nrftoolbox.utility.DeferredLogger;
 
 public class ProximityManager extends BleManager<ProximityManagerCallbacks> {
 	private final String TAG = "ProximityManager";
@@ -107,7 +107,7 @@ public class ProximityManager extends BleManager<ProximityManagerCallbacks> {
 
 		@Override
 		protected void onCharacteristicWrite(final BluetoothGatt gatt, final BluetoothGattCharacteristic characteristic) {
-			Logger.a(mLogSession, "\"" + AlertLevelParser.parse(characteristic) + "\" sent");
+			DeferredLogger.sent(mLogSession, AlertLevelParser::parse, characteristic.getValue());
 		}
 	};
 
@@ -274,7 +274,7 @@ public class ProximityServerManager  {
 
 			if (!preparedWrite && value != null && value.length == 1) { // small validation
 				if (value[0] != NO_ALERT[0]) {
-					mLogger.log(device, LogContract.Log.Level.APPLICATION, "[Server] Immediate alarm request received: " + AlertLevelParser.parse(characteristic));
+					mLogger.log(device, LogContract.Log.Level.APPLICATION, "[Server] Immediate alarm request received: " + AlertLevelParser.parse(characteristic.getValue()));
 					mCallbacks.onAlarmTriggered(device);
 				} else {
 					mLogger.log(device, LogContract.Log.Level.APPLICATION, "[Server] Immediate alarm request received: OFF");
@@ -240,12 +240,12 @@ public class ProximityService extends BleMulticonnectProfileService implements P
 	@Override
 	public void onServicesDiscovered(final BluetoothDevice device, final boolean optionalServicesFound) {
 		super.onServicesDiscovered(device, optionalServicesFound);
-		mServerManager.openConnection(device);
+		openServerConnection(device);
 	}
 
 	@Override
 	public void onLinklossOccur(final BluetoothDevice device) {
-		mServerManager.cancelConnection(device);
+		cancelServerConnection(device);
 		stopAlarm(device);
 		super.onLinklossOccur(device);
 
@@ -260,7 +260,7 @@ public class ProximityService extends BleMulticonnectProfileService implements P
 
 	@Override
 	public void onDeviceDisconnected(final BluetoothDevice device) {
-		mServerManager.cancelConnection(device);
+		cancelServerConnection(device);
 		stopAlarm(device);
 		super.onDeviceDisconnected(device);
 
@@ -270,6 +270,22 @@ public class ProximityService extends BleMulticonnectProfileService implements P
 		}
 	}
 
+	/**
+	 * Connects the GATT server to the device, so that it can trigger the alarm on the phone using the Immediate Alert service.
+	 * @param device the connected device
+	 */
+	protected void openServerConnection(final BluetoothDevice device) {
+		mServerManager.openConnection(device);
+	}
+
+	/**
+	 * Cancels the GATT server connection to the device.
+	 * @param device the device
+	 */
+	protected void cancelServerConnection(final BluetoothDevice device) {
+		mServerManager.cancelConnection(device);
+	}
+
 	@Override
 	public void onAlarmTriggered(final BluetoothDevice device) {
 		playAlarm(device);
@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2015, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.nrftoolbox.recorder;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * A replay target passing packets to the target registered for their characteristic UUID.
+ * May be used on a JVM to feed recorded packets to the characteristic parsers, e.g. in regression tests.
+ */
+public class ReplayDispatcher implements ReplayEngine.Target {
+	private final Map<UUID, ReplayEngine.Target> mTargets = new HashMap<>();
+	private ReplayEngine.Target mDefaultTarget;
+	private long mUnhandledCount;
+
+	/**
+	 * Registers the target for packets of the given characteristic.
+	 *
+	 * @param uuid   the characteristic UUID
+	 * @param target the target
+	 * @return this dispatcher
+	 */
+	public ReplayDispatcher register(final UUID uuid, final ReplayEngine.Target target) {
+		mTargets.put(uuid, target);
+		return this;
+	}
+
+	/**
+	 * Sets the target for packets of characteristics without a registered target.
+	 *
+	 * @param target the target, or null to ignore such packets
+	 * @return this dispatcher
+	 */
+	public ReplayDispatcher setDefaultTarget(final ReplayEngine.Target target) {
+		mDefaultTarget = target;
+		return this;
+	}
+
+	/**
+	 * Returns the number of packets that had no target.
+	 */
+	public long getUnhandledCount() {
+		return mUnhandledCount;
+	}
+
+	@Override
+	public void onPacket(final ReplayEngine.Packet packet) {
+		ReplayEngine.Target target = mTargets.get(packet.uuid);
+		if (target == null)
+			target = mDefaultTarget;
+		if (target != null)
+			target.onPacket(packet);
+		else
+			mUnhandledCount++;
+	}
+}
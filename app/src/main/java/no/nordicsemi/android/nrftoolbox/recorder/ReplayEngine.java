@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) 2015, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.nrftoolbox.recorder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.UUID;
+
+/**
+ * Replays sessions recorded by {@link SessionRecorder}. Packets are passed to the {@link Target} in the recorded order,
+ * on the thread calling {@link #run()}, so a replay is deterministic. The engine does not depend on the Android framework.
+ * <p>
+ * The speed decides how packets are paced:
+ * </p>
+ * <ul>
+ * <li>{@link #REAL_TIME} - with the recorded intervals,</li>
+ * <li>N - N times faster than recorded,</li>
+ * <li>{@link #AS_FAST_AS_POSSIBLE} - without any delays.</li>
+ * </ul>
+ */
+public class ReplayEngine {
+	public static final double REAL_TIME = 1.0;
+	public static final double AS_FAST_AS_POSSIBLE = 0.0;
+
+	public interface Target {
+		/**
+		 * Called for each replayed packet. The packet object is reused for the following packets.
+		 *
+		 * @param packet the packet
+		 */
+		void onPacket(final Packet packet);
+	}
+
+	/**
+	 * A replayed packet. The data array is reused, only the first {@link #length} bytes are valid.
+	 */
+	public static final class Packet {
+		/** One of the SessionFormat.TYPE_* constants. */
+		public int type;
+		/** The time the packet was recorded, in milliseconds since epoch. */
+		public long timestamp;
+		/** The 48-bit device address. */
+		public long address;
+		public UUID uuid;
+		public byte[] data = new byte[512];
+		public int length;
+
+		/**
+		 * Returns a copy of the valid data.
+		 */
+		public byte[] getValue() {
+			final byte[] value = new byte[length];
+			System.arraycopy(data, 0, value, 0, length);
+			return value;
+		}
+	}
+
+	private final File[] mSegments;
+	private final Target mTarget;
+	private final Packet mPacket = new Packet();
+	private double mSpeed = REAL_TIME;
+	private volatile boolean mStopped;
+
+	/**
+	 * Creates the engine.
+	 *
+	 * @param segments the segment files of a session, in order, see {@link SessionReader#listSegments(File, long)}
+	 * @param target   the target of the packets
+	 */
+	public ReplayEngine(final File[] segments, final Target target) {
+		mSegments = segments.clone();
+		mTarget = target;
+	}
+
+	/**
+	 * Sets the replay speed. Use {@link #REAL_TIME}, a multiplier greater than 0, or {@link #AS_FAST_AS_POSSIBLE}.
+	 *
+	 * @param speed the speed
+	 */
+	public void setSpeed(final double speed) {
+		if (speed < 0 || Double.isNaN(speed) || Double.isInfinite(speed))
+			throw new IllegalArgumentException("Invalid speed: " + speed);
+		mSpeed = speed;
+	}
+
+	/**
+	 * Requests the replay to stop. It may be called from any thread.
+	 */
+	public void stop() {
+		mStopped = true;
+	}
+
+	/**
+	 * Replays all packets and returns when done or stopped.
+	 *
+	 * @return the number of packets replayed
+	 * @throws IOException          if a segment could not be read
+	 * @throws InterruptedException if the thread was interrupted while waiting for the next packet
+	 */
+	public long run() throws IOException, InterruptedException {
+		mStopped = false;
+		final double speed = mSpeed;
+		final Packet packet = mPacket;
+		final long startTime = System.nanoTime();
+		long firstTimestamp = -1;
+		long count = 0;
+
+		for (final File segment : mSegments) {
+			try (SessionReader reader = new SessionReader(segment)) {
+				while (!mStopped && reader.next()) {
+					final long timestamp = reader.getTimestamp();
+					if (firstTimestamp < 0)
+						firstTimestamp = timestamp;
+
+					if (speed != AS_FAST_AS_POSSIBLE) {
+						final long dueTime = startTime + (long) ((timestamp - firstTimestamp) * 1000000L / speed);
+						final long delay = dueTime - System.nanoTime();
+						if (delay > 0)
+							Thread.sleep(delay / 1000000L, (int) (delay % 1000000L));
+					}
+
+					final int length = reader.getPayloadLength();
+					if (packet.data.length < length)
+						packet.data = new byte[length];
+					packet.type = reader.getType();
+					packet.timestamp = timestamp;
+					packet.address = reader.getAddress();
+					packet.uuid = reader.getUuid();
+					packet.length = reader.getPayload(packet.data);
+					mTarget.onPacket(packet);
+					count++;
+				}
+			}
+			if (mStopped)
+				break;
+		}
+		return count;
+	}
+}
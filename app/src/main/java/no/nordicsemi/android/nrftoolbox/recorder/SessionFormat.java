@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2015, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.nrftoolbox.recorder;
+
+import java.util.Locale;
+
+/**
+ * Layout of session files written by {@link SessionRecorder} and read by {@link SessionReader}.
+ * <p>
+ * A session is stored in segment files of a fixed size. Each segment starts with a header:
+ * </p>
+ * <pre>
+ * offset  size  field
+ * 0       4     magic, "NRFS"
+ * 4       2     format version
+ * 6       2     header size
+ * 8       4     segment size
+ * 12      4     segment sequence number, starting from 0
+ * 16      8     session ID, the time the session was started in milliseconds
+ * 24      8     reserved
+ * </pre>
+ * followed by entries, all numbers in big endian:
+ * <pre>
+ * offset  size  field
+ * 0       1     type, one of the TYPE_* constants, 0 marks the end of data
+ * 1       1     reserved
+ * 2       2     characteristic UUID index
+ * 4       2     payload length
+ * 6       8     timestamp in milliseconds since epoch
+ * 14      8     device address, 48 bits
+ * 22      n     payload
+ * </pre>
+ * Characteristic UUIDs are defined by {@link #TYPE_UUID} entries, with 16 bytes of payload, before they are first used in a segment,
+ * so each segment may be read on its own.
+ */
+public final class SessionFormat {
+	public static final int MAGIC = 0x4E524653; // NRFS
+	public static final short VERSION = 1;
+	public static final int SEGMENT_HEADER_SIZE = 32;
+	public static final int ENTRY_HEADER_SIZE = 22;
+	public static final int MAX_PAYLOAD_SIZE = 0xFFFF;
+
+	public static final int TYPE_END = 0;
+	public static final int TYPE_NOTIFICATION = 1;
+	public static final int TYPE_INDICATION = 2;
+	public static final int TYPE_UUID = 3;
+	public static final int TYPE_READ = 4;
+	public static final int TYPE_WRITE = 5;
+
+	static final String FILE_PREFIX = "session-";
+	static final String FILE_SUFFIX = ".bin";
+
+	private SessionFormat() {
+		// empty
+	}
+
+	/**
+	 * Converts the Bluetooth device address in format XX:XX:XX:XX:XX:XX to a number, without allocating memory.
+	 *
+	 * @param address the address
+	 * @return the 48-bit address
+	 */
+	public static long parseAddress(final String address) {
+		long result = 0;
+		for (int i = 0; i < address.length(); ++i) {
+			final int digit = Character.digit(address.charAt(i), 16);
+			if (digit >= 0)
+				result = (result << 4) | digit;
+		}
+		return result;
+	}
+
+	/**
+	 * Converts the 48-bit address back to format XX:XX:XX:XX:XX:XX.
+	 *
+	 * @param address the address
+	 * @return the address as text
+	 */
+	public static String formatAddress(final long address) {
+		final StringBuilder builder = new StringBuilder(17);
+		for (int shift = 40; shift >= 0; shift -= 8) {
+			final int octet = (int) (address >> shift) & 0xFF;
+			builder.append(Character.toUpperCase(Character.forDigit(octet >> 4, 16)));
+			builder.append(Character.toUpperCase(Character.forDigit(octet & 0x0F, 16)));
+			if (shift > 0)
+				builder.append(':');
+		}
+		return builder.toString();
+	}
+
+	static String getSegmentName(final long sessionId, final int sequence) {
+		return FILE_PREFIX + sessionId + "-" + String.format(Locale.US, "%06d", sequence) + FILE_SUFFIX;
+	}
+}
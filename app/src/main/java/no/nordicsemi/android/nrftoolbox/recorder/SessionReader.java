@@ -0,0 +1,216 @@
+/*
+ * Copyright (c) 2015, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.nrftoolbox.recorder;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * Reads entries from a segment file written by {@link SessionRecorder}. The reader does not depend on the Android framework,
+ * so it may be used for offline analysis of the recorded sessions:
+ * <pre>
+ * for (final File file : SessionReader.listSegments(directory)) {
+ *     try (SessionReader reader = new SessionReader(file)) {
+ *         while (reader.next()) {
+ *             // reader.getTimestamp(), reader.getUuid(), reader.getPayload(), ...
+ *         }
+ *     }
+ * }
+ * </pre>
+ * {@link SessionFormat#TYPE_UUID} entries are processed internally and not returned by {@link #next()}.
+ */
+public class SessionReader implements Closeable {
+	private final RandomAccessFile mFile;
+	private final MappedByteBuffer mSegment;
+	private final int mSequence;
+	private final long mSessionId;
+	/** UUIDs defined in the segment, grown to the highest index used. */
+	private UUID[] mUuids = new UUID[16];
+
+	private int mType;
+	private int mUuidIndex;
+	private int mPayloadOffset;
+	private int mPayloadLength;
+	private long mTimestamp;
+	private long mAddress;
+
+	/**
+	 * Opens the segment.
+	 *
+	 * @param file the segment file
+	 * @throws IOException if the file could not be read or is not a segment file
+	 */
+	public SessionReader(final File file) throws IOException {
+		mFile = new RandomAccessFile(file, "r");
+		try {
+			mSegment = mFile.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, mFile.length());
+			if (mSegment.remaining() < SessionFormat.SEGMENT_HEADER_SIZE || mSegment.getInt(0) != SessionFormat.MAGIC)
+				throw new IOException("Not a session segment: " + file);
+			if (mSegment.getShort(4) != SessionFormat.VERSION)
+				throw new IOException("Unsupported version: " + mSegment.getShort(4));
+			mSequence = mSegment.getInt(12);
+			mSessionId = mSegment.getLong(16);
+			mSegment.position(mSegment.getShort(6));
+		} catch (final IOException e) {
+			mFile.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Returns the segment files found in the directory, sorted by session and sequence number.
+	 *
+	 * @param directory the directory with the recorded sessions
+	 * @return the segment files
+	 */
+	public static File[] listSegments(final File directory) {
+		return listSegments(directory, -1);
+	}
+
+	/**
+	 * Returns the segment files of the given session, sorted by sequence number.
+	 *
+	 * @param directory the directory with the recorded sessions
+	 * @param sessionId the session ID, or -1 for all sessions
+	 * @return the segment files
+	 */
+	public static File[] listSegments(final File directory, final long sessionId) {
+		final String prefix = sessionId >= 0 ? SessionFormat.FILE_PREFIX + sessionId + "-" : SessionFormat.FILE_PREFIX;
+		final File[] files = directory.listFiles((dir, name) -> name.startsWith(prefix) && name.endsWith(SessionFormat.FILE_SUFFIX));
+		if (files == null)
+			return new File[0];
+		// Session IDs have the same number of digits and sequence numbers are padded with zeros
+		Arrays.sort(files, (a, b) -> a.getName().compareTo(b.getName()));
+		return files;
+	}
+
+	public long getSessionId() {
+		return mSessionId;
+	}
+
+	public int getSequence() {
+		return mSequence;
+	}
+
+	/**
+	 * Moves to the next packet entry.
+	 *
+	 * @return true if an entry was read, false at the end of data
+	 * @throws IOException if the segment is corrupted
+	 */
+	public boolean next() throws IOException {
+		final MappedByteBuffer segment = mSegment;
+		while (segment.remaining() >= SessionFormat.ENTRY_HEADER_SIZE) {
+			final int offset = segment.position();
+			final int type = segment.get(offset);
+			if (type == SessionFormat.TYPE_END)
+				return false;
+
+			final int uuidIndex = segment.getShort(offset + 2) & 0xFFFF;
+			final int length = segment.getShort(offset + 4) & 0xFFFF;
+			final int payloadOffset = offset + SessionFormat.ENTRY_HEADER_SIZE;
+			if (payloadOffset + length > segment.limit())
+				throw new IOException("Entry at " + offset + " exceeds the segment");
+			segment.position(payloadOffset + length);
+
+			if (type == SessionFormat.TYPE_UUID) {
+				if (uuidIndex >= mUuids.length)
+					mUuids = Arrays.copyOf(mUuids, Math.max(uuidIndex + 1, mUuids.length * 2));
+				mUuids[uuidIndex] = new UUID(segment.getLong(payloadOffset), segment.getLong(payloadOffset + 8));
+				continue;
+			}
+			if (uuidIndex >= mUuids.length || mUuids[uuidIndex] == null)
+				throw new IOException("Undefined UUID index " + uuidIndex + " at " + offset);
+
+			mType = type;
+			mUuidIndex = uuidIndex;
+			mTimestamp = segment.getLong(offset + 6);
+			mAddress = segment.getLong(offset + 14);
+			mPayloadOffset = payloadOffset;
+			mPayloadLength = length;
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Returns {@link SessionFormat#TYPE_NOTIFICATION}, {@link SessionFormat#TYPE_INDICATION}, {@link SessionFormat#TYPE_READ} or {@link SessionFormat#TYPE_WRITE}.
+	 */
+	public int getType() {
+		return mType;
+	}
+
+	/**
+	 * Returns the time the packet was received, in milliseconds since epoch.
+	 */
+	public long getTimestamp() {
+		return mTimestamp;
+	}
+
+	/**
+	 * Returns the 48-bit device address, see {@link SessionFormat#formatAddress(long)}.
+	 */
+	public long getAddress() {
+		return mAddress;
+	}
+
+	public UUID getUuid() {
+		return mUuids[mUuidIndex];
+	}
+
+	public int getPayloadLength() {
+		return mPayloadLength;
+	}
+
+	/**
+	 * Copies the payload to the given array, which must be at least {@link #getPayloadLength()} long.
+	 *
+	 * @param destination the array
+	 * @return the payload length
+	 */
+	public int getPayload(final byte[] destination) {
+		for (int i = 0; i < mPayloadLength; ++i)
+			destination[i] = mSegment.get(mPayloadOffset + i);
+		return mPayloadLength;
+	}
+
+	/**
+	 * Returns a copy of the payload.
+	 */
+	public byte[] getPayload() {
+		final byte[] payload = new byte[mPayloadLength];
+		getPayload(payload);
+		return payload;
+	}
+
+	@Override
+	public void close() throws IOException {
+		mFile.close();
+	}
+}
@@ -0,0 +1,306 @@
+/*
+ * Copyright (c) 2015, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.nrftoolbox.recorder;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Appends raw packets from notifications, indications, reads and writes to memory-mapped segment files, see {@link SessionFormat} for the layout.
+ * <p>
+ * Recording a packet only copies it into the mapped segment while holding a short lock. It does not allocate memory
+ * and does not perform any I/O, as the operating system writes the pages back to the file. Creating, mapping and
+ * deleting segment files is done on a background thread, which prepares the next segment before the current one is full.
+ * If it is not ready in time, packets are dropped and counted, see {@link #getDroppedCount()}.
+ * </p>
+ */
+public class SessionRecorder implements Closeable {
+	public static final int DEFAULT_SEGMENT_SIZE = 8 * 1024 * 1024;
+	/** Default number of segments kept, older ones are deleted. 512 MB with the default segment size. */
+	public static final int DEFAULT_MAX_SEGMENTS = 64;
+	private static final int MAX_UUIDS = 256;
+
+	private final File mDirectory;
+	private final int mSegmentSize;
+	private final int mMaxSegments;
+	private final long mSessionId;
+	private final ExecutorService mExecutor;
+
+	private final UUID[] mUuids = new UUID[MAX_UUIDS];
+	private int mUuidCount;
+
+	private MappedByteBuffer mSegment;
+	/** The segment prepared by the background thread, or null if not ready yet. */
+	private volatile MappedByteBuffer mNextSegment;
+	private boolean mPreparing;
+	/** Sequence number of the next segment to be prepared, used by the background thread only. */
+	private int mNextSequence;
+
+	private long mRecordedCount;
+	private long mDroppedCount;
+	private boolean mClosed;
+
+	public SessionRecorder(final File directory) throws IOException {
+		this(directory, DEFAULT_SEGMENT_SIZE, DEFAULT_MAX_SEGMENTS);
+	}
+
+	/**
+	 * Starts a new session. The first segment is created immediately.
+	 *
+	 * @param directory   the directory for the segment files
+	 * @param segmentSize the size of each segment file in bytes
+	 * @param maxSegments maximum number of segment files of this session kept on disk
+	 * @throws IOException if the first segment could not be created
+	 */
+	public SessionRecorder(final File directory, final int segmentSize, final int maxSegments) throws IOException {
+		if (segmentSize < SessionFormat.SEGMENT_HEADER_SIZE + SessionFormat.ENTRY_HEADER_SIZE + 512)
+			throw new IllegalArgumentException("Segment size too small: " + segmentSize);
+		if (maxSegments < 2)
+			throw new IllegalArgumentException("At least 2 segments are required");
+		if (!directory.isDirectory() && !directory.mkdirs())
+			throw new IOException("Unable to create directory: " + directory);
+
+		mDirectory = directory;
+		mSegmentSize = segmentSize;
+		mMaxSegments = maxSegments;
+		mSessionId = System.currentTimeMillis();
+		mExecutor = Executors.newSingleThreadExecutor(runnable -> {
+			final Thread thread = new Thread(runnable, "SessionRecorder");
+			thread.setDaemon(true);
+			return thread;
+		});
+
+		mSegment = createSegment();
+		prepareNextSegment();
+	}
+
+	public long getSessionId() {
+		return mSessionId;
+	}
+
+	public File getDirectory() {
+		return mDirectory;
+	}
+
+	/**
+	 * Records a packet. Its type must not be {@link SessionFormat#TYPE_END} or {@link SessionFormat#TYPE_UUID}.
+	 *
+	 * @param timestamp the time the packet was received, in milliseconds since epoch
+	 * @param address   the device address, see {@link SessionFormat#parseAddress(String)}
+	 * @param uuid      the characteristic UUID
+	 * @param type      one of {@link SessionFormat#TYPE_NOTIFICATION}, {@link SessionFormat#TYPE_INDICATION},
+	 *                  {@link SessionFormat#TYPE_READ} or {@link SessionFormat#TYPE_WRITE}
+	 * @param value     the packet, may be null
+	 * @return true if the packet was recorded, false if it was dropped
+	 */
+	public synchronized boolean record(final long timestamp, final long address, final UUID uuid, final int type, final byte[] value) {
+		if (mClosed)
+			return false;
+		if (type == SessionFormat.TYPE_END || type == SessionFormat.TYPE_UUID)
+			throw new IllegalArgumentException("Invalid type: " + type);
+
+		final int length = value != null ? value.length : 0;
+		if (length > SessionFormat.MAX_PAYLOAD_SIZE) {
+			mDroppedCount++;
+			return false;
+		}
+
+		int uuidIndex = indexOf(uuid);
+		if (uuidIndex < 0) {
+			if (mUuidCount == MAX_UUIDS) {
+				mDroppedCount++;
+				return false;
+			}
+			if (!ensureSpace(SessionFormat.ENTRY_HEADER_SIZE + 16)) {
+				mDroppedCount++;
+				return false;
+			}
+			uuidIndex = mUuidCount;
+			mUuids[mUuidCount++] = uuid;
+			writeUuid(uuidIndex);
+		}
+
+		if (!ensureSpace(SessionFormat.ENTRY_HEADER_SIZE + length)) {
+			mDroppedCount++;
+			return false;
+		}
+
+		final MappedByteBuffer segment = mSegment;
+		final int offset = segment.position();
+		segment.putShort(offset + 2, (short) uuidIndex);
+		segment.putShort(offset + 4, (short) length);
+		segment.putLong(offset + 6, timestamp);
+		segment.putLong(offset + 14, address);
+		if (length > 0) {
+			segment.position(offset + SessionFormat.ENTRY_HEADER_SIZE);
+			segment.put(value, 0, length);
+		}
+		// The type is written last, so a reader never sees an incomplete entry
+		segment.put(offset, (byte) type);
+		segment.position(offset + SessionFormat.ENTRY_HEADER_SIZE + length);
+		mRecordedCount++;
+		return true;
+	}
+
+	public synchronized long getRecordedCount() {
+		return mRecordedCount;
+	}
+
+	public synchronized long getDroppedCount() {
+		return mDroppedCount;
+	}
+
+	/**
+	 * Stops recording. The data is flushed to the files on the background thread and the segment prepared in advance
+	 * is deleted. The last segment keeps its full size, it can't be truncated while it is mapped. Its unused part
+	 * is filled with zeros, which the reader takes as {@link SessionFormat#TYPE_END}.
+	 */
+	@Override
+	public synchronized void close() {
+		if (mClosed)
+			return;
+		mClosed = true;
+
+		final MappedByteBuffer segment = mSegment;
+		mSegment = null;
+		mExecutor.execute(() -> {
+			segment.force();
+			deleteNextSegment();
+		});
+		mExecutor.shutdown();
+	}
+
+	private int indexOf(final UUID uuid) {
+		for (int i = 0; i < mUuidCount; ++i)
+			if (mUuids[i].equals(uuid))
+				return i;
+		return -1;
+	}
+
+	/**
+	 * Switches to the next segment if there is not enough space left in the current one.
+	 * All UUIDs known so far are defined at the beginning of the new segment.
+	 */
+	private boolean ensureSpace(final int size) {
+		if (mSegment.remaining() >= size)
+			return true;
+
+		final MappedByteBuffer next = mNextSegment;
+		if (next == null) {
+			prepareNextSegment();
+			return false;
+		}
+		final MappedByteBuffer previous = mSegment;
+		mExecutor.execute(previous::force);
+		mSegment = next;
+		mNextSegment = null;
+		prepareNextSegment();
+
+		for (int i = 0; i < mUuidCount; ++i)
+			writeUuid(i);
+		return mSegment.remaining() >= size;
+	}
+
+	private void writeUuid(final int index) {
+		final MappedByteBuffer segment = mSegment;
+		final int offset = segment.position();
+		final UUID uuid = mUuids[index];
+		segment.putShort(offset + 2, (short) index);
+		segment.putShort(offset + 4, (short) 16);
+		segment.putLong(offset + 6, 0L);
+		segment.putLong(offset + 14, 0L);
+		segment.putLong(offset + SessionFormat.ENTRY_HEADER_SIZE, uuid.getMostSignificantBits());
+		segment.putLong(offset + SessionFormat.ENTRY_HEADER_SIZE + 8, uuid.getLeastSignificantBits());
+		segment.put(offset, (byte) SessionFormat.TYPE_UUID);
+		segment.position(offset + SessionFormat.ENTRY_HEADER_SIZE + 16);
+	}
+
+	private void prepareNextSegment() {
+		if (mPreparing || mClosed)
+			return;
+		mPreparing = true;
+		mExecutor.execute(() -> {
+			MappedByteBuffer segment = null;
+			try {
+				segment = createSegment();
+				deleteOldSegments();
+			} catch (final IOException e) {
+				// The packets will be dropped until another attempt succeeds
+			}
+			synchronized (SessionRecorder.this) {
+				mNextSegment = segment;
+				mPreparing = false;
+			}
+		});
+	}
+
+	private File getSegmentFile(final MappedByteBuffer segment) {
+		return new File(mDirectory, SessionFormat.getSegmentName(mSessionId, segment.getInt(12)));
+	}
+
+	/**
+	 * Deletes the segment prepared for the closed session. It runs on the background thread after any pending preparation.
+	 */
+	private void deleteNextSegment() {
+		final MappedByteBuffer next;
+		synchronized (this) {
+			next = mNextSegment;
+			mNextSegment = null;
+		}
+		if (next != null)
+			//noinspection ResultOfMethodCallIgnored
+			getSegmentFile(next).delete();
+	}
+
+	private MappedByteBuffer createSegment() throws IOException {
+		final int sequence = mNextSequence++;
+		final File file = new File(mDirectory, SessionFormat.getSegmentName(mSessionId, sequence));
+		try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+			raf.setLength(mSegmentSize);
+			// The mapping stays valid after the channel is closed
+			final MappedByteBuffer segment = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, mSegmentSize);
+			segment.putInt(SessionFormat.MAGIC);
+			segment.putShort(SessionFormat.VERSION);
+			segment.putShort((short) SessionFormat.SEGMENT_HEADER_SIZE);
+			segment.putInt(mSegmentSize);
+			segment.putInt(sequence);
+			segment.putLong(mSessionId);
+			segment.position(SessionFormat.SEGMENT_HEADER_SIZE);
+			return segment;
+		}
+	}
+
+	private void deleteOldSegments() {
+		final File[] segments = SessionReader.listSegments(mDirectory, mSessionId);
+		for (int i = 0; i < segments.length - mMaxSegments; ++i)
+			//noinspection ResultOfMethodCallIgnored
+			segments[i].delete();
+	}
+}
@@ -31,22 +31,22 @@ import java.util.Deque;
 import java.util.LinkedList;
 import java.util.UUID;
 
-import no.nordicsemi.android.ble.BleManager;
 import no.nordicsemi.android.ble.Request;
-import no.nordicsemi.android.log.Logger;
+import no.nordicsemi.android.nrftoolbox.parser.CharacteristicValue;
+import no.nordicsemi.android.nrftoolbox.parser.RSCMeasurement;
 import no.nordicsemi.android.nrftoolbox.parser.RSCMeasurementParser;
+import no.nordicsemi.android.nrftoolbox.profile.RecordingBleManager;
+import no.nordicsemi.android.nrftoolbox.utility.DeferredLogger;
 
-public class RSCManager extends BleManager<RSCManagerCallbacks> {
-	private static final byte INSTANTANEOUS_STRIDE_LENGTH_PRESENT = 0x01; // 1 bit
-	private static final byte TOTAL_DISTANCE_PRESENT = 0x02; // 1 bit
-	private static final byte WALKING_OR_RUNNING_STATUS_BITS = 0x04; // 1 bit
-
+public class RSCManager extends RecordingBleManager<RSCManagerCallbacks> {
 	/** Running Speed and Cadence Measurement service UUID */
 	public final static UUID RUNNING_SPEED_AND_CADENCE_SERVICE_UUID = UUID.fromString("00001814-0000-1000-8000-00805f9b34fb");
 	/** Running Speed and Cadence Measurement characteristic UUID */
 	private static final UUID RSC_MEASUREMENT_CHARACTERISTIC_UUID = UUID.fromString("00002A53-0000-1000-8000-00805f9b34fb");
 
 	private BluetoothGattCharacteristic mRSCMeasurementCharacteristic;
+	private final CharacteristicValue mValue = new CharacteristicValue();
+	private final RSCMeasurement mMeasurement = new RSCMeasurement();
 
 	public RSCManager(final Context context) {
 		super(context);
@@ -60,7 +60,7 @@ public class RSCManager extends BleManager<RSCManagerCallbacks> {
 	/**
 	 * BluetoothGatt callbacks for connection/disconnection, service discovery, receiving indication, etc
 	 */
-	private final BleManagerGattCallback mGattCallback = new BleManagerGattCallback() {
+	private final BleManagerGattCallback mGattCallback = new RecordingGattCallback() {
 
 		@Override
 		protected Deque<Request> initGatt(final BluetoothGatt gatt) {
@@ -85,34 +85,19 @@ public class RSCManager extends BleManager<RSCManagerCallbacks> {
 
 		@Override
 		public void onCharacteristicNotified(final BluetoothGatt gatt, final BluetoothGattCharacteristic characteristic) {
-			Logger.a(mLogSession, "\"" + RSCMeasurementParser.parse(characteristic) + "\" received");
+			super.onCharacteristicNotified(gatt, characteristic);
 
 			// Decode the new data
-			int offset = 0;
-			final int flags = characteristic.getValue()[offset]; // 1 byte
-			offset += 1;
-
-			final boolean islmPresent = (flags & INSTANTANEOUS_STRIDE_LENGTH_PRESENT) > 0;
-			final boolean tdPreset = (flags & TOTAL_DISTANCE_PRESENT) > 0;
-			final boolean running = (flags & WALKING_OR_RUNNING_STATUS_BITS) > 0;
-
-			final float instantaneousSpeed = (float) characteristic.getIntValue(BluetoothGattCharacteristic.FORMAT_UINT16, offset) / 256.0f; // 1/256 m/s in [m/s]
-			offset += 2;
-
-			final int instantaneousCadence = characteristic.getIntValue(BluetoothGattCharacteristic.FORMAT_UINT8, offset); // [SPM]
-			offset += 1;
-
-			float instantaneousStrideLength = RSCManagerCallbacks.NOT_AVAILABLE;
-			if (islmPresent) {
-				instantaneousStrideLength = characteristic.getIntValue(BluetoothGattCharacteristic.FORMAT_UINT16, offset); // [cm]
-				offset += 2;
-			}
-
-			float totalDistance = RSCManagerCallbacks.NOT_AVAILABLE;
-			if (tdPreset) {
-				totalDistance = (float) characteristic.getIntValue(BluetoothGattCharacteristic.FORMAT_UINT32, offset) / 10.0f; // 1/10 m in [m]
-				//offset += 4;
-			}
+			final RSCMeasurement measurement = mMeasurement;
+			if (!RSCMeasurementParser.decode(mValue.set(characteristic.getValue()), measurement))
+				return;
+			DeferredLogger.received(mLogSession, RSCMeasurementParser::format, measurement);
+
+			final float instantaneousSpeed = measurement.getSpeed(); // [m/s]
+			final int instantaneousCadence = measurement.instantaneousCadence; // [SPM]
+			final float instantaneousStrideLength = measurement.strideLengthPresent ? measurement.instantaneousStrideLength : RSCManagerCallbacks.NOT_AVAILABLE; // [cm]
+			final float totalDistance = measurement.totalDistancePresent ? measurement.totalDistance / 10.0f : RSCManagerCallbacks.NOT_AVAILABLE; // 1/10 m in [m]
+			final boolean running = measurement.running;
 
 			// Notify listener about the new measurement
 			mCallbacks.onMeasurementReceived(gatt.getDevice(), instantaneousSpeed, instantaneousCadence, totalDistance, instantaneousStrideLength,
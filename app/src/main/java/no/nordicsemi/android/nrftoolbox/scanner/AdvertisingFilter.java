@@ -0,0 +1,218 @@
+/*
+ * Copyright (c) 2015, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package no.nordicsemi.android.nrftoolbox.scanner;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import no.nordicsemi.android.nrftoolbox.parser.AdvertisingData;
+
+/**
+ * A filter of advertising packets evaluated in software, on data decoded by
+ * {@link no.nordicsemi.android.nrftoolbox.parser.AdvertisingDataParser}. It is used when the hardware filters of the
+ * Bluetooth controller are not available, or can't express the criteria.
+ * <p>
+ * A packet matches if its RSSI is at least the RSSI floor and it matches each of the criteria groups that is not empty:
+ * one of the service UUIDs is advertised, one of the manufacturer data entries matches, and the name starts with one
+ * of the prefixes. The criteria are compiled when the filter is built: UUIDs that can be shortened are kept in a sorted
+ * array of their 32-bit values, names are encoded to UTF-8 once, so matching does not allocate memory.
+ * </p>
+ */
+public final class AdvertisingFilter {
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	/** Sorted 32-bit values of the UUIDs derived from the Bluetooth Base UUID. */
+	private final long[] mShortUuids;
+	/** Other UUIDs, as pairs of the most and least significant bits. */
+	private final long[] mLongUuids;
+	private final int[] mManufacturerIds;
+	private final byte[][] mManufacturerData;
+	private final byte[][] mManufacturerDataMasks;
+	private final byte[][] mNamePrefixes;
+	private final int mRssiFloor;
+
+	public static final class Builder {
+		private final List<UUID> mServiceUuids = new ArrayList<>();
+		private final List<Integer> mManufacturerIds = new ArrayList<>();
+		private final List<byte[]> mManufacturerData = new ArrayList<>();
+		private final List<byte[]> mManufacturerDataMasks = new ArrayList<>();
+		private final List<String> mNamePrefixes = new ArrayList<>();
+		private int mRssiFloor = Integer.MIN_VALUE;
+
+		/**
+		 * Adds a service UUID. The packet must advertise one of the added UUIDs.
+		 */
+		public Builder addServiceUuid(final UUID uuid) {
+			mServiceUuids.add(uuid);
+			return this;
+		}
+
+		/**
+		 * Adds a manufacturer. The packet must contain manufacturer data of one of the added manufacturers.
+		 *
+		 * @param manufacturerId the company identifier
+		 * @param data           the data expected at the start of the manufacturer data, after the identifier, may be null
+		 * @param mask           the mask applied to the data, bits set to 0 are ignored. If null, all bits are compared.
+		 */
+		public Builder addManufacturer(final int manufacturerId, final byte[] data, final byte[] mask) {
+			if (data != null && mask != null && mask.length != data.length)
+				throw new IllegalArgumentException("Mask length must match data length");
+			mManufacturerIds.add(manufacturerId);
+			mManufacturerData.add(data != null ? data.clone() : new byte[0]);
+			mManufacturerDataMasks.add(data != null && mask != null ? mask.clone() : null);
+			return this;
+		}
+
+		/**
+		 * Adds a name prefix. The local name of the packet must start with one of the added prefixes.
+		 */
+		public Builder addNamePrefix(final String prefix) {
+			mNamePrefixes.add(prefix);
+			return this;
+		}
+
+		/**
+		 * Sets the minimum RSSI [dBm] of a packet.
+		 */
+		public Builder setRssiFloor(final int rssi) {
+			mRssiFloor = rssi;
+			return this;
+		}
+
+		public AdvertisingFilter build() {
+			return new AdvertisingFilter(this);
+		}
+	}
+
+	private AdvertisingFilter(final Builder builder) {
+		int shortCount = 0;
+		for (final UUID uuid : builder.mServiceUuids)
+			if (AdvertisingData.isShortUuid(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits()))
+				shortCount++;
+		final long[] shortUuids = new long[shortCount];
+		final long[] longUuids = new long[2 * (builder.mServiceUuids.size() - shortCount)];
+		int s = 0, l = 0;
+		for (final UUID uuid : builder.mServiceUuids) {
+			final long msb = uuid.getMostSignificantBits();
+			final long lsb = uuid.getLeastSignificantBits();
+			if (AdvertisingData.isShortUuid(msb, lsb)) {
+				shortUuids[s++] = msb >>> 32;
+			} else {
+				longUuids[l++] = msb;
+				longUuids[l++] = lsb;
+			}
+		}
+		Arrays.sort(shortUuids);
+		mShortUuids = shortUuids;
+		mLongUuids = longUuids;
+
+		final int manufacturers = builder.mManufacturerIds.size();
+		mManufacturerIds = new int[manufacturers];
+		mManufacturerData = new byte[manufacturers][];
+		mManufacturerDataMasks = new byte[manufacturers][];
+		for (int i = 0; i < manufacturers; ++i) {
+			mManufacturerIds[i] = builder.mManufacturerIds.get(i);
+			mManufacturerData[i] = builder.mManufacturerData.get(i);
+			mManufacturerDataMasks[i] = builder.mManufacturerDataMasks.get(i);
+		}
+
+		mNamePrefixes = new byte[builder.mNamePrefixes.size()][];
+		for (int i = 0; i < mNamePrefixes.length; ++i)
+			mNamePrefixes[i] = builder.mNamePrefixes.get(i).getBytes(UTF_8);
+
+		mRssiFloor = builder.mRssiFloor;
+	}
+
+	/**
+	 * Returns true if the filter has exactly one service UUID and no other criteria, so it may be replaced by a single
+	 * hardware ScanFilter.
+	 */
+	public boolean isSingleServiceUuid() {
+		return mShortUuids.length + mLongUuids.length / 2 == 1 && mManufacturerIds.length == 0 && mNamePrefixes.length == 0
+				&& mRssiFloor == Integer.MIN_VALUE;
+	}
+
+	/**
+	 * Returns true if the decoded advertising data and the RSSI match the filter.
+	 *
+	 * @param data the advertising data, see {@link no.nordicsemi.android.nrftoolbox.parser.AdvertisingDataParser#decode(byte[], AdvertisingData)}
+	 * @param rssi the RSSI of the packet [dBm]
+	 */
+	public boolean matches(final AdvertisingData data, final int rssi) {
+		if (rssi < mRssiFloor)
+			return false;
+		if ((mShortUuids.length > 0 || mLongUuids.length > 0) && !matchesServiceUuid(data))
+			return false;
+		if (mManufacturerIds.length > 0 && !matchesManufacturerData(data))
+			return false;
+		return mNamePrefixes.length == 0 || matchesName(data);
+	}
+
+	private boolean matchesServiceUuid(final AdvertisingData data) {
+		for (int i = 0; i < data.serviceUuidCount; ++i) {
+			final long msb = data.serviceUuidMsb[i];
+			final long lsb = data.serviceUuidLsb[i];
+			if (AdvertisingData.isShortUuid(msb, lsb)) {
+				if (Arrays.binarySearch(mShortUuids, msb >>> 32) >= 0)
+					return true;
+			} else {
+				for (int j = 0; j < mLongUuids.length; j += 2)
+					if (mLongUuids[j] == msb && mLongUuids[j + 1] == lsb)
+						return true;
+			}
+		}
+		return false;
+	}
+
+	private boolean matchesManufacturerData(final AdvertisingData data) {
+		for (int i = 0; i < data.manufacturerDataCount; ++i) {
+			final int id = data.manufacturerIds[i];
+			for (int j = 0; j < mManufacturerIds.length; ++j) {
+				if (mManufacturerIds[j] == id && matchesData(data.data, data.manufacturerDataOffsets[i],
+						data.manufacturerDataLengths[i], mManufacturerData[j], mManufacturerDataMasks[j]))
+					return true;
+			}
+		}
+		return false;
+	}
+
+	private static boolean matchesData(final byte[] raw, final int offset, final int length, final byte[] expected, final byte[] mask) {
+		if (length < expected.length)
+			return false;
+		for (int k = 0; k < expected.length; ++k) {
+			final int m = mask != null ? mask[k] : 0xFF;
+			if (((raw[offset + k] ^ expected[k]) & m) != 0)
+				return false;
+		}
+		return true;
+	}
+
+	private boolean matchesName(final AdvertisingData data) {
+		for (final byte[] prefix : mNamePrefixes)
+			if (data.nameStartsWith(prefix))
+				return true;
+		return false;
+	}
+}
@@ -0,0 +1,258 @@
+/*
+ * Copyright (c) 2015, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package no.nordicsemi.android.nrftoolbox.scanner;
+
+import android.Manifest;
+import android.app.Service;
+import android.bluetooth.BluetoothAdapter;
+import android.bluetooth.BluetoothManager;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.pm.PackageManager;
+import android.os.Build;
+import android.os.Handler;
+import android.os.IBinder;
+import android.os.SystemClock;
+import android.support.v4.content.ContextCompat;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import no.nordicsemi.android.nrftoolbox.parser.AdvertisingData;
+import no.nordicsemi.android.nrftoolbox.parser.AdvertisingDataParser;
+import no.nordicsemi.android.support.v18.scanner.BluetoothLeScannerCompat;
+import no.nordicsemi.android.support.v18.scanner.ScanCallback;
+import no.nordicsemi.android.support.v18.scanner.ScanFilter;
+import no.nordicsemi.android.support.v18.scanner.ScanResult;
+import no.nordicsemi.android.support.v18.scanner.ScanSettings;
+
+/**
+ * Scans for devices while the {@link no.nordicsemi.android.nrftoolbox.FeaturesActivity} is visible
+ * and keeps them in the {@link DeviceCache}, so the {@link ScannerFragment} can show them as soon as it's opened.
+ * The activity starts the service in onStart() and stops it in onStop().
+ * <p>
+ * The scan uses the low power mode with results delivered in batches every {@link #REPORT_DELAY} ms, using hardware
+ * batching when supported, so the radio and the CPU are used as little as possible. On Android 6+ the opportunistic
+ * mode is used instead when the service is started with {@link #EXTRA_OPPORTUNISTIC}, then only devices found by
+ * scans of other apps are reported. The scan is stopped when Bluetooth is disabled and restarted when it's enabled again.
+ * </p>
+ */
+public class BackgroundScannerService extends Service {
+	private static final String TAG = "BackgroundScanner";
+
+	/** Boolean extra, set to true to only receive results of scans started by other apps, on Android 6+. */
+	public static final String EXTRA_OPPORTUNISTIC = "no.nordicsemi.android.nrftoolbox.scanner.EXTRA_OPPORTUNISTIC";
+
+	private static final String CACHE_FILE = "device_cache.bin";
+	private static final int CACHE_CAPACITY = 128;
+	/** Devices not seen for a day are removed from the cache. */
+	private static final long CACHE_MAX_AGE = 24 * 60 * 60 * 1000L;
+	private static final long REPORT_DELAY = 5000;
+	private static final long SAVE_INTERVAL = 30000;
+
+	private static DeviceCache sDeviceCache;
+
+	private final Handler mHandler = new Handler();
+	private final ArrayList<UUID> mServiceUuids = new ArrayList<>();
+	private final AdvertisingData mAdvertisingData = new AdvertisingData();
+	private ExecutorService mExecutor;
+	private DeviceCache mCache;
+	private boolean mOpportunistic;
+	private boolean mScanning;
+
+	/**
+	 * Returns the device cache, loading it from the file when called for the first time.
+	 */
+	public static synchronized DeviceCache getDeviceCache(final Context context) {
+		if (sDeviceCache == null) {
+			final File file = new File(context.getApplicationContext().getFilesDir(), CACHE_FILE);
+			sDeviceCache = new DeviceCache(file, CACHE_CAPACITY);
+		}
+		return sDeviceCache;
+	}
+
+	/**
+	 * Adds the scan result to the cache.
+	 *
+	 * @param cache        the device cache
+	 * @param result       the scan result
+	 * @param data         the advertising data of the result, decoded by {@link AdvertisingDataParser}
+	 * @param serviceUuids a list reused to pass the service UUIDs to the cache
+	 */
+	/* package */ static void addToCache(final DeviceCache cache, final ScanResult result, final AdvertisingData data,
+										 final List<UUID> serviceUuids) {
+		serviceUuids.clear();
+		for (int i = 0; i < data.serviceUuidCount; ++i)
+			serviceUuids.add(new UUID(data.serviceUuidMsb[i], data.serviceUuidLsb[i]));
+		// The timestamp of the result is in the elapsed real time base
+		final long age = (SystemClock.elapsedRealtimeNanos() - result.getTimestampNanos()) / 1000000L;
+		cache.update(result.getDevice().getAddress(), data.getName(), result.getRssi(),
+				data.serviceUuidCount > 0 ? serviceUuids : null, System.currentTimeMillis() - age);
+	}
+
+	private void addToCache(final ScanResult result) {
+		AdvertisingDataParser.decode(result.getScanRecord() != null ? result.getScanRecord().getBytes() : null, mAdvertisingData);
+		addToCache(mCache, result, mAdvertisingData, mServiceUuids);
+	}
+
+	private final BroadcastReceiver mBluetoothStateBroadcastReceiver = new BroadcastReceiver() {
+		@Override
+		public void onReceive(final Context context, final Intent intent) {
+			final int state = intent.getIntExtra(BluetoothAdapter.EXTRA_STATE, BluetoothAdapter.STATE_OFF);
+
+			switch (state) {
+				case BluetoothAdapter.STATE_ON:
+					startScan();
+					break;
+				case BluetoothAdapter.STATE_TURNING_OFF:
+				case BluetoothAdapter.STATE_OFF:
+					stopScan();
+					break;
+			}
+		}
+	};
+
+	private final ScanCallback mScanCallback = new ScanCallback() {
+		@Override
+		public void onScanResult(final int callbackType, final ScanResult result) {
+			addToCache(result);
+		}
+
+		@Override
+		public void onBatchScanResults(final List<ScanResult> results) {
+			for (final ScanResult result : results)
+				addToCache(result);
+		}
+
+		@Override
+		public void onScanFailed(final int errorCode) {
+			Log.w(TAG, "Background scan failed, error: " + errorCode);
+			mScanning = false;
+		}
+	};
+
+	private final Runnable mSaveCache = new Runnable() {
+		@Override
+		public void run() {
+			saveCache();
+			mHandler.postDelayed(this, SAVE_INTERVAL);
+		}
+	};
+
+	@Override
+	public void onCreate() {
+		super.onCreate();
+
+		mExecutor = Executors.newSingleThreadExecutor();
+		mCache = getDeviceCache(this);
+		mCache.removeOlderThan(System.currentTimeMillis() - CACHE_MAX_AGE);
+		registerReceiver(mBluetoothStateBroadcastReceiver, new IntentFilter(BluetoothAdapter.ACTION_STATE_CHANGED));
+		mHandler.postDelayed(mSaveCache, SAVE_INTERVAL);
+	}
+
+	@Override
+	public int onStartCommand(final Intent intent, final int flags, final int startId) {
+		final boolean opportunistic = intent != null && intent.getBooleanExtra(EXTRA_OPPORTUNISTIC, false);
+		if (opportunistic != mOpportunistic) {
+			stopScan();
+			mOpportunistic = opportunistic;
+		}
+
+		if (ContextCompat.checkSelfPermission(this, Manifest.permission.ACCESS_COARSE_LOCATION) != PackageManager.PERMISSION_GRANTED) {
+			// The permission is requested by the scanner dialog, the service will be started again by the activity
+			stopSelf();
+			return START_NOT_STICKY;
+		}
+
+		final BluetoothManager manager = (BluetoothManager) getSystemService(Context.BLUETOOTH_SERVICE);
+		final BluetoothAdapter adapter = manager != null ? manager.getAdapter() : null;
+		if (adapter != null && adapter.isEnabled())
+			startScan();
+		return START_NOT_STICKY;
+	}
+
+	@Override
+	public IBinder onBind(final Intent intent) {
+		return null;
+	}
+
+	@Override
+	public void onDestroy() {
+		super.onDestroy();
+
+		stopScan();
+		unregisterReceiver(mBluetoothStateBroadcastReceiver);
+		mHandler.removeCallbacks(mSaveCache);
+		saveCache();
+		mExecutor.shutdown();
+	}
+
+	private void startScan() {
+		if (mScanning)
+			return;
+
+		final int scanMode = mOpportunistic && Build.VERSION.SDK_INT >= Build.VERSION_CODES.M ?
+				ScanSettings.SCAN_MODE_OPPORTUNISTIC : ScanSettings.SCAN_MODE_LOW_POWER;
+		final ScanSettings settings = new ScanSettings.Builder()
+				.setScanMode(scanMode).setReportDelay(REPORT_DELAY).setUseHardwareBatchingIfSupported(true).build();
+		final List<ScanFilter> filters = new ArrayList<>();
+		try {
+			BluetoothLeScannerCompat.getScanner().startScan(filters, settings, mScanCallback);
+			mScanning = true;
+		} catch (final IllegalStateException e) {
+			// Bluetooth has just been disabled
+			Log.w(TAG, "Starting background scan failed", e);
+		}
+	}
+
+	private void stopScan() {
+		if (!mScanning)
+			return;
+
+		mScanning = false;
+		try {
+			BluetoothLeScannerCompat.getScanner().stopScan(mScanCallback);
+		} catch (final IllegalStateException e) {
+			// Bluetooth is already disabled, the scan has been stopped
+		}
+		saveCache();
+	}
+
+	private void saveCache() {
+		final DeviceCache cache = mCache;
+		mExecutor.execute(() -> {
+			try {
+				cache.save();
+			} catch (final IOException e) {
+				Log.w(TAG, "Saving device cache failed", e);
+			}
+		});
+	}
+}
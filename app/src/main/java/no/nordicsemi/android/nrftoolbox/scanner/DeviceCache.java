@@ -0,0 +1,330 @@
+/*
+ * Copyright (c) 2015, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package no.nordicsemi.android.nrftoolbox.scanner;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * A cache of recently seen devices with their names, advertised service UUIDs, RSSI and the time they were last seen.
+ * It is filled by the {@link BackgroundScannerService} and by the scanner dialog, and lets the dialog show the devices
+ * nearby before its own scan reports anything.
+ * <p>
+ * The cache keeps at most the given number of devices, the least recently seen ones are dropped first. It is saved to
+ * a file, all numbers in big endian:
+ * </p>
+ * <pre>
+ * size  field
+ * 4     magic, "NRFC"
+ * 2     format version
+ * 4     number of devices
+ * </pre>
+ * followed by devices, from the least recently seen:
+ * <pre>
+ * size  field
+ * n     address, modified UTF-8 as in DataOutput#writeUTF(String)
+ * 1     1 if the name follows, 0 otherwise
+ * n     name, modified UTF-8
+ * 4     RSSI [dBm]
+ * 8     time last seen in milliseconds since epoch
+ * 1     number of service UUIDs
+ * 16    each service UUID, most significant bits first
+ * </pre>
+ * All methods are thread safe.
+ * <p>
+ * Listeners are notified each time a device is seen, so that services connecting to devices may learn which of them
+ * are in range.
+ * </p>
+ */
+public class DeviceCache {
+	private static final int MAGIC = 0x4E524643; // NRFC
+	private static final short VERSION = 1;
+	private static final int MAX_SERVICE_UUIDS = 255;
+
+	public static final class Entry {
+		public final String address;
+		private String name;
+		private int rssi;
+		private long lastSeen;
+		private UUID[] serviceUuids;
+
+		private Entry(final String address) {
+			this.address = address;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public int getRssi() {
+			return rssi;
+		}
+
+		/**
+		 * Returns the time the device was last seen, in milliseconds since epoch.
+		 */
+		public long getLastSeen() {
+			return lastSeen;
+		}
+
+		private Entry copy() {
+			final Entry copy = new Entry(address);
+			copy.name = name;
+			copy.rssi = rssi;
+			copy.lastSeen = lastSeen;
+			copy.serviceUuids = serviceUuids; // replaced, never modified
+			return copy;
+		}
+
+		/**
+		 * Returns true if the device advertised the given service UUID when last seen.
+		 */
+		public boolean hasService(final UUID uuid) {
+			for (final UUID serviceUuid : serviceUuids)
+				if (serviceUuid.equals(uuid))
+					return true;
+			return false;
+		}
+	}
+
+	public interface Listener {
+		/**
+		 * Called when the device has been seen, in the thread that updated the cache, outside of the cache lock.
+		 *
+		 * @param address the device address
+		 * @param time    the time the device was seen, in milliseconds since epoch
+		 */
+		void onDeviceSeen(final String address, final long time);
+	}
+
+	private static final UUID[] NO_UUIDS = new UUID[0];
+
+	private final File mFile;
+	private final int mCapacity;
+	/** Devices in access order, the least recently seen first. */
+	private final LinkedHashMap<String, Entry> mEntries;
+	private boolean mModified;
+	private final List<Listener> mListeners = new CopyOnWriteArrayList<>();
+
+	/**
+	 * Creates the cache and loads the devices saved in the file, if it exists. A file that can't be read is ignored.
+	 *
+	 * @param file     the file the cache is saved to
+	 * @param capacity maximum number of devices kept
+	 */
+	public DeviceCache(final File file, final int capacity) {
+		mFile = file;
+		mCapacity = capacity;
+		mEntries = new LinkedHashMap<String, Entry>(capacity * 4 / 3 + 1, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(final Map.Entry<String, Entry> eldest) {
+				return size() > mCapacity;
+			}
+		};
+		try {
+			load();
+		} catch (final IOException e) {
+			mEntries.clear();
+		}
+	}
+
+	/**
+	 * Updates the device, or adds it if it's not in the cache yet.
+	 *
+	 * @param address      the device address
+	 * @param name         the advertised name, if null the previous name is kept
+	 * @param rssi         the RSSI [dBm]
+	 * @param serviceUuids the advertised service UUIDs, or null if the advertising packet did not contain any
+	 * @param time         the time the device was seen, in milliseconds since epoch
+	 */
+	public void update(final String address, final String name, final int rssi,
+					   final List<UUID> serviceUuids, final long time) {
+		synchronized (this) {
+			Entry entry = mEntries.get(address);
+			if (entry == null) {
+				entry = new Entry(address);
+				entry.serviceUuids = NO_UUIDS;
+				mEntries.put(address, entry);
+			}
+			if (name != null)
+				entry.name = name;
+			entry.rssi = rssi;
+			entry.lastSeen = Math.max(entry.lastSeen, time);
+			if (serviceUuids != null) {
+				// The number of UUIDs is saved in a single byte
+				final List<UUID> uuids = serviceUuids.subList(0, Math.min(serviceUuids.size(), MAX_SERVICE_UUIDS));
+				if (!sameUuids(entry.serviceUuids, uuids))
+					entry.serviceUuids = uuids.toArray(new UUID[uuids.size()]);
+			}
+			mModified = true;
+		}
+		for (final Listener listener : mListeners)
+			listener.onDeviceSeen(address, time);
+	}
+
+	public void addListener(final Listener listener) {
+		mListeners.add(listener);
+	}
+
+	public void removeListener(final Listener listener) {
+		mListeners.remove(listener);
+	}
+
+	private static boolean sameUuids(final UUID[] uuids, final List<UUID> list) {
+		if (uuids.length != list.size())
+			return false;
+		for (int i = 0; i < uuids.length; ++i)
+			if (!uuids[i].equals(list.get(i)))
+				return false;
+		return true;
+	}
+
+	/**
+	 * Returns copies of the devices seen after the given time, the most recently seen first.
+	 *
+	 * @param serviceUuid if not null, only devices advertising this service UUID are returned
+	 * @param since       time in milliseconds since epoch
+	 */
+	public synchronized List<Entry> getDevices(final UUID serviceUuid, final long since) {
+		final List<Entry> devices = new ArrayList<>();
+		for (final Entry entry : mEntries.values()) {
+			if (entry.lastSeen >= since && (serviceUuid == null || entry.hasService(serviceUuid)))
+				devices.add(entry.copy());
+		}
+		Collections.reverse(devices);
+		return devices;
+	}
+
+	public synchronized int size() {
+		return mEntries.size();
+	}
+
+	/**
+	 * Removes devices not seen since the given time.
+	 *
+	 * @param before time in milliseconds since epoch
+	 */
+	public synchronized void removeOlderThan(final long before) {
+		final Iterator<Entry> iterator = mEntries.values().iterator();
+		while (iterator.hasNext()) {
+			final Entry entry = iterator.next();
+			if (entry.lastSeen < before) {
+				iterator.remove();
+				mModified = true;
+			}
+		}
+	}
+
+	/**
+	 * Saves the cache if it has been modified since it was loaded or last saved. The file is replaced atomically,
+	 * so a crash during saving does not lose the previous content. The file is written outside of the lock, so this
+	 * may be called on a background thread while the cache is being updated.
+	 *
+	 * @throws IOException if writing the file failed
+	 */
+	public void save() throws IOException {
+		final Entry[] entries;
+		synchronized (this) {
+			if (!mModified)
+				return;
+			// Copy the entries, as they are modified in place
+			entries = new Entry[mEntries.size()];
+			int i = 0;
+			for (final Entry entry : mEntries.values())
+				entries[i++] = entry.copy();
+			mModified = false;
+		}
+
+		final File temp = new File(mFile.getPath() + ".tmp");
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+			out.writeInt(MAGIC);
+			out.writeShort(VERSION);
+			out.writeInt(entries.length);
+			for (final Entry entry : entries) {
+				out.writeUTF(entry.address);
+				out.writeBoolean(entry.name != null);
+				if (entry.name != null)
+					out.writeUTF(entry.name);
+				out.writeInt(entry.rssi);
+				out.writeLong(entry.lastSeen);
+				out.writeByte(entry.serviceUuids.length);
+				for (final UUID uuid : entry.serviceUuids) {
+					out.writeLong(uuid.getMostSignificantBits());
+					out.writeLong(uuid.getLeastSignificantBits());
+				}
+			}
+		} catch (final IOException e) {
+			synchronized (this) {
+				mModified = true;
+			}
+			throw e;
+		}
+		if (!temp.renameTo(mFile)) {
+			synchronized (this) {
+				mModified = true;
+			}
+			throw new IOException("Unable to rename " + temp + " to " + mFile);
+		}
+	}
+
+	private void load() throws IOException {
+		final DataInputStream in;
+		try {
+			in = new DataInputStream(new BufferedInputStream(new FileInputStream(mFile)));
+		} catch (final FileNotFoundException e) {
+			return;
+		}
+		try {
+			if (in.readInt() != MAGIC || in.readShort() != VERSION)
+				throw new IOException("Unsupported file: " + mFile);
+			final int count = in.readInt();
+			for (int i = 0; i < count; ++i) {
+				final Entry entry = new Entry(in.readUTF());
+				entry.name = in.readBoolean() ? in.readUTF() : null;
+				entry.rssi = in.readInt();
+				entry.lastSeen = in.readLong();
+				final int uuidCount = in.readUnsignedByte();
+				entry.serviceUuids = uuidCount == 0 ? NO_UUIDS : new UUID[uuidCount];
+				for (int j = 0; j < uuidCount; ++j)
+					entry.serviceUuids[j] = new UUID(in.readLong(), in.readLong());
+				mEntries.put(entry.address, entry);
+			}
+		} finally {
+			in.close();
+		}
+	}
+}
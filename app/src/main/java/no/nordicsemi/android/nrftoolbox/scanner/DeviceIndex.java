@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2015, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package no.nordicsemi.android.nrftoolbox.scanner;
+
+import java.util.Arrays;
+
+/**
+ * A map of values keyed by the 48-bit Bluetooth device address packed to a <code>long</code>, used to find scanned
+ * devices in O(1) when a batch of scan results arrives.
+ * <p>
+ * Open addressing with linear probing, so lookups do not allocate nor compare address Strings. Unlike the
+ * copy-on-write {@link no.nordicsemi.android.nrftoolbox.profile.multiconnect.DeviceRegistry} it is modified in place,
+ * as hundreds of devices may be added in a single batch. It is not thread safe. Entries can't be removed one by one,
+ * the scanner rebuilds the index when it removes stale devices.
+ * </p>
+ *
+ * @param <V> the value type
+ */
+public class DeviceIndex<V> {
+	/** Used to mark free slots. A 48-bit address never has all 64 bits set. */
+	private static final long FREE = -1L;
+
+	private long[] mKeys;
+	/** Values in slots. Generic arrays can't be created, only values of type V are stored, see {@link #valueAt(int)}. */
+	private Object[] mValues;
+	private int mSize;
+
+	public DeviceIndex() {
+		this(16);
+	}
+
+	public DeviceIndex(final int expectedSize) {
+		allocate(capacityFor(expectedSize));
+	}
+
+	public V get(final long address) {
+		final long[] keys = mKeys;
+		final int mask = keys.length - 1;
+		int slot = hash(address) & mask;
+		long key;
+		while ((key = keys[slot]) != FREE) {
+			if (key == address)
+				return valueAt(slot);
+			slot = (slot + 1) & mask;
+		}
+		return null;
+	}
+
+	/**
+	 * Adds or replaces the value for given address.
+	 *
+	 * @return the previous value or null
+	 */
+	public V put(final long address, final V value) {
+		// Keep the load factor at most 0.5 for short probe sequences
+		if ((mSize + 1) * 2 > mKeys.length)
+			rehash(mKeys.length * 2);
+
+		final long[] keys = mKeys;
+		final int mask = keys.length - 1;
+		int slot = hash(address) & mask;
+		long key;
+		while ((key = keys[slot]) != FREE) {
+			if (key == address) {
+				final V previous = valueAt(slot);
+				mValues[slot] = value;
+				return previous;
+			}
+			slot = (slot + 1) & mask;
+		}
+		keys[slot] = address;
+		mValues[slot] = value;
+		mSize++;
+		return null;
+	}
+
+	public int size() {
+		return mSize;
+	}
+
+	public void clear() {
+		Arrays.fill(mKeys, FREE);
+		Arrays.fill(mValues, null);
+		mSize = 0;
+	}
+
+	@SuppressWarnings("unchecked")
+	private V valueAt(final int slot) {
+		return (V) mValues[slot];
+	}
+
+	private void rehash(final int capacity) {
+		final long[] oldKeys = mKeys;
+		final Object[] oldValues = mValues;
+		allocate(capacity);
+		final int mask = capacity - 1;
+		for (int i = 0; i < oldKeys.length; ++i) {
+			if (oldKeys[i] != FREE) {
+				int slot = hash(oldKeys[i]) & mask;
+				while (mKeys[slot] != FREE)
+					slot = (slot + 1) & mask;
+				mKeys[slot] = oldKeys[i];
+				mValues[slot] = oldValues[i];
+			}
+		}
+	}
+
+	private void allocate(final int capacity) {
+		mKeys = new long[capacity];
+		mValues = new Object[capacity];
+		Arrays.fill(mKeys, FREE);
+	}
+
+	private static int capacityFor(final int size) {
+		int capacity = 8;
+		while (capacity < size * 2)
+			capacity <<= 1;
+		return capacity;
+	}
+
+	private static int hash(final long address) {
+		// Addresses of devices from one vendor share the upper bytes, mix all bits (finalizer of MurmurHash3)
+		long h = address;
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		return (int) h;
+	}
+}
@@ -21,36 +21,61 @@
  */
 package no.nordicsemi.android.nrftoolbox.scanner;
 
+import android.bluetooth.BluetoothAdapter;
 import android.bluetooth.BluetoothDevice;
 import android.content.Context;
+import android.os.SystemClock;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.BaseAdapter;
 import android.widget.ImageView;
+import android.widget.ListView;
 import android.widget.TextView;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Set;
 
 import no.nordicsemi.android.nrftoolbox.R;
+import no.nordicsemi.android.nrftoolbox.parser.AdvertisingData;
+import no.nordicsemi.android.nrftoolbox.parser.AdvertisingDataParser;
+import no.nordicsemi.android.nrftoolbox.profile.multiconnect.DeviceRegistry;
 import no.nordicsemi.android.support.v18.scanner.ScanResult;
 
 /**
  * DeviceListAdapter class is list adapter for showing scanned Devices name, address and RSSI image based on RSSI values.
+ * Devices are found by their address in a {@link DeviceIndex}. When a batch of scan results brings no new devices,
+ * only the visible rows of the changed devices are bound again, instead of redrawing the whole list.
+ * <p>
+ * The RSSI of each device is smoothed by a {@link RssiFilter}. Scanned devices are sorted by the smoothed RSSI using
+ * {@link ProximityRanking} with a hysteresis of {@link #RANKING_HYSTERESIS} dB, and removed when not seen for a while.
+ * </p>
  */
 public class DeviceListAdapter extends BaseAdapter {
 	private static final int TYPE_TITLE = 0;
 	private static final int TYPE_ITEM = 1;
 	private static final int TYPE_EMPTY = 2;
+	/** A device must be stronger than the one above by this many dB to take its place. */
+	private static final float RANKING_HYSTERESIS = 3.0f;
+	/** The Kalman filter follows devices seen rarely, for example with batched scan results, faster than the moving average. */
+	private static final int RSSI_FILTER_TYPE = RssiFilter.TYPE_KALMAN;
 
 	private final ArrayList<ExtendedBluetoothDevice> mListBondedValues = new ArrayList<>();
 	private final ArrayList<ExtendedBluetoothDevice> mListValues = new ArrayList<>();
+	/** Both bonded and scanned devices by their address. */
+	private final DeviceIndex<ExtendedBluetoothDevice> mIndex = new DeviceIndex<>();
+	/** Devices changed in the current batch. */
+	private ExtendedBluetoothDevice[] mChanged = new ExtendedBluetoothDevice[16];
+	/** Reused to decode the advertising data of each result. */
+	private final AdvertisingData mAdvertisingData = new AdvertisingData();
 	private final Context mContext;
+	private final ListView mListView;
 
-	public DeviceListAdapter(final Context context) {
+	public DeviceListAdapter(final Context context, final ListView listView) {
 		mContext = context;
+		mListView = listView;
 	}
 
 	/**
@@ -60,40 +85,137 @@ public class DeviceListAdapter extends BaseAdapter {
 	public void addBondedDevices(final Set<BluetoothDevice> devices) {
 		final List<ExtendedBluetoothDevice> bondedDevices = mListBondedValues;
 		for (BluetoothDevice device : devices) {
-			bondedDevices.add(new ExtendedBluetoothDevice(device));
+			final ExtendedBluetoothDevice bondedDevice = new ExtendedBluetoothDevice(device, RSSI_FILTER_TYPE);
+			bondedDevice.index = bondedDevices.size();
+			bondedDevices.add(bondedDevice);
+			mIndex.put(bondedDevice.key, bondedDevice);
 		}
 		notifyDataSetChanged();
 	}
 
+	/**
+	 * Adds devices from the {@link DeviceCache} to the list of not bonded devices. They are shown with the RSSI
+	 * they had when last seen, and are treated as seen now, so they are removed if the scanner does not find them
+	 * within the stale time of their {@link RssiFilter}. Bonded devices and devices already in the list are skipped.
+	 * @param entries the cached devices, the most recently seen first
+	 * @param adapter the Bluetooth adapter used to obtain the devices
+	 */
+	public void addCachedDevices(final List<DeviceCache.Entry> entries, final BluetoothAdapter adapter) {
+		final long now = SystemClock.elapsedRealtimeNanos();
+		boolean added = false;
+		for (final DeviceCache.Entry entry : entries) {
+			final long key = DeviceRegistry.toKey(entry.address);
+			if (mIndex.get(key) != null)
+				continue;
+			final ExtendedBluetoothDevice device = new ExtendedBluetoothDevice(adapter.getRemoteDevice(entry.address),
+					entry.getName(), entry.getRssi(), now, RSSI_FILTER_TYPE);
+			device.index = mListValues.size();
+			mListValues.add(device);
+			mIndex.put(device.key, device);
+			added = true;
+		}
+		if (added) {
+			if (ProximityRanking.sort(mListValues, RANKING_HYSTERESIS))
+				reindex();
+			notifyDataSetChanged();
+		}
+	}
+
 	/**
 	 * Updates the list of not bonded devices.
 	 * @param results list of results from the scanner
 	 */
 	public void update(final List<ScanResult> results) {
+		boolean added = expireDevices(SystemClock.elapsedRealtimeNanos());
+		int changedCount = 0;
 		for (final ScanResult result : results) {
-			final ExtendedBluetoothDevice device = findDevice(result);
+			AdvertisingDataParser.decode(result.getScanRecord() != null ? result.getScanRecord().getBytes() : null, mAdvertisingData);
+			final ExtendedBluetoothDevice device = mIndex.get(DeviceRegistry.toKey(result.getDevice().getAddress()));
 			if (device == null) {
-				mListValues.add(new ExtendedBluetoothDevice(result));
-			} else {
-				device.name = result.getScanRecord() != null ? result.getScanRecord().getDeviceName() : null;
-				device.rssi = result.getRssi();
+				final ExtendedBluetoothDevice newDevice = new ExtendedBluetoothDevice(result, mAdvertisingData, RSSI_FILTER_TYPE);
+				newDevice.index = mListValues.size();
+				mListValues.add(newDevice);
+				mIndex.put(newDevice.key, newDevice);
+				added = true;
+			} else if (device.update(result, mAdvertisingData) && !added) {
+				if (changedCount == mChanged.length)
+					mChanged = Arrays.copyOf(mChanged, changedCount * 2);
+				mChanged[changedCount++] = device;
 			}
 		}
-		notifyDataSetChanged();
+
+		if (ProximityRanking.sort(mListValues, RANKING_HYSTERESIS)) {
+			reindex();
+			added = true;
+		}
+
+		if (added) {
+			// New, removed or reordered rows shift the positions, the whole list must be laid out again
+			notifyDataSetChanged();
+		} else {
+			for (int i = 0; i < changedCount; ++i)
+				rebind(mChanged[i]);
+		}
+		Arrays.fill(mChanged, 0, changedCount, null);
 	}
 
-	private ExtendedBluetoothDevice findDevice(final ScanResult result) {
+	/**
+	 * Removes scanned devices that have not been advertising for a while.
+	 * @return true if any device was removed
+	 */
+	private boolean expireDevices(final long now) {
+		final ArrayList<ExtendedBluetoothDevice> devices = mListValues;
+		int size = 0;
+		for (int i = 0; i < devices.size(); ++i) {
+			final ExtendedBluetoothDevice device = devices.get(i);
+			if (!device.filter.isStale(now))
+				devices.set(size++, device);
+		}
+		if (size == devices.size())
+			return false;
+
+		// The index can't remove single entries, it's rebuilt instead. It happens rarely, devices expire after 10 seconds.
+		devices.subList(size, devices.size()).clear();
+		mIndex.clear();
 		for (final ExtendedBluetoothDevice device : mListBondedValues)
-			if (device.matches(result))
-				return device;
-		for (final ExtendedBluetoothDevice device : mListValues)
-			if (device.matches(result))
-				return device;
-		return null;
+			mIndex.put(device.key, device);
+		for (final ExtendedBluetoothDevice device : devices)
+			mIndex.put(device.key, device);
+		reindex();
+		return true;
+	}
+
+	private void reindex() {
+		final ArrayList<ExtendedBluetoothDevice> devices = mListValues;
+		for (int i = 0; i < devices.size(); ++i)
+			devices.get(i).index = i;
+	}
+
+	/**
+	 * Binds the row of the device again if it's visible.
+	 */
+	private void rebind(final ExtendedBluetoothDevice device) {
+		final int position = getPosition(device);
+		final int child = position + mListView.getHeaderViewsCount() - mListView.getFirstVisiblePosition();
+		if (child >= 0 && child < mListView.getChildCount()) {
+			final View view = mListView.getChildAt(child);
+			if (view.getTag() instanceof ViewHolder)
+				bindDevice((ViewHolder) view.getTag(), device);
+		}
+	}
+
+	private int getPosition(final ExtendedBluetoothDevice device) {
+		if (device.isBonded)
+			return device.index + 1; // 1 for the title
+		final int bondedCount = mListBondedValues.isEmpty() ? 0 : mListBondedValues.size() + 1; // 1 for the title
+		return bondedCount + device.index + 1; // 1 for the title
 	}
 
 	public void clearDevices() {
 		mListValues.clear();
+		mIndex.clear();
+		for (final ExtendedBluetoothDevice device : mListBondedValues)
+			mIndex.put(device.key, device);
 		notifyDataSetChanged();
 	}
 
@@ -189,23 +311,26 @@ public class DeviceListAdapter extends BaseAdapter {
 			}
 
 			final ExtendedBluetoothDevice device = (ExtendedBluetoothDevice) getItem(position);
-			final ViewHolder holder = (ViewHolder) view.getTag();
-			final String name = device.name;
-			holder.name.setText(name != null ? name : mContext.getString(R.string.not_available));
-			holder.address.setText(device.device.getAddress());
-			if (!device.isBonded || device.rssi != ExtendedBluetoothDevice.NO_RSSI) {
-				final int rssiPercent = (int) (100.0f * (127.0f + device.rssi) / (127.0f + 20.0f));
-				holder.rssi.setImageLevel(rssiPercent);
-				holder.rssi.setVisibility(View.VISIBLE);
-			} else {
-				holder.rssi.setVisibility(View.GONE);
-			}
+			bindDevice((ViewHolder) view.getTag(), device);
 			break;
 		}
 
 		return view;
 	}
 
+	private void bindDevice(final ViewHolder holder, final ExtendedBluetoothDevice device) {
+		final String name = device.name;
+		holder.name.setText(name != null ? name : mContext.getString(R.string.not_available));
+		holder.address.setText(device.device.getAddress());
+		if (!device.isBonded || device.smoothedRssi != ExtendedBluetoothDevice.NO_RSSI) {
+			final int rssiPercent = (int) (100.0f * (127.0f + device.smoothedRssi) / (127.0f + 20.0f));
+			holder.rssi.setImageLevel(rssiPercent);
+			holder.rssi.setVisibility(View.VISIBLE);
+		} else {
+			holder.rssi.setVisibility(View.GONE);
+		}
+	}
+
 	private class ViewHolder {
 		private TextView name;
 		private TextView address;
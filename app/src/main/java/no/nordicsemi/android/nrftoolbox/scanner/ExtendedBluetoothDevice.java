@@ -23,31 +23,89 @@ package no.nordicsemi.android.nrftoolbox.scanner;
 
 import android.bluetooth.BluetoothDevice;
 
+import no.nordicsemi.android.nrftoolbox.parser.AdvertisingData;
+import no.nordicsemi.android.nrftoolbox.profile.multiconnect.DeviceRegistry;
 import no.nordicsemi.android.support.v18.scanner.ScanResult;
 
-public class ExtendedBluetoothDevice {
+public class ExtendedBluetoothDevice implements ProximityRanking.Ranked {
 	/* package */ static final int NO_RSSI = -1000;
 	public final BluetoothDevice device;
+	/** The device address packed to a number, see {@link DeviceRegistry#toKey(String)}. */
+	/* package */ final long key;
+	/** Position of the device in its list in the adapter. */
+	/* package */ int index;
 	/** The name is not parsed by some Android devices, f.e. Sony Xperia Z1 with Android 4.3 (C6903). It needs to be parsed manually. */
 	public String name;
+	/** The last RSSI value received. */
 	public int rssi;
+	/** The smoothed RSSI, rounded, as shown in the list. */
+	/* package */ int smoothedRssi;
+	/* package */ final RssiFilter filter;
 	public boolean isBonded;
 
-	public ExtendedBluetoothDevice(final ScanResult scanResult) {
+	/**
+	 * Creates a device reported by the scanner.
+	 * @param data the advertising data of the scan result, decoded by {@link no.nordicsemi.android.nrftoolbox.parser.AdvertisingDataParser}
+	 */
+	public ExtendedBluetoothDevice(final ScanResult scanResult, final AdvertisingData data, final int filterType) {
 		this.device = scanResult.getDevice();
-		this.name = scanResult.getScanRecord() != null ? scanResult.getScanRecord().getDeviceName() : null;
+		this.key = DeviceRegistry.toKey(device.getAddress());
+		this.name = data.getName();
+		this.filter = new RssiFilter(filterType);
+		this.filter.add(scanResult.getRssi(), scanResult.getTimestampNanos());
 		this.rssi = scanResult.getRssi();
+		this.smoothedRssi = this.rssi;
 		this.isBonded = false;
 	}
 
-	public ExtendedBluetoothDevice(final BluetoothDevice device) {
+	/**
+	 * Creates a device found in the {@link DeviceCache}, before it is reported by the scanner.
+	 * @param timestampNanos the time to which the RSSI is assigned, in the elapsed real time base
+	 */
+	public ExtendedBluetoothDevice(final BluetoothDevice device, final String name, final int rssi, final long timestampNanos, final int filterType) {
 		this.device = device;
+		this.key = DeviceRegistry.toKey(device.getAddress());
+		this.name = name;
+		this.filter = new RssiFilter(filterType);
+		this.filter.add(rssi, timestampNanos);
+		this.rssi = rssi;
+		this.smoothedRssi = rssi;
+		this.isBonded = false;
+	}
+
+	public ExtendedBluetoothDevice(final BluetoothDevice device, final int filterType) {
+		this.device = device;
+		this.key = DeviceRegistry.toKey(device.getAddress());
 		this.name = device.getName();
+		this.filter = new RssiFilter(filterType);
 		this.rssi = NO_RSSI;
+		this.smoothedRssi = NO_RSSI;
 		this.isBonded = true;
 	}
 
 	public boolean matches(final ScanResult scanResult) {
 		return device.getAddress().equals(scanResult.getDevice().getAddress());
 	}
+
+	/**
+	 * Updates the name and RSSI from the new scan result of this device. The RSSI is passed through the filter.
+	 * @param scanResult the scan result
+	 * @param data the advertising data of the scan result, decoded by {@link no.nordicsemi.android.nrftoolbox.parser.AdvertisingDataParser}
+	 * @return true if the name or the smoothed RSSI changed and the row must be redrawn
+	 */
+	public boolean update(final ScanResult scanResult, final AdvertisingData data) {
+		final String name = data.getName();
+		this.rssi = scanResult.getRssi();
+		filter.add(rssi, scanResult.getTimestampNanos());
+		final int smoothedRssi = Math.round(filter.getRssi());
+		final boolean changed = smoothedRssi != this.smoothedRssi || (name != null ? !name.equals(this.name) : this.name != null);
+		this.name = name;
+		this.smoothedRssi = smoothedRssi;
+		return changed;
+	}
+
+	@Override
+	public float getRankingRssi() {
+		return filter.hasValue() ? filter.getRssi() : Float.NEGATIVE_INFINITY;
+	}
 }
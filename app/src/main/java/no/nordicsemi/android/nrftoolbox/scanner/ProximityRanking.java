@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2015, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package no.nordicsemi.android.nrftoolbox.scanner;
+
+import java.util.List;
+
+/**
+ * Sorts devices by their smoothed RSSI, strongest first, with hysteresis: a device overtakes the one before it only if
+ * its signal is stronger by more than the given margin. Devices with similar signals keep their order, so the rows
+ * don't swap places on every scan batch.
+ */
+public final class ProximityRanking {
+	public interface Ranked {
+		/**
+		 * Returns the value to sort by, in dBm, or {@link Float#NEGATIVE_INFINITY} if unknown.
+		 */
+		float getRankingRssi();
+	}
+
+	private ProximityRanking() {
+		// empty
+	}
+
+	/**
+	 * Sorts the list in place. It's an insertion sort, O(n) for a list that was sorted at the last batch and
+	 * only slightly changed, and it does not allocate memory.
+	 *
+	 * @param list       the list to sort
+	 * @param hysteresis the margin in dB
+	 * @return true if the order changed
+	 */
+	public static <T extends Ranked> boolean sort(final List<T> list, final float hysteresis) {
+		boolean changed = false;
+		final int size = list.size();
+		for (int i = 1; i < size; ++i) {
+			final T item = list.get(i);
+			final float rssi = item.getRankingRssi();
+			int j = i;
+			while (j > 0 && rssi > list.get(j - 1).getRankingRssi() + hysteresis) {
+				list.set(j, list.get(j - 1));
+				j--;
+			}
+			if (j != i) {
+				list.set(j, item);
+				changed = true;
+			}
+		}
+		return changed;
+	}
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2015, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package no.nordicsemi.android.nrftoolbox.scanner;
+
+/**
+ * A streaming filter of the RSSI values of a single device. It also estimates the advertising interval and keeps
+ * the time the device was last seen.
+ * <p>
+ * Two filters are available. {@link #TYPE_EWMA} is an exponentially weighted moving average with a fixed weight of
+ * each new value. {@link #TYPE_KALMAN} is a one-dimensional Kalman filter assuming a constant signal with
+ * measurement noise, whose uncertainty grows with the time between advertisements. This lets it follow a device
+ * seen rarely faster than the moving average. Each update is O(1) and does not allocate memory.
+ * </p>
+ */
+public class RssiFilter {
+	public static final int TYPE_EWMA = 0;
+	public static final int TYPE_KALMAN = 1;
+
+	/** Weight of a new value in the moving average. */
+	private static final float EWMA_ALPHA = 0.25f;
+	/** Variance of a single RSSI measurement [dBm^2], the RSSI of a static device varies by about 4 dB. */
+	private static final float KALMAN_MEASUREMENT_VARIANCE = 16.0f;
+	/** Variance of the signal change per second [dBm^2/s], a walking person changes the RSSI by a few dB per second. */
+	private static final float KALMAN_PROCESS_VARIANCE = 4.0f;
+	/** Weight of a new interval in the advertising interval estimate. */
+	private static final float INTERVAL_ALPHA = 0.125f;
+	/** A device is stale if not seen for this many estimated advertising intervals... */
+	private static final int STALE_INTERVALS = 5;
+	/** ...but not earlier than after this time [ns]. */
+	private static final long MIN_STALE_TIME = 10000000000L;
+
+	private final int mType;
+	private float mValue;
+	private float mVariance;
+	private int mCount;
+	private long mLastSeen;
+	private long mInterval;
+
+	public RssiFilter(final int type) {
+		mType = type;
+	}
+
+	/**
+	 * Adds a new RSSI value.
+	 *
+	 * @param rssi          the RSSI [dBm]
+	 * @param timestampNanos the time of the advertisement, as in ScanResult#getTimestampNanos()
+	 */
+	public void add(final int rssi, final long timestampNanos) {
+		if (mCount > 0) {
+			final long delta = timestampNanos - mLastSeen;
+			if (delta > 0) {
+				// Batched results may report a device once per batch, with the timestamp of the last packet
+				mInterval = mInterval == 0 ? delta : mInterval + (long) (INTERVAL_ALPHA * (delta - mInterval));
+			}
+		}
+
+		if (mCount == 0) {
+			mValue = rssi;
+			mVariance = KALMAN_MEASUREMENT_VARIANCE;
+		} else if (mType == TYPE_KALMAN) {
+			final float seconds = Math.max(0, timestampNanos - mLastSeen) / 1e9f;
+			final float predictedVariance = mVariance + KALMAN_PROCESS_VARIANCE * seconds;
+			final float gain = predictedVariance / (predictedVariance + KALMAN_MEASUREMENT_VARIANCE);
+			mValue += gain * (rssi - mValue);
+			mVariance = (1 - gain) * predictedVariance;
+		} else {
+			mValue += EWMA_ALPHA * (rssi - mValue);
+		}
+		mCount++;
+		mLastSeen = Math.max(mLastSeen, timestampNanos);
+	}
+
+	public boolean hasValue() {
+		return mCount > 0;
+	}
+
+	/**
+	 * Returns the smoothed RSSI [dBm].
+	 */
+	public float getRssi() {
+		return mValue;
+	}
+
+	/**
+	 * Returns the time of the last advertisement in nanoseconds, in the time base of ScanResult#getTimestampNanos().
+	 */
+	public long getLastSeen() {
+		return mLastSeen;
+	}
+
+	/**
+	 * Returns true if the device has not been seen for {@link #STALE_INTERVALS} advertising intervals,
+	 * and at least 10 seconds.
+	 *
+	 * @param nowNanos the current time, in the time base of ScanResult#getTimestampNanos()
+	 */
+	public boolean isStale(final long nowNanos) {
+		return mCount > 0 && nowNanos - mLastSeen > Math.max(MIN_STALE_TIME, STALE_INTERVALS * mInterval);
+	}
+}
@@ -28,6 +28,7 @@ import android.bluetooth.BluetoothDevice;
 import android.bluetooth.BluetoothManager;
 import android.content.Context;
 import android.content.DialogInterface;
+import android.content.Intent;
 import android.content.pm.PackageManager;
 import android.os.Bundle;
 import android.os.Handler;
@@ -49,6 +50,8 @@ import java.util.Set;
 import java.util.UUID;
 
 import no.nordicsemi.android.nrftoolbox.R;
+import no.nordicsemi.android.nrftoolbox.parser.AdvertisingData;
+import no.nordicsemi.android.nrftoolbox.parser.AdvertisingDataParser;
 import no.nordicsemi.android.support.v18.scanner.BluetoothLeScannerCompat;
 import no.nordicsemi.android.support.v18.scanner.ScanCallback;
 import no.nordicsemi.android.support.v18.scanner.ScanFilter;
@@ -59,24 +62,34 @@ import no.nordicsemi.android.support.v18.scanner.ScanSettings;
  * ScannerFragment class scan required BLE devices and shows them in a list. This class scans and filter devices with standard BLE Service UUID and devices with custom BLE Service UUID. It contains a
  * list and a button to scan/cancel. There is a interface {@link OnDeviceSelectedListener} which is implemented by activity in order to receive selected device. The scanning will continue to scan
  * for 5 seconds and then stop.
+ * Devices recently seen by the {@link BackgroundScannerService} are shown from its {@link DeviceCache} as soon as the scan starts.
  */
 public class ScannerFragment extends DialogFragment {
 	private final static String TAG = "ScannerFragment";
 
 	private final static String PARAM_UUID = "param_uuid";
 	private final static long SCAN_DURATION = 5000;
+	/** Devices from the cache seen within this time are shown before the scan finds them. */
+	private final static long CACHED_DEVICE_MAX_AGE = 5 * 60 * 1000L;
 
 	private final static int REQUEST_PERMISSION_REQ_CODE = 34; // any 8-bit number
 
 	private BluetoothAdapter mBluetoothAdapter;
 	private OnDeviceSelectedListener mListener;
 	private DeviceListAdapter mAdapter;
+	private DeviceCache mDeviceCache;
+	private final ArrayList<UUID> mServiceUuids = new ArrayList<>();
 	private final Handler mHandler = new Handler();
 	private Button mScanButton;
 
 	private View mPermissionRationale;
 
 	private ParcelUuid mUuid;
+	private AdvertisingFilter mFilter;
+	/** True if the scan results are filtered by {@link #mFilter} instead of the Bluetooth controller. */
+	private boolean mSoftwareFiltering;
+	private final AdvertisingData mAdvertisingData = new AdvertisingData();
+	private final ArrayList<ScanResult> mMatchingResults = new ArrayList<>();
 
 	private boolean mIsScanning = false;
 
@@ -132,9 +145,14 @@ public class ScannerFragment extends DialogFragment {
 		if (args.containsKey(PARAM_UUID)) {
 			mUuid = args.getParcelable(PARAM_UUID);
 		}
+		final AdvertisingFilter.Builder filter = new AdvertisingFilter.Builder();
+		if (mUuid != null)
+			filter.addServiceUuid(mUuid.getUuid());
+		mFilter = filter.build();
 
 		final BluetoothManager manager = (BluetoothManager) getActivity().getSystemService(Context.BLUETOOTH_SERVICE);
 		mBluetoothAdapter = manager.getAdapter();
+		mDeviceCache = BackgroundScannerService.getDeviceCache(getActivity());
 	}
 
 	@Override
@@ -151,7 +169,7 @@ public class ScannerFragment extends DialogFragment {
 		final ListView listview = dialogView.findViewById(android.R.id.list);
 
 		listview.setEmptyView(dialogView.findViewById(android.R.id.empty));
-		listview.setAdapter(mAdapter = new DeviceListAdapter(getActivity()));
+		listview.setAdapter(mAdapter = new DeviceListAdapter(getActivity(), listview));
 
 		builder.setTitle(R.string.scanner_title);
 		final AlertDialog dialog = builder.setView(dialogView).create();
@@ -194,6 +212,7 @@ public class ScannerFragment extends DialogFragment {
 			case REQUEST_PERMISSION_REQ_CODE: {
 				if (grantResults[0] == PackageManager.PERMISSION_GRANTED) {
 					// We have been granted the Manifest.permission.ACCESS_COARSE_LOCATION permission. Now we may proceed with scanning.
+					getActivity().startService(new Intent(getActivity(), BackgroundScannerService.class));
 					startScan();
 				} else {
 					mPermissionRationale.setVisibility(View.VISIBLE);
@@ -228,13 +247,19 @@ public class ScannerFragment extends DialogFragment {
 			mPermissionRationale.setVisibility(View.GONE);
 
 		mAdapter.clearDevices();
+		mAdapter.addCachedDevices(mDeviceCache.getDevices(mUuid != null ? mUuid.getUuid() : null,
+				System.currentTimeMillis() - CACHED_DEVICE_MAX_AGE), mBluetoothAdapter);
 		mScanButton.setText(R.string.scanner_action_cancel);
 
 		final BluetoothLeScannerCompat scanner = BluetoothLeScannerCompat.getScanner();
 		final ScanSettings settings = new ScanSettings.Builder()
 				.setScanMode(ScanSettings.SCAN_MODE_LOW_LATENCY).setReportDelay(1000).setUseHardwareBatchingIfSupported(false).build();
+		// Without offloaded filtering the scanner library would filter the results itself, parsing each of them into
+		// collections. The advertising data parser does the same in a single pass without allocating.
 		final List<ScanFilter> filters = new ArrayList<>();
-		filters.add(new ScanFilter.Builder().setServiceUuid(mUuid).build());
+		mSoftwareFiltering = !mBluetoothAdapter.isOffloadedFilteringSupported() || !mFilter.isSingleServiceUuid();
+		if (!mSoftwareFiltering)
+			filters.add(new ScanFilter.Builder().setServiceUuid(mUuid).build());
 		scanner.startScan(filters, settings, scanCallback);
 
 		mIsScanning = true;
@@ -266,8 +291,8 @@ public class ScannerFragment extends DialogFragment {
 		}
 
 		@Override
-		public void onBatchScanResults(final List<ScanResult> results) {
-			mAdapter.update(results);
+		public void onBatchScanResults(final List<ScanResult> allResults) {
+			mAdapter.update(filterAndCache(allResults));
 		}
 
 		@Override
@@ -276,6 +301,24 @@ public class ScannerFragment extends DialogFragment {
 		}
 	};
 
+	/**
+	 * Adds all results to the device cache, which is also used by scanners for other services, and returns those
+	 * matching {@link #mFilter}, or all if the filtering is done by the hardware. The advertising data of each
+	 * result are decoded once. The returned list is reused.
+	 */
+	private List<ScanResult> filterAndCache(final List<ScanResult> results) {
+		final ArrayList<ScanResult> matching = mMatchingResults;
+		matching.clear();
+		for (final ScanResult result : results) {
+			final byte[] bytes = result.getScanRecord() != null ? result.getScanRecord().getBytes() : null;
+			AdvertisingDataParser.decode(bytes, mAdvertisingData);
+			BackgroundScannerService.addToCache(mDeviceCache, result, mAdvertisingData, mServiceUuids);
+			if (!mSoftwareFiltering || mFilter.matches(mAdvertisingData, result.getRssi()))
+				matching.add(result);
+		}
+		return matching;
+	}
+
 	private void addBondedDevices() {
 		final Set<BluetoothDevice> devices = mBluetoothAdapter.getBondedDevices();
 		mAdapter.addBondedDevices(devices);
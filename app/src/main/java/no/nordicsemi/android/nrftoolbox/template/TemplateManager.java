@@ -30,15 +30,15 @@ import java.util.Deque;
 import java.util.LinkedList;
 import java.util.UUID;
 
-import no.nordicsemi.android.ble.BleManager;
 import no.nordicsemi.android.ble.Request;
-import no.nordicsemi.android.log.Logger;
 import no.nordicsemi.android.nrftoolbox.parser.TemplateParser;
+import no.nordicsemi.android.nrftoolbox.profile.RecordingBleManager;
+import no.nordicsemi.android.nrftoolbox.utility.DeferredLogger;
 
 /**
  * Modify to template manager to match your requirements.
  */
-public class TemplateManager extends BleManager<TemplateManagerCallbacks> {
+public class TemplateManager extends RecordingBleManager<TemplateManagerCallbacks> {
 	private static final String TAG = "TemplateManager";
 
 	/** The service UUID */
@@ -61,7 +61,7 @@ public class TemplateManager extends BleManager<TemplateManagerCallbacks> {
 	/**
 	 * BluetoothGatt callbacks for connection/disconnection, service discovery, receiving indication, etc
 	 */
-	private final BleManagerGattCallback mGattCallback = new BleManagerGattCallback() {
+	private final BleManagerGattCallback mGattCallback = new RecordingGattCallback() {
 
 		@Override
 		protected Deque<Request> initGatt(final BluetoothGatt gatt) {
@@ -97,10 +97,12 @@ public class TemplateManager extends BleManager<TemplateManagerCallbacks> {
 
 		@Override
 		protected void onCharacteristicNotified(final BluetoothGatt gatt, final BluetoothGattCharacteristic characteristic) {
+			super.onCharacteristicNotified(gatt, characteristic);
+
 			// TODO this method is called when a notification has been received
 			// This method may be removed from this class if not required
 
-			Logger.a(mLogSession, "\"" + TemplateParser.parse(characteristic) + "\" received");
+			DeferredLogger.received(mLogSession, TemplateParser::parse, characteristic.getValue());
 
 			int value;
 			final int flags = characteristic.getIntValue(BluetoothGattCharacteristic.FORMAT_UINT8, 0);
@@ -115,18 +117,24 @@ public class TemplateManager extends BleManager<TemplateManagerCallbacks> {
 
 		@Override
 		protected void onCharacteristicIndicated(final BluetoothGatt gatt, final BluetoothGattCharacteristic characteristic) {
+			super.onCharacteristicIndicated(gatt, characteristic);
+
 			// TODO this method is called when an indication has been received
 			// This method may be removed from this class if not required
 		}
 
 		@Override
 		protected void onCharacteristicRead(final BluetoothGatt gatt, final BluetoothGattCharacteristic characteristic) {
+			super.onCharacteristicRead(gatt, characteristic);
+
 			// TODO this method is called when the characteristic has been read
 			// This method may be removed from this class if not required
 		}
 
 		@Override
 		protected void onCharacteristicWrite(final BluetoothGatt gatt, final BluetoothGattCharacteristic characteristic) {
+			super.onCharacteristicWrite(gatt, characteristic);
+
 			// TODO this method is called when the characteristic has been written
 			// This method may be removed from this class if not required
 		}
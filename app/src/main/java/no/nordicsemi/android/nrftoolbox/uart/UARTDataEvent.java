@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2015, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.nrftoolbox.uart;
+
+import android.bluetooth.BluetoothDevice;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import no.nordicsemi.android.nrftoolbox.event.PooledEvent;
+
+/**
+ * Data received from or sent to the UART device, published on {@link UARTService#DATA_EVENTS}.
+ * Received data is kept as bytes and decoded only when {@link #getText()} is called.
+ */
+public class UARTDataEvent extends PooledEvent {
+	public BluetoothDevice device;
+	/** True if the data has been sent to the device, false if it has been received. */
+	public boolean sent;
+
+	private byte[] mData = new byte[UARTReceiveBuffer.MAX_PACKET_SIZE];
+	private int mLength;
+	private String mText;
+
+	/**
+	 * Copies the remaining bytes of the buffer. The position of the buffer is not changed.
+	 */
+	void setData(final ByteBuffer data) {
+		final int length = data.remaining();
+		if (mData.length < length)
+			mData = new byte[length];
+		data.duplicate().get(mData, 0, length);
+		mLength = length;
+		mText = null;
+	}
+
+	void setText(final String text) {
+		mText = text;
+		mLength = -1;
+	}
+
+	/**
+	 * Returns the data as UTF-8 text.
+	 */
+	public String getText() {
+		if (mText == null)
+			mText = new String(mData, 0, mLength, StandardCharsets.UTF_8);
+		return mText;
+	}
+
+	/**
+	 * Returns the number of bytes of the data, see {@link #getData()}.
+	 */
+	public int getLength() {
+		ensureData();
+		return mLength;
+	}
+
+	/**
+	 * Returns the internal buffer with the data. Only the first {@link #getLength()} bytes are valid.
+	 */
+	public byte[] getData() {
+		ensureData();
+		return mData;
+	}
+
+	private void ensureData() {
+		if (mLength < 0) {
+			final byte[] bytes = mText.getBytes(StandardCharsets.UTF_8);
+			if (mData.length < bytes.length)
+				mData = new byte[bytes.length];
+			System.arraycopy(bytes, 0, mData, 0, bytes.length);
+			mLength = bytes.length;
+		}
+	}
+
+	@Override
+	protected void onRecycle() {
+		device = null;
+		mText = null;
+	}
+}
@@ -29,32 +29,38 @@ import android.content.Context;
 import android.text.TextUtils;
 
 import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
 import java.util.Deque;
 import java.util.LinkedList;
 import java.util.UUID;
 
-import no.nordicsemi.android.ble.BleManager;
 import no.nordicsemi.android.ble.Request;
 import no.nordicsemi.android.log.Logger;
+import no.nordicsemi.android.nrftoolbox.profile.RecordingBleManager;
+import no.nordicsemi.android.nrftoolbox.uart.framing.UARTFramer;
+import no.nordicsemi.android.nrftoolbox.utility.DeferredLogger;
 
-public class UARTManager extends BleManager<UARTManagerCallbacks> {
+public class UARTManager extends RecordingBleManager<UARTManagerCallbacks> {
 	/** Nordic UART Service UUID */
 	private final static UUID UART_SERVICE_UUID = UUID.fromString("6E400001-B5A3-F393-E0A9-E50E24DCCA9E");
 	/** RX characteristic UUID */
 	private final static UUID UART_RX_CHARACTERISTIC_UUID = UUID.fromString("6E400002-B5A3-F393-E0A9-E50E24DCCA9E");
 	/** TX characteristic UUID */
 	private final static UUID UART_TX_CHARACTERISTIC_UUID = UUID.fromString("6E400003-B5A3-F393-E0A9-E50E24DCCA9E");
-	/** The maximum packet size is 20 bytes. */
-	private static final int MAX_PACKET_SIZE = 20;
+	/** The maximum number of messages waiting to be sent. Messages sent when the queue is full are rejected. */
+	private static final int MAX_QUEUED_MESSAGES = 64;
+	/** The maximum number of bytes waiting to be sent. */
+	private static final int MAX_QUEUED_BYTES = 64 * 1024;
 
 	private BluetoothGatt mGatt;
 	private BluetoothGattCharacteristic mRXCharacteristic, mTXCharacteristic;
-	private byte[] mOutgoingBuffer;
-	private int mBufferOffset;
-	private int supportedMTU = MAX_PACKET_SIZE;
+	private final UARTTransmitEngine mTransmitEngine;
+	private final UARTReceiveBuffer mReceiveBuffer = new UARTReceiveBuffer();
+	private volatile UARTFramer mFramer;
 
 	public UARTManager(final Context context) {
 		super(context);
+		mTransmitEngine = new UARTTransmitEngine(mPacketWriter, mTransmitListener, MAX_QUEUED_MESSAGES, MAX_QUEUED_BYTES);
 	}
 
 	@Override
@@ -65,7 +71,7 @@ public class UARTManager extends BleManager<UARTManagerCallbacks> {
 	/**
 	 * BluetoothGatt callbacks for connection/disconnection, service discovery, receiving indication, etc
 	 */
-	private final BleManagerGattCallback mGattCallback = new BleManagerGattCallback() {
+	private final BleManagerGattCallback mGattCallback = new RecordingGattCallback() {
 
 		@Override
 		protected Deque<Request> initGatt(final BluetoothGatt gatt) {
@@ -90,10 +96,13 @@ public class UARTManager extends BleManager<UARTManagerCallbacks> {
 				writeRequest = (rxProperties & BluetoothGattCharacteristic.PROPERTY_WRITE) > 0;
 				writeCommand = (rxProperties & BluetoothGattCharacteristic.PROPERTY_WRITE_NO_RESPONSE) > 0;
 
-				// Set the WRITE REQUEST type when the characteristic supports it. This will allow to send long write (also if the characteristic support it).
-				// In case there is no WRITE REQUEST property, this manager will divide texts longer then 20 bytes into up to 20 bytes chunks.
-				if (writeRequest)
+				// Prefer WRITE COMMAND when the characteristic supports it. This allows to pipeline packets instead of waiting for a response to each of them.
+				// Otherwise WRITE REQUEST is used and the data are sent one packet at a time. In both cases the data are divided into MTU-3 bytes chunks.
+				if (writeCommand)
+					mRXCharacteristic.setWriteType(BluetoothGattCharacteristic.WRITE_TYPE_NO_RESPONSE);
+				else if (writeRequest)
 					mRXCharacteristic.setWriteType(BluetoothGattCharacteristic.WRITE_TYPE_DEFAULT);
+				mTransmitEngine.setWriteWithoutResponse(writeCommand, UARTTransmitEngine.DEFAULT_CREDITS);
 			}
 
 			return mRXCharacteristic != null && mTXCharacteristic != null && (writeRequest || writeCommand);
@@ -103,47 +112,84 @@ public class UARTManager extends BleManager<UARTManagerCallbacks> {
 		protected void onDeviceDisconnected() {
 			mRXCharacteristic = null;
 			mTXCharacteristic = null;
+			mTransmitEngine.reset();
+			final UARTFramer framer = mFramer;
+			if (framer != null)
+				framer.reset();
 		}
 
 		@Override
 		public void onCharacteristicWrite(final BluetoothGatt gatt, final BluetoothGattCharacteristic characteristic) {
-			// When the whole buffer has been sent
-			if (mOutgoingBuffer == null)
-				return;
-			final byte[] buffer = mOutgoingBuffer;
-			if (mBufferOffset == buffer.length) {
-				try {
-					final String data = new String(buffer, "UTF-8");
-					Logger.a(mLogSession, "\"" + data + "\" sent");
-					mCallbacks.onDataSent(gatt.getDevice(), data);
-				} catch (final UnsupportedEncodingException e) {
-					// do nothing
-				}
-				mOutgoingBuffer = null;
-			} else { // Otherwise...
-				final int length = Math.min(buffer.length - mBufferOffset, MAX_PACKET_SIZE);
-				enqueue(Request.newWriteRequest(mRXCharacteristic, buffer, mBufferOffset, length));
-				mBufferOffset += length;
-			}
+			super.onCharacteristicWrite(gatt, characteristic);
+
+			// Each confirmed packet returns a credit to the transmit engine, which will send the next one
+			if (!isReplaying())
+				mTransmitEngine.onPacketWritten();
 		}
 
 		@Override
 		public void onCharacteristicNotified(final BluetoothGatt gatt, final BluetoothGattCharacteristic characteristic) {
-			final String data = characteristic.getStringValue(0);
-			Logger.a(mLogSession, "\"" + data + "\" received");
-			mCallbacks.onDataReceived(gatt.getDevice(), data);
+			super.onCharacteristicNotified(gatt, characteristic);
+
+			final ByteBuffer data = mReceiveBuffer.put(characteristic.getValue());
+			// When a framer is set, the data are reported when a whole frame has been received
+			final UARTFramer framer = mFramer;
+			if (framer != null)
+				framer.accept(data);
+			else
+				onDataReceived(data);
 		}
 
-			@Override
+		@Override
 		public void onMtuChanged(BluetoothGatt gatt, int mtu, int status) {
 			super.onMtuChanged(gatt, mtu, status);
 
 			if (status == BluetoothGatt.GATT_SUCCESS) {
-				supportedMTU = mtu;
+				mTransmitEngine.setMtu(mtu);
 			}
 		}
 	};
 
+	/**
+	 * Reports a received packet, or a frame if a framer is set, to the callbacks.
+	 * @param data the received data
+	 */
+	private void onDataReceived(final ByteBuffer data) {
+		// The text is decoded only if it is going to be logged
+		DeferredLogger.received(mLogSession, UARTReceiveBuffer::decode, data);
+		mCallbacks.onDataReceived(mGatt.getDevice(), data);
+	}
+
+	/**
+	 * Enqueues packets given by the transmit engine as write requests. The write type has been set on the RX characteristic during service discovery.
+	 */
+	private final UARTTransmitEngine.PacketWriter mPacketWriter = (buffer, offset, length, withoutResponse) -> {
+		final BluetoothGattCharacteristic characteristic = mRXCharacteristic;
+		if (characteristic != null)
+			enqueue(Request.newWriteRequest(characteristic, buffer, offset, length));
+	};
+
+	private final UARTTransmitEngine.Listener mTransmitListener = new UARTTransmitEngine.Listener() {
+		@Override
+		public void onMessageSent(final byte[] message) {
+			try {
+				final String data = new String(message, "UTF-8");
+				DeferredLogger.sent(mLogSession, String::toString, data);
+				mCallbacks.onDataSent(mGatt.getDevice(), data);
+			} catch (final UnsupportedEncodingException e) {
+				// do nothing
+			}
+		}
+
+		@Override
+		public void onQueueDrained(final long bytes, final long durationMillis) {
+			if (durationMillis > 0)
+				Logger.d(mLogSession, bytes + " bytes sent in " + durationMillis + " ms (" + (bytes * 1000 / durationMillis) + " B/s)");
+			else
+				Logger.d(mLogSession, bytes + " bytes sent");
+		}
+	};
+
 	@Override
 	protected boolean shouldAutoConnect() {
 		// We want the connection to be kept
@@ -156,59 +202,48 @@ public class UARTManager extends BleManager<UARTManagerCallbacks> {
 	}
 
 	/**
-	 * Sends the given text to RX characteristic.
-	 * @param bytes the text to be sent
+	 * Sets the framer used to reassemble the received packets into frames. When set, the callbacks are notified about whole frames
+	 * instead of single packets. By default no framer is set and each packet is reported unchanged.
+	 * @param framer the framer, or null to report each packet separately
+	 */
+	public void setFramer(final UARTFramer framer) {
+		final UARTFramer oldFramer = mFramer;
+		if (oldFramer != null)
+			oldFramer.setFrameListener(null);
+		if (framer != null) {
+			framer.reset();
+			framer.setFrameListener(this::onDataReceived);
+		}
+		mFramer = framer;
+	}
+
+	/**
+	 * Returns the average UART throughput measured while sending data.
+	 * @return throughput in bytes per second
+	 */
+	public long getThroughput() {
+		return mTransmitEngine.getThroughput();
+	}
+
+	/**
+	 * Sends the given bytes to RX characteristic. The data are queued if another message is being sent.
+	 * @param bytes the bytes to be sent
 	 */
 	public void send(final byte [] bytes) {
 		// Are we connected?
-		if (mRXCharacteristic == null)
+		if (mRXCharacteristic == null || bytes == null || bytes.length == 0)
 			return;
 
-		// An outgoing buffer may not be null if there is already another packet being sent. We do nothing in this case.
-		if (bytes.length != 0 && mOutgoingBuffer == null) {
-			mBufferOffset = 0;
-
-			// Depending on whether the characteristic has the WRITE REQUEST property or not, we will either send it as it is (hoping the long write is implemented),
-			// or divide it into up to 20 bytes chunks and send them one by one.
-			final boolean writeRequest = (mRXCharacteristic.getProperties() & BluetoothGattCharacteristic.PROPERTY_WRITE) > 0;
-
-			if (!writeRequest) { // no WRITE REQUEST property
-				final int length = Math.min(bytes.length, supportedMTU);
-				mBufferOffset += length;
-				enqueue(Request.newWriteRequest(mRXCharacteristic, bytes, 0, length));
-			} else { // there is WRITE REQUEST property, let's try Long Write
-				mBufferOffset = bytes.length;
-				enqueue(Request.newWriteRequest(mRXCharacteristic, bytes, 0, bytes.length));
-			}
-		}
+		if (!mTransmitEngine.offer(bytes))
+			Logger.w(mLogSession, "Outgoing queue full, " + bytes.length + " bytes dropped");
 	}
 
 	/**
-	 * Sends the given text to RX characteristic.
+	 * Sends the given text to RX characteristic. The text is queued if another message is being sent.
 	 * @param text the text to be sent
 	 */
 	public void send(final String text) {
-		// Are we connected?
-		if (mRXCharacteristic == null)
-			return;
-
-		// An outgoing buffer may not be null if there is already another packet being sent. We do nothing in this case.
-		if (!TextUtils.isEmpty(text) && mOutgoingBuffer == null) {
-			final byte[] buffer = mOutgoingBuffer = text.getBytes();
-			mBufferOffset = 0;
-
-			// Depending on whether the characteristic has the WRITE REQUEST property or not, we will either send it as it is (hoping the long write is implemented),
-			// or divide it into up to 20 bytes chunks and send them one by one.
-			final boolean writeRequest = (mRXCharacteristic.getProperties() & BluetoothGattCharacteristic.PROPERTY_WRITE) > 0;
-
-			if (!writeRequest) { // no WRITE REQUEST property
-				final int length = Math.min(buffer.length, MAX_PACKET_SIZE);
-				mBufferOffset += length;
-				enqueue(Request.newWriteRequest(mRXCharacteristic, buffer, 0, length));
-			} else { // there is WRITE REQUEST property, let's try Long Write
-				mBufferOffset = buffer.length;
-				enqueue(Request.newWriteRequest(mRXCharacteristic, buffer, 0, buffer.length));
-			}
-		}
+		if (!TextUtils.isEmpty(text))
+			send(text.getBytes());
 	}
 }
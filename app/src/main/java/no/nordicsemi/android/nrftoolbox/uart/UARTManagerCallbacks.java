@@ -24,10 +24,28 @@ package no.nordicsemi.android.nrftoolbox.uart;
 
 import android.bluetooth.BluetoothDevice;
 
+import java.nio.ByteBuffer;
+
 import no.nordicsemi.android.ble.BleManagerCallbacks;
 
 public interface UARTManagerCallbacks extends BleManagerCallbacks {
 
+	/**
+	 * Called when a packet, or a whole frame if a framer has been set, has been received from the TX characteristic.
+	 * The buffer is reused for following packets, so it must be copied if kept after this method returns.
+	 * The default implementation decodes the data as UTF-8 and calls {@link #onDataReceived(BluetoothDevice, String)}.
+	 * @param device the device that sent the data
+	 * @param data the received bytes, between position and limit
+	 */
+	default void onDataReceived(final BluetoothDevice device, final ByteBuffer data) {
+		onDataReceived(device, UARTReceiveBuffer.decode(data));
+	}
+
+	/**
+	 * Called with the received data decoded as a String, unless {@link #onDataReceived(BluetoothDevice, ByteBuffer)} is overridden.
+	 * @param device the device that sent the data
+	 * @param data the received text
+	 */
 	void onDataReceived(final BluetoothDevice device, final String data);
 
 	void onDataSent(final BluetoothDevice device, final String data);
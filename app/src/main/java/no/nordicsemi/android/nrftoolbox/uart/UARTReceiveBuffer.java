@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2015, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.nrftoolbox.uart;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A pool of receive buffers carved out of a single byte slab. Each received packet is copied into the next slot
+ * and exposed as a {@link ByteBuffer} view, so no objects are allocated per notification. Consumers must not modify the buffer content.
+ * <p>
+ * Slots are reused in a round-robin manner. A buffer given to a callback is valid until {@link #getSlotCount()}
+ * more packets are received, so consumers that keep the data for longer, or pass it to another thread, must copy it.
+ * </p>
+ */
+public class UARTReceiveBuffer {
+	/** The maximum length of an attribute value. */
+	public static final int MAX_PACKET_SIZE = 512;
+	/** Default number of slots in the pool. */
+	public static final int DEFAULT_SLOT_COUNT = 16;
+
+	private final byte[] mSlab;
+	private final ByteBuffer[] mSlots;
+	private final int mSlotSize;
+	private int mNext;
+
+	public UARTReceiveBuffer() {
+		this(DEFAULT_SLOT_COUNT, MAX_PACKET_SIZE);
+	}
+
+	/**
+	 * Creates the pool.
+	 * @param slotCount number of buffers in the pool
+	 * @param slotSize size of each buffer, in bytes
+	 */
+	public UARTReceiveBuffer(final int slotCount, final int slotSize) {
+		if (slotCount <= 0 || slotSize <= 0)
+			throw new IllegalArgumentException("Slot count and size must be positive");
+		mSlotSize = slotSize;
+		mSlab = new byte[slotCount * slotSize];
+		mSlots = new ByteBuffer[slotCount];
+		for (int i = 0; i < slotCount; ++i) {
+			mSlots[i] = ByteBuffer.wrap(mSlab, i * slotSize, slotSize).slice();
+		}
+	}
+
+	/**
+	 * Returns the number of slots in the pool.
+	 * @return number of packets after which a buffer is reused
+	 */
+	public int getSlotCount() {
+		return mSlots.length;
+	}
+
+	/**
+	 * Copies the value into the next slot and returns a view of it. Values longer than the slot size are truncated.
+	 * @param value the received value, may be null
+	 * @return the buffer with position 0 and limit set to the value length
+	 */
+	public ByteBuffer put(final byte[] value) {
+		final int length = value != null ? Math.min(value.length, mSlotSize) : 0;
+		final int index = mNext;
+		mNext = (index + 1) % mSlots.length;
+
+		if (length > 0)
+			System.arraycopy(value, 0, mSlab, index * mSlotSize, length);
+		final ByteBuffer slot = mSlots[index];
+		slot.clear();
+		slot.limit(length);
+		return slot;
+	}
+
+	/**
+	 * Decodes the remaining bytes of the buffer as UTF-8 text. The position of the buffer is not changed.
+	 * @param data the buffer
+	 * @return the decoded text
+	 */
+	public static String decode(final ByteBuffer data) {
+		if (data.hasArray())
+			return new String(data.array(), data.arrayOffset() + data.position(), data.remaining(), StandardCharsets.UTF_8);
+		final byte[] copy = new byte[data.remaining()];
+		data.duplicate().get(copy);
+		return new String(copy, StandardCharsets.UTF_8);
+	}
+}
@@ -32,7 +32,6 @@ import android.content.Intent;
 import android.content.IntentFilter;
 import android.support.annotation.NonNull;
 import android.support.v4.app.NotificationCompat;
-import android.support.v4.content.LocalBroadcastManager;
 import android.text.TextUtils;
 import android.util.Log;
 
@@ -42,17 +41,26 @@ import com.google.android.gms.wearable.Node;
 import com.google.android.gms.wearable.NodeApi;
 import com.google.android.gms.wearable.Wearable;
 
+import java.nio.ByteBuffer;
+
 import no.nordicsemi.android.ble.BleManager;
 import no.nordicsemi.android.log.Logger;
 import no.nordicsemi.android.nrftoolbox.FeaturesActivity;
 import no.nordicsemi.android.nrftoolbox.R;
 import no.nordicsemi.android.nrftoolbox.ToolboxApplication;
+import no.nordicsemi.android.nrftoolbox.event.EventBus;
+import no.nordicsemi.android.nrftoolbox.event.LocalBroadcastBridge;
 import no.nordicsemi.android.nrftoolbox.profile.BleProfileService;
+import no.nordicsemi.android.nrftoolbox.uart.framing.UARTFramer;
 import no.nordicsemi.android.nrftoolbox.wearable.common.Constants;
 
 public class UARTService extends BleProfileService implements UARTManagerCallbacks {
 	private static final String TAG = "UARTService";
 
+	/** Data received from and sent to the device. Subscribe with an executor to be notified on the main thread. */
+	public static final EventBus<UARTDataEvent> DATA_EVENTS = new EventBus<>(UARTDataEvent::new);
+
+	/** Local broadcasts sent only when the broadcast bridge is enabled, see {@link #setBroadcastBridgeEnabled(Context, boolean)}. */
 	public static final String BROADCAST_UART_TX = "no.nordicsemi.android.nrftoolbox.uart.BROADCAST_UART_TX";
 	public static final String BROADCAST_UART_RX = "no.nordicsemi.android.nrftoolbox.uart.BROADCAST_UART_RX";
 	public static final String EXTRA_DATA = "no.nordicsemi.android.nrftoolbox.uart.EXTRA_DATA";
@@ -73,6 +81,8 @@ public class UARTService extends BleProfileService implements UARTManagerCallbac
 	private final static int OPEN_ACTIVITY_REQ = 67; // random
 	private final static int DISCONNECT_REQ = 97; // random
 
+	private static LocalBroadcastBridge<UARTDataEvent> sBridge;
+
 	private GoogleApiClient mGoogleApiClient;
 	private UARTManager mManager;
 
@@ -86,6 +96,44 @@ public class UARTService extends BleProfileService implements UARTManagerCallbac
 		public void send(final String text) {
 			mManager.send(text);
 		}
+
+		/**
+		 * Sets the framer used to reassemble received packets into messages, e.g. {@link no.nordicsemi.android.nrftoolbox.uart.framing.EolFramer}.
+		 * By default lines terminated with LF are reassembled.
+		 * @param framer the framer, or null to treat each packet as a complete message
+		 */
+		public void setFramer(final UARTFramer framer) {
+			mManager.setFramer(framer);
+		}
+	}
+
+	/**
+	 * Enables or disables sending {@link #BROADCAST_UART_RX} and {@link #BROADCAST_UART_TX} for each event.
+	 * The broadcasts are disabled by default, subscribe to {@link #DATA_EVENTS} instead.
+	 *
+	 * @param context the context
+	 * @param enabled true to send the broadcasts
+	 */
+	public static synchronized void setBroadcastBridgeEnabled(@NonNull final Context context, final boolean enabled) {
+		if (enabled == (sBridge != null))
+			return;
+
+		if (enabled) {
+			sBridge = new LocalBroadcastBridge<UARTDataEvent>(context.getApplicationContext()) {
+				@NonNull
+				@Override
+				protected Intent createIntent(@NonNull final UARTDataEvent event) {
+					final Intent broadcast = new Intent(event.sent ? BROADCAST_UART_TX : BROADCAST_UART_RX);
+					broadcast.putExtra(EXTRA_DEVICE, event.device);
+					broadcast.putExtra(EXTRA_DATA, event.getText());
+					return broadcast;
+				}
+			};
+			DATA_EVENTS.subscribe(sBridge);
+		} else {
+			DATA_EVENTS.unsubscribe(sBridge);
+			sBridge = null;
+		}
 	}
 
 	@Override
@@ -171,12 +219,18 @@ public class UARTService extends BleProfileService implements UARTManagerCallbac
 	}
 
 	@Override
-	public void onDataReceived(final BluetoothDevice device, final String data) {
-		final Intent broadcast = new Intent(BROADCAST_UART_RX);
-		broadcast.putExtra(EXTRA_DEVICE, getBluetoothDevice());
-		broadcast.putExtra(EXTRA_DATA, data);
-		LocalBroadcastManager.getInstance(this).sendBroadcast(broadcast);
+	public void onDataReceived(final BluetoothDevice device, final ByteBuffer data) {
+		final UARTDataEvent event = DATA_EVENTS.obtain();
+		event.device = getBluetoothDevice();
+		event.sent = false;
+		event.setData(data);
+		DATA_EVENTS.publish(event);
+
+		onDataReceived(device, UARTReceiveBuffer.decode(data));
+	}
 
+	@Override
+	public void onDataReceived(final BluetoothDevice device, final String data) {
 		// send the data received to other apps, e.g. the Tasker
 		final Intent globalBroadcast = new Intent(ACTION_RECEIVE);
 		globalBroadcast.putExtra(BluetoothDevice.EXTRA_DEVICE, getBluetoothDevice());
@@ -186,10 +240,11 @@ public class UARTService extends BleProfileService implements UARTManagerCallbac
 
 	@Override
 	public void onDataSent(final BluetoothDevice device, final String data) {
-		final Intent broadcast = new Intent(BROADCAST_UART_TX);
-		broadcast.putExtra(EXTRA_DEVICE, getBluetoothDevice());
-		broadcast.putExtra(EXTRA_DATA, data);
-		LocalBroadcastManager.getInstance(this).sendBroadcast(broadcast);
+		final UARTDataEvent event = DATA_EVENTS.obtain();
+		event.device = getBluetoothDevice();
+		event.sent = true;
+		event.setText(data);
+		DATA_EVENTS.publish(event);
 	}
 
 	/**
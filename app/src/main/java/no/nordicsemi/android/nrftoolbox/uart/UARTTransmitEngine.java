@@ -0,0 +1,304 @@
+/*
+ * Copyright (c) 2015, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.nrftoolbox.uart;
+
+/**
+ * The UART transmit engine keeps a bounded queue of outgoing messages and slices them into packets fitting in the current MTU.
+ * When the RX characteristic supports WRITE WITHOUT RESPONSE, up to {@link #getMaxCredits()} packets are kept in flight at the same time.
+ * Each packet written returns a credit via {@link #onPacketWritten()}, which allows the next packet to be sent.
+ * <p>
+ * This class does not depend on the Android framework, so it may be driven by any {@link PacketWriter}, e.g. a fake GATT in JVM tests.
+ * All public methods are synchronized, as packets are written from the main thread and confirmed from binder threads.
+ * The listener is called after the lock has been released.
+ * </p>
+ */
+public class UARTTransmitEngine {
+	/** The ATT header (op code and handle) takes 3 bytes of each packet. */
+	public static final int ATT_HEADER_SIZE = 3;
+	/** The default ATT MTU, which is used until a MTU exchange occurs. */
+	public static final int DEFAULT_MTU = 23;
+	/** Number of packets that may be in flight when WRITE WITHOUT RESPONSE is used. */
+	public static final int DEFAULT_CREDITS = 4;
+	/** The upper limit of packets in flight. */
+	private static final int MAX_CREDITS = 16;
+
+	public interface PacketWriter {
+		/**
+		 * Writes the part of the buffer to the remote device. The engine expects {@link #onPacketWritten()} to be called when done.
+		 * The buffer must not be modified by the writer.
+		 * @param buffer the message buffer
+		 * @param offset the offset of the packet in the buffer
+		 * @param length the packet length, never greater than MTU - 3
+		 * @param withoutResponse true if the packet should be sent using WRITE WITHOUT RESPONSE
+		 */
+		void writePacket(final byte[] buffer, final int offset, final int length, final boolean withoutResponse);
+	}
+
+	public interface Listener {
+		/**
+		 * Called when the last packet of the message has been written.
+		 * @param message the message, as given to {@link #offer(byte[])}
+		 */
+		void onMessageSent(final byte[] message);
+
+		/**
+		 * Called when the queue became empty.
+		 * @param bytes number of bytes sent since the queue was last empty
+		 * @param durationMillis time it took to send them, in milliseconds
+		 */
+		void onQueueDrained(final long bytes, final long durationMillis);
+	}
+
+	private final PacketWriter mWriter;
+	private final Listener mListener;
+	private final byte[][] mQueue;
+	private final int mMaxQueuedBytes;
+
+	/** Index of the message being sent. */
+	private int mHead;
+	/** Number of messages in the queue, including the one being sent. */
+	private int mCount;
+	private int mQueuedBytes;
+	/** Offset of the next packet to be sent in the head message. */
+	private int mHeadOffset;
+	/** Number of bytes of the head message that were written and confirmed. */
+	private int mHeadConfirmed;
+	/** Lengths of the packets in flight, in the order they were written. */
+	private final int[] mInFlight;
+	private int mInFlightHead;
+	private int mInFlightCount;
+
+	private int mPayloadSize = DEFAULT_MTU - ATT_HEADER_SIZE;
+	private boolean mWithoutResponse;
+	private int mMaxCredits = 1;
+
+	private long mBurstStartNanos;
+	private long mBurstBytes;
+	private long mTotalBytes;
+	private long mTotalPackets;
+	private long mTotalNanos;
+	private int mRejectedMessages;
+
+	/**
+	 * Creates the engine.
+	 * @param writer the writer used to send packets
+	 * @param listener the listener notified about sent messages
+	 * @param maxQueuedMessages maximum number of messages waiting in the queue
+	 * @param maxQueuedBytes maximum number of bytes waiting in the queue
+	 */
+	public UARTTransmitEngine(final PacketWriter writer, final Listener listener, final int maxQueuedMessages, final int maxQueuedBytes) {
+		if (maxQueuedMessages <= 0 || maxQueuedBytes <= 0)
+			throw new IllegalArgumentException("Queue limits must be positive");
+		mWriter = writer;
+		mListener = listener;
+		mQueue = new byte[maxQueuedMessages][];
+		mMaxQueuedBytes = maxQueuedBytes;
+		mInFlight = new int[MAX_CREDITS];
+	}
+
+	/**
+	 * Sets the ATT MTU. Packets will be up to MTU - 3 bytes long.
+	 * @param mtu the new MTU
+	 */
+	public synchronized void setMtu(final int mtu) {
+		mPayloadSize = Math.max(DEFAULT_MTU, mtu) - ATT_HEADER_SIZE;
+	}
+
+	/**
+	 * Returns the maximum number of bytes in a single packet.
+	 * @return MTU - 3
+	 */
+	public synchronized int getPayloadSize() {
+		return mPayloadSize;
+	}
+
+	/**
+	 * Sets the write type. Using WRITE WITHOUT RESPONSE allows to pipeline packets.
+	 * @param withoutResponse true to use WRITE WITHOUT RESPONSE
+	 * @param credits number of packets that may be in flight, ignored for WRITE REQUEST, which allows only one
+	 */
+	public synchronized void setWriteWithoutResponse(final boolean withoutResponse, final int credits) {
+		mWithoutResponse = withoutResponse;
+		mMaxCredits = withoutResponse ? Math.max(1, Math.min(credits, MAX_CREDITS)) : 1;
+	}
+
+	/**
+	 * Returns the maximum number of packets in flight.
+	 * @return the number of credits
+	 */
+	public synchronized int getMaxCredits() {
+		return mMaxCredits;
+	}
+
+	/**
+	 * Adds the message to the queue and starts sending it if the queue was empty.
+	 * @param message the message to be sent, must not be modified until {@link Listener#onMessageSent(byte[])} is called
+	 * @return true if the message was queued, false if it is empty or the queue is full
+	 */
+	public synchronized boolean offer(final byte[] message) {
+		if (message == null || message.length == 0)
+			return false;
+		if (mCount == mQueue.length || mQueuedBytes + message.length > mMaxQueuedBytes) {
+			mRejectedMessages++;
+			return false;
+		}
+		mQueue[(mHead + mCount) % mQueue.length] = message;
+		mQueuedBytes += message.length;
+		if (mCount++ == 0) {
+			mHeadOffset = 0;
+			mHeadConfirmed = 0;
+			if (mInFlightCount == 0) {
+				mBurstStartNanos = System.nanoTime();
+				mBurstBytes = 0;
+			}
+		}
+		pump();
+		return true;
+	}
+
+	/**
+	 * Returns a credit after the packet has been written. This method should be called once for each
+	 * {@link PacketWriter#writePacket(byte[], int, int, boolean)} call.
+	 */
+	public void onPacketWritten() {
+		byte[] sent = null;
+		boolean drained = false;
+		long burstBytes = 0, duration = 0;
+
+		synchronized (this) {
+			if (mInFlightCount == 0)
+				return;
+			final int length = mInFlight[mInFlightHead];
+			mInFlightHead = (mInFlightHead + 1) % mInFlight.length;
+			mInFlightCount--;
+			mBurstBytes += length;
+			mTotalBytes += length;
+			mTotalPackets++;
+
+			mHeadConfirmed += length;
+			final byte[] message = mQueue[mHead];
+			if (message != null && mHeadConfirmed == message.length) {
+				mQueue[mHead] = null;
+				mHead = (mHead + 1) % mQueue.length;
+				mCount--;
+				mQueuedBytes -= message.length;
+				mHeadConfirmed = 0;
+				// the offset of the next message may already be advanced if its packets are in flight
+				mHeadOffset -= message.length;
+				sent = message;
+			}
+
+			if (mCount == 0 && mInFlightCount == 0) {
+				duration = System.nanoTime() - mBurstStartNanos;
+				mTotalNanos += duration;
+				burstBytes = mBurstBytes;
+				drained = true;
+			} else {
+				pump();
+			}
+		}
+
+		// the listener may offer the next message, so it is called without holding the lock
+		if (sent != null)
+			mListener.onMessageSent(sent);
+		if (drained)
+			mListener.onQueueDrained(burstBytes, duration / 1000000L);
+	}
+
+	/**
+	 * Drops all queued messages and packets in flight. Should be called when the device got disconnected.
+	 */
+	public synchronized void reset() {
+		for (int i = 0; i < mQueue.length; ++i)
+			mQueue[i] = null;
+		mHead = mCount = mQueuedBytes = 0;
+		mHeadOffset = mHeadConfirmed = 0;
+		mInFlightHead = mInFlightCount = 0;
+		mPayloadSize = DEFAULT_MTU - ATT_HEADER_SIZE;
+	}
+
+	/**
+	 * Returns whether there are messages waiting or being sent.
+	 * @return true if the engine is idle
+	 */
+	public synchronized boolean isIdle() {
+		return mCount == 0 && mInFlightCount == 0;
+	}
+
+	/**
+	 * Returns the total number of payload bytes written since the engine was created.
+	 * @return number of bytes
+	 */
+	public synchronized long getTotalBytes() {
+		return mTotalBytes;
+	}
+
+	/**
+	 * Returns the total number of packets written since the engine was created.
+	 * @return number of packets
+	 */
+	public synchronized long getTotalPackets() {
+		return mTotalPackets;
+	}
+
+	/**
+	 * Returns the number of messages rejected because the queue was full.
+	 * @return number of messages
+	 */
+	public synchronized int getRejectedMessages() {
+		return mRejectedMessages;
+	}
+
+	/**
+	 * Returns the average throughput measured while the queue was not empty.
+	 * @return throughput in bytes per second, or 0 if nothing has been sent yet
+	 */
+	public synchronized long getThroughput() {
+		if (mTotalNanos == 0)
+			return 0;
+		return mTotalBytes * 1000000000L / mTotalNanos;
+	}
+
+	/**
+	 * Writes as many packets as there are credits available. Packets never span two messages, so the listener is always notified with complete messages.
+	 */
+	private void pump() {
+		while (mInFlightCount < mMaxCredits && mCount > 0) {
+			// find the message containing the next packet
+			int index = 0;
+			int offset = mHeadOffset;
+			byte[] message = mQueue[mHead];
+			while (offset >= message.length) {
+				offset -= message.length;
+				if (++index == mCount)
+					return; // everything has been written already
+				message = mQueue[(mHead + index) % mQueue.length];
+			}
+			final int length = Math.min(message.length - offset, mPayloadSize);
+			mInFlight[(mInFlightHead + mInFlightCount) % mInFlight.length] = length;
+			mInFlightCount++;
+			mHeadOffset += length;
+			mWriter.writePacket(message, offset, length, mWithoutResponse);
+		}
+	}
+}
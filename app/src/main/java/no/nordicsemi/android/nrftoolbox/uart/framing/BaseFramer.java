@@ -0,0 +1,177 @@
+/*
+ * Copyright (c) 2015, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.nrftoolbox.uart.framing;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Base class for framers. Frames that are fully contained in a single fragment are reported as a view of the fragment, without copying.
+ * Only frames spanning several fragments are reassembled in an internal buffer, which is reused and grows up to the maximum frame size.
+ * Frames exceeding the maximum size are dropped.
+ */
+public abstract class BaseFramer implements UARTFramer {
+	/** The default maximum frame size, in bytes. */
+	public static final int DEFAULT_MAX_FRAME_SIZE = 16 * 1024;
+	private static final int INITIAL_BUFFER_SIZE = 256;
+
+	private final int mMaxFrameSize;
+	private FrameListener mListener;
+	private byte[] mBuffer;
+	private ByteBuffer mBufferView;
+	/** Number of bytes of the current frame in the buffer. */
+	private int mLength;
+	/** True if the current frame is too long and its remaining bytes are being skipped. */
+	private boolean mDiscarding;
+
+	private long mFrameCount;
+	private long mDroppedFrameCount;
+
+	protected BaseFramer(final int maxFrameSize) {
+		if (maxFrameSize <= 0)
+			throw new IllegalArgumentException("Maximum frame size must be positive");
+		mMaxFrameSize = maxFrameSize;
+		mBuffer = new byte[Math.min(INITIAL_BUFFER_SIZE, maxFrameSize)];
+		mBufferView = ByteBuffer.wrap(mBuffer);
+	}
+
+	@Override
+	public void setFrameListener(final FrameListener listener) {
+		mListener = listener;
+	}
+
+	@Override
+	public void reset() {
+		mLength = 0;
+		mDiscarding = false;
+	}
+
+	/**
+	 * Returns the number of frames reported to the listener.
+	 * @return number of frames
+	 */
+	public long getFrameCount() {
+		return mFrameCount;
+	}
+
+	/**
+	 * Returns the number of frames dropped because they exceeded the maximum frame size.
+	 * @return number of frames
+	 */
+	public long getDroppedFrameCount() {
+		return mDroppedFrameCount;
+	}
+
+	/**
+	 * Appends bytes of the fragment, between the given absolute indexes, to the current frame.
+	 * @param fragment the fragment
+	 * @param from the first index, inclusive
+	 * @param to the last index, exclusive
+	 */
+	protected void append(final ByteBuffer fragment, final int from, final int to) {
+		final int count = to - from;
+		if (count <= 0 || !ensureCapacity(count))
+			return;
+		if (fragment.hasArray()) {
+			System.arraycopy(fragment.array(), fragment.arrayOffset() + from, mBuffer, mLength, count);
+		} else {
+			for (int i = from; i < to; ++i)
+				mBuffer[mLength + i - from] = fragment.get(i);
+		}
+		mLength += count;
+	}
+
+	/**
+	 * Appends a single byte to the current frame.
+	 * @param b the byte
+	 */
+	protected void append(final byte b) {
+		if (ensureCapacity(1))
+			mBuffer[mLength++] = b;
+	}
+
+	/**
+	 * Reports the frame reassembled in the internal buffer and clears it. Empty frames are not reported.
+	 */
+	protected void emitBuffered() {
+		if (mDiscarding) {
+			mDiscarding = false;
+			mDroppedFrameCount++;
+		} else if (mLength > 0 && mListener != null) {
+			mBufferView.clear();
+			mBufferView.limit(mLength);
+			mFrameCount++;
+			mListener.onFrame(mBufferView);
+		}
+		mLength = 0;
+	}
+
+	/**
+	 * Reports a frame fully contained in the fragment, without copying it. Empty frames are not reported.
+	 * @param fragment the fragment
+	 * @param from the first index of the frame, inclusive
+	 * @param to the last index of the frame, exclusive
+	 */
+	protected void emitSlice(final ByteBuffer fragment, final int from, final int to) {
+		if (to - from > mMaxFrameSize) {
+			mDroppedFrameCount++;
+			return;
+		}
+		if (to <= from || mListener == null)
+			return;
+		final int position = fragment.position();
+		final int limit = fragment.limit();
+		fragment.limit(to).position(from);
+		mFrameCount++;
+		try {
+			mListener.onFrame(fragment);
+		} finally {
+			fragment.limit(limit).position(position);
+		}
+	}
+
+	/**
+	 * Returns true if no bytes of the current frame have been buffered, so the frame may be reported as a slice of the fragment.
+	 * @return true if the buffer is empty
+	 */
+	protected boolean isBufferEmpty() {
+		return mLength == 0 && !mDiscarding;
+	}
+
+	private boolean ensureCapacity(final int count) {
+		if (mDiscarding)
+			return false;
+		final int required = mLength + count;
+		if (required > mMaxFrameSize) {
+			mDiscarding = true;
+			mLength = 0;
+			return false;
+		}
+		if (required > mBuffer.length) {
+			final byte[] buffer = new byte[Math.min(Math.max(required, mBuffer.length * 2), mMaxFrameSize)];
+			System.arraycopy(mBuffer, 0, buffer, 0, mLength);
+			mBuffer = buffer;
+			mBufferView = ByteBuffer.wrap(buffer);
+		}
+		return true;
+	}
+}
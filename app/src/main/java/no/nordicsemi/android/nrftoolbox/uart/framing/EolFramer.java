@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2015, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.nrftoolbox.uart.framing;
+
+import java.nio.ByteBuffer;
+
+import no.nordicsemi.android.nrftoolbox.uart.domain.Command;
+
+/**
+ * Splits the stream into lines terminated with the given end of line sequence. The terminator is not included in the frames
+ * and empty lines are ignored. A terminator split between two fragments, e.g. CR at the end of one and LF at the beginning of the next, is handled.
+ */
+public class EolFramer extends BaseFramer {
+	private final byte[] mDelimiter;
+	/** Number of delimiter bytes matched so far. */
+	private int mMatched;
+	/** Number of matched delimiter bytes received in previous fragments and not added to the frame. */
+	private int mHeld;
+
+	public EolFramer(final Command.Eol eol) {
+		this(eol, DEFAULT_MAX_FRAME_SIZE);
+	}
+
+	public EolFramer(final Command.Eol eol, final int maxFrameSize) {
+		super(maxFrameSize);
+		switch (eol) {
+			case CR_LF:
+				mDelimiter = new byte[] { '\r', '\n' };
+				break;
+			case CR:
+				mDelimiter = new byte[] { '\r' };
+				break;
+			case LF:
+			default:
+				mDelimiter = new byte[] { '\n' };
+				break;
+		}
+	}
+
+	@Override
+	public void accept(final ByteBuffer fragment) {
+		final int limit = fragment.limit();
+		int start = fragment.position();
+		for (int i = start; i < limit; ++i) {
+			final byte b = fragment.get(i);
+			if (b == mDelimiter[mMatched]) {
+				if (++mMatched < mDelimiter.length)
+					continue;
+				mMatched = 0;
+
+				// The frame ends before the delimiter, which may have started in the previous fragment
+				final int end = i + 1 - mDelimiter.length;
+				if (end >= start && isBufferEmpty()) {
+					emitSlice(fragment, start, end);
+				} else {
+					if (end >= start)
+						append(fragment, start, end);
+					mHeld = 0;
+					emitBuffered();
+				}
+				start = i + 1;
+			} else {
+				// The bytes held at the end of the previous fragment were not a delimiter after all
+				if (mHeld > 0) {
+					for (int k = 0; k < mHeld; ++k)
+						append(mDelimiter[k]);
+					mHeld = 0;
+				}
+				mMatched = b == mDelimiter[0] ? 1 : 0;
+			}
+		}
+		// A part of the delimiter at the end of the fragment is not buffered, so it does not count towards the frame size
+		append(fragment, start, limit - (mMatched - mHeld));
+		mHeld = mMatched;
+		fragment.position(limit);
+	}
+
+	@Override
+	public void reset() {
+		super.reset();
+		mMatched = 0;
+		mHeld = 0;
+	}
+}
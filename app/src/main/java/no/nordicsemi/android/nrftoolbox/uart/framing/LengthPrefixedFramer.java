@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2015, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.nrftoolbox.uart.framing;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Splits the stream into frames preceded with an unsigned 1, 2 or 4 bytes long length field. The length field is not included in the frames.
+ * Frames longer than the maximum frame size are skipped.
+ */
+public class LengthPrefixedFramer extends BaseFramer {
+	private final int mPrefixSize;
+	private final boolean mLittleEndian;
+
+	/** Number of bytes of the length field received so far. */
+	private int mPrefixRead;
+	private long mPrefixValue;
+	/** Number of payload bytes missing in the current frame, or -1 if the length field is being read. */
+	private long mRemaining = -1;
+
+	public LengthPrefixedFramer(final int prefixSize, final ByteOrder order) {
+		this(prefixSize, order, DEFAULT_MAX_FRAME_SIZE);
+	}
+
+	public LengthPrefixedFramer(final int prefixSize, final ByteOrder order, final int maxFrameSize) {
+		super(maxFrameSize);
+		if (prefixSize != 1 && prefixSize != 2 && prefixSize != 4)
+			throw new IllegalArgumentException("Length field must be 1, 2 or 4 bytes long");
+		mPrefixSize = prefixSize;
+		mLittleEndian = order == ByteOrder.LITTLE_ENDIAN;
+	}
+
+	@Override
+	public void accept(final ByteBuffer fragment) {
+		final int limit = fragment.limit();
+		int i = fragment.position();
+		while (i < limit) {
+			if (mRemaining < 0) {
+				final long b = fragment.get(i++) & 0xFF;
+				mPrefixValue = mLittleEndian ? mPrefixValue | (b << (8 * mPrefixRead)) : (mPrefixValue << 8) | b;
+				if (++mPrefixRead == mPrefixSize) {
+					mRemaining = mPrefixValue;
+					mPrefixRead = 0;
+					mPrefixValue = 0;
+					if (mRemaining == 0)
+						mRemaining = -1; // empty frames are ignored
+				}
+				continue;
+			}
+
+			final int available = (int) Math.min(limit - i, mRemaining);
+			if (available == mRemaining && isBufferEmpty()) {
+				emitSlice(fragment, i, i + available);
+			} else {
+				append(fragment, i, i + available);
+				if (available == mRemaining)
+					emitBuffered();
+			}
+			i += available;
+			mRemaining -= available;
+			if (mRemaining == 0)
+				mRemaining = -1;
+		}
+		fragment.position(limit);
+	}
+
+	@Override
+	public void reset() {
+		super.reset();
+		mPrefixRead = 0;
+		mPrefixValue = 0;
+		mRemaining = -1;
+	}
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2015, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.nrftoolbox.uart.framing;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Decodes frames encoded with SLIP (RFC 1055). Each frame is terminated with END byte (0xC0), END and ESC bytes inside a frame are escaped.
+ * Frames without escaped bytes, fully contained in a single fragment, are reported without copying.
+ */
+public class SlipFramer extends BaseFramer {
+	public static final byte END = (byte) 0xC0;
+	public static final byte ESC = (byte) 0xDB;
+	public static final byte ESC_END = (byte) 0xDC;
+	public static final byte ESC_ESC = (byte) 0xDD;
+
+	/** True if the last byte of the previous fragment was ESC. */
+	private boolean mEscape;
+
+	public SlipFramer() {
+		this(DEFAULT_MAX_FRAME_SIZE);
+	}
+
+	public SlipFramer(final int maxFrameSize) {
+		super(maxFrameSize);
+	}
+
+	@Override
+	public void accept(final ByteBuffer fragment) {
+		final int limit = fragment.limit();
+		// Bytes from this index are not escaped and have not been buffered yet
+		int start = fragment.position();
+		for (int i = start; i < limit; ++i) {
+			final byte b = fragment.get(i);
+			if (mEscape) {
+				mEscape = false;
+				// An invalid escape sequence is a protocol violation, the byte is kept as it is
+				append(b == ESC_END ? END : b == ESC_ESC ? ESC : b);
+				start = i + 1;
+			} else if (b == ESC) {
+				append(fragment, start, i);
+				mEscape = true;
+				start = i + 1;
+			} else if (b == END) {
+				if (isBufferEmpty()) {
+					emitSlice(fragment, start, i);
+				} else {
+					append(fragment, start, i);
+					emitBuffered();
+				}
+				start = i + 1;
+			}
+		}
+		append(fragment, start, limit);
+		fragment.position(limit);
+	}
+
+	@Override
+	public void reset() {
+		super.reset();
+		mEscape = false;
+	}
+}
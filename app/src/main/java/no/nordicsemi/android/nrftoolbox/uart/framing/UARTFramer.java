@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) 2015, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.nrftoolbox.uart.framing;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A framer reassembles a stream of UART fragments, e.g. notifications of at most MTU-3 bytes, into whole frames.
+ * Fragments are given to {@link #accept(ByteBuffer)} in the order they were received and complete frames are reported
+ * to the {@link FrameListener}. A single fragment may contain any number of frames, or only a part of one.
+ * <p>
+ * Framers do not depend on the Android framework. They are not thread safe and should be fed from a single thread.
+ * </p>
+ */
+public interface UARTFramer {
+
+	interface FrameListener {
+		/**
+		 * Called when a complete frame has been received. The buffer may be a view of the fragment or the framer's internal buffer,
+		 * so it is only valid during this call and must be copied if kept for longer.
+		 * @param frame the frame content, between position and limit, without the framing bytes
+		 */
+		void onFrame(final ByteBuffer frame);
+	}
+
+	/**
+	 * Sets the listener that will be notified about complete frames.
+	 * @param listener the listener, or null
+	 */
+	void setFrameListener(final FrameListener listener);
+
+	/**
+	 * Consumes the remaining bytes of the fragment. The position of the buffer is moved to its limit.
+	 * @param fragment the received fragment
+	 */
+	void accept(final ByteBuffer fragment);
+
+	/**
+	 * Discards the partially received frame, e.g. after a disconnection.
+	 */
+	void reset();
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2015, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.nrftoolbox.utility;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import no.nordicsemi.android.log.ILogSession;
+import no.nordicsemi.android.log.LogContract;
+import no.nordicsemi.android.log.Logger;
+
+/**
+ * A log sink that formats messages only if they will be logged. A message is logged when a log session is attached and its level
+ * is not lower than {@link #getLevel()}. Otherwise the formatter is not called at all, so parsing the packet to a String costs nothing.
+ * <p>
+ * Use static, non-capturing lambdas or method references as formatters, so that no objects are allocated when the message is skipped, e.g.:
+ * <pre>
+ * DeferredLogger.received(mLogSession, CGMMeasurementParser::parse, characteristic.getValue());
+ * </pre>
+ * </p>
+ */
+public class DeferredLogger {
+
+	public interface Formatter<T> {
+		/**
+		 * Converts the value to a log message. Called only if the message is going to be logged.
+		 * @param value the value
+		 * @return the log message
+		 */
+		String format(final T value);
+	}
+
+	private static volatile int sLevel = LogContract.Log.Level.DEBUG;
+	private static final AtomicLong sFormattedCount = new AtomicLong();
+	private static final AtomicLong sSkippedCount = new AtomicLong();
+
+	private DeferredLogger() {
+		// empty
+	}
+
+	/**
+	 * Sets the minimum level of messages that will be logged.
+	 * @param level one of the {@link LogContract.Log.Level} constants
+	 */
+	public static void setLevel(final int level) {
+		sLevel = level;
+	}
+
+	/**
+	 * Returns the minimum level of messages that will be logged.
+	 * @return the level
+	 */
+	public static int getLevel() {
+		return sLevel;
+	}
+
+	/**
+	 * Returns whether a message with the given level would be logged.
+	 * @param session the log session, may be null
+	 * @param level the message level
+	 * @return true if the session is attached and the level is enabled
+	 */
+	public static boolean isLoggable(final ILogSession session, final int level) {
+		return session != null && level >= sLevel;
+	}
+
+	/**
+	 * Logs the message with the given level. The formatter is called only if the message is loggable.
+	 * @param session the log session, may be null
+	 * @param level the message level
+	 * @param formatter the formatter
+	 * @param value the value to be formatted
+	 */
+	public static <T> void log(final ILogSession session, final int level, final Formatter<T> formatter, final T value) {
+		if (!isLoggable(session, level)) {
+			sSkippedCount.incrementAndGet();
+			return;
+		}
+		sFormattedCount.incrementAndGet();
+		Logger.log(session, level, formatter.format(value));
+	}
+
+	/**
+	 * Logs the application level message: <code>"value" received</code>.
+	 * @param session the log session, may be null
+	 * @param formatter the formatter
+	 * @param value the received value
+	 */
+	public static <T> void received(final ILogSession session, final Formatter<T> formatter, final T value) {
+		if (!isLoggable(session, LogContract.Log.Level.APPLICATION)) {
+			sSkippedCount.incrementAndGet();
+			return;
+		}
+		sFormattedCount.incrementAndGet();
+		Logger.a(session, "\"" + formatter.format(value) + "\" received");
+	}
+
+	/**
+	 * Logs the application level message: <code>"value" sent</code>.
+	 * @param session the log session, may be null
+	 * @param formatter the formatter
+	 * @param value the sent value
+	 */
+	public static <T> void sent(final ILogSession session, final Formatter<T> formatter, final T value) {
+		if (!isLoggable(session, LogContract.Log.Level.APPLICATION)) {
+			sSkippedCount.incrementAndGet();
+			return;
+		}
+		sFormattedCount.incrementAndGet();
+		Logger.a(session, "\"" + formatter.format(value) + "\" sent");
+	}
+
+	/**
+	 * Returns the number of messages that were formatted and logged.
+	 * @return number of messages
+	 */
+	public static long getFormattedCount() {
+		return sFormattedCount.get();
+	}
+
+	/**
+	 * Returns the number of messages that were not formatted, because there was no log session or the level was disabled.
+	 * @return number of messages
+	 */
+	public static long getSkippedCount() {
+		return sSkippedCount.get();
+	}
+
+	/**
+	 * Resets the counters.
+	 */
+	public static void resetCounters() {
+		sFormattedCount.set(0);
+		sSkippedCount.set(0);
+	}
+}
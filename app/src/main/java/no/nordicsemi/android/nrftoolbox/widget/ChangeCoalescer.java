@@ -0,0 +1,170 @@
+/*
+ * Copyright (c) 2015, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package no.nordicsemi.android.nrftoolbox.widget;
+
+/**
+ * Coalesces changes of a list, reported from any thread, into at most one notification per interval, by default about
+ * one frame. Records obtained by a bulk download arrive one by one; notifying the adapter about each of them would
+ * rebind the list for each record.
+ * <p>
+ * Insertions at consecutive positions, f.e. records appended during a download, are merged into a single range insert.
+ * Any other change is reported as a change of the whole data set.
+ * </p>
+ * <p>
+ * The owner calls {@link #poll()} on the UI thread when a change method returns true, and again after the returned
+ * delay. The listener is called from {@link #poll()}, outside the lock.
+ * </p>
+ */
+public class ChangeCoalescer {
+	/** The default minimum interval between notifications, in milliseconds. */
+	public static final long DEFAULT_INTERVAL = 16;
+
+	public interface Clock {
+		/**
+		 * Returns the current time in milliseconds.
+		 */
+		long now();
+	}
+
+	public interface Listener {
+		/**
+		 * Called when items have been inserted at consecutive positions since the last notification.
+		 *
+		 * @param positionStart the position of the first item inserted
+		 * @param itemCount     the number of items inserted
+		 */
+		void onItemRangeInserted(final int positionStart, final int itemCount);
+
+		/**
+		 * Called when the data set has changed in any other way since the last notification.
+		 */
+		void onDataSetChanged();
+	}
+
+	private final Listener mListener;
+	private final Clock mClock;
+	private long mInterval = DEFAULT_INTERVAL;
+
+	/** The pending range insert, if {@link #mInsertCount} is greater than 0. */
+	private int mInsertStart;
+	private int mInsertCount;
+	/** True if the whole data set should be reported as changed. */
+	private boolean mChanged;
+	private boolean mDispatched;
+	private long mLastDispatchTime;
+
+	public ChangeCoalescer(final Listener listener, final Clock clock) {
+		mListener = listener;
+		mClock = clock;
+	}
+
+	/**
+	 * Sets the minimum interval between notifications.
+	 *
+	 * @param interval the interval in milliseconds
+	 */
+	public synchronized void setInterval(final long interval) {
+		mInterval = interval;
+	}
+
+	/**
+	 * Reports items inserted at the given position.
+	 *
+	 * @return true if there were no pending changes before, and {@link #poll()} should be scheduled
+	 */
+	public synchronized boolean onItemRangeInserted(final int position, final int count) {
+		if (count <= 0)
+			return false;
+		final boolean idle = !hasPendingChanges();
+		if (mChanged)
+			return false;
+
+		if (mInsertCount == 0) {
+			mInsertStart = position;
+			mInsertCount = count;
+		} else if (position >= mInsertStart && position <= mInsertStart + mInsertCount) {
+			// Inserted within or right after the pending range, the range is still consecutive
+			mInsertCount += count;
+		} else {
+			mInsertCount = 0;
+			mChanged = true;
+		}
+		return idle;
+	}
+
+	/**
+	 * Reports a change of the data set that is not an insertion, f.e. the list has been cleared.
+	 *
+	 * @return true if there were no pending changes before, and {@link #poll()} should be scheduled
+	 */
+	public synchronized boolean onDataSetChanged() {
+		final boolean idle = !hasPendingChanges();
+		mInsertCount = 0;
+		mChanged = true;
+		return idle;
+	}
+
+	public synchronized boolean hasPendingChanges() {
+		return mChanged || mInsertCount > 0;
+	}
+
+	/**
+	 * Drops pending changes, f.e. when the list is detached from the data set.
+	 */
+	public synchronized void reset() {
+		mInsertCount = 0;
+		mChanged = false;
+	}
+
+	/**
+	 * Notifies the listener about pending changes if the interval has elapsed since the last notification.
+	 *
+	 * @return the delay in milliseconds after which the method should be called again, or -1 if there are no pending changes
+	 */
+	public long poll() {
+		final boolean changed;
+		final int start, count;
+		synchronized (this) {
+			if (!hasPendingChanges())
+				return -1;
+
+			final long now = mClock.now();
+			final long elapsed = now - mLastDispatchTime;
+			if (mDispatched && elapsed < mInterval)
+				return mInterval - elapsed;
+
+			changed = mChanged;
+			start = mInsertStart;
+			count = mInsertCount;
+			mChanged = false;
+			mInsertCount = 0;
+			mDispatched = true;
+			mLastDispatchTime = now;
+		}
+
+		if (changed)
+			mListener.onDataSetChanged();
+		else
+			mListener.onItemRangeInserted(start, count);
+		return -1;
+	}
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2015, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package no.nordicsemi.android.nrftoolbox.widget;
+
+import java.lang.reflect.Array;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A window over records kept in a storage, f.e. a database. Records are loaded in pages when they are shown, and only
+ * a few recently used pages are kept in memory, so the list does not hold every record.
+ * <p>
+ * The number of records is read when the source is created or invalidated. Insertions reported by
+ * {@link #onItemRangeInserted(int, int)} drop only the pages at and after the insertion point. The source should be
+ * used on a single thread, usually the UI thread.
+ * </p>
+ *
+ * @param <T> the record type
+ */
+public class PagedRecordSource<T> {
+	public static final int DEFAULT_PAGE_SIZE = 50;
+	public static final int DEFAULT_MAX_PAGES = 4;
+
+	public interface Loader<T> {
+		/**
+		 * Returns the number of records in the storage.
+		 */
+		int getCount();
+
+		/**
+		 * Reads records to the page.
+		 *
+		 * @param offset the index of the first record
+		 * @param page   the array to be filled, its length is the page size
+		 * @return the number of records read
+		 */
+		int load(final int offset, final T[] page);
+	}
+
+	private final Class<T> mType;
+	private final Loader<T> mLoader;
+	private final int mPageSize;
+	private final LinkedHashMap<Integer, T[]> mPages;
+	private int mCount;
+
+	public PagedRecordSource(final Class<T> type, final Loader<T> loader) {
+		this(type, loader, DEFAULT_PAGE_SIZE, DEFAULT_MAX_PAGES);
+	}
+
+	public PagedRecordSource(final Class<T> type, final Loader<T> loader, final int pageSize, final int maxPages) {
+		mType = type;
+		mLoader = loader;
+		mPageSize = pageSize;
+		mPages = new LinkedHashMap<Integer, T[]>(maxPages + 1, 1.0f, true) {
+			@Override
+			protected boolean removeEldestEntry(final Map.Entry<Integer, T[]> eldest) {
+				return size() > maxPages;
+			}
+		};
+		mCount = loader.getCount();
+	}
+
+	/**
+	 * Returns the number of records, as read by the last {@link #invalidate()} and updated by reported insertions.
+	 */
+	public int getCount() {
+		return mCount;
+	}
+
+	/**
+	 * Returns the record at the given position, loading its page if needed.
+	 *
+	 * @return the record, or null if it is outside the records read, f.e. removed from the storage
+	 */
+	public T get(final int position) {
+		if (position < 0 || position >= mCount)
+			return null;
+
+		final int index = position / mPageSize;
+		T[] page = mPages.get(index);
+		if (page == null) {
+			@SuppressWarnings("unchecked")
+			final T[] newPage = (T[]) Array.newInstance(mType, mPageSize);
+			mLoader.load(index * mPageSize, newPage);
+			mPages.put(index, page = newPage);
+		}
+		return page[position % mPageSize];
+	}
+
+	/**
+	 * Updates the number of records after records have been inserted at the given position. Pages before it are kept.
+	 */
+	public void onItemRangeInserted(final int position, final int count) {
+		mCount += count;
+		final int firstPage = position / mPageSize;
+		final Iterator<Integer> iterator = mPages.keySet().iterator();
+		while (iterator.hasNext()) {
+			if (iterator.next() >= firstPage)
+				iterator.remove();
+		}
+	}
+
+	/**
+	 * Reads the number of records again and drops all pages. Call it when the records have changed in any other way.
+	 */
+	public void invalidate() {
+		mPages.clear();
+		mCount = mLoader.getCount();
+	}
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2015, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package no.nordicsemi.android.nrftoolbox.cgms;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures updating the glucose trend with a single sample, one per minute, with the default windows full
+ * (15 and 1440 samples). {@link #recompute()} keeps the samples in a queue and computes the same values by iterating
+ * over the windows after each sample, as a trend would be computed from the list of records.
+ * The cost of {@link #add()} should not depend on the window length and it should report 0 bytes allocated per operation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class CGMSTrendEngineBenchmark {
+	private static final int MINUTE = 60000;
+	private static final float[] VALUES = new float[1024];
+
+	static {
+		for (int i = 0; i < VALUES.length; ++i)
+			VALUES[i] = (float) (140.0 + 80.0 * Math.sin(i / 90.0));
+	}
+
+	private final CGMSTrendEngine mEngine = new CGMSTrendEngine();
+	private final ArrayDeque<long[]> mSamples = new ArrayDeque<>();
+	private long mTime;
+	private int mIndex;
+
+	@Setup
+	public void setup() {
+		for (int i = 0; i < 2000; ++i) {
+			add();
+			recompute();
+		}
+	}
+
+	@Benchmark
+	public double add() {
+		mTime += MINUTE;
+		mIndex = (mIndex + 1) & (VALUES.length - 1);
+		mEngine.add(mTime, VALUES[mIndex]);
+		return mEngine.getRateOfChange() + mEngine.getMean() + mEngine.getTimeInRange() + mEngine.getPrediction();
+	}
+
+	@Benchmark
+	public double recompute() {
+		mTime += MINUTE;
+		mIndex = (mIndex + 1) & (VALUES.length - 1);
+		final float value = VALUES[mIndex];
+		mSamples.addLast(new long[] { mTime, Float.floatToIntBits(value) });
+		while (mSamples.peekFirst()[0] <= mTime - CGMSTrendEngine.DEFAULT_STATISTICS_WINDOW)
+			mSamples.removeFirst();
+
+		double sumT = 0, sumTT = 0, sumTV = 0, sumV = 0;
+		int n = 0;
+		double sum = 0, sumSquares = 0;
+		int inRange = 0;
+		final Iterator<long[]> iterator = mSamples.descendingIterator();
+		while (iterator.hasNext()) {
+			final long[] sample = iterator.next();
+			final float v = Float.intBitsToFloat((int) sample[1]);
+			sum += v;
+			sumSquares += v * v;
+			if (v >= CGMSTrendEngine.DEFAULT_LOW && v <= CGMSTrendEngine.DEFAULT_HIGH)
+				inRange++;
+			if (sample[0] > mTime - CGMSTrendEngine.DEFAULT_RATE_WINDOW) {
+				final double t = (sample[0] - mTime) / (double) MINUTE;
+				sumT += t;
+				sumTT += t * t;
+				sumTV += t * v;
+				sumV += v;
+				n++;
+			}
+		}
+		final double rate = (n * sumTV - sumT * sumV) / (n * sumTT - sumT * sumT);
+		final int size = mSamples.size();
+		final double mean = sum / size;
+		return rate + mean + Math.sqrt(sumSquares / size - mean * mean) + 100.0 * inRange / size;
+	}
+}
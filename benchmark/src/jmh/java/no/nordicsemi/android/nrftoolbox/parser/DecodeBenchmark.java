@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2015, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.nrftoolbox.parser;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the typed decode API, which fills reusable measurement holders. Compare with {@link ParserBenchmark},
+ * which also formats the String. The decode methods should report 0 bytes allocated per operation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class DecodeBenchmark {
+	private final CharacteristicValue mValue = new CharacteristicValue();
+	private final HeartRateMeasurement mHeartRateMeasurement = new HeartRateMeasurement();
+	private final CSCMeasurement mCscMeasurement = new CSCMeasurement();
+	private final RSCMeasurement mRscMeasurement = new RSCMeasurement();
+
+	private byte[] mHeartRateRR = Payloads.HEART_RATE_RR;
+	private byte[] mCsc = Payloads.CSC_MEASUREMENT;
+	private byte[] mRsc = Payloads.RSC_MEASUREMENT;
+
+	@Benchmark
+	public int heartRateMeasurement() {
+		HeartRateMeasurementParser.decode(mValue.set(mHeartRateRR), mHeartRateMeasurement);
+		return mHeartRateMeasurement.heartRate + mHeartRateMeasurement.rrIntervalCount;
+	}
+
+	@Benchmark
+	public int cscMeasurement() {
+		CSCMeasurementParser.decode(mValue.set(mCsc), mCscMeasurement);
+		return mCscMeasurement.wheelRevolutions + mCscMeasurement.crankRevolutions;
+	}
+
+	@Benchmark
+	public int rscMeasurement() {
+		RSCMeasurementParser.decode(mValue.set(mRsc), mRscMeasurement);
+		return mRscMeasurement.instantaneousSpeed + mRscMeasurement.instantaneousCadence;
+	}
+}
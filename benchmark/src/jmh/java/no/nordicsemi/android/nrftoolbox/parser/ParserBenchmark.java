@@ -0,0 +1,157 @@
+/*
+ * Copyright (c) 2015, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.nrftoolbox.parser;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of converting a characteristic value into the String shown in the log, for each parser.
+ * Run with the GC profiler to get the number of bytes allocated per operation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class ParserBenchmark {
+	// The values are kept in fields, so that the JIT compiler can't treat them as constants
+	private byte[] mHeartRateRR = Payloads.HEART_RATE_RR;
+	private byte[] mHeartRateEnergy = Payloads.HEART_RATE_ENERGY;
+	private byte[] mBodySensorLocation = Payloads.BODY_SENSOR_LOCATION;
+	private byte[] mCscMeasurement = Payloads.CSC_MEASUREMENT;
+	private byte[] mRscMeasurement = Payloads.RSC_MEASUREMENT;
+	private byte[] mTemperatureMeasurement = Payloads.TEMPERATURE_MEASUREMENT;
+	private byte[] mTemperatureType = Payloads.TEMPERATURE_TYPE;
+	private byte[] mBloodPressureMeasurement = Payloads.BLOOD_PRESSURE_MEASUREMENT;
+	private byte[] mIntermediateCuffPressure = Payloads.INTERMEDIATE_CUFF_PRESSURE;
+	private byte[] mGlucoseMeasurement = Payloads.GLUCOSE_MEASUREMENT;
+	private byte[] mGlucoseMeasurementContext = Payloads.GLUCOSE_MEASUREMENT_CONTEXT;
+	private byte[] mCgmMeasurement = Payloads.CGM_MEASUREMENT;
+	private byte[] mCgmSpecificOpsControlPoint = Payloads.CGM_SPECIFIC_OPS_CONTROL_POINT;
+	private byte[] mRacpNumberOfRecords = Payloads.RACP_NUMBER_OF_RECORDS;
+	private byte[] mRacpReportGreaterOrEqual = Payloads.RACP_REPORT_GREATER_OR_EQUAL;
+	private byte[] mAlertLevel = Payloads.ALERT_LEVEL;
+	private byte[] mDateTime = Payloads.DATE_TIME;
+	private byte[] mTemplate = Payloads.TEMPLATE;
+
+	@Benchmark
+	public String heartRateMeasurementWithRRIntervals() {
+		return HeartRateMeasurementParser.parse(mHeartRateRR);
+	}
+
+	@Benchmark
+	public String heartRateMeasurementWithEnergyExpended() {
+		return HeartRateMeasurementParser.parse(mHeartRateEnergy);
+	}
+
+	@Benchmark
+	public String bodySensorLocation() {
+		return BodySensorLocationParser.parse(mBodySensorLocation);
+	}
+
+	@Benchmark
+	public String cscMeasurement() {
+		return CSCMeasurementParser.parse(mCscMeasurement);
+	}
+
+	@Benchmark
+	public String rscMeasurement() {
+		return RSCMeasurementParser.parse(mRscMeasurement);
+	}
+
+	@Benchmark
+	public String temperatureMeasurement() {
+		return TemperatureMeasurementParser.parse(mTemperatureMeasurement);
+	}
+
+	@Benchmark
+	public String temperatureType() {
+		return TemperatureTypeParser.parse(mTemperatureType);
+	}
+
+	@Benchmark
+	public String bloodPressureMeasurement() {
+		return BloodPressureMeasurementParser.parse(mBloodPressureMeasurement);
+	}
+
+	@Benchmark
+	public String intermediateCuffPressure() {
+		return IntermediateCuffPressureParser.parse(mIntermediateCuffPressure);
+	}
+
+	@Benchmark
+	public String glucoseMeasurement() {
+		return GlucoseMeasurementParser.parse(mGlucoseMeasurement);
+	}
+
+	@Benchmark
+	public String glucoseMeasurementContext() {
+		return GlucoseMeasurementContextParser.parse(mGlucoseMeasurementContext);
+	}
+
+	@Benchmark
+	public String cgmMeasurement() {
+		return CGMMeasurementParser.parse(mCgmMeasurement);
+	}
+
+	@Benchmark
+	public String cgmSpecificOpsControlPoint() {
+		return CGMSpecificOpsControlPointParser.parse(mCgmSpecificOpsControlPoint);
+	}
+
+	@Benchmark
+	public String recordAccessControlPointNumberOfRecords() {
+		return RecordAccessControlPointParser.parse(mRacpNumberOfRecords);
+	}
+
+	@Benchmark
+	public String recordAccessControlPointReportGreaterOrEqual() {
+		return RecordAccessControlPointParser.parse(mRacpReportGreaterOrEqual);
+	}
+
+	@Benchmark
+	public String alertLevel() {
+		return AlertLevelParser.parse(mAlertLevel);
+	}
+
+	@Benchmark
+	public String dateTime() {
+		return DateTimeParser.parse(mDateTime);
+	}
+
+	@Benchmark
+	public String template() {
+		return TemplateParser.parse(mTemplate);
+	}
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2015, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.nrftoolbox.parser;
+
+/**
+ * Characteristic values used by the benchmarks. The values are typical packets sent by real sensors, so that the parsers
+ * go through the same code paths as in the app.
+ */
+/* package */ final class Payloads {
+	/** HRM: 8-bit value (72 bpm), sensor contact detected, 2 RR-intervals. */
+	static final byte[] HEART_RATE_RR = { 0x16, 72, 0x40, 0x03, 0x3C, 0x03 };
+	/** HRM: 16-bit value (72 bpm) with Energy Expended. */
+	static final byte[] HEART_RATE_ENERGY = { 0x09, 72, 0x00, 0x10, 0x00 };
+	/** Body Sensor Location: wrist. */
+	static final byte[] BODY_SENSOR_LOCATION = { 0x02 };
+	/** CSC: wheel and crank revolution data. */
+	static final byte[] CSC_MEASUREMENT = { 0x03, 0x10, 0x27, 0x00, 0x00, 0x00, 0x40, 0x20, 0x01, 0x00, 0x20 };
+	/** RSC: running at 3 m/s, 170 steps/min, stride length 1.2 m, total distance 1234.5 m. */
+	static final byte[] RSC_MEASUREMENT = { 0x07, 0x00, 0x03, (byte) 0xAA, 0x78, 0x00, 0x39, 0x30, 0x00, 0x00 };
+	/** HTS: 36.6 Celsius with time stamp and temperature type. */
+	static final byte[] TEMPERATURE_MEASUREMENT = { 0x06, 0x6E, 0x01, 0x00, (byte) 0xFF, (byte) 0xE2, 0x07, 10, 18, 12, 30, 0, 0x02 };
+	/** Temperature Type: body. */
+	static final byte[] TEMPERATURE_TYPE = { 0x02 };
+	/** BPM: 120/80 mmHg, MAP 93, with time stamp, pulse rate, user ID and status. */
+	static final byte[] BLOOD_PRESSURE_MEASUREMENT = { 0x1E, 0x78, 0x00, 0x50, 0x00, 0x5D, 0x00, (byte) 0xE2, 0x07, 10, 18, 12, 30, 0, 0x48, 0x00, 0x01, 0x01, 0x00 };
+	/** BPM: intermediate cuff pressure of 90 mmHg with time stamp and pulse rate. */
+	static final byte[] INTERMEDIATE_CUFF_PRESSURE = { 0x06, 0x5A, 0x00, (byte) 0xFF, 0x07, (byte) 0xFF, 0x07, (byte) 0xE2, 0x07, 10, 18, 12, 30, 0, 0x48, 0x00 };
+	/** GLS: record 1 with time offset, 55 mg/dL capillary whole blood from finger and sensor status. */
+	static final byte[] GLUCOSE_MEASUREMENT = { 0x0B, 0x01, 0x00, (byte) 0xE2, 0x07, 10, 18, 12, 30, 0, 0x00, 0x00, 0x37, (byte) 0xB0, 0x11, 0x00, 0x00 };
+	/** GLS: context of record 1 with carbohydrate, meal and tester/health. */
+	static final byte[] GLUCOSE_MEASUREMENT_CONTEXT = { 0x07, 0x01, 0x00, 0x01, 0x32, 0x00, 0x01, 0x11 };
+	/** CGMS: two records with trend and quality. */
+	static final byte[] CGM_MEASUREMENT = { 0x0A, 0x03, 0x78, 0x00, 0x05, 0x00, 0x02, 0x00, 0x5F, 0x00, 0x0A, 0x03, 0x7A, 0x00, 0x0A, 0x00, 0x02, 0x00, 0x5F, 0x00 };
+	/** CGMS Specific Ops Control Point: response code Success for Start Session. */
+	static final byte[] CGM_SPECIFIC_OPS_CONTROL_POINT = { 0x1C, 0x1A, 0x01 };
+	/** RACP: number of stored records response (16 records). */
+	static final byte[] RACP_NUMBER_OF_RECORDS = { 0x05, 0x00, 0x10, 0x00 };
+	/** RACP: report records with sequence number greater than or equal to 10. */
+	static final byte[] RACP_REPORT_GREATER_OR_EQUAL = { 0x01, 0x03, 0x01, 0x0A, 0x00 };
+	/** Alert Level: high alert. */
+	static final byte[] ALERT_LEVEL = { 0x02 };
+	/** Date Time: 18 Oct 2018, 12:30:00. */
+	static final byte[] DATE_TIME = { (byte) 0xE2, 0x07, 10, 18, 12, 30, 0 };
+	/** Template: 8-bit value. */
+	static final byte[] TEMPLATE = { 0x00, 72 };
+
+	private Payloads() {
+		// empty
+	}
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2015, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.nrftoolbox.profile.multiconnect;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares looking up all {@link #deviceCount} managed devices in the {@link DeviceRegistry} with the HashMap and ArrayList
+ * previously used by the multiconnect service. BluetoothDevice delegates hashCode() and equals(Object) to its address,
+ * so the baselines are keyed by address Strings. Lookups use other String instances than the stored ones, as devices
+ * in GATT callbacks are not the instances the service was given.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class DeviceRegistryBenchmark {
+	@Param({ "8", "32", "128" })
+	public int deviceCount;
+
+	private String[] mAddresses;
+	private long[] mKeys;
+	private HashMap<String, Object> mHashMap;
+	private List<String> mList;
+	private DeviceRegistry<Object> mRegistry;
+
+	@Setup
+	public void setup() {
+		mAddresses = new String[deviceCount];
+		mKeys = new long[deviceCount];
+		mHashMap = new HashMap<>();
+		mList = new ArrayList<>();
+		mRegistry = new DeviceRegistry<>();
+		for (int i = 0; i < deviceCount; ++i) {
+			// Devices of one vendor share the upper half of the address
+			final String address = String.format(Locale.US, "C0:FF:EE:%02X:%02X:%02X", (i * 37) & 0xFF, (i * 11) & 0xFF, i & 0xFF);
+			final Object value = new Object();
+			mHashMap.put(address, value);
+			mList.add(address);
+			mRegistry.put(address, value);
+			mAddresses[i] = new String(address.toCharArray());
+			mKeys[i] = DeviceRegistry.toKey(address);
+		}
+	}
+
+	@Benchmark
+	public int hashMapGet() {
+		int found = 0;
+		for (final String address : mAddresses)
+			if (mHashMap.get(address) != null)
+				found++;
+		return found;
+	}
+
+	@Benchmark
+	public int arrayListContains() {
+		int found = 0;
+		for (final String address : mAddresses)
+			if (mList.contains(address))
+				found++;
+		return found;
+	}
+
+	@Benchmark
+	public int registryGetByAddress() {
+		int found = 0;
+		for (final String address : mAddresses)
+			if (mRegistry.get(address) != null)
+				found++;
+		return found;
+	}
+
+	@Benchmark
+	public int registryGetByKey() {
+		int found = 0;
+		for (final long key : mKeys)
+			if (mRegistry.get(key) != null)
+				found++;
+		return found;
+	}
+
+	@Benchmark
+	public int registryIterate() {
+		int count = 0;
+		for (final Object value : mRegistry.values())
+			count += value.hashCode() & 1;
+		return count;
+	}
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2015, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.nrftoolbox.recorder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import no.nordicsemi.android.nrftoolbox.parser.CSCMeasurement;
+import no.nordicsemi.android.nrftoolbox.parser.CSCMeasurementParser;
+import no.nordicsemi.android.nrftoolbox.parser.CharacteristicValue;
+import no.nordicsemi.android.nrftoolbox.parser.HeartRateMeasurement;
+import no.nordicsemi.android.nrftoolbox.parser.HeartRateMeasurementParser;
+
+/**
+ * Records a synthetic session of {@link #PACKET_COUNT} HRM and CSC notifications and measures replaying it
+ * as fast as possible through the parsers' decode API.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class ReplayBenchmark {
+	private static final int PACKET_COUNT = 100000;
+	private static final UUID HR_MEASUREMENT = UUID.fromString("00002A37-0000-1000-8000-00805f9b34fb");
+	private static final UUID CSC_MEASUREMENT = UUID.fromString("00002A5B-0000-1000-8000-00805f9b34fb");
+	/** Heart rate 72 BPM with two RR-intervals */
+	private static final byte[] HEART_RATE_PAYLOAD = { 0x16, 72, 0x40, 0x03, 0x3C, 0x03 };
+	/** Wheel and crank revolution data */
+	private static final byte[] CSC_PAYLOAD = { 0x03, 0x10, 0x27, 0x00, 0x00, 0x00, 0x40, 0x20, 0x01, 0x00, 0x20 };
+
+	private File mDirectory;
+	private File[] mSegments;
+	private ReplayEngine mEngine;
+
+	private final CharacteristicValue mValue = new CharacteristicValue();
+	private final HeartRateMeasurement mHeartRateMeasurement = new HeartRateMeasurement();
+	private final CSCMeasurement mCscMeasurement = new CSCMeasurement();
+	private long mChecksum;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException, InterruptedException {
+		mDirectory = Files.createTempDirectory("replay").toFile();
+		final SessionRecorder recorder = new SessionRecorder(mDirectory, SessionRecorder.DEFAULT_SEGMENT_SIZE, Integer.MAX_VALUE);
+		final long address = SessionFormat.parseAddress("C0:FF:EE:C0:FF:EE");
+		for (int i = 0; i < PACKET_COUNT; ++i) {
+			final boolean hrm = (i & 1) == 0;
+			while (!recorder.record(1000L * i, address, hrm ? HR_MEASUREMENT : CSC_MEASUREMENT, SessionFormat.TYPE_NOTIFICATION,
+					hrm ? HEART_RATE_PAYLOAD : CSC_PAYLOAD)) {
+				// Wait for the next segment to be prepared
+				Thread.sleep(1);
+			}
+		}
+		recorder.close();
+		mSegments = SessionReader.listSegments(mDirectory, recorder.getSessionId());
+
+		final ReplayDispatcher dispatcher = new ReplayDispatcher()
+				.register(HR_MEASUREMENT, packet -> {
+					HeartRateMeasurementParser.decode(mValue.set(packet.getValue()), mHeartRateMeasurement);
+					mChecksum += mHeartRateMeasurement.heartRate;
+				})
+				.register(CSC_MEASUREMENT, packet -> {
+					CSCMeasurementParser.decode(mValue.set(packet.getValue()), mCscMeasurement);
+					mChecksum += mCscMeasurement.wheelRevolutions;
+				});
+		mEngine = new ReplayEngine(mSegments, dispatcher);
+		mEngine.setSpeed(ReplayEngine.AS_FAST_AS_POSSIBLE);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		for (final File segment : mSegments)
+			//noinspection ResultOfMethodCallIgnored
+			segment.delete();
+		//noinspection ResultOfMethodCallIgnored
+		mDirectory.delete();
+	}
+
+	@Benchmark
+	public long replay() throws IOException, InterruptedException {
+		mEngine.run();
+		return mChecksum;
+	}
+}
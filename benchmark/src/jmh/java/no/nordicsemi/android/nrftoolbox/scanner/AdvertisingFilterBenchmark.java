@@ -0,0 +1,170 @@
+/*
+ * Copyright (c) 2015, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package no.nordicsemi.android.nrftoolbox.scanner;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import no.nordicsemi.android.nrftoolbox.parser.AdvertisingData;
+import no.nordicsemi.android.nrftoolbox.parser.AdvertisingDataParser;
+
+/**
+ * Measures decoding and filtering a single advertisement, cycling through a heart rate sensor, a beacon and
+ * a UART device with a scan response. {@link #collections()} parses the packet into lists and maps of copies,
+ * as ScanRecord#parseFromBytes(byte[]) does, and filters it like ScanFilter#matches(ScanResult). Each packet is
+ * matched against two filters: Nordic devices with given services and iBeacons.
+ * The decode and match methods should report 0 bytes allocated per operation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class AdvertisingFilterBenchmark {
+	private static final UUID HEART_RATE_SERVICE = UUID.fromString("0000180D-0000-1000-8000-00805f9b34fb");
+	private static final UUID UART_SERVICE = UUID.fromString("6E400001-B5A3-F393-E0A9-E50E24DCCA9E");
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private static final byte[][] PACKETS = {
+			// flags, Heart Rate and Device Information services, TX power, "Nordic_HRM"
+			{ 0x02, 0x01, 0x06, 0x05, 0x03, 0x0D, 0x18, 0x0A, 0x18, 0x02, 0x0A, 0x00,
+					0x0B, 0x09, 'N', 'o', 'r', 'd', 'i', 'c', '_', 'H', 'R', 'M' },
+			// flags, iBeacon manufacturer data
+			{ 0x02, 0x01, 0x06, 0x1A, (byte) 0xFF, 0x4C, 0x00, 0x02, 0x15,
+					(byte) 0xE2, (byte) 0xC5, 0x6D, (byte) 0xB5, (byte) 0xDF, (byte) 0xFB, 0x48, (byte) 0xD2,
+					(byte) 0xB0, 0x60, (byte) 0xD0, (byte) 0xF5, (byte) 0xA7, 0x10, (byte) 0x96, (byte) 0xE0,
+					0x00, 0x01, 0x00, 0x02, (byte) 0xC5 },
+			// flags, UART service, scan response with "Nordic_UART" and padding
+			{ 0x02, 0x01, 0x06, 0x11, 0x07, (byte) 0x9E, (byte) 0xCA, (byte) 0xDC, 0x24, 0x0E, (byte) 0xE5, (byte) 0xA9, (byte) 0xE0,
+					(byte) 0x93, (byte) 0xF3, (byte) 0xA3, (byte) 0xB5, 0x01, 0x00, 0x40, 0x6E,
+					0x0C, 0x09, 'N', 'o', 'r', 'd', 'i', 'c', '_', 'U', 'A', 'R', 'T', 0x00, 0x00, 0x00, 0x00 }
+	};
+	private static final int[] RSSI = { -60, -75, -80 };
+
+	private final AdvertisingData mData = new AdvertisingData();
+	/** Nordic devices with one of the services, all 3 criteria groups must match. */
+	private final AdvertisingFilter mServiceFilter = new AdvertisingFilter.Builder()
+			.addServiceUuid(HEART_RATE_SERVICE)
+			.addServiceUuid(UART_SERVICE)
+			.addNamePrefix("Nordic_")
+			.setRssiFloor(-85)
+			.build();
+	/** iBeacons, type 0x02 and length 0x15 at the start of the Apple manufacturer data. */
+	private final AdvertisingFilter mBeaconFilter = new AdvertisingFilter.Builder()
+			.addManufacturer(0x004C, new byte[] { 0x02, 0x15 }, null)
+			.setRssiFloor(-85)
+			.build();
+	private int mPacket;
+
+	@Benchmark
+	public int decode() {
+		final byte[] packet = PACKETS[mPacket];
+		mPacket = (mPacket + 1) % PACKETS.length;
+		AdvertisingDataParser.decode(packet, mData);
+		return mData.serviceUuidCount + mData.manufacturerDataCount + mData.nameLength;
+	}
+
+	@Benchmark
+	public boolean decodeAndMatch() {
+		final int packet = mPacket;
+		mPacket = (mPacket + 1) % PACKETS.length;
+		AdvertisingDataParser.decode(PACKETS[packet], mData);
+		return mServiceFilter.matches(mData, RSSI[packet]) || mBeaconFilter.matches(mData, RSSI[packet]);
+	}
+
+	@Benchmark
+	public boolean collections() {
+		final int packet = mPacket;
+		mPacket = (mPacket + 1) % PACKETS.length;
+		final byte[] bytes = PACKETS[packet];
+
+		final List<UUID> uuids = new ArrayList<>();
+		final Map<Integer, byte[]> manufacturerData = new HashMap<>();
+		final Map<UUID, byte[]> serviceData = new HashMap<>();
+		String name = null;
+		int offset = 0;
+		while (offset < bytes.length) {
+			final int length = bytes[offset] & 0xFF;
+			if (length == 0)
+				break;
+			final int type = bytes[offset + 1] & 0xFF;
+			final int start = offset + 2;
+			final byte[] field = new byte[length - 1];
+			System.arraycopy(bytes, start, field, 0, field.length);
+			switch (type) {
+				case AdvertisingDataParser.TYPE_UUID16_COMPLETE:
+				case AdvertisingDataParser.TYPE_UUID16_INCOMPLETE:
+					for (int o = 0; o + 2 <= field.length; o += 2)
+						uuids.add(new UUID(AdvertisingData.expandUuid((field[o] & 0xFF) | (field[o + 1] & 0xFF) << 8), AdvertisingData.BASE_UUID_LSB));
+					break;
+				case AdvertisingDataParser.TYPE_UUID128_COMPLETE:
+				case AdvertisingDataParser.TYPE_UUID128_INCOMPLETE:
+					for (int o = 0; o + 16 <= field.length; o += 16)
+						uuids.add(new UUID(int64(field, o + 8), int64(field, o)));
+					break;
+				case AdvertisingDataParser.TYPE_COMPLETE_LOCAL_NAME:
+				case AdvertisingDataParser.TYPE_SHORTENED_LOCAL_NAME:
+					name = new String(field, UTF_8);
+					break;
+				case AdvertisingDataParser.TYPE_MANUFACTURER_SPECIFIC_DATA:
+					final byte[] data = new byte[field.length - 2];
+					System.arraycopy(field, 2, data, 0, data.length);
+					manufacturerData.put((field[0] & 0xFF) | (field[1] & 0xFF) << 8, data);
+					break;
+				case AdvertisingDataParser.TYPE_SERVICE_DATA_UUID16:
+					serviceData.put(new UUID(AdvertisingData.expandUuid((field[0] & 0xFF) | (field[1] & 0xFF) << 8), AdvertisingData.BASE_UUID_LSB), field);
+					break;
+			}
+			offset += 1 + length;
+		}
+
+		if (RSSI[packet] < -85 || serviceData.size() > 1)
+			return false;
+		if ((uuids.contains(HEART_RATE_SERVICE) || uuids.contains(UART_SERVICE)) && name != null && name.startsWith("Nordic_"))
+			return true;
+		final byte[] beacon = manufacturerData.get(0x004C);
+		return beacon != null && beacon.length >= 2 && beacon[0] == 0x02 && beacon[1] == 0x15;
+	}
+
+	private static long int64(final byte[] data, final int offset) {
+		long value = 0;
+		for (int i = 7; i >= 0; --i)
+			value = value << 8 | (data[offset + i] & 0xFF);
+		return value;
+	}
+}
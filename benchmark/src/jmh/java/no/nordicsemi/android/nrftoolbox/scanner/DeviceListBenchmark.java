@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) 2015, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.nrftoolbox.scanner;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import no.nordicsemi.android.nrftoolbox.profile.multiconnect.DeviceRegistry;
+
+/**
+ * Simulates {@link #advertiserCount} advertisers reported in 1 s scan batches and measures applying one batch
+ * to the device list: with the linear search by address that DeviceListAdapter used before, and with the
+ * {@link DeviceIndex}. Each batch reports every advertiser once, with new String instances of the addresses,
+ * as the scanner creates new BluetoothDevice objects for each result. About a third of the RSSI values change.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class DeviceListBenchmark {
+	private static final int BATCHES = 16;
+
+	@Param({ "100", "500" })
+	public int advertiserCount;
+
+	/** Stand-in for ExtendedBluetoothDevice, which depends on Android classes. */
+	private static class Device {
+		final String address;
+		final long key;
+		int rssi;
+
+		Device(final String address, final int rssi) {
+			this.address = address;
+			this.key = DeviceRegistry.toKey(address);
+			this.rssi = rssi;
+		}
+	}
+
+	private String[][] mAddresses;
+	private int[][] mRssi;
+	private int mBatch;
+	private final List<Device> mList = new ArrayList<>();
+	private final DeviceIndex<Device> mIndex = new DeviceIndex<>();
+
+	@Setup
+	public void setup() {
+		final Random random = new Random(1);
+		final String[] addresses = new String[advertiserCount];
+		for (int i = 0; i < advertiserCount; ++i)
+			addresses[i] = String.format(Locale.US, "%02X:%02X:%02X:%02X:%02X:%02X",
+					random.nextInt(256), random.nextInt(256), random.nextInt(256), random.nextInt(256), random.nextInt(256), random.nextInt(256));
+
+		mAddresses = new String[BATCHES][advertiserCount];
+		mRssi = new int[BATCHES][advertiserCount];
+		for (int b = 0; b < BATCHES; ++b) {
+			for (int i = 0; i < advertiserCount; ++i) {
+				mAddresses[b][i] = new String(addresses[i].toCharArray());
+				mRssi[b][i] = -60 - random.nextInt(3);
+			}
+		}
+		for (int i = 0; i < advertiserCount; ++i) {
+			final Device device = new Device(addresses[i], -60);
+			mList.add(device);
+			mIndex.put(device.key, device);
+		}
+	}
+
+	@Benchmark
+	public int linearSearch() {
+		final String[] addresses = mAddresses[mBatch];
+		final int[] rssi = mRssi[mBatch];
+		mBatch = (mBatch + 1) % BATCHES;
+
+		int changed = 0;
+		for (int i = 0; i < addresses.length; ++i) {
+			Device found = null;
+			for (final Device device : mList) {
+				if (device.address.equals(addresses[i])) {
+					found = device;
+					break;
+				}
+			}
+			if (found != null && found.rssi != rssi[i]) {
+				found.rssi = rssi[i];
+				changed++;
+			}
+		}
+		return changed;
+	}
+
+	@Benchmark
+	public int index() {
+		final String[] addresses = mAddresses[mBatch];
+		final int[] rssi = mRssi[mBatch];
+		mBatch = (mBatch + 1) % BATCHES;
+
+		int changed = 0;
+		for (int i = 0; i < addresses.length; ++i) {
+			final Device found = mIndex.get(DeviceRegistry.toKey(addresses[i]));
+			if (found != null && found.rssi != rssi[i]) {
+				found.rssi = rssi[i];
+				changed++;
+			}
+		}
+		return changed;
+	}
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2015, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.nrftoolbox.simulator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of simulating one second of {@link #deviceCount} connected devices, each sending 10 notifications
+ * per second and losing the link on average once a minute. Shows how the farm itself scales with the device count,
+ * so that it can be subtracted when load testing a service.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class PeripheralFarmBenchmark {
+	@Param({ "10", "50", "200" })
+	public int deviceCount;
+
+	private PeripheralFarm mFarm;
+	private long mChecksum;
+
+	@Setup(Level.Iteration)
+	public void setup() {
+		mFarm = new PeripheralFarm(new PeripheralFarm.Listener() {
+			@Override
+			public void onConnecting(final VirtualPeripheral peripheral) {
+				// ignore
+			}
+
+			@Override
+			public void onConnected(final VirtualPeripheral peripheral, final long latency) {
+				mChecksum += latency;
+			}
+
+			@Override
+			public void onNotification(final VirtualPeripheral peripheral, final UUID characteristic, final byte[] value, final int length) {
+				mChecksum += value[length - 1];
+			}
+
+			@Override
+			public void onLinkLoss(final VirtualPeripheral peripheral) {
+				mChecksum++;
+			}
+
+			@Override
+			public void onDisconnected(final VirtualPeripheral peripheral) {
+				// ignore
+			}
+		});
+		final VirtualPeripheral.Config config = new VirtualPeripheral.Config()
+				.setNotificationInterval(100)
+				.setLinkLoss(60000, 1000);
+		for (int i = 0; i < deviceCount; ++i) {
+			final long address = PeripheralFarm.createAddress(i);
+			switch (i % 3) {
+				case 0:
+					mFarm.add(new HeartRatePeripheral(address, config, i));
+					break;
+				case 1:
+					mFarm.add(new CSCPeripheral(address, config, i));
+					break;
+				default:
+					mFarm.add(new RSCPeripheral(address, config, i));
+					break;
+			}
+		}
+		mFarm.connectAll();
+	}
+
+	@Benchmark
+	public long simulateOneSecond() {
+		mFarm.runUntil(mFarm.getTime() + 1000);
+		return mChecksum;
+	}
+}
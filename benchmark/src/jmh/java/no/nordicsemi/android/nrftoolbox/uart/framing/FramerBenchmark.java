@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2015, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package no.nordicsemi.android.nrftoolbox.uart.framing;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import no.nordicsemi.android.nrftoolbox.uart.domain.Command;
+
+/**
+ * Measures reassembling a stream of 64 frames of 10 to 200 bytes, split into fragments of the given size, e.g. 20 bytes
+ * with the default MTU or 244 bytes with the maximum one. Each operation feeds the whole stream to the framer.
+ * Frames spanning several fragments are copied into the framer's buffer, others are reported as views of the fragment.
+ * After the warm-up the framers should report 0 bytes allocated per operation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class FramerBenchmark {
+	private static final int FRAMES = 64;
+
+	@Param({ "EOL", "SLIP", "LENGTH" })
+	public String framing;
+
+	@Param({ "20", "244" })
+	public int fragmentSize;
+
+	private BaseFramer mFramer;
+	private ByteBuffer[] mFragments;
+	private int mBytes;
+
+	@Setup
+	public void setup() {
+		final Random random = new Random(1);
+		final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+		for (int i = 0; i < FRAMES; ++i) {
+			final byte[] frame = new byte[10 + random.nextInt(191)];
+			for (int j = 0; j < frame.length; ++j)
+				frame[j] = (byte) (' ' + random.nextInt(95)); // printable characters
+			switch (framing) {
+				case "EOL":
+					stream.write(frame, 0, frame.length);
+					stream.write('\n');
+					break;
+				case "SLIP":
+					// Some frames contain escaped bytes
+					if (i % 4 == 0)
+						frame[frame.length / 2] = SlipFramer.END;
+					for (final byte b : frame) {
+						if (b == SlipFramer.END || b == SlipFramer.ESC) {
+							stream.write(SlipFramer.ESC);
+							stream.write(b == SlipFramer.END ? SlipFramer.ESC_END : SlipFramer.ESC_ESC);
+						} else {
+							stream.write(b);
+						}
+					}
+					stream.write(SlipFramer.END);
+					break;
+				default:
+					stream.write(frame.length);
+					stream.write(frame.length >> 8);
+					stream.write(frame, 0, frame.length);
+					break;
+			}
+		}
+
+		final byte[] data = stream.toByteArray();
+		mBytes = data.length;
+		mFragments = new ByteBuffer[(data.length + fragmentSize - 1) / fragmentSize];
+		for (int i = 0; i < mFragments.length; ++i) {
+			final int offset = i * fragmentSize;
+			mFragments[i] = ByteBuffer.wrap(data, offset, Math.min(fragmentSize, data.length - offset)).slice();
+		}
+
+		switch (framing) {
+			case "EOL":
+				mFramer = new EolFramer(Command.Eol.LF);
+				break;
+			case "SLIP":
+				mFramer = new SlipFramer();
+				break;
+			default:
+				mFramer = new LengthPrefixedFramer(2, ByteOrder.LITTLE_ENDIAN);
+				break;
+		}
+		final int[] sink = new int[1];
+		mFramer.setFrameListener(frame -> sink[0] += frame.remaining());
+	}
+
+	@Benchmark
+	public long accept() {
+		for (final ByteBuffer fragment : mFragments) {
+			fragment.clear();
+			mFramer.accept(fragment);
+		}
+		return mFramer.getFrameCount() + mBytes;
+	}
+}